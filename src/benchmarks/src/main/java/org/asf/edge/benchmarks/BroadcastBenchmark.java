@@ -0,0 +1,87 @@
+package org.asf.edge.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.asf.edge.mmoserver.networking.bitswarm.BitswarmClient;
+import org.asf.edge.mmoserver.networking.packets.EncodedPacket;
+import org.asf.edge.mmoserver.networking.sfs.SmartfoxPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *
+ * Broadcast benchmark, compares serializing, compressing and framing a packet
+ * for each recipient with encoding it once and sharing the frame, run with
+ * -prof gc to see the allocation per broadcast
+ *
+ * @author Sky Swimmer
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+
+	@Param({ "small", "large" })
+	public String payloadSize;
+
+	@Param({ "1", "16", "64" })
+	public int recipients;
+
+	private SmartfoxPayload payload;
+
+	@Setup
+	public void setup() {
+		// Room variable update, large payloads are compressed
+		int vars = payloadSize.equals("large") ? 150 : 4;
+		SmartfoxPayload room = SmartfoxPayload.create();
+		room.setInt("r", 12);
+		Object[] updates = new Object[vars];
+		for (int i = 0; i < vars; i++) {
+			SmartfoxPayload var = SmartfoxPayload.create();
+			var.setString("n", "var" + i);
+			var.setString("v", "{\"state\":" + i + ",\"owner\":\"d4c1a6b2-8f0e-4a43-9b1f\"}");
+			updates[i] = var;
+		}
+		room.setObjectArray("vl", updates);
+		payload = SmartfoxPayload.create();
+		payload.setByte("c", (byte) 0);
+		payload.setShort("a", (short) 11);
+		payload.setObject("p", room);
+	}
+
+	@Benchmark
+	public void encodePerRecipient(Blackhole bh) throws IOException {
+		// Previous behaviour, every client serialized and framed its own copy
+		for (int i = 0; i < recipients; i++) {
+			byte[][] frame = BitswarmClient.encodePacket(payload.encodeToSfsObject(), false,
+					BitswarmClient.DEFAULT_COMPRESSION_THRESHOLD, null);
+			bh.consume(ByteBuffer.wrap(frame[0]));
+			bh.consume(ByteBuffer.wrap(frame[1]));
+		}
+	}
+
+	@Benchmark
+	public void encodeOnce(Blackhole bh) throws IOException {
+		EncodedPacket packet = EncodedPacket.fromPayload(payload.encodeToSfsObject(),
+				BitswarmClient.DEFAULT_COMPRESSION_THRESHOLD, null);
+		for (int i = 0; i < recipients; i++)
+			bh.consume(packet.createFrameBuffers());
+	}
+
+}
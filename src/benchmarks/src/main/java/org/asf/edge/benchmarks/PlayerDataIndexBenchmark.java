@@ -0,0 +1,140 @@
+package org.asf.edge.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.asf.edge.common.jdbc.SchemaMigrator;
+import org.asf.edge.common.jdbc.SchemaMigrator.Dialect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 
+ * Player data lookup benchmark, runs the account data container queries on a
+ * SQLite account-wide player data table with and without the lookup index of
+ * the accounts schema migration
+ * 
+ * @author Sky Swimmer
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerDataIndexBenchmark {
+
+	private static final int KEYS_PER_ACCOUNT = 100;
+
+	@Param({ "100000", "1000000" })
+	public int rows;
+
+	@Param({ "false", "true" })
+	public boolean indexed;
+
+	private File database;
+	private Connection conn;
+	private PreparedStatement getEntry;
+	private PreparedStatement getChildKeys;
+	private String[] accounts;
+	private Random rnd = new Random(2);
+
+	@Setup
+	public void setup() throws IOException, SQLException {
+		database = File.createTempFile("edge-benchmark-", ".db");
+		conn = DriverManager.getConnection("jdbc:sqlite:" + database.getAbsolutePath());
+
+		// Create table the way the account manager does
+		Statement statement = conn.createStatement();
+		statement.executeUpdate(
+				"CREATE TABLE IF NOT EXISTS ACCOUNTWIDEPLAYERDATA_V2 (ACCID CHAR(36), DATAKEY varchar(64), PARENT varchar(64), PARENTCONTAINER varchar(256), DATA LONGTEXT)");
+
+		// Fill, each account has keys spread over a few containers
+		accounts = new String[Math.max(1, rows / KEYS_PER_ACCOUNT)];
+		for (int i = 0; i < accounts.length; i++)
+			accounts[i] = UUID.nameUUIDFromBytes(("account" + i).getBytes()).toString();
+		conn.setAutoCommit(false);
+		PreparedStatement insert = conn.prepareStatement("INSERT INTO ACCOUNTWIDEPLAYERDATA_V2 VALUES(?, ?, ?, ?, ?)");
+		for (int i = 0; i < rows; i++) {
+			int key = i % KEYS_PER_ACCOUNT;
+			insert.setString(1, accounts[i / KEYS_PER_ACCOUNT % accounts.length]);
+			insert.setString(2, "key" + key);
+			insert.setString(3, "container" + (key % 10));
+			insert.setString(4, "/accountdata");
+			insert.setString(5, "{\"value\":" + i + "}");
+			insert.addBatch();
+			if (i % 10000 == 9999)
+				insert.executeBatch();
+		}
+		insert.executeBatch();
+		insert.close();
+		conn.commit();
+		conn.setAutoCommit(true);
+
+		// Create the index of the accounts schema version 1 migration
+		if (indexed)
+			SchemaMigrator.createIndex(statement, Dialect.detect(conn), "IDX_ACCOUNTWIDEPLAYERDATA_V2_KEY",
+					"ACCOUNTWIDEPLAYERDATA_V2", "ACCID", "PARENTCONTAINER", "PARENT", "DATAKEY");
+		statement.close();
+
+		// Queries of the account data container
+		getEntry = conn.prepareStatement(
+				"SELECT DATA FROM ACCOUNTWIDEPLAYERDATA_V2 WHERE DATAKEY = ? AND PARENT = ? AND PARENTCONTAINER = ? AND ACCID = ?");
+		getChildKeys = conn.prepareStatement(
+				"SELECT DATAKEY FROM ACCOUNTWIDEPLAYERDATA_V2 WHERE PARENT = ? AND PARENTCONTAINER = ? AND ACCID = ?");
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		getEntry.close();
+		getChildKeys.close();
+		conn.close();
+		database.delete();
+	}
+
+	@Benchmark
+	public String getEntry() throws SQLException {
+		int key = rnd.nextInt(KEYS_PER_ACCOUNT);
+		getEntry.setString(1, "key" + key);
+		getEntry.setString(2, "container" + (key % 10));
+		getEntry.setString(3, "/accountdata");
+		getEntry.setString(4, accounts[rnd.nextInt(accounts.length)]);
+		try (ResultSet res = getEntry.executeQuery()) {
+			return res.next() ? res.getString("DATA") : null;
+		}
+	}
+
+	@Benchmark
+	public int getChildKeys() throws SQLException {
+		getChildKeys.setString(1, "container" + rnd.nextInt(10));
+		getChildKeys.setString(2, "/accountdata");
+		getChildKeys.setString(3, accounts[rnd.nextInt(accounts.length)]);
+		int count = 0;
+		try (ResultSet res = getChildKeys.executeQuery()) {
+			while (res.next())
+				count++;
+		}
+		return count;
+	}
+
+}
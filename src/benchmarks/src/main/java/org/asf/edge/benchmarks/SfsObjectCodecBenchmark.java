@@ -0,0 +1,106 @@
+package org.asf.edge.benchmarks;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.asf.edge.mmoserver.networking.sfs.LegacySmartfoxNetworkObjectUtil;
+import org.asf.edge.mmoserver.networking.sfs.SmartfoxNetworkObjectUtil;
+import org.asf.edge.mmoserver.networking.sfs.SmartfoxPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Smartfox object codec benchmark, compares the buffer codec and the lazy
+ * payload view with the stream-based implementation they replaced
+ *
+ * @author Sky Swimmer
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SfsObjectCodecBenchmark {
+
+	private Map<String, Object> object;
+	private byte[] encoded;
+
+	@Setup
+	public void setup() throws IOException {
+		// Extension request shaped like a positional variable update
+		LinkedHashMap<String, Object> vars = new LinkedHashMap<String, Object>();
+		vars.put("UID", "d4c1a6b2-8f0e-4a43-9b1f-0c9e7d5a2e11");
+		vars.put("P", new double[] { 12.5, 3.25, -40.125 });
+		vars.put("R", new double[] { 0, 180, 0 });
+		vars.put("F", 2);
+		vars.put("MX", 6.0f);
+		vars.put("NT", "Flying");
+		vars.put("CU", new String[] { "hat", "shirt", "pants", "shoes" });
+		LinkedHashMap<String, Object> params = new LinkedHashMap<String, Object>();
+		params.put("c", "SPV");
+		params.put("r", 12);
+		params.put("p", vars);
+		params.put("t", 1718000000000L);
+		object = new LinkedHashMap<String, Object>();
+		object.put("c", (byte) 1);
+		object.put("a", (short) 13);
+		object.put("p", params);
+		encoded = LegacySmartfoxNetworkObjectUtil.encodeSfsObject(object);
+	}
+
+	@Benchmark
+	public Map<String, Object> decodeLegacy() throws IOException {
+		return LegacySmartfoxNetworkObjectUtil.parseSfsObject(encoded);
+	}
+
+	@Benchmark
+	public Map<String, Object> decodeCodec() throws IOException {
+		return SmartfoxNetworkObjectUtil.parseSfsObject(encoded);
+	}
+
+	@Benchmark
+	public String dispatchLegacy() throws IOException {
+		// Read the fields needed to route the packet
+		SmartfoxPayload payload = SmartfoxPayload
+				.fromObject(LegacySmartfoxNetworkObjectUtil.parseSfsObject(encoded));
+		return payload.getByte("c") + payload.getShort("a") + payload.getObject("p").getString("c");
+	}
+
+	@Benchmark
+	public String dispatchCodec() throws IOException {
+		// Read the fields needed to route the packet
+		SmartfoxPayload payload = SmartfoxPayload.fromObject(SmartfoxNetworkObjectUtil.parseSfsObject(encoded));
+		return payload.getByte("c") + payload.getShort("a") + payload.getObject("p").getString("c");
+	}
+
+	@Benchmark
+	public String dispatchView() throws IOException {
+		// Read the fields needed to route the packet
+		SmartfoxPayload payload = SmartfoxPayload.parseSfsObject(encoded);
+		return payload.getByte("c") + payload.getShort("a") + payload.getObject("p").getString("c");
+	}
+
+	@Benchmark
+	public byte[] encodeLegacy() throws IOException {
+		return LegacySmartfoxNetworkObjectUtil.encodeSfsObject(object);
+	}
+
+	@Benchmark
+	public byte[] encodeCodec() throws IOException {
+		return SmartfoxNetworkObjectUtil.encodeSfsObject(object);
+	}
+
+}
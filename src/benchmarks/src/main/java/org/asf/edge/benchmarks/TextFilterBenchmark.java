@@ -0,0 +1,104 @@
+package org.asf.edge.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.asf.edge.common.services.textfilter.PhraseFilter;
+import org.asf.edge.common.services.textfilter.PhraseFilterSet;
+import org.asf.edge.common.services.textfilter.impl.LegacyTextFilter;
+import org.asf.edge.common.services.textfilter.impl.TextFilterServiceImpl;
+import org.asf.edge.common.services.textfilter.result.FilterResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Text filter benchmark, compares the compiled filter matcher with the filter
+ * implementation it replaced on chat-like messages using the default filters
+ *
+ * @author Sky Swimmer
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextFilterBenchmark {
+
+	private static final String[] WORDS = new String[] { "hello", "there", "want", "to", "trade", "my", "dragon",
+			"is", "so", "cool", "lol", "see", "you", "at", "the", "school", "race", "me", "GG", "wow!" };
+
+	private LegacyTextFilter legacy;
+	private TextFilterServiceImpl service;
+	private String[] messages;
+	private int index;
+
+	@Setup
+	public void setup() throws IOException {
+		HashMap<String, PhraseFilterSet> filters = LegacyTextFilter.loadDefaultFilters();
+		legacy = new LegacyTextFilter(filters);
+		service = new TextFilterServiceImpl();
+		for (PhraseFilterSet set : filters.values())
+			service.addFilterSet(set);
+
+		// Messages of mostly normal words, every fourth word is a filtered phrase
+		ArrayList<String> filtered = new ArrayList<String>();
+		for (PhraseFilterSet set : filters.values()) {
+			for (PhraseFilter filter : set.getFilteredPhrases())
+				filtered.add(filter.getPhrase());
+		}
+		Random rnd = new Random(1);
+		messages = new String[1024];
+		for (int i = 0; i < messages.length; i++) {
+			StringBuilder message = new StringBuilder();
+			int words = 3 + rnd.nextInt(10);
+			for (int i2 = 0; i2 < words; i2++) {
+				if (i2 != 0)
+					message.append(' ');
+				if (rnd.nextInt(4) == 0 && !filtered.isEmpty())
+					message.append(filtered.get(rnd.nextInt(filtered.size())));
+				else
+					message.append(WORDS[rnd.nextInt(WORDS.length)]);
+			}
+			messages[i] = message.toString();
+		}
+	}
+
+	private String nextMessage() {
+		return messages[index++ & (messages.length - 1)];
+	}
+
+	@Benchmark
+	public FilterResult filterLegacy() {
+		return legacy.filter(nextMessage(), true);
+	}
+
+	@Benchmark
+	public FilterResult filterMatcher() {
+		return service.filter(nextMessage(), true);
+	}
+
+	@Benchmark
+	public boolean isFilteredLegacy() {
+		return legacy.isFiltered(nextMessage(), true);
+	}
+
+	@Benchmark
+	public boolean isFilteredMatcher() {
+		return service.isFiltered(nextMessage(), true);
+	}
+
+}
@@ -0,0 +1,75 @@
+package org.asf.edge.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.asf.edge.common.util.LegacyTripleDesUtil;
+import org.asf.edge.common.util.TripleDesUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 
+ * Triple DES benchmark, compares the cached ciphers and derived keys with
+ * creating a cipher and hashing the secret on every call
+ * 
+ * @author Sky Swimmer
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TripleDesBenchmark {
+
+	private static final String SECRET = "56BB211B-CF06-48E1-9C1D-E40B5173D759";
+
+	// Small is a typical encrypted request parameter, large a content manifest
+	@Param({ "64", "16384" })
+	public int payloadSize;
+
+	private byte[] key;
+	private byte[] data;
+	private byte[] encrypted;
+
+	@Setup
+	public void setup() throws IOException {
+		key = LegacyTripleDesUtil.deriveKey(SECRET, "UTF-16LE");
+		data = new byte[payloadSize];
+		new Random(1).nextBytes(data);
+		encrypted = LegacyTripleDesUtil.encrypt(data, key);
+	}
+
+	@Benchmark
+	public byte[] encryptLegacy() throws IOException {
+		return LegacyTripleDesUtil.encrypt(data, LegacyTripleDesUtil.deriveKey(SECRET, "UTF-16LE"));
+	}
+
+	@Benchmark
+	public byte[] encryptCached() throws IOException {
+		return TripleDesUtil.encrypt(data, TripleDesUtil.deriveKey(SECRET, "UTF-16LE"));
+	}
+
+	@Benchmark
+	public byte[] decryptLegacy() throws IOException {
+		return LegacyTripleDesUtil.decrypt(encrypted, key);
+	}
+
+	@Benchmark
+	public byte[] decryptCached() throws IOException {
+		return TripleDesUtil.decrypt(encrypted, key);
+	}
+
+}
@@ -0,0 +1,76 @@
+package org.asf.edge.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.asf.edge.common.http.apihandlerutils.LegacyWebServiceRoutes;
+import org.asf.edge.gameplayapi.http.handlers.gameplayapi.ContentWebServiceV1Processor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 
+ * Web service routing benchmark, compares the per-request function scan and
+ * lookup with the compiled route table on the content web service
+ * 
+ * @author Sky Swimmer
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebServiceRoutesBenchmark {
+
+	private static final Class<?> SERVICE = ContentWebServiceV1Processor.class;
+
+	private LegacyWebServiceRoutes legacy;
+	private String[] paths;
+	private int index;
+
+	@Setup
+	public void setup() {
+		// Request every function, with the casing clients use
+		legacy = new LegacyWebServiceRoutes(SERVICE);
+		String[] names = legacy.getFunctionNames();
+		Arrays.sort(names);
+		paths = new String[names.length];
+		for (int i = 0; i < names.length; i++)
+			paths[i] = Character.toUpperCase(names[i].charAt(0)) + names[i].substring(1);
+	}
+
+	private String nextPath() {
+		if (index >= paths.length)
+			index = 0;
+		return paths[index++];
+	}
+
+	@Benchmark
+	public Method lookupLegacy() {
+		// Every request created a service instance that scanned the type
+		return new LegacyWebServiceRoutes(SERVICE).findFunction(nextPath());
+	}
+
+	@Benchmark
+	public Method lookupLegacyPrescanned() {
+		// Lookup cost alone, without the scan
+		return legacy.findFunction(nextPath());
+	}
+
+	@Benchmark
+	public Method lookupCompiled() {
+		return LegacyWebServiceRoutes.findCompiledFunction(SERVICE, nextPath());
+	}
+
+}
@@ -11,11 +11,20 @@ import org.asf.edge.common.commands.TaskBasedCommand;
 import org.asf.edge.common.entities.achivements.RankTypeID;
 import org.asf.edge.common.entities.messages.defaultmessages.WsGenericMessage;
 import org.asf.edge.common.entities.messages.defaultmessages.WsPluginMessage;
+import org.asf.edge.common.jdbc.ConnectionPool;
+import org.asf.edge.common.jdbc.LockingConnection;
+import org.asf.edge.common.jdbc.SqliteConnectionManager;
 import org.asf.edge.common.permissions.PermissionLevel;
 import org.asf.edge.common.services.accounts.AccountManager;
 import org.asf.edge.common.services.accounts.AccountSaveContainer;
+import org.asf.edge.common.services.accounts.impl.DatabaseAccountManager;
+import org.asf.edge.common.services.accounts.impl.DefaultDatabaseAccountManager;
+import org.asf.edge.common.services.accounts.impl.PostgresDatabaseAccountManager;
+import org.asf.edge.common.services.accounts.impl.accounts.db.AccountDataCache;
 import org.asf.edge.common.services.achievements.AchievementManager;
 import org.asf.edge.common.services.commondata.CommonDataManager;
+import org.asf.edge.common.services.commondata.impl.DefaultDatabaseCommonDataManager;
+import org.asf.edge.common.services.commondata.impl.PostgresDatabaseCommonDataManager;
 import org.asf.edge.common.services.messages.WsMessageService;
 import org.asf.edge.common.services.textfilter.TextFilterService;
 import org.asf.edge.common.util.TaggedMessageUtils;
@@ -641,6 +650,86 @@ public class DebugCommands extends TaskBasedCommand {
 								.trim();
 					}
 
+				}, new IEdgeServerCommand() {
+
+					@Override
+					public String id() {
+						return "databasestats";
+					}
+
+					@Override
+					public String syntax(CommandContext ctx) {
+						return null;
+					}
+
+					@Override
+					public String description(CommandContext ctx) {
+						return "Shows database connection statistics and latency percentiles";
+					}
+
+					@Override
+					public PermissionLevel permLevel() {
+						return PermissionLevel.OPERATOR;
+					}
+
+					@Override
+					public String permNode() {
+						return "commands.operator.debugcommands";
+					}
+
+					@Override
+					public String run(String[] args, CommandContext ctx, Logger logger,
+							Consumer<String> outputWriteLineCallback, Map<String, String> dataBlobs) {
+						// Find backends
+						ConnectionPool accPool = null;
+						ConnectionPool cdPool = null;
+						SqliteConnectionManager accSqlite = null;
+						SqliteConnectionManager cdSqlite = null;
+						AccountManager accManager = AccountManager.getInstance();
+						if (accManager instanceof DefaultDatabaseAccountManager) {
+							accPool = ((DefaultDatabaseAccountManager) accManager).getConnectionPool();
+							accSqlite = ((DefaultDatabaseAccountManager) accManager).getSqliteManager();
+						} else if (accManager instanceof PostgresDatabaseAccountManager)
+							accPool = ((PostgresDatabaseAccountManager) accManager).getConnectionPool();
+						CommonDataManager cdManager = CommonDataManager.getInstance();
+						if (cdManager instanceof DefaultDatabaseCommonDataManager) {
+							cdPool = ((DefaultDatabaseCommonDataManager) cdManager).getConnectionPool();
+							cdSqlite = ((DefaultDatabaseCommonDataManager) cdManager).getSqliteManager();
+						} else if (cdManager instanceof PostgresDatabaseCommonDataManager)
+							cdPool = ((PostgresDatabaseCommonDataManager) cdManager).getConnectionPool();
+
+						// Build output
+						String res = "Database statistics:";
+						res += "\nLocking driver lock wait: " + LockingConnection.getLockLatency().summarize();
+						if (accPool != null)
+							res += "\nAccount manager pool: " + describePool(accPool);
+						if (accSqlite != null) {
+							res += "\nAccount manager SQLite reads: " + accSqlite.getReadLatency().summarize();
+							res += "\nAccount manager SQLite writes: " + accSqlite.getWriteLatency().summarize();
+						}
+						if (cdPool != null)
+							res += "\nCommon data manager pool: " + describePool(cdPool);
+						if (cdSqlite != null) {
+							res += "\nCommon data manager SQLite reads: " + cdSqlite.getReadLatency().summarize();
+							res += "\nCommon data manager SQLite writes: " + cdSqlite.getWriteLatency().summarize();
+						}
+						if (accManager instanceof DatabaseAccountManager) {
+							AccountDataCache cache = ((DatabaseAccountManager) accManager).getDataCache();
+							res += "\nAccount data cache: " + (cache.getSize() / 1024) + "/"
+									+ (cache.getMaxSize() / 1024) + " KiB in " + cache.getSegmentCount()
+									+ " segments, hits=" + cache.getHits() + " misses=" + cache.getMisses()
+									+ " evictions=" + cache.getEvictions();
+						}
+						return res;
+					}
+
+					private String describePool(ConnectionPool pool) {
+						return pool.getActiveConnections() + " active, " + pool.getIdleConnections() + " idle, "
+								+ pool.getOpenConnections() + "/" + pool.getMaxConnections() + " open, "
+								+ String.format("%.2f", pool.getAverageWaitTime()) + "ms average wait, "
+								+ pool.getMaxWaitTime() + "ms max wait, " + pool.getEvictionCount() + " evicted";
+					}
+
 				}
 
 		};
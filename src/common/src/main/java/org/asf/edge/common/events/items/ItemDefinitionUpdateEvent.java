@@ -0,0 +1,50 @@
+package org.asf.edge.common.events.items;
+
+import org.asf.edge.common.entities.items.ItemInfo;
+import org.asf.edge.common.services.items.ItemManager;
+import org.asf.edge.modules.eventbus.EventObject;
+import org.asf.edge.modules.eventbus.EventPath;
+
+/**
+ * 
+ * Item definition update event - called when item definitions are registered
+ * or updated at runtime
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+@EventPath("items.itemmanager.definitions.update")
+public class ItemDefinitionUpdateEvent extends EventObject {
+
+	private ItemManager itemManager;
+	private ItemInfo item;
+
+	@Override
+	public String eventPath() {
+		return "items.itemmanager.definitions.update";
+	}
+
+	public ItemDefinitionUpdateEvent(ItemManager itemManager, ItemInfo item) {
+		this.itemManager = itemManager;
+		this.item = item;
+	}
+
+	/**
+	 * Retrieves the item manager
+	 * 
+	 * @return ItemManager instance
+	 */
+	public ItemManager getItemManager() {
+		return itemManager;
+	}
+
+	/**
+	 * Retrieves the item definition that was updated
+	 * 
+	 * @return ItemInfo instance
+	 */
+	public ItemInfo getItem() {
+		return item;
+	}
+
+}
@@ -3,13 +3,7 @@ package org.asf.edge.common.http.apihandlerutils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.Parameter;
 import java.net.URLDecoder;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
@@ -18,28 +12,15 @@ import org.apache.logging.log4j.Logger;
 import org.asf.connective.RemoteClient;
 import org.asf.connective.processors.HttpPushProcessor;
 import org.asf.edge.common.IBaseServer;
-import org.asf.edge.common.entities.items.PlayerInventory;
-import org.asf.edge.common.experiments.ExperimentManager;
-import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunction;
+import org.asf.edge.common.http.apihandlerutils.EdgeWebServiceRoutes.FunctionRoute;
+import org.asf.edge.common.http.apihandlerutils.EdgeWebServiceRoutes.LegacyRoute;
+import org.asf.edge.common.http.apihandlerutils.EdgeWebServiceRoutes.ParamBinding;
 import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunctionInfo;
-import org.asf.edge.common.http.apihandlerutils.functions.TokenRequireCapabilities;
-import org.asf.edge.common.http.apihandlerutils.functions.TokenRequireCapability;
-import org.asf.edge.common.http.apihandlerutils.functions.SaveData;
-import org.asf.edge.common.http.apihandlerutils.functions.SaveInventory;
-import org.asf.edge.common.http.apihandlerutils.functions.SodEncryptedParam;
-import org.asf.edge.common.http.apihandlerutils.functions.SodRequest;
-import org.asf.edge.common.http.apihandlerutils.functions.SodRequestParam;
-import org.asf.edge.common.http.apihandlerutils.functions.SodTokenSecured;
-import org.asf.edge.common.http.apihandlerutils.functions.TokenRequireSave;
-import org.asf.edge.common.http.apihandlerutils.functions.AccountData;
-import org.asf.edge.common.http.apihandlerutils.functions.AccountInventory;
-import org.asf.edge.common.http.apihandlerutils.functions.ExperimentalFeature;
-import org.asf.edge.common.http.apihandlerutils.functions.Function;
 import org.asf.edge.common.http.apihandlerutils.functions.FunctionInfo;
 import org.asf.edge.common.http.apihandlerutils.functions.FunctionResult;
 import org.asf.edge.common.http.cookies.CookieContext;
+import org.asf.edge.common.services.accounts.impl.accounts.db.DatabaseWriteBehindBuffer;
 import org.asf.edge.common.http.cookies.CookieManager;
-import org.asf.edge.common.services.accounts.AccountDataContainer;
 import org.asf.edge.common.services.accounts.AccountObject;
 import org.asf.edge.common.services.accounts.AccountSaveContainer;
 import org.asf.edge.common.tokens.SessionToken;
@@ -112,75 +93,13 @@ public abstract class EdgeWebService<T extends IBaseServer> extends HttpPushProc
 	}
 
 	private Utilities utils = new Utilities();
-	private HashMap<String, Method> functions = new HashMap<String, Method>();
-	private HashMap<String, Method> legacyFunctions = new HashMap<String, Method>();
+	private EdgeWebServiceRoutes routes;
 	private CookieContext cookies;
 	private T server;
 
 	public EdgeWebService(T server) {
 		this.server = server;
-		initialize();
-	}
-
-	private void initialize() {
-		// Find all functions
-		for (Method meth : getClass().getMethods()) {
-			if (!Modifier.isAbstract(meth.getModifiers()) && !Modifier.isStatic(meth.getModifiers())) {
-				// Check parameters
-				if (meth.getParameterCount() == 1
-						&& LegacyFunctionInfo.class.isAssignableFrom(meth.getParameterTypes()[0])) {
-					// Check annotation
-					if (meth.isAnnotationPresent(LegacyFunction.class)) {
-						LegacyFunction funcAnno = meth.getAnnotation(LegacyFunction.class);
-						String name = meth.getName();
-						if (!funcAnno.value().equals("<auto>"))
-							name = funcAnno.value();
-
-						// Make accessible
-						meth.setAccessible(true);
-
-						// Register
-						legacyFunctions.put(name.toLowerCase(), meth);
-					}
-				} else if ((meth.isAnnotationPresent(Function.class) || meth.isAnnotationPresent(SodRequest.class))
-						&& FunctionResult.class.isAssignableFrom(meth.getReturnType())) {
-					// Check
-					if (!meth.isAnnotationPresent(SodRequest.class) && (meth.getParameterTypes().length != 1
-							|| !meth.getParameterTypes()[0].isAssignableFrom(FunctionInfo.class)))
-						continue;
-
-					// Check experimental
-					if (meth.isAnnotationPresent(ExperimentalFeature.class)) {
-						// Check
-						ExperimentalFeature anno = meth.getAnnotation(ExperimentalFeature.class);
-						String key = anno.value();
-						if (anno.isReverse()) {
-							// Check
-							if (ExperimentManager.getInstance().isExperimentEnabled(key))
-								continue;
-						} else {
-							// Check
-							if (!ExperimentManager.getInstance().isExperimentEnabled(key))
-								continue;
-						}
-					}
-
-					// Load name
-					String name = meth.getName();
-					if (meth.isAnnotationPresent(Function.class)) {
-						Function funcAnno = meth.getAnnotation(Function.class);
-						if (!funcAnno.value().equals("<auto>"))
-							name = funcAnno.value();
-					}
-
-					// Make accessible
-					meth.setAccessible(true);
-
-					// Register
-					functions.put(name.toLowerCase(), meth);
-				}
-			}
-		}
+		routes = EdgeWebServiceRoutes.getRoutes(getClass());
 	}
 
 	/**
@@ -203,6 +122,17 @@ public abstract class EdgeWebService<T extends IBaseServer> extends HttpPushProc
 
 	@Override
 	public void process(String path, String method, RemoteClient client, String contentType) throws IOException {
+		DatabaseWriteBehindBuffer.beginRequest();
+		try {
+			processRequest(path, method, client, contentType);
+		} finally {
+			// Flush buffered account data writes made by this request
+			DatabaseWriteBehindBuffer.flushCurrentThread();
+		}
+	}
+
+	private void processRequest(String path, String method, RemoteClient client, String contentType)
+			throws IOException {
 		// Compute subpath
 		path = sanitizePath(path.substring(this.path().length()));
 		if (path.startsWith("/"))
@@ -221,94 +151,30 @@ public abstract class EdgeWebService<T extends IBaseServer> extends HttpPushProc
 
 		// Find function
 		try {
-			for (String func : functions.keySet()) {
-				// Get function
-				Method mth = functions.get(func.toLowerCase());
-
+			String lowerPath = path.toLowerCase();
+			FunctionRoute func = routes.findFunction(lowerPath);
+			if (func != null) {
 				// Check method
-				if (mth.isAnnotationPresent(Function.class)) {
-					Function anno = mth.getAnnotation(Function.class);
-					String name = mth.getName();
-					if (!anno.value().equals("<auto>"))
-						name = anno.value();
-
-					// Preverify method
-					boolean allowed = false;
-					for (String meth : anno.allowedMethods()) {
-						if (meth.equalsIgnoreCase(method)) {
-							allowed = true;
-							break;
-						}
-					}
-
-					// Check
-					if (anno.allowSubPaths()) {
-						// Check sub path
-						if (path.toLowerCase().equals(name.toLowerCase())
-								|| path.toLowerCase().startsWith(name.toLowerCase() + "/")) {
-							// Found it
-
-							// Check method
-							if (!allowed) {
-								setResponseStatus(405, "Method not allowed");
-								return;
-							}
-
-							// Run function
-							runFunc(mth, path, method, client, contentType);
-							return;
-						}
-					}
-				}
-			}
-			if (functions.containsKey(path.toLowerCase())) {
-				// Get function
-				Method mth = functions.get(path.toLowerCase());
-
-				// Check method
-				if (mth.isAnnotationPresent(Function.class)) {
-					Function anno = mth.getAnnotation(Function.class);
-					boolean allowed = false;
-					for (String meth : anno.allowedMethods()) {
-						if (meth.equalsIgnoreCase(method)) {
-							allowed = true;
-							break;
-						}
-					}
-					if (!allowed) {
-						setResponseStatus(405, "Method not allowed");
-						return;
-					}
+				if (!func.isMethodAllowed(method)) {
+					setResponseStatus(405, "Method not allowed");
+					return;
 				}
 
 				// Run function
-				runFunc(mth, path, method, client, contentType);
+				runFunc(func, path, method, client, contentType);
 				return;
-			} else if (legacyFunctions.containsKey(path.toLowerCase())) {
-				// Get function
-				Method mth = legacyFunctions.get(path.toLowerCase());
-				LegacyFunction anno = mth.getAnnotation(LegacyFunction.class);
-
+			}
+			LegacyRoute legacyFunc = routes.findLegacyFunction(lowerPath);
+			if (legacyFunc != null) {
 				// Check method
-				boolean allowed = false;
-				for (String meth : anno.allowedMethods()) {
-					if (meth.equalsIgnoreCase(method)) {
-						allowed = true;
-						break;
-					}
-				}
-				if (!allowed) {
+				if (!legacyFunc.isMethodAllowed(method)) {
 					setResponseStatus(405, "Method not allowed");
 					return;
 				}
 
 				// Run function
-				try {
-					mth.invoke(this, new LegacyFunctionInfo(path, getRequest(), getResponse(), getServer(), method,
-							client, contentType, getCookies()));
-				} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-					throw new RuntimeException(e);
-				}
+				legacyFunc.invoke(this, new LegacyFunctionInfo(path, getRequest(), getResponse(), getServer(), method,
+						client, contentType, getCookies()));
 				return;
 			}
 
@@ -326,58 +192,54 @@ public abstract class EdgeWebService<T extends IBaseServer> extends HttpPushProc
 		}
 	}
 
-	private void runFunc(Method mth, String path, String method, RemoteClient client, String contentType)
+	private void runFunc(FunctionRoute route, String path, String method, RemoteClient client, String contentType)
 			throws IOException {
-		try {
-			// Create info
-			FunctionInfo fI = new FunctionInfo(path, getRequest(), getResponse(), getServer(), method, client,
-					contentType, getCookies());
-
-			// Check annotation
-			Object[] args = new Object[] { fI };
-			if (mth.isAnnotationPresent(SodRequest.class)) {
-				// Parse request
-				ServiceRequestInfo req = getUtilities().getServiceRequestPayload(getServerInstance().getLogger());
-				if (req == null) {
-					getResponse().setResponseStatus(400, "Bad request");
-					return;
-				}
-
-				// Populate arguments
-				args = populateArguments(mth, fI, req);
+		// Create info
+		FunctionInfo fI = new FunctionInfo(path, getRequest(), getResponse(), getServer(), method, client,
+				contentType, getCookies());
+
+		// Check annotation
+		Object[] args = new Object[] { fI };
+		if (route.sodRequest) {
+			// Parse request
+			ServiceRequestInfo req = getUtilities().getServiceRequestPayload(getServerInstance().getLogger());
+			if (req == null) {
+				getResponse().setResponseStatus(400, "Bad request");
+				return;
 			}
 
-			// Run
-			FunctionResult res = (FunctionResult) mth.invoke(this, args);
-
-			// Set response
-			setResponseStatus(res.getStatusCode(), res.getStatusMessage());
-			if (res.hasResponseBody()) {
-				// Check response modes
-				if (res.getContentLength() != -1) {
-					// With length
-					if (res.getResponseMediaType() != null)
-						setResponseContent(res.getResponseMediaType(), res.getResponseBodyStream(),
-								res.getContentLength());
-					else
-						setResponseContent(res.getResponseBodyStream(), res.getContentLength());
-				} else {
-					// Without length
-					if (res.getResponseMediaType() != null)
-						setResponseContent(res.getResponseMediaType(), res.getResponseBodyStream());
-					else
-						setResponseContent(res.getResponseBodyStream());
-				}
+			// Populate arguments
+			args = populateArguments(route, fI, req);
+		}
+
+		// Run
+		FunctionResult res = route.invoke(this, args);
+
+		// Set response
+		setResponseStatus(res.getStatusCode(), res.getStatusMessage());
+		if (res.hasResponseBody()) {
+			// Check response modes
+			if (res.getContentLength() != -1) {
+				// With length
+				if (res.getResponseMediaType() != null)
+					setResponseContent(res.getResponseMediaType(), res.getResponseBodyStream(),
+							res.getContentLength());
+				else
+					setResponseContent(res.getResponseBodyStream(), res.getContentLength());
+			} else {
+				// Without length
+				if (res.getResponseMediaType() != null)
+					setResponseContent(res.getResponseMediaType(), res.getResponseBodyStream());
+				else
+					setResponseContent(res.getResponseBodyStream());
 			}
-		} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-			throw new RuntimeException(e);
 		}
 	}
 
-	private Object[] populateArguments(Method mth, FunctionInfo fI, EdgeWebService<T>.ServiceRequestInfo req)
+	private Object[] populateArguments(FunctionRoute route, FunctionInfo fI, EdgeWebService<T>.ServiceRequestInfo req)
 			throws IOException {
 		// Create array
-		Parameter[] params = mth.getParameters();
+		ParamBinding[] params = route.params;
 		Object[] args = new Object[params.length];
 		HttpException pendingException = null;
 
@@ -385,7 +247,7 @@ public abstract class EdgeWebService<T extends IBaseServer> extends HttpPushProc
 		SessionToken tkn = null;
 		AccountObject account = null;
 		AccountSaveContainer save = null;
-		if (mth.isAnnotationPresent(SodTokenSecured.class)) {
+		if (route.tokenSecured) {
 			// Check token
 			if (!req.payload.containsKey("apiToken"))
 				pendingException = new HttpException(400, "Bad request");
@@ -405,10 +267,9 @@ public abstract class EdgeWebService<T extends IBaseServer> extends HttpPushProc
 				}
 
 				// Verify capabilities
-				if (tkn != null && mth.isAnnotationPresent(TokenRequireCapabilities.class)) {
-					TokenRequireCapabilities caps = mth.getAnnotation(TokenRequireCapabilities.class);
-					for (TokenRequireCapability c : caps.value()) {
-						if (!tkn.hasCapability(c.value())) {
+				if (tkn != null && route.requiredCapabilities != null) {
+					for (String cap : route.requiredCapabilities) {
+						if (!tkn.hasCapability(cap)) {
 							pendingException = new HttpException(401, "Unauthorized");
 							account = null;
 							tkn = null;
@@ -421,7 +282,7 @@ public abstract class EdgeWebService<T extends IBaseServer> extends HttpPushProc
 				if (tkn != null) {
 					if (tkn.saveID != null)
 						save = account.getSave(tkn.saveID);
-					else if (mth.isAnnotationPresent(TokenRequireSave.class))
+					else if (route.requireSave)
 						pendingException = new HttpException(401, "Unauthorized");
 				}
 			}
@@ -430,63 +291,76 @@ public abstract class EdgeWebService<T extends IBaseServer> extends HttpPushProc
 		// Go through parameters
 		for (int i = 0; i < args.length; i++) {
 			// Check
-			Parameter param = params[i];
+			ParamBinding param = params[i];
 
 			// Check type
-			if (param.getType().isAssignableFrom(FunctionInfo.class))
+			switch (param.kind) {
+
+			case FUNCTION_INFO:
 				args[i] = fI;
-			else if (param.getType().isAssignableFrom(ServiceRequestInfo.class))
+				break;
+
+			case REQUEST_INFO:
 				args[i] = req;
-			else if (param.getType().isAssignableFrom(AccountObject.class))
+				break;
+
+			case ACCOUNT:
 				args[i] = account;
-			else if (param.getType().isAssignableFrom(AccountSaveContainer.class))
+				break;
+
+			case SAVE:
 				args[i] = save;
-			else if (param.getType().isAssignableFrom(SessionToken.class))
+				break;
+
+			case TOKEN:
 				args[i] = tkn;
-			else if (param.getType().isAssignableFrom(PlayerInventory.class)
-					&& param.isAnnotationPresent(SaveInventory.class)) {
+				break;
+
+			case SAVE_INVENTORY:
 				if (save != null)
 					args[i] = save.getInventory();
 				else if (account != null)
 					args[i] = account.getInventory();
-			} else if (param.getType().isAssignableFrom(PlayerInventory.class)
-					&& param.isAnnotationPresent(AccountInventory.class)) {
+				break;
+
+			case ACCOUNT_INVENTORY:
 				if (save != null)
 					args[i] = save.getInventory();
 				else if (account != null)
 					pendingException = new HttpException(400, "Bad request");
-			} else if (param.getType().isAssignableFrom(PlayerInventory.class)) {
+				break;
+
+			case INVENTORY:
 				if (save != null)
 					args[i] = save.getInventory();
 				else
 					args[i] = account.getInventory();
-			} else if (param.getType().isAssignableFrom(AccountDataContainer.class)
-					&& param.isAnnotationPresent(AccountData.class)) {
+				break;
+
+			case ACCOUNT_DATA:
 				if (account != null)
 					args[i] = account.getAccountData();
 				else
 					pendingException = new HttpException(400, "Bad request");
-			} else if (param.getType().isAssignableFrom(AccountDataContainer.class)
-					&& param.isAnnotationPresent(SaveData.class)) {
+				break;
+
+			case SAVE_DATA:
 				if (save != null)
 					args[i] = save.getSaveData();
 				else
 					pendingException = new HttpException(400, "Bad request");
-			} else if (param.isAnnotationPresent(SodRequestParam.class)) {
-				// Handle param
-				String name = param.getAnnotation(SodRequestParam.class).value();
-				if (name.isEmpty())
-					name = param.getName();
+				break;
 
+			case REQUEST_PARAM: {
 				// Retrieve value
-				String val = req.payload.get(name);
+				String val = req.payload.get(param.requestParam);
 				if (val == null)
 					pendingException = new HttpException(400, "Bad request");
 				else {
 					// Decrypt if needed
 					try {
 						// Decrypt if needed
-						if (param.isAnnotationPresent(SodEncryptedParam.class))
+						if (param.encrypted)
 							val = req.decryptString(val);
 					} catch (Exception e) {
 						pendingException = new HttpException(400, "Bad request");
@@ -494,102 +368,25 @@ public abstract class EdgeWebService<T extends IBaseServer> extends HttpPushProc
 
 					// Decode value
 					if (val != null) {
-						if (param.getType().isPrimitive()) {
-							// Decode primitive
-							switch (param.getType().getTypeName()) {
-
-							case "boolean": {
-								if (val.equalsIgnoreCase("true"))
-									args[i] = true;
-								else if (val.equalsIgnoreCase("false"))
-									args[i] = false;
-								else
-									pendingException = new HttpException(400, "Bad request");
-								break;
-							}
-
-							case "byte": {
-								try {
-									args[i] = Byte.parseByte(val);
-								} catch (Exception e) {
-									pendingException = new HttpException(400, "Bad request");
-								}
-								break;
-							}
-
-							case "char": {
-								try {
-									if (val.length() != 1)
-										throw new Exception();
-									args[i] = val.charAt(0);
-								} catch (Exception e) {
-									pendingException = new HttpException(400, "Bad request");
-								}
-								break;
-							}
-
-							case "short": {
-								try {
-									args[i] = Short.parseShort(val);
-								} catch (Exception e) {
-									pendingException = new HttpException(400, "Bad request");
-								}
-								break;
-							}
-
-							case "int": {
-								try {
-									args[i] = Integer.parseInt(val);
-								} catch (Exception e) {
-									pendingException = new HttpException(400, "Bad request");
-								}
-								break;
-							}
-
-							case "long": {
-								try {
-									args[i] = Long.parseLong(val);
-								} catch (Exception e) {
-									pendingException = new HttpException(400, "Bad request");
-								}
-								break;
-							}
-
-							case "float": {
-								try {
-									args[i] = Float.parseFloat(val);
-								} catch (Exception e) {
-									pendingException = new HttpException(400, "Bad request");
-								}
-								break;
-							}
-
-							case "double": {
-								try {
-									args[i] = Double.parseDouble(val);
-								} catch (Exception e) {
-									pendingException = new HttpException(400, "Bad request");
-								}
-								break;
-							}
-
-							}
-						} else {
-							if (param.getType().isAssignableFrom(String.class)) {
+						try {
+							if (param.decoder != null)
+								args[i] = param.decoder.decode(val);
+							else if (param.type.isAssignableFrom(String.class))
 								args[i] = val;
-							} else {
-								try {
-									args[i] = req.parseXmlValue(val, param.getType());
-								} catch (Exception e) {
-									pendingException = new HttpException(400, "Bad request");
-								}
-							}
+							else
+								args[i] = req.parseXmlValue(val, param.type);
+						} catch (Exception e) {
+							pendingException = new HttpException(400, "Bad request");
 						}
 					}
 				}
-			} else
-				throw new RuntimeException("Invalid parameter " + param.getName() + " in method " + mth.getName()
+				break;
+			}
+
+			default:
+				throw new RuntimeException("Invalid parameter " + param.name + " in method " + route.method.getName()
 						+ " of " + getClass().getTypeName() + "!");
+			}
 		}
 
 		// Check exception
@@ -889,14 +686,11 @@ public abstract class EdgeWebService<T extends IBaseServer> extends HttpPushProc
 		 * @return Key bytes
 		 */
 		public byte[] encodeMD5Key(String secret, String encoding) {
-			byte[] key;
 			try {
-				MessageDigest digest = MessageDigest.getInstance("MD5");
-				key = digest.digest(secret.getBytes(encoding));
-			} catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+				return TripleDesUtil.deriveKey(secret, encoding);
+			} catch (UnsupportedEncodingException e) {
 				throw new RuntimeException(e);
 			}
-			return key;
 		}
 
 		/**
@@ -0,0 +1,427 @@
+package org.asf.edge.common.http.apihandlerutils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.asf.edge.common.entities.items.PlayerInventory;
+import org.asf.edge.common.experiments.ExperimentManager;
+import org.asf.edge.common.http.apihandlerutils.functions.AccountData;
+import org.asf.edge.common.http.apihandlerutils.functions.AccountInventory;
+import org.asf.edge.common.http.apihandlerutils.functions.ExperimentalFeature;
+import org.asf.edge.common.http.apihandlerutils.functions.Function;
+import org.asf.edge.common.http.apihandlerutils.functions.FunctionInfo;
+import org.asf.edge.common.http.apihandlerutils.functions.FunctionResult;
+import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunction;
+import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunctionInfo;
+import org.asf.edge.common.http.apihandlerutils.functions.SaveData;
+import org.asf.edge.common.http.apihandlerutils.functions.SaveInventory;
+import org.asf.edge.common.http.apihandlerutils.functions.SodEncryptedParam;
+import org.asf.edge.common.http.apihandlerutils.functions.SodRequest;
+import org.asf.edge.common.http.apihandlerutils.functions.SodRequestParam;
+import org.asf.edge.common.http.apihandlerutils.functions.SodTokenSecured;
+import org.asf.edge.common.http.apihandlerutils.functions.TokenRequireCapabilities;
+import org.asf.edge.common.http.apihandlerutils.functions.TokenRequireCapability;
+import org.asf.edge.common.http.apihandlerutils.functions.TokenRequireSave;
+import org.asf.edge.common.services.accounts.AccountDataContainer;
+import org.asf.edge.common.services.accounts.AccountObject;
+import org.asf.edge.common.services.accounts.AccountSaveContainer;
+import org.asf.edge.common.tokens.SessionToken;
+
+/**
+ * 
+ * Compiled route table of a web service type, built once per type and shared
+ * by all its instances (a new service instance is created for each request)
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+@SuppressWarnings("deprecation")
+class EdgeWebServiceRoutes {
+
+	private static ConcurrentHashMap<Class<?>, EdgeWebServiceRoutes> routeTables = new ConcurrentHashMap<Class<?>, EdgeWebServiceRoutes>();
+
+	private HashMap<String, FunctionRoute> functions = new HashMap<String, FunctionRoute>();
+	private HashMap<String, LegacyRoute> legacyFunctions = new HashMap<String, LegacyRoute>();
+	private RouteNode subPathFunctions = new RouteNode();
+	private HashMap<String, Boolean> experimentStates = new HashMap<String, Boolean>();
+
+	/**
+	 * 
+	 * Parameter binding types
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	static enum ParamKind {
+		FUNCTION_INFO, REQUEST_INFO, ACCOUNT, SAVE, TOKEN, SAVE_INVENTORY, ACCOUNT_INVENTORY, INVENTORY, ACCOUNT_DATA,
+		SAVE_DATA, REQUEST_PARAM, INVALID
+	}
+
+	/**
+	 * 
+	 * Decoder for request parameter values
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	static interface ValueDecoder {
+		public Object decode(String value) throws Exception;
+	}
+
+	/**
+	 * 
+	 * Pre-resolved function parameter binding
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	static class ParamBinding {
+		public ParamKind kind;
+		public String name;
+		public Class<?> type;
+
+		public String requestParam;
+		public boolean encrypted;
+		public ValueDecoder decoder;
+	}
+
+	/**
+	 * 
+	 * Compiled function route
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	static class FunctionRoute {
+		public Method method;
+		public String[] allowedMethods;
+		public ParamBinding[] params;
+
+		public boolean sodRequest;
+		public boolean tokenSecured;
+		public boolean requireSave;
+		public String[] requiredCapabilities;
+
+		private MethodHandle handle;
+
+		public boolean isMethodAllowed(String method) {
+			if (allowedMethods == null)
+				return true;
+			for (String meth : allowedMethods) {
+				if (meth.equalsIgnoreCase(method))
+					return true;
+			}
+			return false;
+		}
+
+		public FunctionResult invoke(Object service, Object[] args) {
+			try {
+				return (FunctionResult) handle.invokeExact(service, args);
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * Compiled legacy function route
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	static class LegacyRoute {
+		public Method method;
+		public String[] allowedMethods;
+
+		private MethodHandle handle;
+
+		public boolean isMethodAllowed(String method) {
+			for (String meth : allowedMethods) {
+				if (meth.equalsIgnoreCase(method))
+					return true;
+			}
+			return false;
+		}
+
+		public void invoke(Object service, LegacyFunctionInfo info) {
+			try {
+				handle.invokeExact(service, info);
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private static class RouteNode {
+		public HashMap<String, RouteNode> children = new HashMap<String, RouteNode>();
+		public FunctionRoute route;
+	}
+
+	/**
+	 * Retrieves the route table of a web service type, compiling it if needed
+	 * 
+	 * @param type Web service type
+	 * @return EdgeWebServiceRoutes instance
+	 */
+	static EdgeWebServiceRoutes getRoutes(Class<?> type) {
+		EdgeWebServiceRoutes routes = routeTables.get(type);
+		if (routes == null || !routes.isCurrent()) {
+			// Compile (again if experiments have been toggled)
+			routes = new EdgeWebServiceRoutes(type);
+			routeTables.put(type, routes);
+		}
+		return routes;
+	}
+
+	private EdgeWebServiceRoutes(Class<?> type) {
+		// Find all functions
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		for (Method meth : type.getMethods()) {
+			if (!Modifier.isAbstract(meth.getModifiers()) && !Modifier.isStatic(meth.getModifiers())) {
+				// Check parameters
+				if (meth.getParameterCount() == 1
+						&& LegacyFunctionInfo.class.isAssignableFrom(meth.getParameterTypes()[0])) {
+					// Check annotation
+					if (meth.isAnnotationPresent(LegacyFunction.class)) {
+						LegacyFunction funcAnno = meth.getAnnotation(LegacyFunction.class);
+						String name = meth.getName();
+						if (!funcAnno.value().equals("<auto>"))
+							name = funcAnno.value();
+
+						// Compile
+						LegacyRoute route = new LegacyRoute();
+						route.method = meth;
+						route.allowedMethods = funcAnno.allowedMethods();
+						route.handle = createHandle(lookup, meth,
+								MethodType.methodType(void.class, Object.class, LegacyFunctionInfo.class), false);
+
+						// Register
+						legacyFunctions.put(name.toLowerCase(), route);
+					}
+				} else if ((meth.isAnnotationPresent(Function.class) || meth.isAnnotationPresent(SodRequest.class))
+						&& FunctionResult.class.isAssignableFrom(meth.getReturnType())) {
+					// Check
+					if (!meth.isAnnotationPresent(SodRequest.class) && (meth.getParameterTypes().length != 1
+							|| !meth.getParameterTypes()[0].isAssignableFrom(FunctionInfo.class)))
+						continue;
+
+					// Check experimental
+					if (meth.isAnnotationPresent(ExperimentalFeature.class)) {
+						// Check
+						ExperimentalFeature anno = meth.getAnnotation(ExperimentalFeature.class);
+						String key = anno.value();
+						boolean enabled = ExperimentManager.getInstance().isExperimentEnabled(key);
+						experimentStates.put(key, enabled);
+						if (anno.isReverse() ? enabled : !enabled)
+							continue;
+					}
+
+					// Compile
+					FunctionRoute route = compileFunction(lookup, meth);
+
+					// Load name
+					String name = meth.getName();
+					if (meth.isAnnotationPresent(Function.class)) {
+						Function funcAnno = meth.getAnnotation(Function.class);
+						if (!funcAnno.value().equals("<auto>"))
+							name = funcAnno.value();
+						route.allowedMethods = funcAnno.allowedMethods();
+
+						// Add to sub path tree
+						if (funcAnno.allowSubPaths()) {
+							RouteNode node = subPathFunctions;
+							for (String segment : name.toLowerCase().split("/"))
+								node = node.children.computeIfAbsent(segment, t -> new RouteNode());
+							node.route = route;
+						}
+					}
+
+					// Register
+					functions.put(name.toLowerCase(), route);
+				}
+			}
+		}
+	}
+
+	private boolean isCurrent() {
+		for (String key : experimentStates.keySet()) {
+			if (ExperimentManager.getInstance().isExperimentEnabled(key) != experimentStates.get(key))
+				return false;
+		}
+		return true;
+	}
+
+	private static MethodHandle createHandle(MethodHandles.Lookup lookup, Method meth, MethodType type,
+			boolean spread) {
+		try {
+			// Make accessible
+			meth.setAccessible(true);
+
+			// Create handle
+			MethodHandle handle = lookup.unreflect(meth);
+			if (spread)
+				handle = handle.asSpreader(Object[].class, meth.getParameterCount());
+			return handle.asType(type);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException("Unable to access function " + meth.getName() + " of "
+					+ meth.getDeclaringClass().getTypeName() + "!", e);
+		}
+	}
+
+	private static FunctionRoute compileFunction(MethodHandles.Lookup lookup, Method meth) {
+		FunctionRoute route = new FunctionRoute();
+		route.method = meth;
+		route.sodRequest = meth.isAnnotationPresent(SodRequest.class);
+		route.tokenSecured = meth.isAnnotationPresent(SodTokenSecured.class);
+		route.requireSave = meth.isAnnotationPresent(TokenRequireSave.class);
+		if (meth.isAnnotationPresent(TokenRequireCapabilities.class)) {
+			TokenRequireCapability[] caps = meth.getAnnotation(TokenRequireCapabilities.class).value();
+			route.requiredCapabilities = new String[caps.length];
+			for (int i = 0; i < caps.length; i++)
+				route.requiredCapabilities[i] = caps[i].value();
+		}
+		route.handle = createHandle(lookup, meth,
+				MethodType.methodType(FunctionResult.class, Object.class, Object[].class), true);
+
+		// Resolve parameters
+		Parameter[] params = meth.getParameters();
+		route.params = new ParamBinding[params.length];
+		for (int i = 0; i < params.length; i++) {
+			Parameter param = params[i];
+			ParamBinding binding = new ParamBinding();
+			binding.name = param.getName();
+			binding.type = param.getType();
+
+			// Check type
+			Class<?> type = param.getType();
+			if (type.isAssignableFrom(FunctionInfo.class))
+				binding.kind = ParamKind.FUNCTION_INFO;
+			else if (type.isAssignableFrom(EdgeWebService.ServiceRequestInfo.class))
+				binding.kind = ParamKind.REQUEST_INFO;
+			else if (type.isAssignableFrom(AccountObject.class))
+				binding.kind = ParamKind.ACCOUNT;
+			else if (type.isAssignableFrom(AccountSaveContainer.class))
+				binding.kind = ParamKind.SAVE;
+			else if (type.isAssignableFrom(SessionToken.class))
+				binding.kind = ParamKind.TOKEN;
+			else if (type.isAssignableFrom(PlayerInventory.class) && param.isAnnotationPresent(SaveInventory.class))
+				binding.kind = ParamKind.SAVE_INVENTORY;
+			else if (type.isAssignableFrom(PlayerInventory.class)
+					&& param.isAnnotationPresent(AccountInventory.class))
+				binding.kind = ParamKind.ACCOUNT_INVENTORY;
+			else if (type.isAssignableFrom(PlayerInventory.class))
+				binding.kind = ParamKind.INVENTORY;
+			else if (type.isAssignableFrom(AccountDataContainer.class) && param.isAnnotationPresent(AccountData.class))
+				binding.kind = ParamKind.ACCOUNT_DATA;
+			else if (type.isAssignableFrom(AccountDataContainer.class) && param.isAnnotationPresent(SaveData.class))
+				binding.kind = ParamKind.SAVE_DATA;
+			else if (param.isAnnotationPresent(SodRequestParam.class)) {
+				binding.kind = ParamKind.REQUEST_PARAM;
+				binding.requestParam = param.getAnnotation(SodRequestParam.class).value();
+				if (binding.requestParam.isEmpty())
+					binding.requestParam = param.getName();
+				binding.encrypted = param.isAnnotationPresent(SodEncryptedParam.class);
+				binding.decoder = createDecoder(type);
+			} else
+				binding.kind = ParamKind.INVALID;
+			route.params[i] = binding;
+		}
+		return route;
+	}
+
+	private static ValueDecoder createDecoder(Class<?> type) {
+		if (!type.isPrimitive()) {
+			// Strings are passed as-is, other types are decoded as XML by the service
+			return null;
+		}
+
+		// Decode primitive
+		switch (type.getTypeName()) {
+
+		case "boolean":
+			return val -> {
+				if (val.equalsIgnoreCase("true"))
+					return true;
+				else if (val.equalsIgnoreCase("false"))
+					return false;
+				throw new IllegalArgumentException("Invalid boolean value");
+			};
+
+		case "byte":
+			return val -> Byte.parseByte(val);
+
+		case "char":
+			return val -> {
+				if (val.length() != 1)
+					throw new IllegalArgumentException("Invalid character value");
+				return val.charAt(0);
+			};
+
+		case "short":
+			return val -> Short.parseShort(val);
+
+		case "int":
+			return val -> Integer.parseInt(val);
+
+		case "long":
+			return val -> Long.parseLong(val);
+
+		case "float":
+			return val -> Float.parseFloat(val);
+
+		case "double":
+			return val -> Double.parseDouble(val);
+
+		}
+
+		// Unsupported
+		return val -> null;
+	}
+
+	/**
+	 * Finds functions by path
+	 * 
+	 * @param path Lower-case function path
+	 * @return FunctionRoute instance or null
+	 */
+	FunctionRoute findFunction(String path) {
+		// Sub path functions take priority, longest match wins
+		FunctionRoute match = null;
+		RouteNode node = subPathFunctions;
+		int start = 0;
+		while (true) {
+			int end = path.indexOf('/', start);
+			node = node.children.get(end == -1 ? path.substring(start) : path.substring(start, end));
+			if (node == null)
+				break;
+			if (node.route != null)
+				match = node.route;
+			if (end == -1)
+				break;
+			start = end + 1;
+		}
+		if (match != null)
+			return match;
+
+		// Find exact match
+		return functions.get(path);
+	}
+
+	/**
+	 * Finds legacy functions by path
+	 * 
+	 * @param path Lower-case function path
+	 * @return LegacyRoute instance or null
+	 */
+	LegacyRoute findLegacyFunction(String path) {
+		return legacyFunctions.get(path);
+	}
+
+}
@@ -0,0 +1,355 @@
+package org.asf.edge.common.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.JsonObject;
+
+/**
+ * 
+ * Bounded JDBC connection pool, used by the database account and common data
+ * managers to avoid opening a new connection for each request
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class ConnectionPool {
+
+	private String url;
+	private Properties props;
+	private Logger logger;
+
+	private int minConnections;
+	private int maxConnections;
+	private long idleTimeout;
+	private long borrowTimeout;
+	private boolean validateOnBorrow;
+	private int validationTimeout;
+	private boolean retainConnections = true;
+
+	private Semaphore permits;
+	private ArrayDeque<IdleConnection> idle = new ArrayDeque<IdleConnection>();
+	private AtomicInteger active = new AtomicInteger();
+	private AtomicInteger open = new AtomicInteger();
+	private boolean closed;
+
+	private AtomicLong borrowCount = new AtomicLong();
+	private AtomicLong totalWaitTime = new AtomicLong();
+	private AtomicLong maxWaitTime = new AtomicLong();
+	private AtomicLong evictionCount = new AtomicLong();
+
+	private static class IdleConnection {
+		public Connection connection;
+		public long releaseTime;
+	}
+
+	/**
+	 * Creates the pool configuration block with its default settings
+	 * 
+	 * @return JsonObject instance
+	 */
+	public static JsonObject createDefaultConfig() {
+		JsonObject poolConfig = new JsonObject();
+		poolConfig.addProperty("minConnections", 2);
+		poolConfig.addProperty("maxConnections", 16);
+		poolConfig.addProperty("idleTimeout", 300000);
+		poolConfig.addProperty("borrowTimeout", 30000);
+		poolConfig.addProperty("validateOnBorrow", true);
+		poolConfig.addProperty("validationTimeout", 5);
+		return poolConfig;
+	}
+
+	/**
+	 * Creates a connection pool
+	 * 
+	 * @param name       Pool name (used for logging)
+	 * @param url        Database URL
+	 * @param props      Connection properties
+	 * @param poolConfig Pool configuration block (see
+	 *                   {@link #createDefaultConfig()})
+	 */
+	public ConnectionPool(String name, String url, Properties props, JsonObject poolConfig) {
+		this.url = url;
+		this.props = props;
+		this.logger = LogManager.getLogger(name);
+
+		// Load config
+		JsonObject defaults = createDefaultConfig();
+		for (String key : defaults.keySet()) {
+			if (!poolConfig.has(key))
+				poolConfig.add(key, defaults.get(key));
+		}
+		minConnections = Math.max(0, poolConfig.get("minConnections").getAsInt());
+		maxConnections = Math.max(1, poolConfig.get("maxConnections").getAsInt());
+		if (minConnections > maxConnections)
+			minConnections = maxConnections;
+		idleTimeout = poolConfig.get("idleTimeout").getAsLong();
+		borrowTimeout = poolConfig.get("borrowTimeout").getAsLong();
+		validateOnBorrow = poolConfig.get("validateOnBorrow").getAsBoolean();
+		validationTimeout = poolConfig.get("validationTimeout").getAsInt();
+		if (url.startsWith("jdbc:locking:")) {
+			// Locking connections hold a global lock until closed, they cannot be kept idle
+			minConnections = 0;
+			retainConnections = false;
+		}
+		permits = new Semaphore(maxConnections, true);
+
+		// Open minimal connections
+		for (int i = 0; i < minConnections; i++) {
+			try {
+				IdleConnection conn = new IdleConnection();
+				conn.connection = openConnection();
+				conn.releaseTime = System.currentTimeMillis();
+				synchronized (idle) {
+					idle.push(conn);
+				}
+			} catch (SQLException e) {
+				logger.error("Failed to open initial pooled database connection!", e);
+				break;
+			}
+		}
+
+		// Start eviction thread
+		if (idleTimeout > 0) {
+			Thread th = new Thread(() -> {
+				while (!closed) {
+					try {
+						Thread.sleep(Math.max(1000, Math.min(idleTimeout / 2, 30000)));
+					} catch (InterruptedException e) {
+						break;
+					}
+					evictIdle();
+				}
+			}, "Database pool eviction thread: " + name);
+			th.setDaemon(true);
+			th.start();
+		}
+	}
+
+	private Connection openConnection() throws SQLException {
+		Connection conn = DriverManager.getConnection(url, props);
+		open.incrementAndGet();
+		return conn;
+	}
+
+	private void discard(Connection conn) {
+		open.decrementAndGet();
+		try {
+			conn.close();
+		} catch (SQLException e) {
+		}
+	}
+
+	private void evictIdle() {
+		long now = System.currentTimeMillis();
+		synchronized (idle) {
+			// Oldest connections are at the end of the deque
+			while (idle.size() > minConnections) {
+				IdleConnection conn = idle.peekLast();
+				if (now - conn.releaseTime < idleTimeout)
+					break;
+				idle.pollLast();
+				discard(conn.connection);
+				evictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Borrows a connection from the pool, must be returned with
+	 * {@link #release(Connection)}
+	 * 
+	 * @return Connection instance
+	 * @throws SQLException If no connection could be retrieved
+	 */
+	public Connection borrow() throws SQLException {
+		if (closed)
+			throw new SQLException("Connection pool has been closed");
+
+		// Wait for a free slot
+		long start = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS))
+				throw new SQLTimeoutException("Timed out waiting for a pooled database connection, "
+						+ active.get() + " of " + maxConnections + " connections are in use");
+		} catch (InterruptedException e) {
+			throw new SQLException("Interrupted while waiting for a pooled database connection", e);
+		}
+		long wait = (System.nanoTime() - start) / 1000000;
+		borrowCount.incrementAndGet();
+		totalWaitTime.addAndGet(wait);
+		maxWaitTime.accumulateAndGet(wait, Math::max);
+
+		// Find idle connection
+		try {
+			while (true) {
+				IdleConnection conn;
+				synchronized (idle) {
+					conn = idle.poll();
+				}
+				if (conn == null)
+					break;
+
+				// Validate
+				if (validateOnBorrow) {
+					boolean valid;
+					try {
+						valid = conn.connection.isValid(validationTimeout);
+					} catch (SQLException e) {
+						valid = false;
+					}
+					if (!valid) {
+						discard(conn.connection);
+						continue;
+					}
+				}
+				active.incrementAndGet();
+				return conn.connection;
+			}
+
+			// Open new connection
+			Connection conn = openConnection();
+			active.incrementAndGet();
+			return conn;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns a connection to the pool
+	 * 
+	 * @param conn Connection to return
+	 */
+	public void release(Connection conn) {
+		active.decrementAndGet();
+		try {
+			// Check connection
+			boolean reusable = !closed && retainConnections;
+			try {
+				if (reusable && conn.isClosed())
+					reusable = false;
+				if (reusable && !conn.getAutoCommit()) {
+					conn.rollback();
+					conn.setAutoCommit(true);
+				}
+			} catch (SQLException e) {
+				reusable = false;
+			}
+
+			// Return or discard
+			if (reusable) {
+				IdleConnection i = new IdleConnection();
+				i.connection = conn;
+				i.releaseTime = System.currentTimeMillis();
+				synchronized (idle) {
+					idle.push(i);
+				}
+			} else
+				discard(conn);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Closes the pool and all idle connections
+	 */
+	public void close() {
+		closed = true;
+		synchronized (idle) {
+			while (!idle.isEmpty())
+				discard(idle.poll().connection);
+		}
+	}
+
+	/**
+	 * Retrieves the amount of connections currently borrowed from the pool
+	 * 
+	 * @return Active connection count
+	 */
+	public int getActiveConnections() {
+		return active.get();
+	}
+
+	/**
+	 * Retrieves the amount of idle connections
+	 * 
+	 * @return Idle connection count
+	 */
+	public int getIdleConnections() {
+		synchronized (idle) {
+			return idle.size();
+		}
+	}
+
+	/**
+	 * Retrieves the amount of open connections (idle and active)
+	 * 
+	 * @return Open connection count
+	 */
+	public int getOpenConnections() {
+		return open.get();
+	}
+
+	/**
+	 * Retrieves the maximum pool size
+	 * 
+	 * @return Maximum connection count
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * Retrieves the amount of connections that have been borrowed
+	 * 
+	 * @return Borrow count
+	 */
+	public long getBorrowCount() {
+		return borrowCount.get();
+	}
+
+	/**
+	 * Retrieves the average time spent waiting for a connection
+	 * 
+	 * @return Average wait time in milliseconds
+	 */
+	public double getAverageWaitTime() {
+		long count = borrowCount.get();
+		if (count == 0)
+			return 0;
+		return (double) totalWaitTime.get() / (double) count;
+	}
+
+	/**
+	 * Retrieves the longest time spent waiting for a connection
+	 * 
+	 * @return Maximum wait time in milliseconds
+	 */
+	public long getMaxWaitTime() {
+		return maxWaitTime.get();
+	}
+
+	/**
+	 * Retrieves the amount of connections evicted for being idle
+	 * 
+	 * @return Eviction count
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+}
@@ -0,0 +1,89 @@
+package org.asf.edge.common.jdbc;
+
+import java.util.Arrays;
+
+/**
+ * 
+ * Keeps a window of recent latency samples so percentiles can be reported for
+ * database connection backends
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class LatencyRecorder {
+
+	private long[] samples;
+	private int position;
+	private int count;
+	private long total;
+
+	public LatencyRecorder() {
+		this(4096);
+	}
+
+	public LatencyRecorder(int windowSize) {
+		samples = new long[windowSize];
+	}
+
+	/**
+	 * Records a sample
+	 * 
+	 * @param nanos Latency in nanoseconds
+	 */
+	public synchronized void record(long nanos) {
+		samples[position++] = nanos;
+		if (position == samples.length)
+			position = 0;
+		if (count < samples.length)
+			count++;
+		total++;
+	}
+
+	/**
+	 * Retrieves the total amount of recorded samples (including samples that have
+	 * left the window)
+	 * 
+	 * @return Sample count
+	 */
+	public synchronized long getTotalSamples() {
+		return total;
+	}
+
+	/**
+	 * Computes percentiles over the current sample window
+	 * 
+	 * @param percentiles Percentiles to compute (0-100)
+	 * @return Array of latencies in nanoseconds, one for each requested percentile
+	 */
+	public long[] getPercentiles(double... percentiles) {
+		long[] window;
+		synchronized (this) {
+			window = Arrays.copyOf(samples, count);
+		}
+		long[] res = new long[percentiles.length];
+		if (window.length == 0)
+			return res;
+		Arrays.sort(window);
+		for (int i = 0; i < percentiles.length; i++) {
+			int ind = (int) Math.ceil((percentiles[i] / 100d) * window.length) - 1;
+			res[i] = window[Math.max(0, Math.min(window.length - 1, ind))];
+		}
+		return res;
+	}
+
+	/**
+	 * Formats the p50, p90, p99 and max latencies as a single line
+	 * 
+	 * @return Latency summary string
+	 */
+	public String summarize() {
+		long[] p = getPercentiles(50, 90, 99, 100);
+		return "p50=" + formatMillis(p[0]) + " p90=" + formatMillis(p[1]) + " p99=" + formatMillis(p[2]) + " max="
+				+ formatMillis(p[3]) + " (" + getTotalSamples() + " samples)";
+	}
+
+	private static String formatMillis(long nanos) {
+		return String.format("%.3fms", nanos / 1000000d);
+	}
+
+}
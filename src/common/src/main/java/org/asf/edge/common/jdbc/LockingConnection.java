@@ -27,9 +27,21 @@ public class LockingConnection implements Connection {
 	private static Connection lastConn;
 	private static StackTraceElement[] lastStack;
 	private static Object lockObj = new Object();
+	private static LatencyRecorder lockLatency = new LatencyRecorder();
+
+	/**
+	 * Retrieves the latency recorder tracking the time spent waiting for the
+	 * connection lock
+	 * 
+	 * @return LatencyRecorder instance
+	 */
+	public static LatencyRecorder getLockLatency() {
+		return lockLatency;
+	}
 
 	public LockingConnection(Connection target) {
 		this.target = target;
+		long lockStart = System.nanoTime();
 		boolean locked = true;
 		synchronized (lockObj) {
 			if (lastConn == null) {
@@ -77,6 +89,7 @@ public class LockingConnection implements Connection {
 				}
 			}
 		}
+		lockLatency.record(System.nanoTime() - lockStart);
 	}
 
 	@Override
@@ -0,0 +1,212 @@
+package org.asf.edge.common.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * 
+ * Versioned schema migration runner, keeps track of applied migrations per
+ * schema in the SCHEMAVERSION_V2 table and runs any migration newer than the
+ * recorded version on startup
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class SchemaMigrator {
+
+	private String schema;
+	private Logger logger;
+	private ArrayList<MigrationEntry> migrations = new ArrayList<MigrationEntry>();
+
+	/**
+	 * 
+	 * Database dialects known to the migrator
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	public static enum Dialect {
+
+		/**
+		 * MySQL and MariaDB
+		 */
+		MYSQL,
+
+		/**
+		 * PostgreSQL
+		 */
+		POSTGRESQL,
+
+		/**
+		 * SQLite
+		 */
+		SQLITE,
+
+		/**
+		 * Unrecognized database
+		 */
+		OTHER;
+
+		/**
+		 * Detects the dialect of a connection
+		 * 
+		 * @param conn Connection to check
+		 * @return Dialect value
+		 * @throws SQLException If retrieving the database metadata fails
+		 */
+		public static Dialect detect(Connection conn) throws SQLException {
+			String product = conn.getMetaData().getDatabaseProductName().toLowerCase();
+			if (product.contains("mysql") || product.contains("mariadb"))
+				return MYSQL;
+			else if (product.contains("postgres"))
+				return POSTGRESQL;
+			else if (product.contains("sqlite"))
+				return SQLITE;
+			return OTHER;
+		}
+
+	}
+
+	/**
+	 * 
+	 * Schema migration
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	public static interface Migration {
+
+		/**
+		 * Applies the migration
+		 * 
+		 * @param statement Statement to use
+		 * @param dialect   Database dialect
+		 * @throws SQLException If the migration fails
+		 */
+		public void migrate(Statement statement, Dialect dialect) throws SQLException;
+
+	}
+
+	private static class MigrationEntry {
+		public int version;
+		public String description;
+		public Migration migration;
+	}
+
+	/**
+	 * Creates a migrator
+	 * 
+	 * @param schema Schema name the migration versions are recorded under
+	 * @param logger Logger to use
+	 */
+	public SchemaMigrator(String schema, Logger logger) {
+		this.schema = schema;
+		this.logger = logger;
+	}
+
+	/**
+	 * Registers a migration
+	 * 
+	 * @param version     Schema version the migration upgrades to, must be
+	 *                    greater than 0
+	 * @param description Migration description
+	 * @param migration   Migration to run
+	 * @return SchemaMigrator instance
+	 */
+	public SchemaMigrator addMigration(int version, String description, Migration migration) {
+		if (version <= 0)
+			throw new IllegalArgumentException("Migration version must be greater than 0");
+		for (MigrationEntry ent : migrations) {
+			if (ent.version == version)
+				throw new IllegalArgumentException("Duplicate migration version " + version + " for " + schema);
+		}
+		MigrationEntry ent = new MigrationEntry();
+		ent.version = version;
+		ent.description = description;
+		ent.migration = migration;
+		migrations.add(ent);
+		return this;
+	}
+
+	/**
+	 * Runs all pending migrations
+	 * 
+	 * @param statement Statement to run migrations with
+	 * @throws SQLException If a migration fails
+	 */
+	public void run(Statement statement) throws SQLException {
+		Dialect dialect = Dialect.detect(statement.getConnection());
+
+		// Find current version
+		statement.executeUpdate(
+				"CREATE TABLE IF NOT EXISTS SCHEMAVERSION_V2 (SCHEMANAME varchar(64), VERSION INT, DESCRIPTION varchar(256))");
+		int current = 0;
+		ResultSet res = statement
+				.executeQuery("SELECT MAX(VERSION) FROM SCHEMAVERSION_V2 WHERE SCHEMANAME = '" + schema + "'");
+		if (res.next())
+			current = res.getInt(1);
+		res.close();
+
+		// Run pending migrations
+		migrations.sort(Comparator.comparingInt(t -> t.version));
+		for (MigrationEntry ent : migrations) {
+			if (ent.version <= current)
+				continue;
+			logger.info("Migrating " + schema + " schema to version " + ent.version + ": " + ent.description + "...");
+			ent.migration.migrate(statement, dialect);
+			statement.executeUpdate("INSERT INTO SCHEMAVERSION_V2 VALUES('" + schema + "', " + ent.version + ", '"
+					+ ent.description.replace("'", "''") + "')");
+			current = ent.version;
+		}
+	}
+
+	/**
+	 * Creates an index if it does not exist yet
+	 * 
+	 * <p>
+	 * Columns may specify a prefix length, eg. <code>USERNAME(255)</code>, which
+	 * is only used on MySQL and MariaDB as those cannot index TEXT columns without
+	 * one.
+	 * </p>
+	 * 
+	 * @param statement Statement to use
+	 * @param dialect   Database dialect
+	 * @param indexName Index name (must be unique in the database)
+	 * @param table     Table name
+	 * @param columns   Indexed columns
+	 * @throws SQLException If creating the index fails
+	 */
+	public static void createIndex(Statement statement, Dialect dialect, String indexName, String table,
+			String... columns) throws SQLException {
+		// Build column list
+		String columnList = "";
+		for (String column : columns) {
+			if (!columnList.isEmpty())
+				columnList += ", ";
+			if (dialect != Dialect.MYSQL && column.contains("("))
+				column = column.substring(0, column.indexOf("("));
+			columnList += column;
+		}
+
+		// Create index
+		if (dialect == Dialect.MYSQL) {
+			// MySQL does not support IF NOT EXISTS for indexes
+			try {
+				statement.executeUpdate("CREATE INDEX " + indexName + " ON " + table + " (" + columnList + ")");
+			} catch (SQLException e) {
+				// Ignore duplicate key name errors
+				if (e.getErrorCode() != 1061)
+					throw e;
+			}
+		} else
+			statement.executeUpdate(
+					"CREATE INDEX IF NOT EXISTS " + indexName + " ON " + table + " (" + columnList + ")");
+	}
+
+}
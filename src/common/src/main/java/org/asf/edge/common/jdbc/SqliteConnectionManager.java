@@ -0,0 +1,416 @@
+package org.asf.edge.common.jdbc;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.JsonObject;
+
+/**
+ * 
+ * SQLite connection backend, opens the database in WAL mode, serves reads from
+ * a small pool of read connections and funnels all writes through a single
+ * writer connection that commits in batches
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class SqliteConnectionManager {
+
+	private Logger logger;
+
+	private Connection writer;
+	private ReentrantLock writeLock = new ReentrantLock(true);
+	private long savepointCounter;
+	private ConnectionPool readers;
+	private ThreadLocal<Connection> threadReaders = new ThreadLocal<Connection>();
+
+	private long commitInterval;
+	private int maxBatchSize;
+
+	private Object commitSignal = new Object();
+	private int pendingWrites;
+	private CommitBatch currentBatch = new CommitBatch();
+
+	private LatencyRecorder readLatency = new LatencyRecorder();
+	private LatencyRecorder writeLatency = new LatencyRecorder();
+
+	private static class CommitBatch {
+		public boolean done;
+		public SQLException error;
+	}
+
+	/**
+	 * Creates the SQLite configuration block with its default settings
+	 * 
+	 * @return JsonObject instance
+	 */
+	public static JsonObject createDefaultConfig() {
+		JsonObject sqliteConfig = new JsonObject();
+		sqliteConfig.addProperty("readConnections", 4);
+		sqliteConfig.addProperty("commitInterval", 5);
+		sqliteConfig.addProperty("maxBatchSize", 64);
+		sqliteConfig.addProperty("busyTimeout", 30000);
+		sqliteConfig.addProperty("synchronous", "NORMAL");
+		return sqliteConfig;
+	}
+
+	/**
+	 * Creates the SQLite connection manager
+	 * 
+	 * @param name         Manager name (used for logging)
+	 * @param url          Database URL
+	 * @param props        Connection properties
+	 * @param sqliteConfig SQLite configuration block (see
+	 *                     {@link #createDefaultConfig()})
+	 * @throws SQLException If opening the database fails
+	 */
+	public SqliteConnectionManager(String name, String url, Properties props, JsonObject sqliteConfig)
+			throws SQLException {
+		logger = LogManager.getLogger(name);
+
+		// Load config
+		JsonObject defaults = createDefaultConfig();
+		for (String key : defaults.keySet()) {
+			if (!sqliteConfig.has(key))
+				sqliteConfig.add(key, defaults.get(key));
+		}
+		commitInterval = Math.max(0, sqliteConfig.get("commitInterval").getAsLong());
+		maxBatchSize = Math.max(1, sqliteConfig.get("maxBatchSize").getAsInt());
+		int readConnections = Math.max(1, sqliteConfig.get("readConnections").getAsInt());
+
+		// Prepare connection properties
+		Properties connProps = new Properties();
+		connProps.putAll(props);
+		connProps.setProperty("journal_mode", "WAL");
+		connProps.setProperty("synchronous", sqliteConfig.get("synchronous").getAsString());
+		connProps.setProperty("busy_timeout", sqliteConfig.get("busyTimeout").getAsString());
+
+		// Open writer
+		writer = DriverManager.getConnection(url, connProps);
+		writer.setAutoCommit(false);
+
+		// Create reader pool
+		JsonObject poolConfig = ConnectionPool.createDefaultConfig();
+		poolConfig.addProperty("minConnections", readConnections);
+		poolConfig.addProperty("maxConnections", readConnections);
+		poolConfig.addProperty("idleTimeout", 0);
+		poolConfig.addProperty("validateOnBorrow", false);
+		readers = new ConnectionPool(name, url, connProps, poolConfig);
+
+		// Start commit thread
+		Thread th = new Thread(() -> {
+			while (true) {
+				try {
+					commitNextBatch();
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+		}, "SQLite commit thread: " + name);
+		th.setDaemon(true);
+		th.start();
+	}
+
+	private void commitNextBatch() throws InterruptedException {
+		// Wait for writes and let the batch fill up
+		synchronized (commitSignal) {
+			while (pendingWrites == 0)
+				commitSignal.wait();
+			long deadline = System.currentTimeMillis() + commitInterval;
+			while (pendingWrites < maxBatchSize) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0)
+					break;
+				commitSignal.wait(remaining);
+			}
+		}
+
+		// Commit
+		CommitBatch batch;
+		writeLock.lock();
+		try {
+			batch = currentBatch;
+			currentBatch = new CommitBatch();
+			synchronized (commitSignal) {
+				pendingWrites = 0;
+			}
+			try {
+				writer.commit();
+			} catch (SQLException e) {
+				logger.error("Failed to commit batched SQLite writes!", e);
+				batch.error = e;
+				try {
+					writer.rollback();
+				} catch (SQLException e2) {
+				}
+			}
+		} finally {
+			writeLock.unlock();
+		}
+
+		// Release waiting writers
+		synchronized (batch) {
+			batch.done = true;
+			batch.notifyAll();
+		}
+	}
+
+	private static boolean isReadQuery(String query) {
+		query = query.stripLeading();
+		return query.regionMatches(true, 0, "SELECT", 0, 6);
+	}
+
+	/**
+	 * Opens a database request
+	 * 
+	 * @return SqliteRequest instance, must be closed after use
+	 */
+	public SqliteRequest openRequest() {
+		return new SqliteRequest();
+	}
+
+	/**
+	 * Retrieves the latency recorder for read connection acquisition
+	 * 
+	 * @return LatencyRecorder instance
+	 */
+	public LatencyRecorder getReadLatency() {
+		return readLatency;
+	}
+
+	/**
+	 * Retrieves the latency recorder for writes (time waiting for the writer and
+	 * the batched commit)
+	 * 
+	 * @return LatencyRecorder instance
+	 */
+	public LatencyRecorder getWriteLatency() {
+		return writeLatency;
+	}
+
+	/**
+	 * Retrieves the read connection pool
+	 * 
+	 * @return ConnectionPool instance
+	 */
+	public ConnectionPool getReadPool() {
+		return readers;
+	}
+
+	/**
+	 * 
+	 * SQLite database request, SELECT statements are served by a read connection
+	 * until the request performs a write, after which the request holds the
+	 * writer connection until it is closed
+	 * 
+	 * Writes of each request are enclosed in their own savepoint on the writer,
+	 * if a statement of the request fails its writes are rolled back to that
+	 * savepoint when the request is closed so they never reach the batched commit
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	public class SqliteRequest {
+
+		private Connection reader;
+		private boolean ownsReader;
+		private boolean writing;
+		private boolean failed;
+		private long writeStart;
+
+		private Savepoint savepoint;
+		private Savepoint transaction;
+
+		private SqliteRequest() {
+		}
+
+		private Connection getWriter() throws SQLException {
+			if (!writing) {
+				writeStart = System.nanoTime();
+				writeLock.lock();
+				try {
+					savepoint = writer.setSavepoint("edge_request_" + (savepointCounter++));
+				} catch (SQLException e) {
+					writeLock.unlock();
+					throw e;
+				}
+				writing = true;
+			}
+			return writer;
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T extends Statement> T track(T statement, Class<T> type) {
+			// Mark the request as failed if any statement call throws
+			return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+				try {
+					return method.invoke(statement, args);
+				} catch (InvocationTargetException e) {
+					if (e.getCause() instanceof SQLException)
+						failed = true;
+					throw e.getCause();
+				}
+			});
+		}
+
+		/**
+		 * Creates a prepared statement
+		 * 
+		 * @param query Query string
+		 * @return PreparedStatement instance
+		 * @throws SQLException If creating the statement fails
+		 */
+		public PreparedStatement prepareStatement(String query) throws SQLException {
+			// Nested requests on a thread that is writing need to see uncommitted data
+			if (!writing && !writeLock.isHeldByCurrentThread() && isReadQuery(query)) {
+				if (reader == null) {
+					// Nested requests share the read connection of the outer request so they
+					// never wait for a second one
+					reader = threadReaders.get();
+					if (reader == null) {
+						long start = System.nanoTime();
+						reader = readers.borrow();
+						readLatency.record(System.nanoTime() - start);
+						threadReaders.set(reader);
+						ownsReader = true;
+					}
+				}
+				return reader.prepareStatement(query);
+			}
+			return track(getWriter().prepareStatement(query), PreparedStatement.class);
+		}
+
+		/**
+		 * Creates a statement on the writer connection
+		 * 
+		 * @return Statement instance
+		 * @throws SQLException If creating the statement fails
+		 */
+		public Statement createStatement() throws SQLException {
+			return track(getWriter().createStatement(), Statement.class);
+		}
+
+		/**
+		 * Begins a transaction within this request, writes made after this call can
+		 * be rolled back separately with {@link #rollbackTransaction()}
+		 * 
+		 * @throws SQLException If creating the savepoint fails
+		 */
+		public void beginTransaction() throws SQLException {
+			if (transaction != null)
+				throw new SQLException("Transaction already in progress");
+			transaction = getWriter().setSavepoint("edge_transaction_" + (savepointCounter++));
+		}
+
+		/**
+		 * Commits the current transaction into the request, the writes are saved by
+		 * the batched commit once the request is closed
+		 * 
+		 * @throws SQLException If releasing the savepoint fails
+		 */
+		public void commitTransaction() throws SQLException {
+			if (transaction == null)
+				throw new SQLException("No transaction in progress");
+			Savepoint sp = transaction;
+			transaction = null;
+			writer.releaseSavepoint(sp);
+		}
+
+		/**
+		 * Rolls back all writes made since the current transaction began
+		 * 
+		 * @throws SQLException If rolling back fails
+		 */
+		public void rollbackTransaction() throws SQLException {
+			if (transaction == null)
+				throw new SQLException("No transaction in progress");
+			Savepoint sp = transaction;
+			transaction = null;
+			writer.rollback(sp);
+			writer.releaseSavepoint(sp);
+		}
+
+		/**
+		 * Closes the request, if the request wrote to the database this waits for the
+		 * batched commit to complete
+		 * 
+		 * @throws SQLException If the request failed to roll back or the commit
+		 *                      failed
+		 */
+		public void close() throws SQLException {
+			if (reader != null) {
+				if (ownsReader) {
+					threadReaders.remove();
+					readers.release(reader);
+					ownsReader = false;
+				}
+				reader = null;
+			}
+			if (!writing)
+				return;
+			writing = false;
+
+			// End savepoint, writes of failed requests and of unfinished transactions
+			// are discarded
+			SQLException error = null;
+			try {
+				if (failed || transaction != null)
+					writer.rollback(failed ? savepoint : transaction);
+				writer.releaseSavepoint(savepoint);
+			} catch (SQLException e) {
+				logger.error("Failed to end SQLite request savepoint!", e);
+				error = e;
+			}
+			transaction = null;
+			savepoint = null;
+			if (failed && error == null) {
+				// Nothing left to commit
+				writeLock.unlock();
+				return;
+			}
+
+			// Join current batch
+			CommitBatch batch = currentBatch;
+			writeLock.unlock();
+			if (writeLock.isHeldByCurrentThread()) {
+				// Outer request will wait for the commit
+				if (error != null)
+					throw error;
+				return;
+			}
+			synchronized (commitSignal) {
+				pendingWrites++;
+				commitSignal.notifyAll();
+			}
+
+			// Wait for commit
+			synchronized (batch) {
+				while (!batch.done) {
+					try {
+						batch.wait();
+					} catch (InterruptedException e) {
+						throw new SQLException("Interrupted while waiting for batched commit", e);
+					}
+				}
+			}
+			writeLatency.record(System.nanoTime() - writeStart);
+			if (error != null)
+				throw error;
+			if (batch.error != null)
+				throw new SQLException("Batched commit failed", batch.error);
+		}
+
+	}
+
+}
@@ -63,6 +63,10 @@ public abstract class AccountDataContainer {
 		public void runForChildren(Function<String, Boolean> function, String root) throws IOException {
 			AccountDataContainer.this.runForChildren(function, root);
 		}
+
+		public void prefetch(String root) throws IOException {
+			AccountDataContainer.this.prefetch(root);
+		}
 	}
 
 	/**
@@ -180,6 +184,16 @@ public abstract class AccountDataContainer {
 	 */
 	protected abstract void deleteContainer(String root) throws IOException;
 
+	/**
+	 * Called to prefetch all entries of a container and its child containers,
+	 * does nothing by default
+	 *
+	 * @param root Root key
+	 * @throws IOException If prefetching fails
+	 */
+	protected void prefetch(String root) throws IOException {
+	}
+
 	/**
 	 * Retrieves the account object associated with this data container
 	 *
@@ -358,6 +372,16 @@ public abstract class AccountDataContainer {
 		deleteContainer("");
 	}
 
+	/**
+	 * Loads all entries of this container and its child containers in a single
+	 * request, following reads and scans of the container are served from memory
+	 *
+	 * @throws IOException If prefetching fails
+	 */
+	public void prefetch() throws IOException {
+		prefetch("");
+	}
+
 	protected void initIfNeeded() throws IOException {
 	}
 
@@ -453,6 +477,11 @@ public abstract class AccountDataContainer {
 			parent.runForChildren(function, name + (root.isEmpty() ? "" : "/" + root));
 		}
 
+		@Override
+		protected void prefetch(String root) throws IOException {
+			parent.prefetch(name + (root.isEmpty() ? "" : "/" + root));
+		}
+
 	}
 
 }
@@ -167,6 +167,8 @@ public abstract class AccountManager extends AbstractService {
 	 * @param id       Account ID
 	 * @param password Account password
 	 * @return True if valid, false otherwise
+	 * @throws PasswordHashingBusyException If the server is too busy to check
+	 *                                      passwords
 	 */
 	public abstract boolean verifyPassword(String id, String password);
 
@@ -0,0 +1,19 @@
+package org.asf.edge.common.services.accounts;
+
+/**
+ * 
+ * Thrown when passwords cannot be verified because the password hashing queue
+ * is full, callers should tell the client to try again later
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public PasswordHashingBusyException(String message) {
+		super(message);
+	}
+
+}
@@ -7,22 +7,18 @@ import java.nio.file.Files;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Set;
 import java.util.UUID;
-
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -34,10 +30,13 @@ import org.asf.edge.common.events.accounts.GuestAccountRegisteredEvent;
 import org.asf.edge.common.services.accounts.AccountDataContainer;
 import org.asf.edge.common.services.accounts.AccountManager;
 import org.asf.edge.common.services.accounts.AccountObject;
+import org.asf.edge.common.services.config.ConfigProviderService;
 import org.asf.edge.common.tokens.SessionToken;
 import org.asf.edge.common.tokens.TokenParseResult;
 import org.asf.edge.modules.eventbus.EventBus;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 
 /**
@@ -52,13 +51,16 @@ import com.google.gson.JsonPrimitive;
 public abstract class BasicAccountManager extends AccountManager {
 
 	protected Logger logger = LogManager.getLogger("AccountManager");
-	private static SecureRandom rnd = new SecureRandom();
 
 	private HashMap<String, AccountCache> cache = new HashMap<String, AccountCache>();
 
 	private PublicKey publicKey;
 	private PrivateKey privateKey;
 
+	private volatile PasswordHasher passwordHasher = new PasswordHasher(0, 64, PasswordHasher.LEGACY_ITERATIONS);
+	private Object[] credentialLocks = Stream.generate(() -> new Object()).limit(64).toArray();
+	private Set<String> pendingRehashes = ConcurrentHashMap.newKeySet();
+
 	private class AccountCache {
 		public long lastUpdate;
 		public AccountObject account;
@@ -115,6 +117,14 @@ public abstract class BasicAccountManager extends AccountManager {
 	 */
 	protected abstract void managerLoaded();
 
+	/**
+	 * Called when an account is removed from memory after the player went offline
+	 * 
+	 * @param account Account that was unloaded
+	 */
+	protected void accountUnloaded(AccountObject account) {
+	}
+
 	/**
 	 * Checks if a login name is in use
 	 * 
@@ -203,8 +213,42 @@ public abstract class BasicAccountManager extends AccountManager {
 		return getAccountByID(guestID, true);
 	}
 
+	/**
+	 * Retrieves the password hasher
+	 * 
+	 * @return PasswordHasher instance
+	 */
+	public PasswordHasher getPasswordHasher() {
+		return passwordHasher;
+	}
+
 	@Override
 	public void loadManager() {
+		// Load password hashing settings
+		try {
+			JsonObject accountManagerConfig = ConfigProviderService.getInstance().loadConfig("server",
+					"accountmanager");
+			if (accountManagerConfig == null)
+				accountManagerConfig = new JsonObject();
+			JsonObject hashingConfig = new JsonObject();
+			if (!accountManagerConfig.has("passwordHashing")) {
+				hashingConfig.addProperty("iterations", PasswordHasher.LEGACY_ITERATIONS);
+				hashingConfig.addProperty("threads", 0);
+				hashingConfig.addProperty("queueSize", 64);
+				accountManagerConfig.add("passwordHashing", hashingConfig);
+
+				// Write config
+				ConfigProviderService.getInstance().saveConfig("server", "accountmanager", accountManagerConfig);
+			} else
+				hashingConfig = accountManagerConfig.get("passwordHashing").getAsJsonObject();
+			PasswordHasher old = passwordHasher;
+			passwordHasher = new PasswordHasher(hashingConfig.get("threads").getAsInt(),
+					hashingConfig.get("queueSize").getAsInt(), hashingConfig.get("iterations").getAsInt());
+			old.shutdown();
+		} catch (IOException e) {
+			logger.error("Failed to load password hashing configuration, using defaults!", e);
+		}
+
 		// Cache watchdog
 		AsyncTaskManager.runAsync(() -> {
 			while (true) {
@@ -219,6 +263,7 @@ public abstract class BasicAccountManager extends AccountManager {
 					if ((System.currentTimeMillis() - obj.lastUpdate) > (3 * 60 * 1000)) {
 						// Expired, remove from memory as this player is no longer online
 						cache.remove(obj.account.getAccountID());
+						accountUnloaded(obj.account);
 					}
 				}
 
@@ -257,24 +302,107 @@ public abstract class BasicAccountManager extends AccountManager {
 		if (passwordCheckData == null)
 			return false;
 
-		// Get salt and hash from data
-		byte[] salt = Arrays.copyOfRange(passwordCheckData, 0, 32);
-		byte[] hash = Arrays.copyOfRange(passwordCheckData, 32, 48);
-
-		// Get current password
-		byte[] current = getHash(salt, password.toCharArray());
+		// Find cost parameters
+		AccountObject acc = getAccount(id);
+		if (acc == null)
+			return false;
+		int iterations = getCredentialIterations(acc, passwordCheckData);
 
 		// Verify
-		for (int i = 0; i < hash.length; i++) {
-			if (hash[i] != current[i]) {
-				return false;
-			}
+		if (!passwordHasher.verify(passwordCheckData, password.toCharArray(), iterations))
+			return false;
+
+		// Rehash if the cost parameters changed, skipped while hashing is busy or if
+		// a rehash is already pending
+		if (iterations != passwordHasher.getIterations() && acc instanceof BasicAccountObject
+				&& !passwordHasher.isBusy() && pendingRehashes.add(id)) {
+			BasicAccountObject bAcc = (BasicAccountObject) acc;
+			AsyncTaskManager.runAsync(() -> {
+				try {
+					int newIterations = passwordHasher.getIterations();
+					byte[] cred = passwordHasher.createCredentials(password.toCharArray(), newIterations);
+					synchronized (getCredentialLock(id)) {
+						// Skip if the credentials changed in the meantime
+						if (!Arrays.equals(getPasswordCheckData(id), passwordCheckData))
+							return;
+
+						// Update
+						writeCredentialParameters(acc, cred, newIterations, iterations);
+						if (bAcc.performUpdatePassword(cred))
+							logger.info("Updated password hashing cost of " + acc.getUsername() + " (ID "
+									+ acc.getAccountID() + ") to " + newIterations + " iterations");
+					}
+				} catch (Exception e) {
+					logger.error("Failed to update password hashing cost of ID '" + id + "'", e);
+				} finally {
+					pendingRehashes.remove(id);
+				}
+			});
 		}
 
 		// Success
 		return true;
 	}
 
+	/**
+	 * Retrieves the PBKDF2 iteration count of the stored credentials of an account
+	 * 
+	 * @param account Account to check
+	 * @param cred    Stored credential bytes
+	 * @return Iteration count
+	 */
+	int getCredentialIterations(AccountObject account, byte[] cred) {
+		try {
+			JsonElement ele = account.getAccountData().getChildContainer("accountdata")
+					.getEntry("credentialparameters");
+			if (ele == null)
+				return PasswordHasher.LEGACY_ITERATIONS;
+			JsonObject params = ele.getAsJsonObject();
+
+			// Parameters are written before the credentials, if the salt doesn't match the
+			// credentials weren't updated yet
+			if (params.get("salt").getAsString().equals(PasswordHasher.saltFingerprint(cred)))
+				return params.get("iterations").getAsInt();
+			return params.get("previousIterations").getAsInt();
+		} catch (IOException e) {
+			logger.error("Failed to execute database query request while trying to retrieve credential parameters of ID '"
+					+ account.getAccountID() + "'", e);
+			return PasswordHasher.LEGACY_ITERATIONS;
+		}
+	}
+
+	/**
+	 * Retrieves the lock credential updates of an account are made under, the cost
+	 * parameters and credentials are written separately so updates of the same
+	 * account may not overlap
+	 * 
+	 * @param id Account ID
+	 * @return Lock object
+	 */
+	Object getCredentialLock(String id) {
+		return credentialLocks[Math.floorMod(id.hashCode(), credentialLocks.length)];
+	}
+
+	/**
+	 * Stores the PBKDF2 cost parameters of new credentials, must be called before
+	 * storing the credentials themselves while holding the credential lock of the
+	 * account
+	 * 
+	 * @param account            Account to update
+	 * @param cred               New credential bytes
+	 * @param iterations         Iteration count of the new credentials
+	 * @param previousIterations Iteration count of the current credentials
+	 * @throws IOException If storing fails
+	 */
+	void writeCredentialParameters(AccountObject account, byte[] cred, int iterations, int previousIterations)
+			throws IOException {
+		JsonObject params = new JsonObject();
+		params.addProperty("iterations", iterations);
+		params.addProperty("salt", PasswordHasher.saltFingerprint(cred));
+		params.addProperty("previousIterations", previousIterations);
+		account.getAccountData().getChildContainer("accountdata").setEntry("credentialparameters", params);
+	}
+
 	@Override
 	public TokenParseResult verifyToken(String token) {
 		// Init if needed
@@ -368,14 +496,8 @@ public abstract class BasicAccountManager extends AccountManager {
 		while (accountExists(id))
 			id = UUID.randomUUID().toString();
 
-		// Create salt and compute password
-		byte[] salt = salt();
-		byte[] hash = getHash(salt, password);
-		byte[] cred = new byte[48];
-		for (int i = 0; i < 32; i++)
-			cred[i] = salt[i];
-		for (int i = 32; i < 48; i++)
-			cred[i] = hash[i - 32];
+		// Compute credentials
+		byte[] cred = createCredBytesWithPassword(password);
 
 		// Insert information
 		AccountObject obj = registerAccount(id, email, username, cred);
@@ -404,32 +526,16 @@ public abstract class BasicAccountManager extends AccountManager {
 		return obj;
 	}
 
+	/**
+	 * Creates credential bytes for new accounts, these use the legacy cost
+	 * parameters as there is no account to store parameters in yet, the
+	 * credentials are rehashed on the first login if the configured cost differs
+	 * 
+	 * @param password Password to hash
+	 * @return Credential bytes
+	 */
 	public byte[] createCredBytesWithPassword(char[] password) {
-		byte[] salt = salt();
-		byte[] hash = getHash(salt, password);
-		byte[] cred = new byte[48];
-		for (int i = 0; i < 32; i++)
-			cred[i] = salt[i];
-		for (int i = 32; i < 48; i++)
-			cred[i] = hash[i - 32];
-		return cred;
-	}
-
-	// Salt and hash
-	private static byte[] salt() {
-		byte[] salt = new byte[32];
-		rnd.nextBytes(salt);
-		return salt;
-	}
-
-	private static byte[] getHash(byte[] salt, char[] password) {
-		KeySpec spec = new PBEKeySpec(password, salt, 65536, 128);
-		try {
-			SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512");
-			return factory.generateSecret(spec).getEncoded();
-		} catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-			return null;
-		}
+		return passwordHasher.createCredentials(password, PasswordHasher.LEGACY_ITERATIONS);
 	}
 
 	private void keyInit() {
@@ -1,18 +1,11 @@
 package org.asf.edge.common.services.accounts.impl;
 
 import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.UUID;
 import java.util.stream.Stream;
 
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.asf.edge.common.events.accounts.*;
@@ -21,6 +14,7 @@ import org.asf.edge.common.services.accounts.AccountDataContainer;
 import org.asf.edge.common.services.accounts.AccountObject;
 import org.asf.edge.common.services.accounts.AccountSaveContainer;
 import org.asf.edge.common.services.textfilter.TextFilterService;
+import org.asf.edge.common.tokens.SessionToken;
 import org.asf.edge.modules.eventbus.EventBus;
 
 import com.google.gson.JsonElement;
@@ -39,7 +33,6 @@ public abstract class BasicAccountObject extends AccountObject {
 	protected String username;
 
 	private Logger logger = LogManager.getLogger("AccountManager");
-	private static SecureRandom rnd = new SecureRandom();
 
 	private BasicAccountManager manager;
 	private AccountDataContainer accountData;
@@ -254,18 +247,29 @@ public abstract class BasicAccountObject extends AccountObject {
 		if (!manager.isValidPassword(new String(newPassword)))
 			return false;
 
-		// Create salt
-		byte[] salt = salt();
-		byte[] hash = getHash(salt, newPassword);
-		byte[] cred = new byte[48];
-		for (int i = 0; i < 32; i++)
-			cred[i] = salt[i];
-		for (int i = 32; i < 48; i++)
-			cred[i] = hash[i - 32];
-
-		// Call update
-		if (!performUpdatePassword(cred))
-			return false;
+		// Compute credentials
+		PasswordHasher hasher = manager.getPasswordHasher();
+		byte[] cred = hasher.createCredentials(newPassword, hasher.getIterations());
+
+		synchronized (manager.getCredentialLock(id)) {
+			// Store cost parameters
+			byte[] current = manager.getPasswordCheckData(id);
+			try {
+				manager.writeCredentialParameters(this, cred, hasher.getIterations(),
+						current != null ? manager.getCredentialIterations(this, current)
+								: PasswordHasher.LEGACY_ITERATIONS);
+			} catch (IOException e) {
+				logger.error(
+						"Failed to execute database query request while trying to update credential parameters of ID '"
+								+ id + "'",
+						e);
+				return false;
+			}
+
+			// Call update
+			if (!performUpdatePassword(cred))
+				return false;
+		}
 
 		// Dispatch event
 		EventBus.getInstance().dispatchEvent(new AccountPasswordUpdateEvent(this, manager));
@@ -385,6 +389,7 @@ public abstract class BasicAccountObject extends AccountObject {
 		try {
 			getAccountData().getChildContainer("accountdata").setEntry("lastlogintime",
 					new JsonPrimitive((System.currentTimeMillis() / 1000l)));
+			SessionToken.invalidateAccount(id);
 		} catch (IOException e) {
 			logger.error(
 					"Failed to execute database query request while trying to update login time of ID '" + id + "'", e);
@@ -491,21 +496,4 @@ public abstract class BasicAccountObject extends AccountObject {
 		getSaveIDs();
 	}
 
-	// Salt and hash
-	private static byte[] salt() {
-		byte[] salt = new byte[32];
-		rnd.nextBytes(salt);
-		return salt;
-	}
-
-	private static byte[] getHash(byte[] salt, char[] password) {
-		KeySpec spec = new PBEKeySpec(password, salt, 65536, 128);
-		try {
-			SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512");
-			return factory.generateSecret(spec).getEncoded();
-		} catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-			return null;
-		}
-	}
-
 }
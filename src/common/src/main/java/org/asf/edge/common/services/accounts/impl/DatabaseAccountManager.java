@@ -2,21 +2,117 @@ package org.asf.edge.common.services.accounts.impl;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.Function;
 
+import org.asf.edge.common.jdbc.SchemaMigrator;
 import org.asf.edge.common.services.accounts.AccountObject;
 import org.asf.edge.common.services.accounts.AccountSaveContainer;
+import org.asf.edge.common.services.accounts.impl.accounts.db.AccountDataCache;
 import org.asf.edge.common.services.accounts.impl.accounts.db.DatabaseAccountObject;
 import org.asf.edge.common.services.accounts.impl.accounts.db.DatabaseRequest;
+import org.asf.edge.common.services.accounts.impl.accounts.db.DatabaseWriteBehindBuffer;
+import org.asf.edge.common.services.accounts.impl.accounts.db.DatabaseWriteBehindBuffer.PendingWrite;
 
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 public abstract class DatabaseAccountManager extends BasicAccountManager {
 
+	private DatabaseWriteBehindBuffer writeBehind;
+	private AccountDataCache dataCache;
+
 	@Override
 	public void initService() {
 	}
 
+	/**
+	 * Sets up the write-behind buffer, called by implementations after loading
+	 * their configuration
+	 * 
+	 * @param writeBehindConfig Write-behind configuration block
+	 */
+	protected void setupWriteBehind(JsonObject writeBehindConfig) {
+		writeBehind = new DatabaseWriteBehindBuffer(this, writeBehindConfig);
+	}
+
+	/**
+	 * Retrieves the write-behind buffer
+	 * 
+	 * @return DatabaseWriteBehindBuffer instance
+	 */
+	public DatabaseWriteBehindBuffer getWriteBehindBuffer() {
+		if (writeBehind == null)
+			writeBehind = new DatabaseWriteBehindBuffer(this, new JsonObject());
+		return writeBehind;
+	}
+
+	/**
+	 * Sets up the shared data cache, called by implementations after loading
+	 * their configuration
+	 * 
+	 * @param cacheConfig Data cache configuration block
+	 */
+	protected void setupDataCache(JsonObject cacheConfig) {
+		dataCache = new AccountDataCache(cacheConfig);
+	}
+
+	/**
+	 * Retrieves the shared data cache
+	 * 
+	 * @return AccountDataCache instance
+	 */
+	public AccountDataCache getDataCache() {
+		if (dataCache == null)
+			dataCache = new AccountDataCache(new JsonObject());
+		return dataCache;
+	}
+
+	@Override
+	protected void accountUnloaded(AccountObject account) {
+		// Flush pending writes of the player
+		getWriteBehindBuffer().flushAccount(account.getAccountID());
+
+		// Drop cached data
+		getDataCache().evictAccount(account.getAccountID());
+	}
+
+	/**
+	 * Runs the player data schema migrations, called by implementations after
+	 * creating the tables
+	 * 
+	 * @param statement Statement to run the migrations with
+	 * @throws SQLException If a migration fails
+	 */
+	protected void migrateSchema(Statement statement) throws SQLException {
+		SchemaMigrator migrator = new SchemaMigrator("accounts", logger);
+
+		// Version 1: player data lookup indexes
+		migrator.addMigration(1, "player data lookup indexes", (st, dialect) -> {
+			SchemaMigrator.createIndex(st, dialect, "IDX_ACCOUNTWIDEPLAYERDATA_V2_KEY", "ACCOUNTWIDEPLAYERDATA_V2",
+					"ACCID", "PARENTCONTAINER", "PARENT", "DATAKEY");
+			SchemaMigrator.createIndex(st, dialect, "IDX_SAVESPECIFICPLAYERDATA_V2_KEY", "SAVESPECIFICPLAYERDATA_V2",
+					"SVID", "PARENTCONTAINER", "PARENT", "DATAKEY");
+		});
+
+		// Version 2: account map indexes
+		migrator.addMigration(2, "account map indexes", (st, dialect) -> {
+			SchemaMigrator.createIndex(st, dialect, "IDX_USERMAP_V2_USERNAME", "USERMAP_V2", "USERNAME(255)");
+			SchemaMigrator.createIndex(st, dialect, "IDX_USERMAP_V2_ID", "USERMAP_V2", "ID");
+			SchemaMigrator.createIndex(st, dialect, "IDX_EMAILMAP_V2_EMAIL", "EMAILMAP_V2", "EMAIL(255)");
+			SchemaMigrator.createIndex(st, dialect, "IDX_EMAILMAP_V2_ID", "EMAILMAP_V2", "ID");
+			SchemaMigrator.createIndex(st, dialect, "IDX_SAVEUSERNAMEMAP_V2_USERNAME", "SAVEUSERNAMEMAP_V2",
+					"USERNAME(255)");
+			SchemaMigrator.createIndex(st, dialect, "IDX_SAVEUSERNAMEMAP_V2_ID", "SAVEUSERNAMEMAP_V2", "ID");
+			SchemaMigrator.createIndex(st, dialect, "IDX_SAVEMAP_V2_ACCID", "SAVEMAP_V2", "ACCID");
+		});
+
+		// Run
+		migrator.run(statement);
+	}
+
 	/**
 	 * Called to create database requests
 	 * 
@@ -182,6 +278,9 @@ public abstract class DatabaseAccountManager extends BasicAccountManager {
 
 	@Override
 	public void runForAllAccounts(Function<AccountObject, Boolean> func) {
+		// Read all accounts first so nested requests made by the function do not wait
+		// for a second connection
+		LinkedHashMap<String, String> accounts = new LinkedHashMap<String, String>();
 		try {
 			// Create prepared statement
 			DatabaseRequest conn = createRequest();
@@ -190,21 +289,9 @@ public abstract class DatabaseAccountManager extends BasicAccountManager {
 				ResultSet res = statement.executeQuery();
 				while (res.next()) {
 					String id = res.getString("ID");
-					if (id == null) {
-						res.close();
-						statement.close();
-						return;
-					}
-					DatabaseAccountObject acc = new DatabaseAccountObject(id, res.getString("USERNAME"), this);
-
-					// Run function
-					try {
-						if (!func.apply(acc))
-							break;
-					} catch (Exception e) {
-						logger.error("Exception occurred while running runForAllAccounts!", e);
+					if (id == null)
 						break;
-					}
+					accounts.put(id, res.getString("USERNAME"));
 				}
 				res.close();
 				statement.close();
@@ -213,6 +300,19 @@ public abstract class DatabaseAccountManager extends BasicAccountManager {
 			}
 		} catch (SQLException e) {
 			logger.error("Failed to execute database query request while trying to run a function for all accounts", e);
+			return;
+		}
+
+		// Run function
+		for (Map.Entry<String, String> ent : accounts.entrySet()) {
+			DatabaseAccountObject acc = new DatabaseAccountObject(ent.getKey(), ent.getValue(), this);
+			try {
+				if (!func.apply(acc))
+					break;
+			} catch (Exception e) {
+				logger.error("Exception occurred while running runForAllAccounts!", e);
+				break;
+			}
 		}
 	}
 
@@ -343,6 +443,15 @@ public abstract class DatabaseAccountManager extends BasicAccountManager {
 
 	@Override
 	public AccountSaveContainer getSaveByID(String id) {
+		// Check pending writes
+		PendingWrite pending = getWriteBehindBuffer().getPending("SAVESPECIFICPLAYERDATA_V2", id, "accountid");
+		if (pending != null) {
+			AccountObject acc = getAccount(pending.getValue().getAsString());
+			if (acc == null)
+				return null;
+			return acc.getSave(id);
+		}
+
 		try {
 			DatabaseRequest conn = createRequest();
 			try {
@@ -2,13 +2,17 @@ package org.asf.edge.common.services.accounts.impl;
 
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
 
+import org.asf.edge.common.jdbc.ConnectionPool;
+import org.asf.edge.common.jdbc.SqliteConnectionManager;
+import org.asf.edge.common.jdbc.SqliteConnectionManager.SqliteRequest;
+import org.asf.edge.common.services.accounts.impl.accounts.db.AccountDataCache;
 import org.asf.edge.common.services.accounts.impl.accounts.db.DatabaseRequest;
+import org.asf.edge.common.services.accounts.impl.accounts.db.DatabaseWriteBehindBuffer;
 import org.asf.edge.common.services.config.ConfigProviderService;
 
 import com.google.gson.JsonObject;
@@ -17,7 +21,8 @@ public class DefaultDatabaseAccountManager extends DatabaseAccountManager {
 
 	private String url;
 	private Properties props;
-	private Connection conn;
+	private ConnectionPool pool;
+	private SqliteConnectionManager sqlite;
 
 	@Override
 	protected void managerLoaded() {
@@ -60,6 +65,34 @@ public class DefaultDatabaseAccountManager extends DatabaseAccountManager {
 		for (String key : properties.keySet())
 			props.setProperty(key, properties.get(key).getAsString());
 
+		// Load pool, write-behind and cache settings
+		String poolConfigKey = url.startsWith("jdbc:sqlite:") ? "sqlite" : "connectionPool";
+		if (!databaseManagerConfig.has(poolConfigKey) || !databaseManagerConfig.has("writeBehind")
+				|| !databaseManagerConfig.has("dataCache")) {
+			if (!databaseManagerConfig.has(poolConfigKey)) {
+				if (url.startsWith("jdbc:sqlite:"))
+					databaseManagerConfig.add("sqlite", SqliteConnectionManager.createDefaultConfig());
+				else
+					databaseManagerConfig.add("connectionPool", ConnectionPool.createDefaultConfig());
+			}
+			if (!databaseManagerConfig.has("writeBehind"))
+				databaseManagerConfig.add("writeBehind", DatabaseWriteBehindBuffer.createDefaultConfig());
+			if (!databaseManagerConfig.has("dataCache"))
+				databaseManagerConfig.add("dataCache", AccountDataCache.createDefaultConfig());
+
+			// Write config
+			try {
+				ConfigProviderService.getInstance().saveConfig("server", "accountmanager", accountManagerConfig);
+			} catch (IOException e) {
+				logger.error("Failed to write the account manager configuration!", e);
+				return;
+			}
+		}
+
+		// Set up write-behind and cache
+		setupWriteBehind(databaseManagerConfig.get("writeBehind").getAsJsonObject());
+		setupDataCache(databaseManagerConfig.get("dataCache").getAsJsonObject());
+
 		try {
 			// Load drivers
 			Class.forName("com.mysql.cj.jdbc.Driver");
@@ -67,12 +100,18 @@ public class DefaultDatabaseAccountManager extends DatabaseAccountManager {
 			Class.forName("org.asf.edge.common.jdbc.LoggingProxyDriver");
 			Class.forName("org.asf.edge.common.jdbc.LockingDriver");
 
-			// Create tables
-			Connection conn = DriverManager.getConnection(url, props);
+			// Create connection pool
 			if (url.startsWith("jdbc:sqlite:"))
-				this.conn = conn;
+				sqlite = new SqliteConnectionManager("AccountManager", url, props,
+						databaseManagerConfig.get("sqlite").getAsJsonObject());
+			else
+				pool = new ConnectionPool("AccountManager", url, props,
+						databaseManagerConfig.get("connectionPool").getAsJsonObject());
+
+			// Create tables
+			DatabaseRequest req = createRequest();
 			try {
-				Statement statement = conn.createStatement();
+				Statement statement = req.createStatement();
 				statement.executeUpdate("CREATE TABLE IF NOT EXISTS EMAILMAP_V2 (EMAIL TEXT, ID CHAR(36))");
 				statement.executeUpdate(
 						"CREATE TABLE IF NOT EXISTS USERMAP_V2 (USERNAME TEXT, ID CHAR(36), CREDS BINARY(48))");
@@ -82,10 +121,12 @@ public class DefaultDatabaseAccountManager extends DatabaseAccountManager {
 						"CREATE TABLE IF NOT EXISTS ACCOUNTWIDEPLAYERDATA_V2 (ACCID CHAR(36), DATAKEY varchar(64), PARENT varchar(64), PARENTCONTAINER varchar(256), DATA LONGTEXT)");
 				statement.executeUpdate(
 						"CREATE TABLE IF NOT EXISTS SAVESPECIFICPLAYERDATA_V2 (SVID CHAR(36), DATAKEY varchar(64), PARENT varchar(64), PARENTCONTAINER varchar(256), DATA LONGTEXT)");
+
+				// Run migrations
+				migrateSchema(statement);
 				statement.close();
 			} finally {
-				if (!url.startsWith("jdbc:sqlite:"))
-					conn.close();
+				req.close();
 			}
 		} catch (SQLException | ClassNotFoundException e) {
 			logger.error("Failed to connect to database!", e);
@@ -95,27 +136,94 @@ public class DefaultDatabaseAccountManager extends DatabaseAccountManager {
 
 	@Override
 	public DatabaseRequest createRequest() throws SQLException {
-		boolean nonSingle = false;
-		Connection conn = this.conn;
-		if (conn == null) {
-			nonSingle = true;
-			conn = DriverManager.getConnection(url, props);
+		if (sqlite != null) {
+			SqliteRequest req = sqlite.openRequest();
+			return new DatabaseRequest() {
+
+				@Override
+				public PreparedStatement prepareStatement(String query) throws SQLException {
+					return req.prepareStatement(query);
+				}
+
+				@Override
+				public Statement createStatement() throws SQLException {
+					return req.createStatement();
+				}
+
+				@Override
+				public void beginTransaction() throws SQLException {
+					req.beginTransaction();
+				}
+
+				@Override
+				public void commitTransaction() throws SQLException {
+					req.commitTransaction();
+				}
+
+				@Override
+				public void rollbackTransaction() throws SQLException {
+					req.rollbackTransaction();
+				}
+
+				@Override
+				public void close() throws SQLException {
+					req.close();
+				}
+			};
 		}
-		Connection connF = conn;
-		boolean nonSingleF = nonSingle;
+		Connection conn = pool.borrow();
 		return new DatabaseRequest() {
 
 			@Override
 			public PreparedStatement prepareStatement(String query) throws SQLException {
-				return connF.prepareStatement(query);
+				return conn.prepareStatement(query);
+			}
+
+			@Override
+			public Statement createStatement() throws SQLException {
+				return conn.createStatement();
+			}
+
+			@Override
+			public void beginTransaction() throws SQLException {
+				conn.setAutoCommit(false);
+			}
+
+			@Override
+			public void commitTransaction() throws SQLException {
+				conn.commit();
+				conn.setAutoCommit(true);
+			}
+
+			@Override
+			public void rollbackTransaction() throws SQLException {
+				conn.rollback();
+				conn.setAutoCommit(true);
 			}
 
 			@Override
 			public void close() throws SQLException {
-				if (nonSingleF)
-					connF.close();
+				pool.release(conn);
 			}
 		};
 	}
 
+	/**
+	 * Retrieves the database connection pool
+	 * 
+	 * @return ConnectionPool instance or null if the SQLite backend is used
+	 */
+	public ConnectionPool getConnectionPool() {
+		return pool;
+	}
+
+	/**
+	 * Retrieves the SQLite connection manager
+	 * 
+	 * @return SqliteConnectionManager instance or null if SQLite is not in use
+	 */
+	public SqliteConnectionManager getSqliteManager() {
+		return sqlite;
+	}
+
 }
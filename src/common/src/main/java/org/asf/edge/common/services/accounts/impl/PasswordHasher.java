@@ -0,0 +1,234 @@
+package org.asf.edge.common.services.accounts.impl;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.KeySpec;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.asf.edge.common.services.accounts.PasswordHashingBusyException;
+
+/**
+ * 
+ * Password hasher, runs PBKDF2 password hashing on a bounded pool of threads
+ * so login storms cannot take over the request threads, password checks are
+ * rejected immediately if the queue is full
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class PasswordHasher {
+
+	/**
+	 * Iteration count of credentials without stored cost parameters
+	 */
+	public static final int LEGACY_ITERATIONS = 65536;
+
+	private static SecureRandom rnd = new SecureRandom();
+	private static ThreadLocal<SecretKeyFactory> factories = ThreadLocal.withInitial(() -> {
+		try {
+			return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	});
+
+	private int iterations;
+	private ThreadPoolExecutor executor;
+	private AtomicLong rejected = new AtomicLong();
+	private AtomicLong lastRejectionLog = new AtomicLong();
+	private Logger logger = LogManager.getLogger("AccountManager");
+
+	/**
+	 * Creates the password hasher
+	 * 
+	 * @param threads    Amount of hashing threads, 0 to use the default
+	 * @param queueSize  Maximum amount of pending hashing requests
+	 * @param iterations Iteration count for new credentials
+	 */
+	public PasswordHasher(int threads, int queueSize, int iterations) {
+		if (threads <= 0)
+			threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		this.iterations = iterations;
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), r -> {
+					Thread th = new Thread(r, "Password hasher " + threadCount.incrementAndGet());
+					th.setDaemon(true);
+					return th;
+				});
+	}
+
+	/**
+	 * Stops the hashing threads
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Retrieves the iteration count used for new credentials
+	 * 
+	 * @return Iteration count
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Retrieves the amount of hashing requests waiting for a thread
+	 * 
+	 * @return Queue depth
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Retrieves the amount of hashing requests that were rejected because the
+	 * queue was full
+	 * 
+	 * @return Rejected request count
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Checks if hashing requests are waiting for a thread
+	 * 
+	 * @return True if busy, false otherwise
+	 */
+	public boolean isBusy() {
+		return !executor.getQueue().isEmpty();
+	}
+
+	/**
+	 * Creates 48-byte credential blobs (32-byte salt followed by the 16-byte
+	 * hash), these are never rejected, if the queue is full the hash is computed
+	 * on the calling thread
+	 * 
+	 * @param password   Password to hash
+	 * @param iterations Iteration count
+	 * @return Credential bytes
+	 */
+	public byte[] createCredentials(char[] password, int iterations) {
+		byte[] salt = new byte[32];
+		rnd.nextBytes(salt);
+		byte[] hash;
+		try {
+			hash = hash(salt, password, iterations);
+		} catch (PasswordHashingBusyException e) {
+			hash = compute(salt, password, iterations);
+		}
+		byte[] cred = new byte[48];
+		for (int i = 0; i < 32; i++)
+			cred[i] = salt[i];
+		for (int i = 32; i < 48; i++)
+			cred[i] = hash[i - 32];
+		return cred;
+	}
+
+	/**
+	 * Verifies passwords against 48-byte credential blobs
+	 * 
+	 * @param cred       Credential bytes
+	 * @param password   Password to check
+	 * @param iterations Iteration count the credentials were created with
+	 * @return True if the password matches, false otherwise
+	 * @throws PasswordHashingBusyException If the hashing queue is full
+	 */
+	public boolean verify(byte[] cred, char[] password, int iterations) {
+		// Get salt and hash from data
+		byte[] salt = Arrays.copyOfRange(cred, 0, 32);
+		byte[] hash = Arrays.copyOfRange(cred, 32, 48);
+
+		// Get current password
+		byte[] current = hash(salt, password, iterations);
+
+		// Verify
+		for (int i = 0; i < hash.length; i++) {
+			if (hash[i] != current[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes password hashes on the hashing threads
+	 * 
+	 * @param salt       Salt bytes
+	 * @param password   Password to hash
+	 * @param iterations Iteration count
+	 * @return 16-byte hash
+	 * @throws PasswordHashingBusyException If the hashing queue is full
+	 */
+	public byte[] hash(byte[] salt, char[] password, int iterations) {
+		// Queue
+		Future<byte[]> res;
+		try {
+			res = executor.submit(() -> compute(salt, password, iterations));
+		} catch (RejectedExecutionException e) {
+			// Log at most every 10 seconds
+			long count = rejected.incrementAndGet();
+			long last = lastRejectionLog.get();
+			if (System.currentTimeMillis() - last >= 10000
+					&& lastRejectionLog.compareAndSet(last, System.currentTimeMillis())) {
+				logger.warn("Password hashing queue is full (" + getQueueDepth() + " pending), rejected " + count
+						+ " password checks since startup");
+			}
+			throw new PasswordHashingBusyException("Password hashing queue is full");
+		}
+
+		// Wait for the result
+		try {
+			return res.get();
+		} catch (InterruptedException e) {
+			res.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private static byte[] compute(byte[] salt, char[] password, int iterations) {
+		try {
+			KeySpec spec = new PBEKeySpec(password, salt, iterations, 128);
+			return factories.get().generateSecret(spec).getEncoded();
+		} catch (InvalidKeySpecException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Computes a short fingerprint of the salt of credentials, used to check if
+	 * stored cost parameters belong to the stored credentials
+	 * 
+	 * @param cred Credential bytes
+	 * @return Fingerprint string
+	 */
+	public static String saltFingerprint(byte[] cred) {
+		StringBuilder fp = new StringBuilder();
+		for (int i = 0; i < 8; i++)
+			fp.append(String.format("%02x", cred[i]));
+		return fp.toString();
+	}
+
+}
@@ -8,7 +8,10 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
 
+import org.asf.edge.common.jdbc.ConnectionPool;
+import org.asf.edge.common.services.accounts.impl.accounts.db.AccountDataCache;
 import org.asf.edge.common.services.accounts.impl.accounts.db.DatabaseRequest;
+import org.asf.edge.common.services.accounts.impl.accounts.db.DatabaseWriteBehindBuffer;
 import org.asf.edge.common.services.config.ConfigProviderService;
 import org.postgresql.util.PGobject;
 
@@ -18,6 +21,7 @@ public class PostgresDatabaseAccountManager extends DatabaseAccountManager {
 
 	private String url;
 	private Properties props;
+	private ConnectionPool pool;
 
 	@Override
 	protected void managerLoaded() {
@@ -60,6 +64,29 @@ public class PostgresDatabaseAccountManager extends DatabaseAccountManager {
 		for (String key : properties.keySet())
 			props.setProperty(key, properties.get(key).getAsString());
 
+		// Load pool, write-behind and cache settings
+		if (!databaseManagerConfig.has("connectionPool") || !databaseManagerConfig.has("writeBehind")
+				|| !databaseManagerConfig.has("dataCache")) {
+			if (!databaseManagerConfig.has("connectionPool"))
+				databaseManagerConfig.add("connectionPool", ConnectionPool.createDefaultConfig());
+			if (!databaseManagerConfig.has("writeBehind"))
+				databaseManagerConfig.add("writeBehind", DatabaseWriteBehindBuffer.createDefaultConfig());
+			if (!databaseManagerConfig.has("dataCache"))
+				databaseManagerConfig.add("dataCache", AccountDataCache.createDefaultConfig());
+
+			// Write config
+			try {
+				ConfigProviderService.getInstance().saveConfig("server", "accountmanager", accountManagerConfig);
+			} catch (IOException e) {
+				logger.error("Failed to write the account manager configuration!", e);
+				return;
+			}
+		}
+
+		// Set up write-behind and cache
+		setupWriteBehind(databaseManagerConfig.get("writeBehind").getAsJsonObject());
+		setupDataCache(databaseManagerConfig.get("dataCache").getAsJsonObject());
+
 		try {
 			// Load drivers
 			Class.forName("com.mysql.cj.jdbc.Driver");
@@ -80,10 +107,17 @@ public class PostgresDatabaseAccountManager extends DatabaseAccountManager {
 						"CREATE TABLE IF NOT EXISTS ACCOUNTWIDEPLAYERDATA_V2 (ACCID CHAR(36), DATAKEY varchar(64), PARENT varchar(64), PARENTCONTAINER varchar(256), DATA JSONB)");
 				statement.executeUpdate(
 						"CREATE TABLE IF NOT EXISTS SAVESPECIFICPLAYERDATA_V2 (SVID CHAR(36), DATAKEY varchar(64), PARENT varchar(64), PARENTCONTAINER varchar(256), DATA JSONB)");
+
+				// Run migrations
+				migrateSchema(statement);
 				statement.close();
 			} finally {
 				conn.close();
 			}
+
+			// Create connection pool
+			pool = new ConnectionPool("AccountManager", url, props,
+					databaseManagerConfig.get("connectionPool").getAsJsonObject());
 		} catch (SQLException | ClassNotFoundException e) {
 			logger.error("Failed to connect to database!", e);
 			System.exit(1);
@@ -92,7 +126,7 @@ public class PostgresDatabaseAccountManager extends DatabaseAccountManager {
 
 	@Override
 	public DatabaseRequest createRequest() throws SQLException {
-		Connection conn = DriverManager.getConnection(url, props);
+		Connection conn = pool.borrow();
 		return new DatabaseRequest() {
 
 			@Override
@@ -108,11 +142,42 @@ public class PostgresDatabaseAccountManager extends DatabaseAccountManager {
 				return conn.prepareStatement(query);
 			}
 
+			@Override
+			public Statement createStatement() throws SQLException {
+				return conn.createStatement();
+			}
+
+			@Override
+			public void beginTransaction() throws SQLException {
+				conn.setAutoCommit(false);
+			}
+
+			@Override
+			public void commitTransaction() throws SQLException {
+				conn.commit();
+				conn.setAutoCommit(true);
+			}
+
+			@Override
+			public void rollbackTransaction() throws SQLException {
+				conn.rollback();
+				conn.setAutoCommit(true);
+			}
+
 			@Override
 			public void close() throws SQLException {
-				conn.close();
+				pool.release(conn);
 			}
 		};
 	}
 
+	/**
+	 * Retrieves the database connection pool
+	 * 
+	 * @return ConnectionPool instance
+	 */
+	public ConnectionPool getConnectionPool() {
+		return pool;
+	}
+
 }
@@ -18,6 +18,7 @@ import org.asf.edge.common.events.accounts.GuestAccountRegisteredEvent;
 import org.asf.edge.common.services.accounts.AccountManager;
 import org.asf.edge.common.services.accounts.AccountObject;
 import org.asf.edge.common.services.accounts.AccountSaveContainer;
+import org.asf.edge.common.services.accounts.PasswordHashingBusyException;
 import org.asf.edge.common.services.accounts.impl.accounts.http.RemoteHttpAccountObject;
 import org.asf.edge.common.services.accounts.impl.accounts.http.RemoteHttpSaveContainer;
 import org.asf.edge.common.services.config.ConfigProviderService;
@@ -220,6 +221,8 @@ public class RemoteHttpAccountManager extends AccountManager {
 			payload.addProperty("id", id);
 			payload.addProperty("password", password);
 			JsonObject response = accountManagerRequest("verifyPassword", payload);
+			if (response.has("busy") && response.get("busy").getAsBoolean())
+				throw new PasswordHashingBusyException("Account server password hashing queue is full");
 			if (!response.get("result").getAsBoolean())
 				return false;
 		} catch (IOException e) {
@@ -0,0 +1,451 @@
+package org.asf.edge.common.services.accounts.impl.accounts.db;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * 
+ * Shared data cache for database account and save data containers, bounded by
+ * estimated memory size
+ * 
+ * <p>
+ * Entries are grouped in segments, one for each account or save. Segments are
+ * evicted as a whole (least recently used first) so prefetched containers stay
+ * complete, and all segments of an account are dropped when the account is
+ * unloaded.
+ * </p>
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class AccountDataCache {
+
+	private static final CachedValue MISSING = new CachedValue(null, 0);
+
+	private long maxSize;
+
+	private ConcurrentHashMap<String, ConcurrentHashMap<String, CacheSegment>> accounts = new ConcurrentHashMap<String, ConcurrentHashMap<String, CacheSegment>>();
+	private AtomicLong size = new AtomicLong();
+	private Object evictionLock = new Object();
+
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+	private AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * 
+	 * Cached entry value, values are owned by the cache and must not be modified
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	public static class CachedValue {
+		private JsonElement value;
+		private long size;
+
+		private CachedValue(JsonElement value, long size) {
+			this.value = value;
+			this.size = size;
+		}
+
+		/**
+		 * Retrieves the cached value
+		 * 
+		 * @return JsonElement instance or null if the entry is known not to exist
+		 */
+		public JsonElement getValue() {
+			return value;
+		}
+	}
+
+	/**
+	 * Creates the cache configuration block with its default settings
+	 * 
+	 * @return JsonObject instance
+	 */
+	public static JsonObject createDefaultConfig() {
+		JsonObject cacheConfig = new JsonObject();
+		cacheConfig.addProperty("maxSize", 64 * 1024 * 1024);
+		return cacheConfig;
+	}
+
+	public AccountDataCache(JsonObject cacheConfig) {
+		// Load config
+		JsonObject defaults = createDefaultConfig();
+		for (String key : defaults.keySet()) {
+			if (!cacheConfig.has(key))
+				cacheConfig.add(key, defaults.get(key));
+		}
+		maxSize = Math.max(0, cacheConfig.get("maxSize").getAsLong());
+	}
+
+	/**
+	 * Retrieves the cache segment of an account or save
+	 * 
+	 * @param table     Table name
+	 * @param ownerID   Account or save ID
+	 * @param accountID Account ID the owner belongs to
+	 * @return CacheSegment instance
+	 */
+	public CacheSegment getSegment(String table, String ownerID, String accountID) {
+		CacheSegment seg = accounts
+				.computeIfAbsent(accountID, t -> new ConcurrentHashMap<String, CacheSegment>())
+				.computeIfAbsent(table + ":" + ownerID, t -> new CacheSegment(accountID, table + ":" + ownerID));
+		seg.lastAccess = System.currentTimeMillis();
+		return seg;
+	}
+
+	/**
+	 * Drops all cached data of an account and its saves
+	 * 
+	 * @param accountID Account ID
+	 */
+	public void evictAccount(String accountID) {
+		ConcurrentHashMap<String, CacheSegment> segs = accounts.remove(accountID);
+		if (segs != null) {
+			for (CacheSegment seg : segs.values())
+				seg.evict();
+		}
+	}
+
+	/**
+	 * Retrieves the amount of cache hits
+	 * 
+	 * @return Hit count
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Retrieves the amount of cache misses
+	 * 
+	 * @return Miss count
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Retrieves the amount of evicted entries
+	 * 
+	 * @return Eviction count
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * Retrieves the estimated size of all cached data
+	 * 
+	 * @return Size in bytes
+	 */
+	public long getSize() {
+		return size.get();
+	}
+
+	/**
+	 * Retrieves the maximum cache size
+	 * 
+	 * @return Size in bytes
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Retrieves the amount of cached segments
+	 * 
+	 * @return Segment count
+	 */
+	public int getSegmentCount() {
+		int count = 0;
+		for (ConcurrentHashMap<String, CacheSegment> segs : accounts.values())
+			count += segs.size();
+		return count;
+	}
+
+	private void evictIfNeeded() {
+		if (size.get() <= maxSize)
+			return;
+		synchronized (evictionLock) {
+			if (size.get() <= maxSize)
+				return;
+
+			// Sort segments by last access
+			ArrayList<CacheSegment> segs = new ArrayList<CacheSegment>();
+			for (ConcurrentHashMap<String, CacheSegment> accSegs : accounts.values())
+				segs.addAll(accSegs.values());
+			segs.sort(Comparator.comparingLong(t -> t.lastAccess));
+
+			// Evict until 90% of the limit is reached
+			long target = maxSize / 10 * 9;
+			for (CacheSegment seg : segs) {
+				if (size.get() <= target)
+					break;
+				ConcurrentHashMap<String, CacheSegment> accSegs = accounts.get(seg.accountID);
+				if (accSegs != null)
+					accSegs.remove(seg.key, seg);
+				seg.evict();
+			}
+		}
+	}
+
+	private static long estimateSize(JsonElement element) {
+		if (element == null || element.isJsonNull())
+			return 16;
+		if (element.isJsonPrimitive()) {
+			JsonPrimitive prim = element.getAsJsonPrimitive();
+			if (prim.isString())
+				return 56 + prim.getAsString().length() * 2;
+			return 32;
+		}
+		if (element.isJsonArray()) {
+			long res = 40;
+			for (JsonElement ele : (JsonArray) element)
+				res += 8 + estimateSize(ele);
+			return res;
+		}
+		long res = 56;
+		for (Map.Entry<String, JsonElement> ent : ((JsonObject) element).entrySet())
+			res += 80 + ent.getKey().length() * 2 + estimateSize(ent.getValue());
+		return res;
+	}
+
+	/**
+	 * 
+	 * Cache segment holding the data of a single account or save
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	public class CacheSegment {
+
+		private String accountID;
+		private String key;
+		private volatile long lastAccess;
+		private boolean evicted;
+
+		private ConcurrentSkipListMap<String, CachedValue> entries = new ConcurrentSkipListMap<String, CachedValue>();
+		private ArrayList<String> prefetchedRoots = new ArrayList<String>();
+		private long segmentSize;
+
+		private Object loadLock = new Object();
+
+		private CacheSegment(String accountID, String key) {
+			this.accountID = accountID;
+			this.key = key;
+		}
+
+		/**
+		 * Retrieves the lock used to prevent loading the same entries concurrently
+		 * 
+		 * @return Lock object
+		 */
+		public Object getLoadLock() {
+			return loadLock;
+		}
+
+		/**
+		 * Retrieves cached entries
+		 * 
+		 * @param key Entry key
+		 * @return CachedValue instance or null if the entry is not cached
+		 */
+		public CachedValue get(String key) {
+			CachedValue val = peek(key);
+			if (val != null)
+				hits.incrementAndGet();
+			else
+				misses.incrementAndGet();
+			return val;
+		}
+
+		/**
+		 * Retrieves cached entries without counting hits or misses
+		 * 
+		 * @param key Entry key
+		 * @return CachedValue instance or null if the entry is not cached
+		 */
+		public CachedValue peek(String key) {
+			CachedValue val = entries.get(key);
+			if (val == null && isPrefetched(key.contains("/") ? key.substring(0, key.lastIndexOf("/")) : ""))
+				val = MISSING;
+			return val;
+		}
+
+		/**
+		 * Caches entries
+		 * 
+		 * @param key   Entry key
+		 * @param value Entry value (the cache takes ownership of the instance), null
+		 *              if the entry is known not to exist
+		 */
+		public void put(String key, JsonElement value) {
+			synchronized (this) {
+				if (evicted)
+					return;
+				CachedValue val = new CachedValue(value, 64 + key.length() * 2 + estimateSize(value));
+				CachedValue old = entries.put(key, val);
+				long delta = val.size - (old == null ? 0 : old.size);
+				segmentSize += delta;
+				size.addAndGet(delta);
+			}
+			evictIfNeeded();
+		}
+
+		/**
+		 * Removes cached entries
+		 * 
+		 * @param key Entry key
+		 */
+		public void remove(String key) {
+			synchronized (this) {
+				CachedValue old = entries.remove(key);
+				if (old != null && !evicted) {
+					segmentSize -= old.size;
+					size.addAndGet(-old.size);
+				}
+			}
+		}
+
+		/**
+		 * Removes all cached entries of a container and its child containers
+		 * 
+		 * @param container Container path
+		 */
+		public void clearRange(String container) {
+			synchronized (this) {
+				SortedMap<String, CachedValue> range = getRange(container);
+				long removed = 0;
+				for (CachedValue val : range.values())
+					removed += val.size;
+				range.clear();
+				if (!evicted) {
+					segmentSize -= removed;
+					size.addAndGet(-removed);
+				}
+			}
+		}
+
+		/**
+		 * Replaces all cached entries of a container and its child containers and
+		 * marks the container as prefetched
+		 * 
+		 * @param container Container path
+		 * @param values    New container entries
+		 */
+		public void replaceRange(String container, Map<String, JsonElement> values) {
+			synchronized (this) {
+				if (evicted)
+					return;
+				clearRange(container);
+				long added = 0;
+				for (Map.Entry<String, JsonElement> ent : values.entrySet()) {
+					CachedValue val = new CachedValue(ent.getValue(),
+							64 + ent.getKey().length() * 2 + estimateSize(ent.getValue()));
+					entries.put(ent.getKey(), val);
+					added += val.size;
+				}
+				segmentSize += added;
+				size.addAndGet(added);
+				synchronized (prefetchedRoots) {
+					prefetchedRoots.add(container);
+				}
+			}
+			evictIfNeeded();
+		}
+
+		/**
+		 * Checks if a container has been prefetched, if so all its entries are
+		 * present in the cache
+		 * 
+		 * @param container Container path
+		 * @return True if prefetched, false otherwise
+		 */
+		public boolean isPrefetched(String container) {
+			synchronized (prefetchedRoots) {
+				for (String root : prefetchedRoots) {
+					if (root.isEmpty() || container.equals(root) || container.startsWith(root + "/"))
+						return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Retrieves the cached entries directly inside a container
+		 * 
+		 * @param container Container path
+		 * @return List of entry names and values
+		 */
+		public ArrayList<Map.Entry<String, JsonElement>> getEntries(String container) {
+			ArrayList<Map.Entry<String, JsonElement>> res = new ArrayList<Map.Entry<String, JsonElement>>();
+			int prefixLength = container.isEmpty() ? 0 : container.length() + 1;
+			for (Map.Entry<String, CachedValue> ent : getRange(container).entrySet()) {
+				String key = ent.getKey().substring(prefixLength);
+				if (ent.getValue().value != null && !key.contains("/"))
+					res.add(Map.entry(key, ent.getValue().value));
+			}
+			return res;
+		}
+
+		/**
+		 * Retrieves the cached child containers of a container
+		 * 
+		 * @param container Container path
+		 * @return List of child container names
+		 */
+		public ArrayList<String> getChildContainers(String container) {
+			ArrayList<String> res = new ArrayList<String>();
+			int prefixLength = container.isEmpty() ? 0 : container.length() + 1;
+			for (Map.Entry<String, CachedValue> ent : getRange(container).entrySet()) {
+				if (ent.getValue().value == null)
+					continue;
+
+				// Only entries directly inside the child container count
+				String key = ent.getKey().substring(prefixLength);
+				int i = key.indexOf("/");
+				if (i == -1 || key.indexOf("/", i + 1) != -1)
+					continue;
+				String name = key.substring(0, i);
+				if (res.isEmpty() || !res.get(res.size() - 1).equals(name))
+					res.add(name);
+			}
+			return res;
+		}
+
+		private SortedMap<String, CachedValue> getRange(String container) {
+			if (container.isEmpty())
+				return entries;
+			return entries.subMap(container + "/", container + "/" + Character.MAX_VALUE);
+		}
+
+		private void evict() {
+			synchronized (this) {
+				if (evicted)
+					return;
+				evicted = true;
+				size.addAndGet(-segmentSize);
+				evictions.addAndGet(entries.size());
+				segmentSize = 0;
+				entries.clear();
+				synchronized (prefetchedRoots) {
+					prefetchedRoots.clear();
+				}
+			}
+		}
+
+	}
+
+}
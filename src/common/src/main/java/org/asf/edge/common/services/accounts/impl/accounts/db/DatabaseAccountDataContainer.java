@@ -1,11 +1,14 @@
 package org.asf.edge.common.services.accounts.impl.accounts.db;
 
 import java.io.IOException;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -15,6 +18,9 @@ import org.asf.edge.common.services.accounts.AccountDataContainer;
 import org.asf.edge.common.services.accounts.AccountObject;
 import org.asf.edge.common.services.accounts.AccountSaveContainer;
 import org.asf.edge.common.services.accounts.impl.DatabaseAccountManager;
+import org.asf.edge.common.services.accounts.impl.accounts.db.AccountDataCache.CacheSegment;
+import org.asf.edge.common.services.accounts.impl.accounts.db.AccountDataCache.CachedValue;
+import org.asf.edge.common.services.accounts.impl.accounts.db.DatabaseWriteBehindBuffer.PendingWrite;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
@@ -27,8 +33,6 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 
 	private Logger logger = LogManager.getLogger("AccountManager");
 
-	private HashMap<String, JsonElement> dataCache = new HashMap<String, JsonElement>();
-
 	public DatabaseAccountDataContainer(AccountObject account, String id, DatabaseAccountManager manager) {
 		this.account = account;
 		this.id = id;
@@ -39,23 +43,24 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 	protected JsonElement get(String key) throws IOException {
 		String keyF = key;
 
+		// Check pending writes
+		PendingWrite pending = mgr.getWriteBehindBuffer().getPending("ACCOUNTWIDEPLAYERDATA_V2", id, key);
+		if (pending != null)
+			return pending.getValue().deepCopy();
+
 		// Check caching
 		if (!key.startsWith("accountdata/")) {
 			// Get
-			while (true) {
-				try {
-					if (dataCache.containsKey(key))
-						return dataCache.get(key) == null ? null : dataCache.get(key).deepCopy();
-					break;
-				} catch (ConcurrentModificationException e) {
-				}
-			}
+			CachedValue cached = getCache().get(key);
+			if (cached != null)
+				return cached.getValue() == null ? null : cached.getValue().deepCopy();
 		}
 		// Add if needed
-		synchronized (dataCache) {
+		synchronized (getCache().getLoadLock()) {
 			if (!key.startsWith("accountdata/")) {
-				if (dataCache.containsKey(key))
-					return dataCache.get(key) == null ? null : dataCache.get(key).deepCopy();
+				CachedValue cached = getCache().peek(key);
+				if (cached != null)
+					return cached.getValue() == null ? null : cached.getValue().deepCopy();
 			}
 			try {
 				DatabaseRequest req = mgr.createRequest();
@@ -85,21 +90,21 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 					if (!res.next()) {
 						res.close();
 						statement.close();
-						dataCache.put(keyF, null);
+						getCache().put(keyF, null);
 						return null;
 					}
 					String data = res.getString("DATA");
 					if (data == null) {
 						res.close();
 						statement.close();
-						dataCache.put(keyF, null);
+						getCache().put(keyF, null);
 						return null;
 					}
 					res.close();
 					statement.close();
 					JsonElement r = JsonParser.parseString(data);
 					if (!keyF.startsWith("accountdata/"))
-						dataCache.put(keyF, r);
+						getCache().put(keyF, r.deepCopy());
 					return r;
 				} finally {
 					req.close();
@@ -115,6 +120,14 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 	@Override
 	protected void set(String key, JsonElement value) throws IOException {
 		String keyF = key;
+
+		// Check write-behind
+		DatabaseWriteBehindBuffer writeBehind = mgr.getWriteBehindBuffer();
+		if (writeBehind.isEnabled() && !key.startsWith("accountdata/")) {
+			queueWrite(writeBehind, key, value, false);
+			return;
+		}
+
 		try {
 			DatabaseRequest req = mgr.createRequest();
 			try {
@@ -143,7 +156,7 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 				statement.execute();
 				statement.close();
 				if (!keyF.startsWith("accountdata/"))
-					dataCache.put(keyF, value);
+					getCache().put(keyF, value.deepCopy());
 			} finally {
 				req.close();
 			}
@@ -157,6 +170,14 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 	@Override
 	protected void create(String key, String root, JsonElement value) throws IOException {
 		String keyF = key;
+
+		// Check write-behind
+		DatabaseWriteBehindBuffer writeBehind = mgr.getWriteBehindBuffer();
+		if (writeBehind.isEnabled() && !key.startsWith("accountdata/")) {
+			queueWrite(writeBehind, key, value, true);
+			return;
+		}
+
 		try {
 			DatabaseRequest req = mgr.createRequest();
 			try {
@@ -184,7 +205,7 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 				statement.execute();
 				statement.close();
 				if (!keyF.startsWith("accountdata/"))
-					dataCache.put(keyF, value);
+					getCache().put(keyF, value.deepCopy());
 			} finally {
 				req.close();
 			}
@@ -198,15 +219,12 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 	@Override
 	protected boolean exists(String key) throws IOException {
 		String keyF = key;
+		if (mgr.getWriteBehindBuffer().getPending("ACCOUNTWIDEPLAYERDATA_V2", id, key) != null)
+			return true;
 		if (!key.startsWith("accountdata/")) {
-			while (true) {
-				try {
-					if (dataCache.containsKey(key))
-						return dataCache.get(key) != null;
-					break;
-				} catch (ConcurrentModificationException e) {
-				}
-			}
+			CachedValue cached = getCache().get(key);
+			if (cached != null)
+				return cached.getValue() != null;
 		}
 
 		try {
@@ -237,11 +255,11 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 				boolean r = res.next();
 				if (!keyF.startsWith("accountdata/")) {
 					if (!r)
-						dataCache.put(keyF, null);
+						getCache().put(keyF, null);
 					else {
 						// Check
 						if (res.getString("DATA") == null)
-							dataCache.put(keyF, null);
+							getCache().put(keyF, null);
 					}
 				}
 				res.close();
@@ -260,6 +278,7 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 	@Override
 	protected void delete(String key) throws IOException {
 		String keyF = key;
+		mgr.getWriteBehindBuffer().discard("ACCOUNTWIDEPLAYERDATA_V2", id, key);
 		try {
 			DatabaseRequest req = mgr.createRequest();
 			try {
@@ -287,7 +306,7 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 				statement.execute();
 				statement.close();
 				if (!keyF.startsWith("accountdata/"))
-					dataCache.remove(keyF);
+					getCache().remove(keyF);
 			} finally {
 				req.close();
 			}
@@ -300,6 +319,17 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 
 	@Override
 	protected String[] getEntryKeys(String key) throws IOException {
+		// Flush pending writes
+		mgr.getWriteBehindBuffer().flush("ACCOUNTWIDEPLAYERDATA_V2", id);
+
+		// Check prefetched data
+		if (isPrefetched(key)) {
+			ArrayList<String> keys = new ArrayList<String>();
+			for (Map.Entry<String, JsonElement> ent : getCache().getEntries(key))
+				keys.add(ent.getKey());
+			return keys.toArray(t -> new String[t]);
+		}
+
 		// Parse key
 		String parent = key;
 		String parentContainer = "";
@@ -350,6 +380,13 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 
 	@Override
 	protected String[] getChildContainers(String key) throws IOException {
+		// Flush pending writes
+		mgr.getWriteBehindBuffer().flush("ACCOUNTWIDEPLAYERDATA_V2", id);
+
+		// Check prefetched data
+		if (!key.isEmpty() && isPrefetched(key))
+			return getCache().getChildContainers(key).toArray(t -> new String[t]);
+
 		// Prepare
 		ArrayList<String> containers = new ArrayList<String>();
 
@@ -390,6 +427,9 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 
 	@Override
 	protected void deleteContainer(String root) throws IOException {
+		// Flush pending writes
+		mgr.getWriteBehindBuffer().flush("ACCOUNTWIDEPLAYERDATA_V2", id);
+
 		// Parse key
 		String parent = root;
 		String parentContainer = "";
@@ -400,12 +440,8 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 			parent = parent.substring(parent.lastIndexOf("/") + 1);
 		}
 		try {
-			// Delete entries
-			for (String ent : getEntryKeys()) {
-				String k = (root.isEmpty() ? "" : root + "/") + ent;
-				if (dataCache.containsKey(k))
-					dataCache.remove(k);
-			}
+			// Delete cached entries
+			getCache().clearRange(root);
 
 			// Delete child containers
 			for (String ch : getChildContainers(root)) {
@@ -433,6 +469,114 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 		}
 	}
 
+	private void queueWrite(DatabaseWriteBehindBuffer writeBehind, String key, JsonElement value, boolean insert)
+			throws IOException {
+		String keyF = key;
+
+		// Parse key
+		String parent = "";
+		String parentContainer = "";
+		if (key.contains("/")) {
+			parent = key.substring(0, key.lastIndexOf("/"));
+			key = key.substring(key.lastIndexOf("/") + 1);
+
+			// Check for inner parent
+			if (parent.contains("/")) {
+				parentContainer = parent.substring(0, parent.lastIndexOf("/"));
+				parent = parent.substring(parent.lastIndexOf("/") + 1);
+			}
+		}
+
+		// Queue write
+		writeBehind.queue("ACCOUNTWIDEPLAYERDATA_V2", "ACCID", id, id, keyF, key, parent, parentContainer, value,
+				insert);
+		getCache().put(keyF, value.deepCopy());
+	}
+
+	@Override
+	protected void prefetch(String root) throws IOException {
+		if (root.equals("accountdata") || root.startsWith("accountdata/"))
+			return; // Not cached
+		if (isPrefetched(root))
+			return;
+
+		// Flush pending writes
+		mgr.getWriteBehindBuffer().flush("ACCOUNTWIDEPLAYERDATA_V2", id);
+
+		CacheSegment cache = getCache();
+		synchronized (cache.getLoadLock()) {
+			try {
+				DatabaseRequest req = mgr.createRequest();
+				try {
+					// Create prepared statement
+					PreparedStatement statement;
+					if (root.isEmpty()) {
+						statement = req.prepareStatement(
+								"SELECT DATAKEY, PARENT, PARENTCONTAINER, DATA FROM ACCOUNTWIDEPLAYERDATA_V2 WHERE ACCID = ?");
+						statement.setString(1, id);
+					} else {
+						// Parse key
+						String parent = root;
+						String parentContainer = "";
+
+						// Check for inner parent
+						if (parent.contains("/")) {
+							parentContainer = parent.substring(0, parent.lastIndexOf("/"));
+							parent = parent.substring(parent.lastIndexOf("/") + 1);
+						}
+
+						// Select the container and everything below it
+						statement = req.prepareStatement(
+								"SELECT DATAKEY, PARENT, PARENTCONTAINER, DATA FROM ACCOUNTWIDEPLAYERDATA_V2 WHERE ACCID = ? AND ((PARENT = ? AND PARENTCONTAINER = ?) OR PARENTCONTAINER = ? OR PARENTCONTAINER LIKE ?)");
+						statement.setString(1, id);
+						statement.setString(2, parent);
+						statement.setString(3, parentContainer);
+						statement.setString(4, root);
+						statement.setString(5, root + "/%");
+					}
+					ResultSet res = statement.executeQuery();
+
+					// Load entries
+					HashMap<String, JsonElement> entries = new HashMap<String, JsonElement>();
+					String prefix = root.isEmpty() ? "" : root + "/";
+					while (res.next()) {
+						String parentContainer = res.getString("PARENTCONTAINER");
+						String parent = res.getString("PARENT");
+						String key = (parentContainer.isEmpty() ? "" : parentContainer + "/")
+								+ (parent.isEmpty() ? "" : parent + "/") + res.getString("DATAKEY");
+
+						// LIKE wildcards in container names can match too much, filter them
+						if (!key.startsWith(prefix) || key.startsWith("accountdata/"))
+							continue;
+						String data = res.getString("DATA");
+						entries.put(key, data == null ? null : JsonParser.parseString(data));
+					}
+					res.close();
+					statement.close();
+
+					// Replace cached entries
+					cache.replaceRange(root, entries);
+				} finally {
+					req.close();
+				}
+			} catch (SQLException e) {
+				logger.error("Failed to execute database query request while trying to prefetch data container '"
+						+ (root.isEmpty() ? "<root>" : root) + "' of ID '" + id + "'", e);
+				throw new IOException("SQL error", e);
+			}
+		}
+	}
+
+	private CacheSegment getCache() {
+		return mgr.getDataCache().getSegment("ACCOUNTWIDEPLAYERDATA_V2", id, id);
+	}
+
+	private boolean isPrefetched(String container) {
+		if (container.equals("accountdata") || container.startsWith("accountdata/"))
+			return false;
+		return getCache().isPrefetched(container);
+	}
+
 	@Override
 	public AccountObject getAccount() {
 		return account;
@@ -445,7 +589,18 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 
 	@Override
 	protected JsonElement find(BiFunction<String, JsonElement, Boolean> function, String root) throws IOException {
-		JsonElement resO = null;
+		// Flush pending writes
+		mgr.getWriteBehindBuffer().flush("ACCOUNTWIDEPLAYERDATA_V2", id);
+
+		// Check prefetched data
+		if (isPrefetched(root)) {
+			for (Map.Entry<String, JsonElement> ent : getCache().getEntries(root)) {
+				JsonElement d = ent.getValue().deepCopy();
+				if (function.apply(ent.getKey(), d))
+					return d;
+			}
+			return null;
+		}
 
 		// Parse key
 		String parent = root;
@@ -457,8 +612,9 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 			parent = parent.substring(parent.lastIndexOf("/") + 1);
 		}
 
-		// Prepare
-		ArrayList<String> keys = new ArrayList<String>();
+		// Prepare, rows are read before running the function so nested requests made
+		// by it do not wait for a second connection
+		LinkedHashMap<String, String> entries = new LinkedHashMap<String, String>();
 
 		// Find all keys
 		try {
@@ -474,19 +630,10 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 
 				// Find results
 				while (res.next()) {
-					// Add container
+					// Add entry
 					String cont = res.getString("DATAKEY");
-					String data = res.getString("DATA");
-					if (!cont.isEmpty() && !keys.contains(cont)) {
-						keys.add(cont);
-
-						// Run function
-						JsonElement d = JsonParser.parseString(data);
-						if (function.apply(cont, d)) {
-							resO = d;
-							break;
-						}
-					}
+					if (!cont.isEmpty() && !entries.containsKey(cont))
+						entries.put(cont, res.getString("DATA"));
 				}
 				res.close();
 				statement.close();
@@ -501,12 +648,29 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 			throw new IOException("SQL error", e);
 		}
 
-		// Return
-		return resO;
+		// Run function
+		for (Map.Entry<String, String> ent : entries.entrySet()) {
+			JsonElement d = JsonParser.parseString(ent.getValue());
+			if (function.apply(ent.getKey(), d))
+				return d;
+		}
+		return null;
 	}
 
 	@Override
 	protected void runFor(BiFunction<String, JsonElement, Boolean> function, String root) throws IOException {
+		// Flush pending writes
+		mgr.getWriteBehindBuffer().flush("ACCOUNTWIDEPLAYERDATA_V2", id);
+
+		// Check prefetched data
+		if (isPrefetched(root)) {
+			for (Map.Entry<String, JsonElement> ent : getCache().getEntries(root)) {
+				if (!function.apply(ent.getKey(), ent.getValue().deepCopy()))
+					break;
+			}
+			return;
+		}
+
 		// Parse key
 		String parent = root;
 		String parentContainer = "";
@@ -517,8 +681,9 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 			parent = parent.substring(parent.lastIndexOf("/") + 1);
 		}
 
-		// Prepare
-		ArrayList<String> keys = new ArrayList<String>();
+		// Prepare, rows are read before running the function so nested requests made
+		// by it do not wait for a second connection
+		LinkedHashMap<String, String> entries = new LinkedHashMap<String, String>();
 
 		// Find all keys
 		try {
@@ -534,17 +699,10 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 
 				// Find results
 				while (res.next()) {
-					// Add container
+					// Add entry
 					String cont = res.getString("DATAKEY");
-					String data = res.getString("DATA");
-					if (!cont.isEmpty() && !keys.contains(cont)) {
-						keys.add(cont);
-
-						// Run function
-						JsonElement d = JsonParser.parseString(data);
-						if (!function.apply(cont, d))
-							break;
-					}
+					if (!cont.isEmpty() && !entries.containsKey(cont))
+						entries.put(cont, res.getString("DATA"));
 				}
 				res.close();
 				statement.close();
@@ -558,12 +716,31 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 					e);
 			throw new IOException("SQL error", e);
 		}
+
+		// Run function
+		for (Map.Entry<String, String> ent : entries.entrySet()) {
+			if (!function.apply(ent.getKey(), JsonParser.parseString(ent.getValue())))
+				break;
+		}
 	}
 
 	@Override
 	protected void runForChildren(Function<String, Boolean> function, String root) throws IOException {
-		// Prepare
-		ArrayList<String> containers = new ArrayList<String>();
+		// Flush pending writes
+		mgr.getWriteBehindBuffer().flush("ACCOUNTWIDEPLAYERDATA_V2", id);
+
+		// Check prefetched data
+		if (!root.isEmpty() && isPrefetched(root)) {
+			for (String cont : getCache().getChildContainers(root)) {
+				if (!function.apply(cont))
+					break;
+			}
+			return;
+		}
+
+		// Prepare, rows are read before running the function so nested requests made
+		// by it do not wait for a second connection
+		LinkedHashSet<String> containers = new LinkedHashSet<String>();
 
 		// Find all containers
 		try {
@@ -580,13 +757,8 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 				while (res.next()) {
 					// Add container
 					String cont = res.getString("PARENT");
-					if (!cont.isEmpty() && !containers.contains(cont)) {
+					if (!cont.isEmpty())
 						containers.add(cont);
-
-						// Run function
-						if (!function.apply(cont))
-							break;
-					}
 				}
 				res.close();
 				statement.close();
@@ -600,6 +772,12 @@ public class DatabaseAccountDataContainer extends AccountDataContainer {
 					e);
 			throw new IOException("SQL error", e);
 		}
+
+		// Run function
+		for (String cont : containers) {
+			if (!function.apply(cont))
+				break;
+		}
 	}
 
 }
@@ -2,6 +2,8 @@ package org.asf.edge.common.services.accounts.impl.accounts.db;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
 
 /**
  * 
@@ -14,10 +16,23 @@ public abstract class DatabaseRequest {
 
 	public abstract PreparedStatement prepareStatement(String query) throws SQLException;
 
+	public Statement createStatement() throws SQLException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
 	public void setDataObject(int i, String obj, PreparedStatement st) throws SQLException {
 		st.setString(i, obj);
 	}
 
+	public void beginTransaction() throws SQLException {
+	}
+
+	public void commitTransaction() throws SQLException {
+	}
+
+	public void rollbackTransaction() throws SQLException {
+	}
+
 	public abstract void close() throws SQLException;
 
 }
@@ -1,11 +1,14 @@
 package org.asf.edge.common.services.accounts.impl.accounts.db;
 
 import java.io.IOException;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -15,6 +18,9 @@ import org.asf.edge.common.services.accounts.AccountDataContainer;
 import org.asf.edge.common.services.accounts.AccountObject;
 import org.asf.edge.common.services.accounts.AccountSaveContainer;
 import org.asf.edge.common.services.accounts.impl.DatabaseAccountManager;
+import org.asf.edge.common.services.accounts.impl.accounts.db.AccountDataCache.CacheSegment;
+import org.asf.edge.common.services.accounts.impl.accounts.db.AccountDataCache.CachedValue;
+import org.asf.edge.common.services.accounts.impl.accounts.db.DatabaseWriteBehindBuffer.PendingWrite;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
@@ -28,8 +34,6 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 	private Logger logger = LogManager.getLogger("AccountManager");
 	private DatabaseAccountManager manager;
 
-	private HashMap<String, JsonElement> dataCache = new HashMap<String, JsonElement>();
-
 	public DatabaseSaveDataContainer(AccountObject account, AccountSaveContainer save, DatabaseAccountManager manager) {
 		this.save = save;
 		this.id = save.getSaveID();
@@ -40,19 +44,22 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 	@Override
 	protected JsonElement get(String key) throws IOException {
 		String keyF = key;
-		while (true) {
-			try {
-				if (dataCache.containsKey(key))
-					return dataCache.get(key) == null ? null : dataCache.get(key).deepCopy();
-				break;
-			} catch (ConcurrentModificationException e) {
-			}
-		}
+
+		// Check pending writes
+		PendingWrite pending = manager.getWriteBehindBuffer().getPending("SAVESPECIFICPLAYERDATA_V2", id, key);
+		if (pending != null)
+			return pending.getValue().deepCopy();
+
+		// Check caching
+		CachedValue cached = getCache().get(key);
+		if (cached != null)
+			return cached.getValue() == null ? null : cached.getValue().deepCopy();
 
 		// Add if needed
-		synchronized (dataCache) {
-			if (dataCache.containsKey(key))
-				return dataCache.get(key) == null ? null : dataCache.get(key).deepCopy();
+		synchronized (getCache().getLoadLock()) {
+			cached = getCache().peek(key);
+			if (cached != null)
+				return cached.getValue() == null ? null : cached.getValue().deepCopy();
 			try {
 				DatabaseRequest req = manager.createRequest();
 				try {
@@ -81,20 +88,20 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 					if (!res.next()) {
 						res.close();
 						statement.close();
-						dataCache.put(keyF, null);
+						getCache().put(keyF, null);
 						return null;
 					}
 					String data = res.getString("DATA");
 					if (data == null) {
 						res.close();
 						statement.close();
-						dataCache.put(keyF, null);
+						getCache().put(keyF, null);
 						return null;
 					}
 					res.close();
 					statement.close();
 					JsonElement r = JsonParser.parseString(data);
-					dataCache.put(keyF, r);
+					getCache().put(keyF, r.deepCopy());
 					return r;
 				} finally {
 					req.close();
@@ -110,6 +117,14 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 	@Override
 	protected void set(String key, JsonElement value) throws IOException {
 		String keyF = key;
+
+		// Check write-behind
+		DatabaseWriteBehindBuffer writeBehind = manager.getWriteBehindBuffer();
+		if (writeBehind.isEnabled()) {
+			queueWrite(writeBehind, key, value, false);
+			return;
+		}
+
 		try {
 			DatabaseRequest req = manager.createRequest();
 			try {
@@ -137,7 +152,7 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 				statement.setString(5, id);
 				statement.execute();
 				statement.close();
-				dataCache.put(keyF, value);
+				getCache().put(keyF, value.deepCopy());
 			} finally {
 				req.close();
 			}
@@ -151,6 +166,14 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 	@Override
 	protected void create(String key, String root, JsonElement value) throws IOException {
 		String keyF = key;
+
+		// Check write-behind
+		DatabaseWriteBehindBuffer writeBehind = manager.getWriteBehindBuffer();
+		if (writeBehind.isEnabled()) {
+			queueWrite(writeBehind, key, value, true);
+			return;
+		}
+
 		try {
 			DatabaseRequest req = manager.createRequest();
 			try {
@@ -177,7 +200,7 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 				req.setDataObject(5, value.toString(), statement);
 				statement.execute();
 				statement.close();
-				dataCache.put(keyF, value);
+				getCache().put(keyF, value.deepCopy());
 			} finally {
 				req.close();
 			}
@@ -191,14 +214,11 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 	@Override
 	protected boolean exists(String key) throws IOException {
 		String keyF = key;
-		while (true) {
-			try {
-				if (dataCache.containsKey(key))
-					return dataCache.get(key) != null;
-				break;
-			} catch (ConcurrentModificationException e) {
-			}
-		}
+		if (manager.getWriteBehindBuffer().getPending("SAVESPECIFICPLAYERDATA_V2", id, key) != null)
+			return true;
+		CachedValue cached = getCache().get(key);
+		if (cached != null)
+			return cached.getValue() != null;
 
 		// Check
 		try {
@@ -228,11 +248,11 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 				ResultSet res = statement.executeQuery();
 				boolean r = res.next();
 				if (!r)
-					dataCache.put(keyF, null);
+					getCache().put(keyF, null);
 				else {
 					// Check
 					if (res.getString("DATA") == null)
-						dataCache.put(keyF, null);
+						getCache().put(keyF, null);
 				}
 				res.close();
 				statement.close();
@@ -250,6 +270,7 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 	@Override
 	protected void delete(String key) throws IOException {
 		String keyF = key;
+		manager.getWriteBehindBuffer().discard("SAVESPECIFICPLAYERDATA_V2", id, key);
 		try {
 			DatabaseRequest req = manager.createRequest();
 			try {
@@ -276,7 +297,7 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 				statement.setString(4, id);
 				statement.execute();
 				statement.close();
-				dataCache.remove(keyF);
+				getCache().remove(keyF);
 			} finally {
 				req.close();
 			}
@@ -289,6 +310,17 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 
 	@Override
 	protected String[] getEntryKeys(String key) throws IOException {
+		// Flush pending writes
+		manager.getWriteBehindBuffer().flush("SAVESPECIFICPLAYERDATA_V2", id);
+
+		// Check prefetched data
+		if (getCache().isPrefetched(key)) {
+			ArrayList<String> keys = new ArrayList<String>();
+			for (Map.Entry<String, JsonElement> ent : getCache().getEntries(key))
+				keys.add(ent.getKey());
+			return keys.toArray(t -> new String[t]);
+		}
+
 		// Parse key
 		String parent = key;
 		String parentContainer = "";
@@ -339,6 +371,13 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 
 	@Override
 	protected String[] getChildContainers(String key) throws IOException {
+		// Flush pending writes
+		manager.getWriteBehindBuffer().flush("SAVESPECIFICPLAYERDATA_V2", id);
+
+		// Check prefetched data
+		if (getCache().isPrefetched(key))
+			return getCache().getChildContainers(key).toArray(t -> new String[t]);
+
 		// Prepare
 		ArrayList<String> containers = new ArrayList<String>();
 
@@ -379,6 +418,9 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 
 	@Override
 	protected void deleteContainer(String root) throws IOException {
+		// Flush pending writes
+		manager.getWriteBehindBuffer().flush("SAVESPECIFICPLAYERDATA_V2", id);
+
 		// Parse key
 		String parent = root;
 		String parentContainer = "";
@@ -389,12 +431,8 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 			parent = parent.substring(parent.lastIndexOf("/") + 1);
 		}
 		try {
-			// Delete entries
-			for (String ent : getEntryKeys()) {
-				String k = (root.isEmpty() ? "" : root + "/") + ent;
-				if (dataCache.containsKey(k))
-					dataCache.remove(k);
-			}
+			// Delete cached entries
+			getCache().clearRange(root);
 
 			// Delete child containers
 			for (String ch : getChildContainers(root)) {
@@ -422,6 +460,106 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 		}
 	}
 
+	private void queueWrite(DatabaseWriteBehindBuffer writeBehind, String key, JsonElement value, boolean insert)
+			throws IOException {
+		String keyF = key;
+
+		// Parse key
+		String parent = "";
+		String parentContainer = "";
+		if (key.contains("/")) {
+			parent = key.substring(0, key.lastIndexOf("/"));
+			key = key.substring(key.lastIndexOf("/") + 1);
+
+			// Check for inner parent
+			if (parent.contains("/")) {
+				parentContainer = parent.substring(0, parent.lastIndexOf("/"));
+				parent = parent.substring(parent.lastIndexOf("/") + 1);
+			}
+		}
+
+		// Queue write
+		writeBehind.queue("SAVESPECIFICPLAYERDATA_V2", "SVID", id, account.getAccountID(), keyF, key, parent, parentContainer, value,
+				insert);
+		getCache().put(keyF, value.deepCopy());
+	}
+
+	@Override
+	protected void prefetch(String root) throws IOException {
+		if (getCache().isPrefetched(root))
+			return;
+
+		// Flush pending writes
+		manager.getWriteBehindBuffer().flush("SAVESPECIFICPLAYERDATA_V2", id);
+
+		CacheSegment cache = getCache();
+		synchronized (cache.getLoadLock()) {
+			try {
+				DatabaseRequest req = manager.createRequest();
+				try {
+					// Create prepared statement
+					PreparedStatement statement;
+					if (root.isEmpty()) {
+						statement = req.prepareStatement(
+								"SELECT DATAKEY, PARENT, PARENTCONTAINER, DATA FROM SAVESPECIFICPLAYERDATA_V2 WHERE SVID = ?");
+						statement.setString(1, id);
+					} else {
+						// Parse key
+						String parent = root;
+						String parentContainer = "";
+
+						// Check for inner parent
+						if (parent.contains("/")) {
+							parentContainer = parent.substring(0, parent.lastIndexOf("/"));
+							parent = parent.substring(parent.lastIndexOf("/") + 1);
+						}
+
+						// Select the container and everything below it
+						statement = req.prepareStatement(
+								"SELECT DATAKEY, PARENT, PARENTCONTAINER, DATA FROM SAVESPECIFICPLAYERDATA_V2 WHERE SVID = ? AND ((PARENT = ? AND PARENTCONTAINER = ?) OR PARENTCONTAINER = ? OR PARENTCONTAINER LIKE ?)");
+						statement.setString(1, id);
+						statement.setString(2, parent);
+						statement.setString(3, parentContainer);
+						statement.setString(4, root);
+						statement.setString(5, root + "/%");
+					}
+					ResultSet res = statement.executeQuery();
+
+					// Load entries
+					HashMap<String, JsonElement> entries = new HashMap<String, JsonElement>();
+					String prefix = root.isEmpty() ? "" : root + "/";
+					while (res.next()) {
+						String parentContainer = res.getString("PARENTCONTAINER");
+						String parent = res.getString("PARENT");
+						String key = (parentContainer.isEmpty() ? "" : parentContainer + "/")
+								+ (parent.isEmpty() ? "" : parent + "/") + res.getString("DATAKEY");
+
+						// LIKE wildcards in container names can match too much, filter them
+						if (!key.startsWith(prefix))
+							continue;
+						String data = res.getString("DATA");
+						entries.put(key, data == null ? null : JsonParser.parseString(data));
+					}
+					res.close();
+					statement.close();
+
+					// Replace cached entries
+					cache.replaceRange(root, entries);
+				} finally {
+					req.close();
+				}
+			} catch (SQLException e) {
+				logger.error("Failed to execute database query request while trying to prefetch data container '"
+						+ (root.isEmpty() ? "<root>" : root) + "' of ID '" + id + "'", e);
+				throw new IOException("SQL error", e);
+			}
+		}
+	}
+
+	private CacheSegment getCache() {
+		return manager.getDataCache().getSegment("SAVESPECIFICPLAYERDATA_V2", id, account.getAccountID());
+	}
+
 	@Override
 	public AccountObject getAccount() {
 		return account;
@@ -434,7 +572,18 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 
 	@Override
 	protected JsonElement find(BiFunction<String, JsonElement, Boolean> function, String root) throws IOException {
-		JsonElement resO = null;
+		// Flush pending writes
+		manager.getWriteBehindBuffer().flush("SAVESPECIFICPLAYERDATA_V2", id);
+
+		// Check prefetched data
+		if (getCache().isPrefetched(root)) {
+			for (Map.Entry<String, JsonElement> ent : getCache().getEntries(root)) {
+				JsonElement d = ent.getValue().deepCopy();
+				if (function.apply(ent.getKey(), d))
+					return d;
+			}
+			return null;
+		}
 
 		// Parse key
 		String parent = root;
@@ -446,8 +595,9 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 			parent = parent.substring(parent.lastIndexOf("/") + 1);
 		}
 
-		// Prepare
-		ArrayList<String> keys = new ArrayList<String>();
+		// Prepare, rows are read before running the function so nested requests made
+		// by it do not wait for a second connection
+		LinkedHashMap<String, String> entries = new LinkedHashMap<String, String>();
 
 		// Find all keys
 		try {
@@ -463,19 +613,10 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 
 				// Find results
 				while (res.next()) {
-					// Add container
+					// Add entry
 					String cont = res.getString("DATAKEY");
-					String data = res.getString("DATA");
-					if (!cont.isEmpty() && !keys.contains(cont)) {
-						keys.add(cont);
-
-						// Run function
-						JsonElement d = JsonParser.parseString(data);
-						if (function.apply(cont, d)) {
-							resO = d;
-							break;
-						}
-					}
+					if (!cont.isEmpty() && !entries.containsKey(cont))
+						entries.put(cont, res.getString("DATA"));
 				}
 				res.close();
 				statement.close();
@@ -490,12 +631,29 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 			throw new IOException("SQL error", e);
 		}
 
-		// Return
-		return resO;
+		// Run function
+		for (Map.Entry<String, String> ent : entries.entrySet()) {
+			JsonElement d = JsonParser.parseString(ent.getValue());
+			if (function.apply(ent.getKey(), d))
+				return d;
+		}
+		return null;
 	}
 
 	@Override
 	protected void runFor(BiFunction<String, JsonElement, Boolean> function, String root) throws IOException {
+		// Flush pending writes
+		manager.getWriteBehindBuffer().flush("SAVESPECIFICPLAYERDATA_V2", id);
+
+		// Check prefetched data
+		if (getCache().isPrefetched(root)) {
+			for (Map.Entry<String, JsonElement> ent : getCache().getEntries(root)) {
+				if (!function.apply(ent.getKey(), ent.getValue().deepCopy()))
+					break;
+			}
+			return;
+		}
+
 		// Parse key
 		String parent = root;
 		String parentContainer = "";
@@ -506,8 +664,9 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 			parent = parent.substring(parent.lastIndexOf("/") + 1);
 		}
 
-		// Prepare
-		ArrayList<String> keys = new ArrayList<String>();
+		// Prepare, rows are read before running the function so nested requests made
+		// by it do not wait for a second connection
+		LinkedHashMap<String, String> entries = new LinkedHashMap<String, String>();
 
 		// Find all keys
 		try {
@@ -523,17 +682,10 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 
 				// Find results
 				while (res.next()) {
-					// Add container
+					// Add entry
 					String cont = res.getString("DATAKEY");
-					String data = res.getString("DATA");
-					if (!cont.isEmpty() && !keys.contains(cont)) {
-						keys.add(cont);
-
-						// Run function
-						JsonElement d = JsonParser.parseString(data);
-						if (!function.apply(cont, d))
-							break;
-					}
+					if (!cont.isEmpty() && !entries.containsKey(cont))
+						entries.put(cont, res.getString("DATA"));
 				}
 				res.close();
 				statement.close();
@@ -547,12 +699,31 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 					e);
 			throw new IOException("SQL error", e);
 		}
+
+		// Run function
+		for (Map.Entry<String, String> ent : entries.entrySet()) {
+			if (!function.apply(ent.getKey(), JsonParser.parseString(ent.getValue())))
+				break;
+		}
 	}
 
 	@Override
 	protected void runForChildren(Function<String, Boolean> function, String root) throws IOException {
-		// Prepare
-		ArrayList<String> containers = new ArrayList<String>();
+		// Flush pending writes
+		manager.getWriteBehindBuffer().flush("SAVESPECIFICPLAYERDATA_V2", id);
+
+		// Check prefetched data
+		if (getCache().isPrefetched(root)) {
+			for (String cont : getCache().getChildContainers(root)) {
+				if (!function.apply(cont))
+					break;
+			}
+			return;
+		}
+
+		// Prepare, rows are read before running the function so nested requests made
+		// by it do not wait for a second connection
+		LinkedHashSet<String> containers = new LinkedHashSet<String>();
 
 		// Find all containers
 		try {
@@ -569,13 +740,8 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 				while (res.next()) {
 					// Add container
 					String cont = res.getString("PARENT");
-					if (!cont.isEmpty() && !containers.contains(cont)) {
+					if (!cont.isEmpty())
 						containers.add(cont);
-
-						// Run function
-						if (!function.apply(cont))
-							break;
-					}
 				}
 				res.close();
 				statement.close();
@@ -589,6 +755,12 @@ public class DatabaseSaveDataContainer extends AccountDataContainer {
 					e);
 			throw new IOException("SQL error", e);
 		}
+
+		// Run function
+		for (String cont : containers) {
+			if (!function.apply(cont))
+				break;
+		}
 	}
 
 }
@@ -0,0 +1,408 @@
+package org.asf.edge.common.services.accounts.impl.accounts.db;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.asf.edge.common.services.accounts.impl.DatabaseAccountManager;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * 
+ * Write-behind buffer for database account and save data containers, coalesces
+ * entry writes per account or save and flushes them in a single batched
+ * transaction
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class DatabaseWriteBehindBuffer {
+
+	private static ThreadLocal<HashSet<DirtyContainer>> threadContainers = new ThreadLocal<HashSet<DirtyContainer>>();
+
+	private DatabaseAccountManager manager;
+	private Logger logger = LogManager.getLogger("AccountManager");
+
+	private boolean enabled;
+	private long flushInterval;
+	private int maxDirtyEntries;
+	private int maxFlushRetries;
+
+	private ConcurrentHashMap<String, DirtyContainer> containers = new ConcurrentHashMap<String, DirtyContainer>();
+
+	/**
+	 * 
+	 * Pending entry write
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	public static class PendingWrite {
+		private String dataKey;
+		private String parent;
+		private String parentContainer;
+		private String data;
+		private JsonElement value;
+		private boolean insert;
+
+		/**
+		 * Retrieves the pending value
+		 * 
+		 * @return JsonElement instance
+		 */
+		public JsonElement getValue() {
+			return value;
+		}
+	}
+
+	private class DirtyContainer {
+		public String table;
+		public String idColumn;
+		public String ownerID;
+		public String accountID;
+		public boolean removed;
+		public volatile int failures;
+		public volatile long nextAttempt;
+		public Object flushLock = new Object();
+		public LinkedHashMap<String, PendingWrite> writes = new LinkedHashMap<String, PendingWrite>();
+
+		public DatabaseWriteBehindBuffer getBuffer() {
+			return DatabaseWriteBehindBuffer.this;
+		}
+	}
+
+	/**
+	 * Creates the write-behind configuration block with its default settings
+	 * 
+	 * @return JsonObject instance
+	 */
+	public static JsonObject createDefaultConfig() {
+		JsonObject writeBehindConfig = new JsonObject();
+		writeBehindConfig.addProperty("enabled", false);
+		writeBehindConfig.addProperty("flushInterval", 250);
+		writeBehindConfig.addProperty("maxDirtyEntries", 256);
+		writeBehindConfig.addProperty("maxFlushRetries", 10);
+		return writeBehindConfig;
+	}
+
+	public DatabaseWriteBehindBuffer(DatabaseAccountManager manager, JsonObject writeBehindConfig) {
+		this.manager = manager;
+
+		// Load config
+		JsonObject defaults = createDefaultConfig();
+		for (String key : defaults.keySet()) {
+			if (!writeBehindConfig.has(key))
+				writeBehindConfig.add(key, defaults.get(key));
+		}
+		enabled = writeBehindConfig.get("enabled").getAsBoolean();
+		flushInterval = Math.max(1, writeBehindConfig.get("flushInterval").getAsLong());
+		maxDirtyEntries = Math.max(1, writeBehindConfig.get("maxDirtyEntries").getAsInt());
+		maxFlushRetries = Math.max(0, writeBehindConfig.get("maxFlushRetries").getAsInt());
+
+		// Start flush thread
+		if (enabled) {
+			Thread th = new Thread(() -> {
+				while (true) {
+					try {
+						Thread.sleep(flushInterval);
+					} catch (InterruptedException e) {
+						break;
+					}
+					flushAll();
+				}
+			}, "Account data write-behind thread");
+			th.setDaemon(true);
+			th.start();
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> flushAll()));
+		}
+	}
+
+	/**
+	 * Starts tracking the writes buffered by the current thread, called at the
+	 * start of requests, writes made outside of requests are left to the flush
+	 * thread
+	 */
+	public static void beginRequest() {
+		if (threadContainers.get() == null)
+			threadContainers.set(new HashSet<DirtyContainer>());
+	}
+
+	/**
+	 * Flushes all writes buffered by the current thread and stops tracking them,
+	 * called at the end of requests
+	 */
+	public static void flushCurrentThread() {
+		HashSet<DirtyContainer> conts = threadContainers.get();
+		if (conts == null)
+			return;
+		threadContainers.remove();
+		for (DirtyContainer cont : conts)
+			cont.getBuffer().tryFlush(cont, false);
+	}
+
+	/**
+	 * Checks if write-behind is enabled
+	 * 
+	 * @return True if enabled, false otherwise
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Retrieves a pending write
+	 * 
+	 * @param table   Table name
+	 * @param ownerID Account or save ID
+	 * @param key     Entry key
+	 * @return PendingWrite instance or null
+	 */
+	public PendingWrite getPending(String table, String ownerID, String key) {
+		if (!enabled)
+			return null;
+		DirtyContainer cont = containers.get(table + ":" + ownerID);
+		if (cont == null)
+			return null;
+		synchronized (cont) {
+			return cont.writes.get(key);
+		}
+	}
+
+	/**
+	 * Queues an entry write
+	 * 
+	 * @param table           Table name
+	 * @param idColumn        Owner ID column name
+	 * @param ownerID         Account or save ID
+	 * @param accountID       Account ID the owner belongs to
+	 * @param key             Full entry key
+	 * @param dataKey         Data key column value
+	 * @param parent          Parent column value
+	 * @param parentContainer Parent container column value
+	 * @param value           Value to write
+	 * @param insert          True if the entry needs to be inserted, false to
+	 *                        update it
+	 * @throws IOException If a forced flush fails
+	 */
+	public void queue(String table, String idColumn, String ownerID, String accountID, String key, String dataKey,
+			String parent, String parentContainer, JsonElement value, boolean insert) throws IOException {
+		// Create write
+		PendingWrite write = new PendingWrite();
+		write.dataKey = dataKey;
+		write.parent = parent;
+		write.parentContainer = parentContainer;
+		write.data = value.toString();
+		write.value = value;
+		write.insert = insert;
+
+		// Add to container
+		DirtyContainer cont;
+		boolean flush;
+		while (true) {
+			cont = containers.computeIfAbsent(table + ":" + ownerID, t -> {
+				DirtyContainer c = new DirtyContainer();
+				c.table = table;
+				c.idColumn = idColumn;
+				c.ownerID = ownerID;
+				c.accountID = accountID;
+				return c;
+			});
+			synchronized (cont) {
+				if (cont.removed)
+					continue;
+
+				// Coalesce with previous write
+				PendingWrite old = cont.writes.remove(key);
+				if (old != null && old.insert)
+					write.insert = true;
+				cont.writes.put(key, write);
+				flush = cont.writes.size() >= maxDirtyEntries;
+			}
+			break;
+		}
+		HashSet<DirtyContainer> conts = threadContainers.get();
+		if (conts != null)
+			conts.add(cont);
+
+		// Flush if needed, writes of containers that failed too often are made
+		// directly so the caller sees the error
+		if (flush || cont.failures > maxFlushRetries)
+			flush(cont);
+	}
+
+	/**
+	 * Discards a pending write, called when entries are deleted
+	 * 
+	 * @param table   Table name
+	 * @param ownerID Account or save ID
+	 * @param key     Entry key
+	 */
+	public void discard(String table, String ownerID, String key) {
+		if (!enabled)
+			return;
+		DirtyContainer cont = containers.get(table + ":" + ownerID);
+		if (cont == null)
+			return;
+
+		// Wait for running flushes so the entry is not written again after the caller
+		// deleted it
+		synchronized (cont.flushLock) {
+			synchronized (cont) {
+				cont.writes.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Flushes all pending writes of an account or save
+	 * 
+	 * @param table   Table name
+	 * @param ownerID Account or save ID
+	 * @throws IOException If flushing fails
+	 */
+	public void flush(String table, String ownerID) throws IOException {
+		if (!enabled)
+			return;
+		DirtyContainer cont = containers.get(table + ":" + ownerID);
+		if (cont != null)
+			flush(cont);
+	}
+
+	/**
+	 * Flushes all pending writes of an account and its saves
+	 * 
+	 * @param accountID Account ID
+	 */
+	public void flushAccount(String accountID) {
+		if (!enabled)
+			return;
+		for (DirtyContainer cont : containers.values()) {
+			if (cont.accountID.equals(accountID))
+				tryFlush(cont, false);
+		}
+	}
+
+	/**
+	 * Flushes all pending writes
+	 */
+	public void flushAll() {
+		for (DirtyContainer cont : containers.values())
+			tryFlush(cont, true);
+	}
+
+	private void tryFlush(DirtyContainer cont, boolean background) {
+		// Back off from containers that failed to flush
+		if (background && cont.failures != 0 && System.currentTimeMillis() < cont.nextAttempt)
+			return;
+		try {
+			flush(cont);
+		} catch (IOException e) {
+			logger.warn("Buffered data entries of ID '" + cont.ownerID + "' will be retried (attempt "
+					+ cont.failures + ")", e);
+		}
+	}
+
+	private void flush(DirtyContainer cont) throws IOException {
+		// Only one flush per container at a time, the container itself is only locked
+		// while taking and clearing the batch so readers do not wait on the database
+		synchronized (cont.flushLock) {
+			// Sort writes
+			LinkedHashMap<String, PendingWrite> batch;
+			ArrayList<PendingWrite> inserts = new ArrayList<PendingWrite>();
+			ArrayList<PendingWrite> updates = new ArrayList<PendingWrite>();
+			synchronized (cont) {
+				if (cont.writes.isEmpty()) {
+					// Remove from memory
+					cont.removed = true;
+					containers.remove(cont.table + ":" + cont.ownerID, cont);
+					return;
+				}
+				batch = new LinkedHashMap<String, PendingWrite>(cont.writes);
+				for (PendingWrite write : batch.values()) {
+					if (write.insert)
+						inserts.add(write);
+					else
+						updates.add(write);
+				}
+			}
+
+			try {
+				DatabaseRequest req = manager.createRequest();
+				try {
+					req.beginTransaction();
+					try {
+						// Insert entries
+						if (!inserts.isEmpty()) {
+							var statement = req.prepareStatement("INSERT INTO " + cont.table + " VALUES(?, ?, ?, ?, ?)");
+							for (PendingWrite write : inserts) {
+								statement.setString(1, cont.ownerID);
+								statement.setString(2, write.dataKey);
+								statement.setString(3, write.parent);
+								statement.setString(4, write.parentContainer);
+								req.setDataObject(5, write.data, statement);
+								statement.addBatch();
+							}
+							statement.executeBatch();
+							statement.close();
+						}
+
+						// Update entries
+						if (!updates.isEmpty()) {
+							var statement = req.prepareStatement("UPDATE " + cont.table
+									+ " SET DATA = ? WHERE DATAKEY = ? AND PARENT = ? AND PARENTCONTAINER = ? AND "
+									+ cont.idColumn + " = ?");
+							for (PendingWrite write : updates) {
+								req.setDataObject(1, write.data, statement);
+								statement.setString(2, write.dataKey);
+								statement.setString(3, write.parent);
+								statement.setString(4, write.parentContainer);
+								statement.setString(5, cont.ownerID);
+								statement.addBatch();
+							}
+							statement.executeBatch();
+							statement.close();
+						}
+						req.commitTransaction();
+					} catch (SQLException e) {
+						req.rollbackTransaction();
+						throw e;
+					}
+				} finally {
+					req.close();
+				}
+			} catch (SQLException e) {
+				// Back off, and once retries are exhausted make writes directly
+				int failures = cont.failures + 1;
+				cont.nextAttempt = System.currentTimeMillis() + Math.min(60000, flushInterval << Math.min(failures, 16));
+				cont.failures = failures;
+				if (failures == maxFlushRetries + 1)
+					logger.error("Flushing buffered data entries of ID '" + cont.ownerID + "' failed " + failures
+							+ " times, writes will be made directly until it succeeds");
+				throw new IOException(
+						"Failed to flush " + batch.size() + " buffered data entries of ID '" + cont.ownerID + "'", e);
+			}
+
+			// Clear flushed writes, entries written again during the flush stay queued
+			// and no longer need to be inserted
+			synchronized (cont) {
+				for (String key : batch.keySet()) {
+					PendingWrite flushed = batch.get(key);
+					PendingWrite current = cont.writes.get(key);
+					if (current == flushed)
+						cont.writes.remove(key);
+					else if (current != null && flushed.insert)
+						current.insert = false;
+				}
+				cont.failures = 0;
+			}
+		}
+	}
+
+}
@@ -9,6 +9,7 @@ import org.asf.edge.common.services.accounts.AccountDataContainer;
 import org.asf.edge.common.services.accounts.AccountObject;
 import org.asf.edge.common.services.accounts.AccountSaveContainer;
 import org.asf.edge.common.services.accounts.impl.RemoteHttpAccountManager;
+import org.asf.edge.common.tokens.SessionToken;
 import org.asf.edge.modules.eventbus.EventBus;
 
 import com.google.gson.JsonObject;
@@ -304,6 +305,7 @@ public class RemoteHttpAccountObject extends AccountObject {
 			JsonObject response = mgr.accountManagerRequest("accounts/updateLastLoginTime", payload);
 			if (!response.get("success").getAsBoolean())
 				throw new IOException("Server returned success=false");
+			SessionToken.invalidateAccount(id);
 		} catch (IOException e) {
 			logger.error("Account server query failure occurred in updateLastLoginTime!", e);
 		}
@@ -886,6 +886,7 @@ public class AchievementManagerImpl extends AchievementManager {
 	public boolean hasUnlockedAchievement(AccountSaveContainer save, int achievementID) {
 		try {
 			AccountDataContainer data = save.getSaveData().getChildContainer("achievements-v1");
+			data.prefetch();
 			return data.entryExists("unlocked-" + achievementID)
 					&& data.getEntry("unlocked-" + achievementID).getAsBoolean();
 		} catch (IOException e) {
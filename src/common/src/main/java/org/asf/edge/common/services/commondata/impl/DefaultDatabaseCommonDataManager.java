@@ -10,6 +10,9 @@ import java.util.Properties;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.asf.edge.common.jdbc.ConnectionPool;
+import org.asf.edge.common.jdbc.SqliteConnectionManager;
+import org.asf.edge.common.jdbc.SqliteConnectionManager.SqliteRequest;
 import org.asf.edge.common.services.commondata.impl.db.DatabaseCommonDataManager;
 import org.asf.edge.common.services.commondata.impl.db.DatabaseRequest;
 import org.asf.edge.common.services.config.ConfigProviderService;
@@ -20,8 +23,9 @@ public class DefaultDatabaseCommonDataManager extends DatabaseCommonDataManager
 
 	private String url;
 	private Properties props;
+	private ConnectionPool pool;
 	private Logger logger = LogManager.getLogger("CommonDataManager");
-	private Connection conn;
+	private SqliteConnectionManager sqlite;
 
 	@Override
 	public void initService() {
@@ -68,6 +72,23 @@ public class DefaultDatabaseCommonDataManager extends DatabaseCommonDataManager
 		for (String key : properties.keySet())
 			props.setProperty(key, properties.get(key).getAsString());
 
+		// Load pool settings
+		String poolConfigKey = url.startsWith("jdbc:sqlite:") ? "sqlite" : "connectionPool";
+		if (!databaseManagerConfig.has(poolConfigKey)) {
+			if (url.startsWith("jdbc:sqlite:"))
+				databaseManagerConfig.add("sqlite", SqliteConnectionManager.createDefaultConfig());
+			else
+				databaseManagerConfig.add("connectionPool", ConnectionPool.createDefaultConfig());
+
+			// Write config
+			try {
+				ConfigProviderService.getInstance().saveConfig("server", "commondata", commonDataManagerConfig);
+			} catch (IOException e) {
+				logger.error("Failed to write the common data manager configuration!", e);
+				return;
+			}
+		}
+
 		try {
 			// Load drivers
 			Class.forName("com.mysql.cj.jdbc.Driver");
@@ -75,11 +96,16 @@ public class DefaultDatabaseCommonDataManager extends DatabaseCommonDataManager
 			Class.forName("org.asf.edge.common.jdbc.LockingDriver");
 
 			// Test connection
-			Connection conn = DriverManager.getConnection(url, props);
 			if (url.startsWith("jdbc:sqlite:"))
-				this.conn = conn;
-			else
-				conn.close();
+				sqlite = new SqliteConnectionManager("CommonDataManager", url, props,
+						databaseManagerConfig.get("sqlite").getAsJsonObject());
+			else {
+				DriverManager.getConnection(url, props).close();
+
+				// Create connection pool
+				pool = new ConnectionPool("CommonDataManager", url, props,
+						databaseManagerConfig.get("connectionPool").getAsJsonObject());
+			}
 		} catch (SQLException | ClassNotFoundException e) {
 			logger.error("Failed to connect to database!", e);
 			System.exit(1);
@@ -91,18 +117,15 @@ public class DefaultDatabaseCommonDataManager extends DatabaseCommonDataManager
 		// Create if needed
 		try {
 			// Create prepared statement
-			Connection conn = this.conn;
-			boolean nonSingle = conn == null;
-			if (nonSingle)
-				conn = DriverManager.getConnection(url, props);
+			DatabaseRequest req = createRequest();
 			try {
-				Statement statement = conn.createStatement();
+				Statement statement = req.createStatement();
 				statement.executeUpdate("CREATE TABLE IF NOT EXISTS CDC2_" + rootNodeName
 						+ " (DATAKEY varchar(64), PARENT varchar(64), PARENTCONTAINER varchar(256), DATA LONGTEXT)");
+				migrateContainerSchema(statement, rootNodeName);
 				statement.close();
 			} finally {
-				if (nonSingle)
-					conn.close();
+				req.finish();
 			}
 		} catch (SQLException e) {
 			logger.error("Failed to execute database query request while trying to prepare data container '"
@@ -112,24 +135,94 @@ public class DefaultDatabaseCommonDataManager extends DatabaseCommonDataManager
 
 	@Override
 	public DatabaseRequest createRequest() throws SQLException {
-		Connection conn = this.conn;
-		boolean nonSingle = conn == null;
-		if (nonSingle)
-			conn = DriverManager.getConnection(url, props);
-		Connection connF = conn;
+		if (sqlite != null) {
+			SqliteRequest req = sqlite.openRequest();
+			return new DatabaseRequest() {
+
+				@Override
+				public PreparedStatement createPreparedStatement(String query) throws SQLException {
+					return req.prepareStatement(query);
+				}
+
+				@Override
+				public Statement createStatement() throws SQLException {
+					return req.createStatement();
+				}
+
+				@Override
+				public void beginTransaction() throws SQLException {
+					req.beginTransaction();
+				}
+
+				@Override
+				public void commitTransaction() throws SQLException {
+					req.commitTransaction();
+				}
+
+				@Override
+				public void rollbackTransaction() throws SQLException {
+					req.rollbackTransaction();
+				}
+
+				@Override
+				public void finish() throws SQLException {
+					req.close();
+				}
+			};
+		}
+		Connection conn = pool.borrow();
 		return new DatabaseRequest() {
 
 			@Override
 			public PreparedStatement createPreparedStatement(String query) throws SQLException {
-				return connF.prepareStatement(query);
+				return conn.prepareStatement(query);
+			}
+
+			@Override
+			public Statement createStatement() throws SQLException {
+				return conn.createStatement();
+			}
+
+			@Override
+			public void beginTransaction() throws SQLException {
+				conn.setAutoCommit(false);
+			}
+
+			@Override
+			public void commitTransaction() throws SQLException {
+				conn.commit();
+				conn.setAutoCommit(true);
+			}
+
+			@Override
+			public void rollbackTransaction() throws SQLException {
+				conn.rollback();
+				conn.setAutoCommit(true);
 			}
 
 			@Override
 			public void finish() throws SQLException {
-				if (nonSingle)
-					connF.close();
+				pool.release(conn);
 			}
 		};
 	}
 
+	/**
+	 * Retrieves the database connection pool
+	 * 
+	 * @return ConnectionPool instance or null if the SQLite backend is used
+	 */
+	public ConnectionPool getConnectionPool() {
+		return pool;
+	}
+
+	/**
+	 * Retrieves the SQLite connection manager
+	 * 
+	 * @return SqliteConnectionManager instance or null if SQLite is not in use
+	 */
+	public SqliteConnectionManager getSqliteManager() {
+		return sqlite;
+	}
+
 }
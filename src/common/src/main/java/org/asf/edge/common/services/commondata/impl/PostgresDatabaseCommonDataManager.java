@@ -10,6 +10,7 @@ import java.util.Properties;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.asf.edge.common.jdbc.ConnectionPool;
 import org.asf.edge.common.services.commondata.impl.db.DatabaseCommonDataManager;
 import org.asf.edge.common.services.commondata.impl.db.DatabaseRequest;
 import org.asf.edge.common.services.config.ConfigProviderService;
@@ -21,6 +22,7 @@ public class PostgresDatabaseCommonDataManager extends DatabaseCommonDataManager
 
 	private String url;
 	private Properties props;
+	private ConnectionPool pool;
 	private Logger logger = LogManager.getLogger("CommonDataManager");
 
 	@Override
@@ -68,12 +70,29 @@ public class PostgresDatabaseCommonDataManager extends DatabaseCommonDataManager
 		for (String key : properties.keySet())
 			props.setProperty(key, properties.get(key).getAsString());
 
+		// Load pool settings
+		if (!databaseManagerConfig.has("connectionPool")) {
+			databaseManagerConfig.add("connectionPool", ConnectionPool.createDefaultConfig());
+
+			// Write config
+			try {
+				ConfigProviderService.getInstance().saveConfig("server", "commondata", commonDataManagerConfig);
+			} catch (IOException e) {
+				logger.error("Failed to write the common data manager configuration!", e);
+				return;
+			}
+		}
+
 		try {
 			// Load drivers
 			Class.forName("org.postgresql.Driver");
 
 			// Test connection
 			DriverManager.getConnection(url, props).close();
+
+			// Create connection pool
+			pool = new ConnectionPool("CommonDataManager", url, props,
+					databaseManagerConfig.get("connectionPool").getAsJsonObject());
 		} catch (SQLException | ClassNotFoundException e) {
 			logger.error("Failed to connect to database!", e);
 			System.exit(1);
@@ -85,14 +104,15 @@ public class PostgresDatabaseCommonDataManager extends DatabaseCommonDataManager
 		// Create if needed
 		try {
 			// Create prepared statement
-			Connection conn = DriverManager.getConnection(url, props);
+			Connection conn = pool.borrow();
 			try {
 				Statement statement = conn.createStatement();
 				statement.executeUpdate("CREATE TABLE IF NOT EXISTS CDC2_" + rootNodeName
 						+ " (DATAKEY varchar(64), PARENT varchar(64), PARENTCONTAINER varchar(256), DATA JSONB)");
+				migrateContainerSchema(statement, rootNodeName);
 				statement.close();
 			} finally {
-				conn.close();
+				pool.release(conn);
 			}
 		} catch (SQLException e) {
 			logger.error("Failed to execute database query request while trying to prepare data container '"
@@ -102,7 +122,7 @@ public class PostgresDatabaseCommonDataManager extends DatabaseCommonDataManager
 
 	@Override
 	public DatabaseRequest createRequest() throws SQLException {
-		Connection conn = DriverManager.getConnection(url, props);
+		Connection conn = pool.borrow();
 		return new DatabaseRequest() {
 
 			@Override
@@ -118,11 +138,25 @@ public class PostgresDatabaseCommonDataManager extends DatabaseCommonDataManager
 				return conn.prepareStatement(query);
 			}
 
+			@Override
+			public Statement createStatement() throws SQLException {
+				return conn.createStatement();
+			}
+
 			@Override
 			public void finish() throws SQLException {
-				conn.close();
+				pool.release(conn);
 			}
 		};
 	}
 
+	/**
+	 * Retrieves the database connection pool
+	 * 
+	 * @return ConnectionPool instance
+	 */
+	public ConnectionPool getConnectionPool() {
+		return pool;
+	}
+
 }
@@ -4,6 +4,9 @@ import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -354,8 +357,6 @@ public class DatabaseCommonDataContainer extends CommonDataContainer {
 
 	@Override
 	protected JsonElement find(BiFunction<String, JsonElement, Boolean> function, String root) throws IOException {
-		JsonElement resO = null;
-
 		// Parse key
 		String parent = root;
 		String parentContainer = "";
@@ -366,8 +367,9 @@ public class DatabaseCommonDataContainer extends CommonDataContainer {
 			parent = parent.substring(parent.lastIndexOf("/") + 1);
 		}
 
-		// Prepare
-		ArrayList<String> keys = new ArrayList<String>();
+		// Prepare, rows are read before running the function so nested requests made
+		// by it do not wait for a second connection
+		LinkedHashMap<String, String> entries = new LinkedHashMap<String, String>();
 
 		// Find all keys
 		try {
@@ -382,19 +384,10 @@ public class DatabaseCommonDataContainer extends CommonDataContainer {
 
 				// Find results
 				while (res.next()) {
-					// Add container
+					// Add entry
 					String cont = res.getString("DATAKEY");
-					String data = res.getString("DATA");
-					if (!cont.isEmpty() && !keys.contains(cont)) {
-						keys.add(cont);
-
-						// Run function
-						JsonElement d = JsonParser.parseString(data);
-						if (function.apply(cont, d)) {
-							resO = d;
-							break;
-						}
-					}
+					if (!cont.isEmpty() && !entries.containsKey(cont))
+						entries.put(cont, res.getString("DATA"));
 				}
 				res.close();
 				statement.close();
@@ -409,8 +402,13 @@ public class DatabaseCommonDataContainer extends CommonDataContainer {
 			throw new IOException("SQL error", e);
 		}
 
-		// Return
-		return resO;
+		// Run function
+		for (Map.Entry<String, String> ent : entries.entrySet()) {
+			JsonElement d = JsonParser.parseString(ent.getValue());
+			if (function.apply(ent.getKey(), d))
+				return d;
+		}
+		return null;
 	}
 
 	@Override
@@ -425,8 +423,9 @@ public class DatabaseCommonDataContainer extends CommonDataContainer {
 			parent = parent.substring(parent.lastIndexOf("/") + 1);
 		}
 
-		// Prepare
-		ArrayList<String> keys = new ArrayList<String>();
+		// Prepare, rows are read before running the function so nested requests made
+		// by it do not wait for a second connection
+		LinkedHashMap<String, String> entries = new LinkedHashMap<String, String>();
 
 		// Find all keys
 		try {
@@ -441,17 +440,10 @@ public class DatabaseCommonDataContainer extends CommonDataContainer {
 
 				// Find results
 				while (res.next()) {
-					// Add container
+					// Add entry
 					String cont = res.getString("DATAKEY");
-					String data = res.getString("DATA");
-					if (!cont.isEmpty() && !keys.contains(cont)) {
-						keys.add(cont);
-
-						// Run function
-						JsonElement d = JsonParser.parseString(data);
-						if (!function.apply(cont, d))
-							break;
-					}
+					if (!cont.isEmpty() && !entries.containsKey(cont))
+						entries.put(cont, res.getString("DATA"));
 				}
 				res.close();
 				statement.close();
@@ -465,12 +457,19 @@ public class DatabaseCommonDataContainer extends CommonDataContainer {
 					e);
 			throw new IOException("SQL error", e);
 		}
+
+		// Run function
+		for (Map.Entry<String, String> ent : entries.entrySet()) {
+			if (!function.apply(ent.getKey(), JsonParser.parseString(ent.getValue())))
+				break;
+		}
 	}
 
 	@Override
 	protected void runForChildren(Function<String, Boolean> function, String root) throws IOException {
-		// Prepare
-		ArrayList<String> containers = new ArrayList<String>();
+		// Prepare, rows are read before running the function so nested requests made
+		// by it do not wait for a second connection
+		LinkedHashSet<String> containers = new LinkedHashSet<String>();
 
 		// Find all containers
 		try {
@@ -486,13 +485,8 @@ public class DatabaseCommonDataContainer extends CommonDataContainer {
 				while (res.next()) {
 					// Add container
 					String cont = res.getString("PARENT");
-					if (!cont.isEmpty() && !containers.contains(cont)) {
+					if (!cont.isEmpty())
 						containers.add(cont);
-
-						// Run function
-						if (!function.apply(cont))
-							break;
-					}
 				}
 				res.close();
 				statement.close();
@@ -506,6 +500,12 @@ public class DatabaseCommonDataContainer extends CommonDataContainer {
 					e);
 			throw new IOException("SQL error", e);
 		}
+
+		// Run function
+		for (String cont : containers) {
+			if (!function.apply(cont))
+				break;
+		}
 	}
 
 }
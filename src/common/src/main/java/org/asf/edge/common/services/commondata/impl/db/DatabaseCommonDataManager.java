@@ -1,7 +1,10 @@
 package org.asf.edge.common.services.commondata.impl.db;
 
 import java.sql.SQLException;
+import java.sql.Statement;
 
+import org.apache.logging.log4j.LogManager;
+import org.asf.edge.common.jdbc.SchemaMigrator;
 import org.asf.edge.common.services.commondata.CommonDataContainer;
 import org.asf.edge.common.services.commondata.CommonDataManager;
 
@@ -12,6 +15,28 @@ public abstract class DatabaseCommonDataManager extends CommonDataManager {
 		return new DatabaseCommonDataContainer(this, "CDC2_" + rootNodeName);
 	}
 
+	/**
+	 * Runs the schema migrations of a container table, called by implementations
+	 * after creating the table
+	 * 
+	 * @param statement    Statement to run the migrations with
+	 * @param rootNodeName Container root node name
+	 * @throws SQLException If a migration fails
+	 */
+	protected void migrateContainerSchema(Statement statement, String rootNodeName) throws SQLException {
+		String table = "CDC2_" + rootNodeName;
+		SchemaMigrator migrator = new SchemaMigrator(table, LogManager.getLogger("CommonDataManager"));
+
+		// Version 1: data lookup index
+		migrator.addMigration(1, "data lookup index", (st, dialect) -> {
+			SchemaMigrator.createIndex(st, dialect, "IDX_" + table + "_KEY", table, "PARENTCONTAINER", "PARENT",
+					"DATAKEY");
+		});
+
+		// Run
+		migrator.run(statement);
+	}
+
 	/**
 	 * Called to create database requests
 	 * 
@@ -2,6 +2,7 @@ package org.asf.edge.common.services.items.impl;
 
 import org.asf.connective.tasks.AsyncTaskManager;
 import org.asf.edge.common.entities.items.*;
+import org.asf.edge.common.events.items.ItemDefinitionUpdateEvent;
 import org.asf.edge.common.events.items.ItemManagerLoadEvent;
 import org.asf.edge.common.services.accounts.AccountDataContainer;
 import org.asf.edge.common.services.commondata.CommonDataContainer;
@@ -998,6 +999,7 @@ public class ItemManagerImpl extends ItemManager {
 		if (!itemDefs.containsKey(item.getID())) {
 			itemDefs.put(item.getID(), item);
 			logger.debug("Registered item: " + item.getID() + ": " + item.getName());
+			EventBus.getInstance().dispatchEvent(new ItemDefinitionUpdateEvent(this, item));
 		}
 	}
 
@@ -1018,6 +1020,7 @@ public class ItemManagerImpl extends ItemManager {
 		}
 		itm.reloadDef();
 		logger.debug("Updated item: " + itm.getID() + ": " + itm.getName());
+		EventBus.getInstance().dispatchEvent(new ItemDefinitionUpdateEvent(this, itm));
 	}
 
 	@Override
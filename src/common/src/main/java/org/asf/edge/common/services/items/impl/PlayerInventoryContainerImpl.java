@@ -38,6 +38,9 @@ public class PlayerInventoryContainerImpl extends PlayerInventoryContainer {
 	@Override
 	public int[] getItemUniqueIDs() {
 		try {
+			// Load all items at once
+			data.prefetch();
+
 			// Create list
 			ArrayList<Integer> ids = new ArrayList<Integer>();
 			data.runForChildContainers(ent -> {
@@ -92,6 +95,9 @@ public class PlayerInventoryContainerImpl extends PlayerInventoryContainer {
 	@Override
 	public PlayerInventoryItem[] getItems() {
 		try {
+			// Load all items at once
+			data.prefetch();
+
 			// Create list
 			ArrayList<PlayerInventoryItem> itms = new ArrayList<PlayerInventoryItem>();
 			for (String ent : data.getChildContainers()) {
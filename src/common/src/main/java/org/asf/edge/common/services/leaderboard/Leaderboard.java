@@ -16,6 +16,16 @@ public abstract class Leaderboard {
 		public long dateEnd;
 	}
 
+	public static class ScoreEntry {
+		public String saveID;
+		public int score;
+		public int rank;
+	}
+
+	public static enum Period {
+		DAILY, WEEKLY, MONTHLY, ALL_TIME
+	}
+
 	/**
 	 * Retrieves the weekly scores
 	 * 
@@ -44,6 +54,36 @@ public abstract class Leaderboard {
 	 */
 	public abstract Map<String, Integer> getScoresAllTime();
 
+	/**
+	 * Retrieves leaderboard entries by rank
+	 * 
+	 * @param period Leaderboard period (daily, weekly and monthly leaderboards
+	 *               contain the scores of the last completed period)
+	 * @param offset Amount of entries to skip
+	 * @param count  Maximum amount of entries to retrieve
+	 * @return Array of ScoreEntry instances
+	 */
+	public abstract ScoreEntry[] getTopScores(Period period, int offset, int count);
+
+	/**
+	 * Retrieves leaderboard entries surrounding a save
+	 * 
+	 * @param period Leaderboard period
+	 * @param saveID Save ID
+	 * @param range  Amount of entries to retrieve above and below the save
+	 * @return Array of ScoreEntry instances (empty if the save is not ranked)
+	 */
+	public abstract ScoreEntry[] getScoresAround(Period period, String saveID, int range);
+
+	/**
+	 * Retrieves the rank of a save
+	 * 
+	 * @param period Leaderboard period
+	 * @param saveID Save ID
+	 * @return Rank (1 for the highest score) or -1 if not ranked
+	 */
+	public abstract int getRank(Period period, String saveID);
+
 	/**
 	 * Retrieves the date range of daily scores
 	 * 
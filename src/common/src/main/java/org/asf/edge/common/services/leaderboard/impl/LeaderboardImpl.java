@@ -1,70 +1,308 @@
 package org.asf.edge.common.services.leaderboard.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.asf.connective.tasks.AsyncTaskManager;
 import org.asf.edge.common.entities.achivements.RankTypeID;
+import org.asf.edge.common.events.accounts.saves.AccountSaveDeletedEvent;
+import org.asf.edge.common.events.achievements.RankChangedEvent;
 import org.asf.edge.common.services.accounts.AccountManager;
+import org.asf.edge.common.services.accounts.AccountSaveContainer;
 import org.asf.edge.common.services.achievements.AchievementManager;
 import org.asf.edge.common.services.commondata.CommonDataContainer;
 import org.asf.edge.common.services.commondata.CommonDataManager;
 import org.asf.edge.common.services.leaderboard.Leaderboard;
+import org.asf.edge.modules.eventbus.EventBus;
+import org.asf.edge.modules.eventbus.EventListener;
+import org.asf.edge.modules.eventbus.IEventReceiver;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 
-public class LeaderboardImpl extends Leaderboard {
+/**
+ * 
+ * Leaderboard implementation, scores are kept in memory and periodically
+ * written to common data. Only one server writes the indexes at a time, the
+ * other servers forward their score changes to it and reload the indexes
+ * whenever the writing server has saved them.
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class LeaderboardImpl extends Leaderboard implements IEventReceiver {
+
+	private static final int INDEX_VERSION = 1;
+	private static final int MAX_LISTED_SCORES = 1000;
+	private static final int INACTIVE_TIME = 32 * 24 * 60 * 60;
+	private static final long OWNER_TIMEOUT = 3 * 60 * 1000;
+	private static final long OWNER_CLAIM_DELAY = 5 * 1000;
+	private static final long DELETED_CHECK_INTERVAL = 12 * 60 * 60 * 1000;
 
 	private String name;
 	private CommonDataContainer container;
+	private CommonDataContainer indexData;
 	private Logger logger = LogManager.getLogger("Leaderboards");
 
-	private Object refreshAllTimeLock = new Object();
-	private Object refreshDailyLock = new Object();
-	private Object refreshWeeklyLock = new Object();
-	private Object refreshMonthlyLock = new Object();
+	private String serverID = UUID.randomUUID().toString();
+	private volatile boolean owner;
+	private Object changeLogLock = new Object();
+	private ArrayList<JsonArray> currentChanges = new ArrayList<JsonArray>();
+	private ArrayList<JsonArray> previousChanges = new ArrayList<JsonArray>();
+	private LinkedHashMap<String, JsonArray> appliedPending = new LinkedHashMap<String, JsonArray>();
+	private long lastSave;
+	private long lastDeletedCheck = System.currentTimeMillis();
+
+	private volatile LeaderboardIndex allTime = new LeaderboardIndex();
+	private PeriodIndexes daily = new PeriodIndexes("daily", Calendar.DAY_OF_YEAR);
+	private PeriodIndexes weekly = new PeriodIndexes("weekly", Calendar.WEEK_OF_YEAR);
+	private PeriodIndexes monthly = new PeriodIndexes("monthly", Calendar.MONTH);
+
+	private static class PeriodIndexes {
+		public String name;
+		public int calendarField;
+		public CommonDataContainer data;
+
+		public int period = -1;
+		public int liveSlot;
+		public long liveStart;
+		public volatile LeaderboardIndex live = new LeaderboardIndex();
+
+		public long lastStart;
+		public long lastEnd;
+		public volatile LeaderboardIndex last = new LeaderboardIndex();
+
+		public PeriodIndexes(String name, int calendarField) {
+			this.name = name;
+			this.calendarField = calendarField;
+		}
+
+		public int currentPeriod() {
+			Calendar cal = Calendar.getInstance();
+			if (calendarField == Calendar.WEEK_OF_YEAR)
+				return cal.getWeekYear() * 100 + cal.get(calendarField);
+			return cal.get(Calendar.YEAR) * 1000 + cal.get(calendarField);
+		}
+	}
 
 	public LeaderboardImpl(String name) {
 		// Load container
 		this.name = name;
 		container = CommonDataManager.getInstance().getContainer("LEADERBOARD" + name.toUpperCase());
 
-		// Refresh
-		refreshLeaderboard();
+		// Load indexes
+		loadIndexes();
+
+		// Attach events
+		EventBus.getInstance().addAllEventsFromReceiver(this);
 
 		// Start refresh
 		AsyncTaskManager.runAsync(() -> {
 			while (true) {
-				// Wait 12 hours
 				try {
-					Thread.sleep(12 * 60 * 60 * 1000);
+					if (updateOwner()) {
+						// Apply changes of other servers
+						applyPendingChanges();
+
+						// Roll over periods
+						rollOverIfNeeded(daily);
+						rollOverIfNeeded(weekly);
+						rollOverIfNeeded(monthly);
+
+						// Remove deleted saves that were missed
+						if (System.currentTimeMillis() - lastDeletedCheck > DELETED_CHECK_INTERVAL) {
+							lastDeletedCheck = System.currentTimeMillis();
+							removeDeletedScores();
+						}
+
+						// Save, unless another server took over in the meantime
+						if (confirmOwner()) {
+							saveIndexes();
+							deleteAppliedChanges();
+						}
+					} else {
+						// Reload if the owning server saved changes
+						JsonElement ent = container.getEntry("lastsave");
+						if (ent != null && ent.getAsLong() != lastSave) {
+							lastSave = ent.getAsLong();
+							readIndexes();
+						}
+					}
 				} catch (InterruptedException e) {
 					break;
+				} catch (Exception e) {
+					logger.error("Failed to update " + name + " leaderboard", e);
 				}
 
-				// Refresh
-				refreshLeaderboard();
+				// Wait a minute
+				try {
+					Thread.sleep(60 * 1000);
+				} catch (InterruptedException e) {
+					break;
+				}
 			}
 		});
 	}
 
-	private void refreshLeaderboard() {
+	private boolean updateOwner() throws IOException, InterruptedException {
+		// Check the current owner
+		long now = System.currentTimeMillis();
+		JsonElement ent = container.getEntry("owner");
+		if (ent != null) {
+			JsonObject ownerInfo = ent.getAsJsonObject();
+			if (!ownerInfo.get("id").getAsString().equals(serverID)
+					&& now - ownerInfo.get("heartbeat").getAsLong() < OWNER_TIMEOUT) {
+				// Owned by another server
+				if (owner)
+					loseOwnership();
+				return false;
+			}
+		}
+
+		// Take over if needed
+		if (!owner) {
+			// Claim and check that no other server claimed it at the same time
+			writeHeartbeat();
+			Thread.sleep(OWNER_CLAIM_DELAY);
+			if (!isOwnerEntry())
+				return false;
+
+			// Reload to pick up the last saved state
+			if (ent != null)
+				readIndexes();
+			appliedPending.clear();
+			synchronized (changeLogLock) {
+				currentChanges.clear();
+				previousChanges.clear();
+				owner = true;
+			}
+			logger.info("This server now writes the " + name + " leaderboard");
+		}
+
+		// Update heartbeat, changes older than the previous heartbeat are covered by
+		// the indexes saved since
+		writeHeartbeat();
+		synchronized (changeLogLock) {
+			previousChanges = currentChanges;
+			currentChanges = new ArrayList<JsonArray>();
+		}
+		return true;
+	}
+
+	private void writeHeartbeat() throws IOException {
+		JsonObject ownerInfo = new JsonObject();
+		ownerInfo.addProperty("id", serverID);
+		ownerInfo.addProperty("heartbeat", System.currentTimeMillis());
+		container.setEntry("owner", ownerInfo);
+	}
+
+	private boolean isOwnerEntry() throws IOException {
+		JsonElement ent = container.getEntry("owner");
+		return ent != null && ent.getAsJsonObject().get("id").getAsString().equals(serverID);
+	}
+
+	private boolean confirmOwner() throws IOException {
+		if (isOwnerEntry())
+			return true;
+		loseOwnership();
+		return false;
+	}
+
+	private void loseOwnership() {
+		// Stop recording changes
+		ArrayList<JsonArray> changes = new ArrayList<JsonArray>();
+		synchronized (changeLogLock) {
+			if (!owner)
+				return;
+			owner = false;
+			changes.addAll(previousChanges);
+			changes.addAll(currentChanges);
+			previousChanges.clear();
+			currentChanges.clear();
+		}
+		appliedPending.clear();
+		logger.warn("Another server took over writing the " + name + " leaderboard");
+
+		// Forward the changes made since the other server could have loaded the
+		// indexes, and have it rewrite all index chunks as ours may have replaced
+		// its own
+		for (JsonArray change : changes)
+			forwardChange(change);
+		forwardChange(new JsonArray());
+	}
+
+	private void loadIndexes() {
+		try {
+			indexData = container.getChildContainer("index");
+			daily.data = indexData.getChildContainer("daily");
+			weekly.data = indexData.getChildContainer("weekly");
+			monthly.data = indexData.getChildContainer("monthly");
+
+			// Check index
+			JsonElement ent = indexData.getEntry("version");
+			if (ent == null || ent.getAsInt() != INDEX_VERSION) {
+				buildIndexes();
+				return;
+			}
+
+			// Load
+			logger.info("Loading " + name + " leaderboard...");
+			JsonElement saveEnt = container.getEntry("lastsave");
+			if (saveEnt != null)
+				lastSave = saveEnt.getAsLong();
+			readIndexes();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void readIndexes() throws IOException {
+		// Read all-time scores
+		LeaderboardIndex allTime = new LeaderboardIndex();
+		allTime.load(indexData.getChildContainer("alltime"));
+		this.allTime = allTime;
+
+		// Read period scores
+		for (PeriodIndexes period : new PeriodIndexes[] { daily, weekly, monthly }) {
+			int liveSlot = period.data.getEntry("live_slot").getAsInt();
+			LeaderboardIndex live = new LeaderboardIndex();
+			LeaderboardIndex last = new LeaderboardIndex();
+			live.load(period.data.getChildContainer("slot-" + liveSlot));
+			last.load(period.data.getChildContainer("slot-" + (1 - liveSlot)));
+			synchronized (period) {
+				period.period = period.data.getEntry("period").getAsInt();
+				period.liveSlot = liveSlot;
+				period.liveStart = period.data.getEntry("live_start").getAsLong();
+				period.lastStart = period.data.getEntry("last_start").getAsLong();
+				period.lastEnd = period.data.getEntry("last_end").getAsLong();
+				period.live = live;
+				period.last = last;
+			}
+		}
+	}
+
+	private void buildIndexes() throws IOException {
 		// Log
-		logger.info("Refreshing " + name + " leaderboard...");
+		logger.info("Building " + name + " leaderboard index...");
 
-		// Refresh
+		// Gather scores
 		logger.info("Gathering user scores...");
+		int now = (int) (System.currentTimeMillis() / 1000l);
 		HashMap<String, Integer> userScores = new HashMap<String, Integer>();
 		AccountManager.getInstance().runForAllAccounts((account) -> {
 			// Check last login
 			long lastLogin = account.getLastLoginTime();
-			if (lastLogin == -1 || ((System.currentTimeMillis() / 1000l) - lastLogin) > 32 * 24 * 60 * 60) {
+			if (lastLogin == -1 || ((System.currentTimeMillis() / 1000l) - lastLogin) > INACTIVE_TIME) {
 				// Skip since they have been offline for over a month, no point in adding their
 				// scores, lets keep data usage minimal
 				return true;
@@ -73,506 +311,364 @@ public class LeaderboardImpl extends Leaderboard {
 			// Get score for all saves
 			for (String save : account.getSaveIDs()) {
 				// TODO: change to not be hardcoded
-				userScores.put(save, AchievementManager.getInstance()
-						.getRank(account.getSave(save), save, RankTypeID.UDT).getTotalScore());
+				int score = AchievementManager.getInstance().getRank(account.getSave(save), save, RankTypeID.UDT)
+						.getTotalScore();
+				userScores.put(save, score);
+				allTime.setScore(save, score, now);
 			}
 
 			return true;
 		});
-		refreshAllTimeScores(userScores);
-		refreshDailyScoresIfNeeded(userScores);
-		refreshWeeklyScoresIfNeeded(userScores);
-		refreshMonthlyScoresIfNeeded(userScores);
-	}
 
-	private void refreshAllTimeScores(HashMap<String, Integer> scores) {
-		// Refresh all times scores
-		try {
-			CommonDataContainer scoresAllTime = container.getChildContainer("alltime");
-			int addedScores = 0;
+		// Import the period scores of the old leaderboard format
+		for (PeriodIndexes period : new PeriodIndexes[] { daily, weekly, monthly }) {
+			CommonDataContainer old = container.getChildContainer(period.name);
+			CommonDataContainer current = old.getChildContainer("scores_current");
+			CommonDataContainer last = old.getChildContainer("scores_last");
+			period.period = period.currentPeriod();
+			period.liveSlot = 0;
+			period.liveStart = System.currentTimeMillis();
+			period.lastStart = period.liveStart;
+			period.lastEnd = period.liveStart;
+			if (current.entryExists("last_refresh")) {
+				// Last completed period
+				period.lastEnd = current.getEntry("last_refresh").getAsLong();
+				period.lastStart = current.getEntry("last_refresh_prev").getAsLong();
+				current.runForEntries((key, value) -> {
+					if (key.startsWith("s-"))
+						period.last.setScore(key.substring(2), value.getAsInt(), now);
+					return true;
+				});
+			}
+			if (last.entryExists("last_refresh")) {
+				// Changes since the last refresh
+				period.liveStart = last.getEntry("last_refresh").getAsLong();
+				last.runForEntries((key, value) -> {
+					if (key.startsWith("s-")) {
+						String id = key.substring(2);
+						if (userScores.containsKey(id) && userScores.get(id) - value.getAsInt() > 0)
+							period.live.setScore(id, userScores.get(id) - value.getAsInt(), now);
+					}
+					return true;
+				});
+			}
+			old.deleteContainer();
+		}
+		container.getChildContainer("alltime").deleteContainer();
 
-			// Read last time
-			long lastRefresh = -1;
-			if (scoresAllTime.entryExists("last_refresh"))
-				lastRefresh = scoresAllTime.getEntry("last_refresh").getAsLong();
+		// Save
+		indexData.deleteContainer();
+		saveIndexes();
+		indexData.setEntry("version", new JsonPrimitive(INDEX_VERSION));
+		logger.info("Indexed " + allTime.size() + " " + name + " scores.");
+	}
 
-			// Check refresh
-			if (lastRefresh != -1 && (System.currentTimeMillis() - lastRefresh) < 12 * 60 * 60 * 1000)
-				return;
+	private void saveIndexes() throws IOException {
+		boolean changed = allTime.save(indexData.getChildContainer("alltime"));
+		for (PeriodIndexes period : new PeriodIndexes[] { daily, weekly, monthly }) {
+			// Slots only change on rollover, which runs on the same thread
+			period.data.setEntry("period", new JsonPrimitive(period.period));
+			period.data.setEntry("live_slot", new JsonPrimitive(period.liveSlot));
+			period.data.setEntry("live_start", new JsonPrimitive(period.liveStart));
+			period.data.setEntry("last_start", new JsonPrimitive(period.lastStart));
+			period.data.setEntry("last_end", new JsonPrimitive(period.lastEnd));
+			if (period.live.save(period.data.getChildContainer("slot-" + period.liveSlot)))
+				changed = true;
+			if (period.last.save(period.data.getChildContainer("slot-" + (1 - period.liveSlot))))
+				changed = true;
+		}
 
-			// Refresh
-			scoresAllTime.setEntry("last_refresh", new JsonPrimitive(System.currentTimeMillis()));
-			logger.info("Refreshing " + name + " scores of all time...");
+		// Let the other servers know the indexes changed
+		if (changed) {
+			lastSave = ThreadLocalRandom.current().nextLong();
+			container.setEntry("lastsave", new JsonPrimitive(lastSave));
+		}
+	}
 
-			// Block
-			synchronized (refreshAllTimeLock) {
-				// Load container
-				scoresAllTime = scoresAllTime.getChildContainer("scores");
+	private void rollOverIfNeeded(PeriodIndexes period) throws IOException {
+		synchronized (period) {
+			// Check period
+			int current = period.currentPeriod();
+			if (period.period == current)
+				return;
+			logger.info("Refreshing " + period.name + " " + name + " scores...");
 
-				// Clear scores
-				scoresAllTime.deleteContainer();
+			// Save pending changes of the live scores
+			if (period.live.save(period.data.getChildContainer("slot-" + period.liveSlot))) {
+				lastSave = ThreadLocalRandom.current().nextLong();
+				container.setEntry("lastsave", new JsonPrimitive(lastSave));
+			}
 
-				// Add scores
-				for (String id : scores.keySet().stream()
-						.sorted((t1, t2) -> -Integer.compare(scores.get(t1), scores.get(t2)))
-						.toArray(t -> new String[t])) {
-					if (scores.get(id) <= 0)
-						continue;
+			// Swap, the live scores become the last period and the slot of the old scores
+			// is reused for the new period
+			long now = System.currentTimeMillis();
+			period.liveSlot = 1 - period.liveSlot;
+			period.data.getChildContainer("slot-" + period.liveSlot).deleteContainer();
+			period.last = period.live;
+			period.lastStart = period.liveStart;
+			period.lastEnd = now;
+			period.live = new LeaderboardIndex();
+			period.liveStart = now;
+			period.period = current;
+			period.data.setEntry("period", new JsonPrimitive(period.period));
+			period.data.setEntry("live_slot", new JsonPrimitive(period.liveSlot));
+			period.data.setEntry("live_start", new JsonPrimitive(period.liveStart));
+			period.data.setEntry("last_start", new JsonPrimitive(period.lastStart));
+			period.data.setEntry("last_end", new JsonPrimitive(period.lastEnd));
+		}
 
-					// Add only a thousand
-					if (addedScores >= 1000)
-						break;
-					addedScores++;
+		// Remove all-time scores of players that have been offline for over a month
+		if (period == daily)
+			removeInactiveScores();
+	}
 
-					// Add
-					scoresAllTime.setEntry("s-" + id, new JsonPrimitive(scores.get(id)));
+	private void removeInactiveScores() {
+		int time = (int) (System.currentTimeMillis() / 1000l) - INACTIVE_TIME;
+		int removed = 0;
+		for (String id : allTime.getEntriesNotUpdatedSince(time)) {
+			AccountSaveContainer save = AccountManager.getInstance().getSaveByID(id);
+			if (save != null) {
+				long lastLogin = save.getAccount().getLastLoginTime();
+				if (lastLogin != -1 && lastLogin > time) {
+					// Still active
+					allTime.setScore(id, allTime.getScore(id), (int) lastLogin);
+					continue;
 				}
 			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+			allTime.remove(id);
+			removed++;
 		}
+		if (removed != 0)
+			logger.info("Removed " + removed + " inactive " + name + " scores.");
 	}
 
-	private void refreshDailyScoresIfNeeded(HashMap<String, Integer> scores) {
-		try {
-			Calendar cal = Calendar.getInstance();
-			CommonDataContainer scoresDaily = container.getChildContainer("daily");
-
-			// Check last date
-			JsonElement ent = scoresDaily.getEntry("last_day");
-			int lastDay = ent == null ? -1 : ent.getAsInt();
-			if (lastDay != cal.get(Calendar.DAY_OF_YEAR)) {
-				// Read last time
-				long lastRefresh = -1;
-				if (scoresDaily.entryExists("last_refresh"))
-					lastRefresh = scoresDaily.getEntry("last_refresh").getAsLong();
-
-				// Check refresh
-				if (lastRefresh != -1 && (System.currentTimeMillis() - lastRefresh) > 12 * 60 * 60 * 1000)
-					return;
-
-				// Refresh
-				scoresDaily.setEntry("last_refresh", new JsonPrimitive(System.currentTimeMillis()));
-				scoresDaily.setEntry("last_day", new JsonPrimitive(cal.get(Calendar.DAY_OF_YEAR)));
-				logger.info("Refreshing daily " + name + " score...");
-
-				// Block
-				synchronized (refreshDailyLock) {
-					CommonDataContainer current = scoresDaily.getChildContainer("scores_current");
-					CommonDataContainer last = scoresDaily.getChildContainer("scores_last");
-
-					// Load last scores
-					HashMap<String, Integer> lastScores = new HashMap<String, Integer>();
-					last.runForEntries((key, value) -> {
-						if (key.startsWith("s-")) {
-							String id = key.substring(2);
-							lastScores.put(id, value.getAsInt());
-						}
-						return true;
-					});
-
-					// Compute current score changes
-					HashMap<String, Integer> newScores = new HashMap<String, Integer>();
-					for (String id : scores.keySet()) {
-						if (!lastScores.containsKey(id))
-							continue;
-						int scoreChange = scores.get(id) - lastScores.get(id);
-						if (scoreChange > 0)
-							newScores.put(id, scoreChange);
-					}
-
-					// Clear current scores
-					int addedScores = 0;
-					current.deleteContainer();
-					current.setEntry("dataholder", new JsonPrimitive(true));
-					current.setEntry("last_refresh", new JsonPrimitive(System.currentTimeMillis()));
-					current.setEntry("last_refresh_prev",
-							last.entryExists("last_refresh") ? last.getEntry("last_refresh")
-									: new JsonPrimitive(System.currentTimeMillis()));
-					for (String id : newScores.keySet().stream()
-							.sorted((t1, t2) -> -Integer.compare(newScores.get(t1), newScores.get(t2)))
-							.toArray(t -> new String[t])) {
-						// Add only a thousand
-						if (addedScores >= 1000)
-							break;
-						addedScores++;
-
-						// Add
-						current.setEntry("s-" + id, new JsonPrimitive(newScores.get(id)));
-					}
-
-					// Delete last scores
-					last.deleteContainer();
-
-					// Populate last scores
-					last.setEntry("last_refresh", new JsonPrimitive(System.currentTimeMillis()));
-					for (String id : scores.keySet()) {
-						last.setEntry("s-" + id, new JsonPrimitive(scores.get(id)));
-					}
-				}
+	private void removeDeletedScores() {
+		// Check the listed scores, saves deleted on servers without leaderboards are
+		// not seen by the deletion event
+		ArrayList<String> ids = new ArrayList<String>();
+		for (LeaderboardIndex index : new LeaderboardIndex[] { allTime, daily.live, daily.last, weekly.live,
+				weekly.last, monthly.live, monthly.last }) {
+			for (ScoreEntry entry : index.getRange(0, MAX_LISTED_SCORES)) {
+				if (!ids.contains(entry.saveID))
+					ids.add(entry.saveID);
+			}
+		}
+		int removed = 0;
+		for (String id : ids) {
+			if (AccountManager.getInstance().getSaveByID(id) == null) {
+				removeScores(id);
+				removed++;
 			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
 		}
+		if (removed != 0)
+			logger.info("Removed " + removed + " " + name + " scores of deleted saves.");
 	}
 
-	private void refreshWeeklyScoresIfNeeded(HashMap<String, Integer> scores) {
-		try {
-			Calendar cal = Calendar.getInstance();
-			CommonDataContainer scoresWeekly = container.getChildContainer("weekly");
-
-			// Check last date
-			JsonElement ent = scoresWeekly.getEntry("last_week");
-			int lastWeek = ent == null ? -1 : ent.getAsInt();
-			if (lastWeek != cal.get(Calendar.WEEK_OF_YEAR)) {
-				// Read last time
-				long lastRefresh = -1;
-				if (scoresWeekly.entryExists("last_refresh"))
-					lastRefresh = scoresWeekly.getEntry("last_refresh").getAsLong();
-
-				// Check refresh
-				if (lastRefresh != -1 && (System.currentTimeMillis() - lastRefresh) > 12 * 60 * 60 * 1000)
-					return;
-
-				// Refresh
-				scoresWeekly.setEntry("last_refresh", new JsonPrimitive(System.currentTimeMillis()));
-				scoresWeekly.setEntry("last_week", new JsonPrimitive(cal.get(Calendar.WEEK_OF_YEAR)));
-				logger.info("Refreshing weekly " + name + " score...");
-
-				// Block
-				synchronized (refreshWeeklyLock) {
-					CommonDataContainer current = scoresWeekly.getChildContainer("scores_current");
-					CommonDataContainer last = scoresWeekly.getChildContainer("scores_last");
-
-					// Load last scores
-					HashMap<String, Integer> lastScores = new HashMap<String, Integer>();
-					last.runForEntries((key, value) -> {
-						if (key.startsWith("s-")) {
-							String id = key.substring(2);
-							lastScores.put(id, value.getAsInt());
-						}
-						return true;
-					});
-
-					// Compute current score changes
-					HashMap<String, Integer> newScores = new HashMap<String, Integer>();
-					for (String id : scores.keySet()) {
-						if (!lastScores.containsKey(id))
-							continue;
-						int scoreChange = scores.get(id) - lastScores.get(id);
-						if (scoreChange > 0)
-							newScores.put(id, scoreChange);
-					}
+	private void applyPendingChanges() throws IOException {
+		// Find changes forwarded by other servers, changes applied before are kept
+		// until the indexes containing them are saved
+		CommonDataContainer pending = container.getChildContainer("pending");
+		LinkedHashMap<String, JsonArray> changes = new LinkedHashMap<String, JsonArray>();
+		pending.runForEntries((key, value) -> {
+			if (!appliedPending.containsKey(key))
+				changes.put(key, value.getAsJsonArray());
+			return true;
+		});
 
-					// Clear current scores
-					int addedScores = 0;
-					current.deleteContainer();
-					current.setEntry("dataholder", new JsonPrimitive(true));
-					current.setEntry("last_refresh", new JsonPrimitive(System.currentTimeMillis()));
-					current.setEntry("last_refresh_prev",
-							last.entryExists("last_refresh") ? last.getEntry("last_refresh")
-									: new JsonPrimitive(System.currentTimeMillis()));
-					for (String id : newScores.keySet().stream()
-							.sorted((t1, t2) -> -Integer.compare(newScores.get(t1), newScores.get(t2)))
-							.toArray(t -> new String[t])) {
-						// Add only a thousand
-						if (addedScores >= 1000)
-							break;
-						addedScores++;
-
-						// Add
-						current.setEntry("s-" + id, new JsonPrimitive(newScores.get(id)));
-					}
+		// Apply
+		int now = (int) (System.currentTimeMillis() / 1000l);
+		for (String key : changes.keySet()) {
+			JsonArray change = changes.get(key);
+			if (change.size() == 0)
+				rewriteIndexes();
+			else if (change.size() == 1)
+				removeScores(change.get(0).getAsString());
+			else
+				updateScores(change.get(0).getAsString(), change.get(1).getAsInt(), change.get(2).getAsInt(), now);
+			appliedPending.put(key, change);
+		}
+	}
 
-					// Delete last scores
-					last.deleteContainer();
+	private void deleteAppliedChanges() throws IOException {
+		// Remove forwarded changes now that the saved indexes contain them
+		CommonDataContainer pending = container.getChildContainer("pending");
+		for (String key : new ArrayList<String>(appliedPending.keySet())) {
+			pending.deleteEntry(key);
+			JsonArray change = appliedPending.remove(key);
+			if (change.size() != 0)
+				recordChange(change);
+		}
+	}
 
-					// Populate last scores
-					last.setEntry("last_refresh", new JsonPrimitive(System.currentTimeMillis()));
-					for (String id : scores.keySet()) {
-						last.setEntry("s-" + id, new JsonPrimitive(scores.get(id)));
-					}
-				}
+	private void rewriteIndexes() {
+		allTime.markAllDirty();
+		for (PeriodIndexes period : new PeriodIndexes[] { daily, weekly, monthly }) {
+			synchronized (period) {
+				period.live.markAllDirty();
+				period.last.markAllDirty();
 			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
 		}
 	}
 
-	private void refreshMonthlyScoresIfNeeded(HashMap<String, Integer> scores) {
-		try {
-			Calendar cal = Calendar.getInstance();
-			CommonDataContainer scoresMonthly = container.getChildContainer("monthly");
-
-			// Check last date
-			JsonElement ent = scoresMonthly.getEntry("last_month");
-			int lastMonth = ent == null ? -1 : ent.getAsInt();
-			if (lastMonth != cal.get(Calendar.MONTH)) {
-				// Read last time
-				long lastRefresh = -1;
-				if (scoresMonthly.entryExists("last_refresh"))
-					lastRefresh = scoresMonthly.getEntry("last_refresh").getAsLong();
-
-				// Check refresh
-				if (lastRefresh != -1 && (System.currentTimeMillis() - lastRefresh) > 12 * 60 * 60 * 1000)
-					return;
-
-				// Refresh
-				scoresMonthly.setEntry("last_refresh", new JsonPrimitive(System.currentTimeMillis()));
-				scoresMonthly.setEntry("last_month", new JsonPrimitive(cal.get(Calendar.MONTH)));
-				logger.info("Refreshing monthly " + name + " score...");
-
-				// Block
-				synchronized (refreshMonthlyLock) {
-					CommonDataContainer current = scoresMonthly.getChildContainer("scores_current");
-					CommonDataContainer last = scoresMonthly.getChildContainer("scores_last");
-
-					// Load last scores
-					HashMap<String, Integer> lastScores = new HashMap<String, Integer>();
-					last.runForEntries((key, value) -> {
-						if (key.startsWith("s-")) {
-							String id = key.substring(2);
-							lastScores.put(id, value.getAsInt());
-						}
-						return true;
-					});
-
-					// Compute current score changes
-					HashMap<String, Integer> newScores = new HashMap<String, Integer>();
-					for (String id : scores.keySet()) {
-						if (!lastScores.containsKey(id))
-							continue;
-						int scoreChange = scores.get(id) - lastScores.get(id);
-						if (scoreChange > 0)
-							newScores.put(id, scoreChange);
-					}
-
-					// Clear current scores
-					int addedScores = 0;
-					current.deleteContainer();
-					current.setEntry("dataholder", new JsonPrimitive(true));
-					current.setEntry("last_refresh", new JsonPrimitive(System.currentTimeMillis()));
-					current.setEntry("last_refresh_prev",
-							last.entryExists("last_refresh") ? last.getEntry("last_refresh")
-									: new JsonPrimitive(System.currentTimeMillis()));
-					for (String id : newScores.keySet().stream()
-							.sorted((t1, t2) -> -Integer.compare(newScores.get(t1), newScores.get(t2)))
-							.toArray(t -> new String[t])) {
-						// Add only a thousand
-						if (addedScores >= 1000)
-							break;
-						addedScores++;
-
-						// Add
-						current.setEntry("s-" + id, new JsonPrimitive(newScores.get(id)));
-					}
+	private boolean recordChange(JsonArray change) {
+		// Changes made while owning the leaderboard are kept for a while so they can
+		// be forwarded if another server turns out to own it too
+		synchronized (changeLogLock) {
+			if (!owner)
+				return false;
+			currentChanges.add(change);
+			return true;
+		}
+	}
 
-					// Delete last scores
-					last.deleteContainer();
+	private void forwardChange(JsonArray change) {
+		// Let the owning server apply it, our indexes are replaced on the next reload
+		try {
+			container.getChildContainer("pending").setEntry(Long.toHexString(ThreadLocalRandom.current().nextLong()),
+					change);
+		} catch (IOException e) {
+			logger.error("Failed to forward " + name + " leaderboard change", e);
+		}
+	}
 
-					// Populate last scores
-					last.setEntry("last_refresh", new JsonPrimitive(System.currentTimeMillis()));
-					for (String id : scores.keySet()) {
-						last.setEntry("s-" + id, new JsonPrimitive(scores.get(id)));
-					}
+	private void updateScores(String id, int total, int change, int now) {
+		allTime.setScore(id, total, now);
+		if (change > 0) {
+			// Only gains count towards the period scores
+			for (PeriodIndexes period : new PeriodIndexes[] { daily, weekly, monthly }) {
+				synchronized (period) {
+					period.live.addScore(id, change, now);
 				}
 			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
 		}
 	}
 
-	@Override
-	public Map<String, Integer> getWeeklyScores() {
-		try {
-			synchronized (refreshWeeklyLock) {
-				// Load scores
-				HashMap<String, Integer> userScores = new HashMap<String, Integer>();
-
-				// Load container
-				CommonDataContainer scores = container.getChildContainer("weekly");
-				scores = scores.getChildContainer("scores_current");
-
-				// Add entries
-				scores.runForEntries((key, value) -> {
-					if (key.startsWith("s-")) {
-						String id = key.substring(2);
-						userScores.put(id, value.getAsInt());
-					}
-					return true;
-				});
-
-				// Sort
-				LinkedHashMap<String, Integer> userScoresSorted = new LinkedHashMap<String, Integer>();
-				for (String id : userScores.keySet().stream()
-						.sorted((t1, t2) -> -Integer.compare(userScores.get(t1), userScores.get(t2)))
-						.toArray(t -> new String[t])) {
-					userScoresSorted.put(id, userScores.get(id));
-				}
-				return userScoresSorted;
+	private void removeScores(String id) {
+		allTime.remove(id);
+		for (PeriodIndexes period : new PeriodIndexes[] { daily, weekly, monthly }) {
+			synchronized (period) {
+				period.live.remove(id);
+				period.last.remove(id);
 			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
 		}
 	}
 
-	@Override
-	public Map<String, Integer> getMonthlyScores() {
-		try {
-			synchronized (refreshMonthlyLock) {
-				// Load scores
-				HashMap<String, Integer> userScores = new HashMap<String, Integer>();
+	@EventListener
+	public void rankChanged(RankChangedEvent event) {
+		// TODO: change to not be hardcoded
+		if (event.getEntityRank().getTypeID() != RankTypeID.UDT)
+			return;
+
+		// Update scores
+		String id = event.getSave().getSaveID();
+		int now = (int) (System.currentTimeMillis() / 1000l);
+		int change = event.getNewTotalScore() - event.getLastTotalScore();
+		updateScores(id, event.getNewTotalScore(), change, now);
+		JsonArray ch = new JsonArray();
+		ch.add(id);
+		ch.add(event.getNewTotalScore());
+		ch.add(change);
+		if (!recordChange(ch))
+			forwardChange(ch);
+	}
 
-				// Load container
-				CommonDataContainer scores = container.getChildContainer("monthly");
-				scores = scores.getChildContainer("scores_current");
+	@EventListener
+	public void saveDeleted(AccountSaveDeletedEvent event) {
+		// Remove scores
+		String id = event.getSave().getSaveID();
+		removeScores(id);
+		JsonArray ch = new JsonArray();
+		ch.add(id);
+		if (!recordChange(ch))
+			forwardChange(ch);
+	}
 
-				// Add entries
-				scores.runForEntries((key, value) -> {
-					if (key.startsWith("s-")) {
-						String id = key.substring(2);
-						userScores.put(id, value.getAsInt());
-					}
-					return true;
-				});
+	private LeaderboardIndex getIndex(Period period) {
+		switch (period) {
+
+		case DAILY:
+			return daily.last;
+
+		case WEEKLY:
+			return weekly.last;
+
+		case MONTHLY:
+			return monthly.last;
+
+		default:
+			return allTime;
 
-				// Sort
-				LinkedHashMap<String, Integer> userScoresSorted = new LinkedHashMap<String, Integer>();
-				for (String id : userScores.keySet().stream()
-						.sorted((t1, t2) -> -Integer.compare(userScores.get(t1), userScores.get(t2)))
-						.toArray(t -> new String[t])) {
-					userScoresSorted.put(id, userScores.get(id));
-				}
-				return userScoresSorted;
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
 		}
 	}
 
-	@Override
-	public Map<String, Integer> getDailyScores() {
-		try {
-			synchronized (refreshDailyLock) {
-				// Load scores
-				HashMap<String, Integer> userScores = new HashMap<String, Integer>();
+	private Map<String, Integer> toMap(ScoreEntry[] entries) {
+		LinkedHashMap<String, Integer> userScoresSorted = new LinkedHashMap<String, Integer>();
+		for (ScoreEntry entry : entries)
+			userScoresSorted.put(entry.saveID, entry.score);
+		return userScoresSorted;
+	}
 
-				// Load container
-				CommonDataContainer scores = container.getChildContainer("daily");
-				scores = scores.getChildContainer("scores_current");
+	private DateRange getDateRange(PeriodIndexes period) {
+		synchronized (period) {
+			DateRange range = new DateRange();
+			range.dateEnd = period.lastEnd;
+			range.dateStart = period.lastStart;
+			return range;
+		}
+	}
 
-				// Add entries
-				scores.runForEntries((key, value) -> {
-					if (key.startsWith("s-")) {
-						String id = key.substring(2);
-						userScores.put(id, value.getAsInt());
-					}
-					return true;
-				});
+	@Override
+	public ScoreEntry[] getTopScores(Period period, int offset, int count) {
+		return getIndex(period).getRange(offset, count);
+	}
 
-				// Sort
-				LinkedHashMap<String, Integer> userScoresSorted = new LinkedHashMap<String, Integer>();
-				for (String id : userScores.keySet().stream()
-						.sorted((t1, t2) -> -Integer.compare(userScores.get(t1), userScores.get(t2)))
-						.toArray(t -> new String[t])) {
-					userScoresSorted.put(id, userScores.get(id));
-				}
-				return userScoresSorted;
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+	@Override
+	public ScoreEntry[] getScoresAround(Period period, String saveID, int range) {
+		LeaderboardIndex index = getIndex(period);
+		int rank = index.getRank(saveID);
+		if (rank == -1)
+			return new ScoreEntry[0];
+		return index.getRange(rank - 1 - range, range * 2 + 1);
 	}
 
 	@Override
-	public Map<String, Integer> getScoresAllTime() {
-		try {
-			synchronized (refreshAllTimeLock) {
-				// Load scores
-				HashMap<String, Integer> userScores = new HashMap<String, Integer>();
+	public int getRank(Period period, String saveID) {
+		return getIndex(period).getRank(saveID);
+	}
 
-				// Load container
-				CommonDataContainer scoresAllTime = container.getChildContainer("alltime");
-				scoresAllTime = scoresAllTime.getChildContainer("scores");
+	@Override
+	public Map<String, Integer> getWeeklyScores() {
+		return toMap(getTopScores(Period.WEEKLY, 0, MAX_LISTED_SCORES));
+	}
 
-				// Add entries
-				scoresAllTime.runForEntries((key, value) -> {
-					if (key.startsWith("s-")) {
-						String id = key.substring(2);
-						userScores.put(id, value.getAsInt());
-					}
-					return true;
-				});
+	@Override
+	public Map<String, Integer> getMonthlyScores() {
+		return toMap(getTopScores(Period.MONTHLY, 0, MAX_LISTED_SCORES));
+	}
 
-				// Sort
-				LinkedHashMap<String, Integer> userScoresSorted = new LinkedHashMap<String, Integer>();
-				for (String id : userScores.keySet().stream()
-						.sorted((t1, t2) -> -Integer.compare(userScores.get(t1), userScores.get(t2)))
-						.toArray(t -> new String[t])) {
-					userScoresSorted.put(id, userScores.get(id));
-				}
-				return userScoresSorted;
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+	@Override
+	public Map<String, Integer> getDailyScores() {
+		return toMap(getTopScores(Period.DAILY, 0, MAX_LISTED_SCORES));
+	}
+
+	@Override
+	public Map<String, Integer> getScoresAllTime() {
+		return toMap(getTopScores(Period.ALL_TIME, 0, MAX_LISTED_SCORES));
 	}
 
 	@Override
 	public DateRange getDateRangeOfDailyScores() {
-		try {
-			synchronized (refreshDailyLock) {
-				// Load container
-				CommonDataContainer scores = container.getChildContainer("daily");
-				scores = scores.getChildContainer("scores_current");
-
-				// Retrieve times
-				DateRange range = new DateRange();
-				range.dateEnd = scores.getEntry("last_refresh").getAsLong();
-				range.dateStart = scores.getEntry("last_refresh_prev").getAsLong();
-				return range;
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return getDateRange(daily);
 	}
 
 	@Override
 	public DateRange getDateRangeOfWeeklyScores() {
-		try {
-			synchronized (refreshWeeklyLock) {
-				// Load container
-				CommonDataContainer scores = container.getChildContainer("weekly");
-				scores = scores.getChildContainer("scores_current");
-
-				// Retrieve times
-				DateRange range = new DateRange();
-				range.dateEnd = scores.getEntry("last_refresh").getAsLong();
-				range.dateStart = scores.getEntry("last_refresh_prev").getAsLong();
-				return range;
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return getDateRange(weekly);
 	}
 
 	@Override
 	public DateRange getDateRangeOfMonthlyScores() {
-		try {
-			synchronized (refreshMonthlyLock) {
-				// Load container
-				CommonDataContainer scores = container.getChildContainer("monthly");
-				scores = scores.getChildContainer("scores_current");
-
-				// Retrieve times
-				DateRange range = new DateRange();
-				range.dateEnd = scores.getEntry("last_refresh").getAsLong();
-				range.dateStart = scores.getEntry("last_refresh_prev").getAsLong();
-				return range;
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return getDateRange(monthly);
 	}
 
 }
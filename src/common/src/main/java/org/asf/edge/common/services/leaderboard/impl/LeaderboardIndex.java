@@ -0,0 +1,369 @@
+package org.asf.edge.common.services.leaderboard.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.asf.edge.common.services.commondata.CommonDataContainer;
+import org.asf.edge.common.services.leaderboard.Leaderboard.ScoreEntry;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+/**
+ * 
+ * Leaderboard score index, indexable skip list ordered by score (highest
+ * first) and save ID, supports rank lookups and range queries in O(log n)
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+class LeaderboardIndex {
+
+	private static final int MAX_LEVEL = 32;
+	private static final int CHUNKS = 64;
+
+	private Node head = new Node(null, 0, 0, MAX_LEVEL);
+	private int level = 1;
+	private int size;
+	private HashMap<String, Node> nodes = new HashMap<String, Node>();
+	private boolean[] dirtyChunks = new boolean[CHUNKS];
+	private boolean dirty;
+
+	private static class Node {
+		public String id;
+		public int score;
+		public int updated;
+
+		public Node[] next;
+		public int[] span;
+
+		public Node(String id, int score, int updated, int level) {
+			this.id = id;
+			this.score = score;
+			this.updated = updated;
+			next = new Node[level];
+			span = new int[level];
+		}
+
+		public boolean isBefore(int score, String id) {
+			if (this.score != score)
+				return this.score > score;
+			return this.id.compareTo(id) < 0;
+		}
+	}
+
+	/**
+	 * Retrieves the amount of entries in the index
+	 * 
+	 * @return Entry count
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Retrieves the score of a save
+	 * 
+	 * @param saveID Save ID
+	 * @return Score value or 0 if not present
+	 */
+	public synchronized int getScore(String saveID) {
+		Node node = nodes.get(saveID);
+		if (node == null)
+			return 0;
+		return node.score;
+	}
+
+	/**
+	 * Assigns the score of a save
+	 * 
+	 * @param saveID  Save ID
+	 * @param score   New score
+	 * @param updated Update time (in seconds)
+	 */
+	public synchronized void setScore(String saveID, int score, int updated) {
+		Node node = nodes.get(saveID);
+		if (node != null) {
+			if (node.score == score) {
+				// Only update the time
+				node.updated = updated;
+				markDirty(saveID);
+				return;
+			}
+			delete(node);
+		}
+		nodes.put(saveID, insert(saveID, score, updated));
+		markDirty(saveID);
+	}
+
+	/**
+	 * Adds to the score of a save
+	 * 
+	 * @param saveID  Save ID
+	 * @param change  Score change
+	 * @param updated Update time (in seconds)
+	 */
+	public synchronized void addScore(String saveID, int change, int updated) {
+		setScore(saveID, getScore(saveID) + change, updated);
+	}
+
+	/**
+	 * Removes saves from the index
+	 * 
+	 * @param saveID Save ID
+	 */
+	public synchronized void remove(String saveID) {
+		Node node = nodes.remove(saveID);
+		if (node != null) {
+			delete(node);
+			markDirty(saveID);
+		}
+	}
+
+	/**
+	 * Retrieves the rank of a save
+	 * 
+	 * @param saveID Save ID
+	 * @return Rank (1 for the highest score) or -1 if not present or without a
+	 *         positive score
+	 */
+	public synchronized int getRank(String saveID) {
+		Node node = nodes.get(saveID);
+		if (node == null || node.score <= 0)
+			return -1;
+
+		// Walk down, counting the skipped entries
+		int rank = 0;
+		Node x = head;
+		for (int i = level - 1; i >= 0; i--) {
+			while (x.next[i] != null && (x.next[i] == node || x.next[i].isBefore(node.score, node.id))) {
+				rank += x.span[i];
+				x = x.next[i];
+			}
+			if (x == node)
+				return rank;
+		}
+		return -1;
+	}
+
+	/**
+	 * Retrieves entries by rank, entries without a positive score are not
+	 * included
+	 * 
+	 * @param offset Amount of entries to skip
+	 * @param count  Maximum amount of entries to retrieve
+	 * @return Array of ScoreEntry instances
+	 */
+	public synchronized ScoreEntry[] getRange(int offset, int count) {
+		ArrayList<ScoreEntry> entries = new ArrayList<ScoreEntry>();
+		if (offset < 0) {
+			count += offset;
+			offset = 0;
+		}
+		if (count <= 0 || offset >= size)
+			return new ScoreEntry[0];
+
+		// Find first entry
+		int traversed = 0;
+		Node x = head;
+		for (int i = level - 1; i >= 0; i--) {
+			while (x.next[i] != null && traversed + x.span[i] <= offset + 1) {
+				traversed += x.span[i];
+				x = x.next[i];
+			}
+		}
+
+		// Add entries
+		int rank = offset + 1;
+		while (x != null && entries.size() < count && x.score > 0) {
+			ScoreEntry entry = new ScoreEntry();
+			entry.saveID = x.id;
+			entry.score = x.score;
+			entry.rank = rank++;
+			entries.add(entry);
+			x = x.next[0];
+		}
+		return entries.toArray(t -> new ScoreEntry[t]);
+	}
+
+	/**
+	 * Retrieves the saves that were not updated since a specific time
+	 * 
+	 * @param time Time in seconds
+	 * @return Array of save IDs
+	 */
+	public synchronized String[] getEntriesNotUpdatedSince(int time) {
+		return nodes.values().stream().filter(t -> t.updated < time).map(t -> t.id).toArray(t -> new String[t]);
+	}
+
+	private Node insert(String id, int score, int updated) {
+		Node[] update = new Node[MAX_LEVEL];
+		int[] rank = new int[MAX_LEVEL];
+
+		// Find position
+		Node x = head;
+		for (int i = level - 1; i >= 0; i--) {
+			rank[i] = i == level - 1 ? 0 : rank[i + 1];
+			while (x.next[i] != null && x.next[i].isBefore(score, id)) {
+				rank[i] += x.span[i];
+				x = x.next[i];
+			}
+			update[i] = x;
+		}
+
+		// Grow levels if needed
+		int lvl = randomLevel();
+		if (lvl > level) {
+			for (int i = level; i < lvl; i++) {
+				rank[i] = 0;
+				update[i] = head;
+				head.span[i] = size;
+			}
+			level = lvl;
+		}
+
+		// Link
+		x = new Node(id, score, updated, lvl);
+		for (int i = 0; i < lvl; i++) {
+			x.next[i] = update[i].next[i];
+			update[i].next[i] = x;
+			x.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+			update[i].span[i] = (rank[0] - rank[i]) + 1;
+		}
+		for (int i = lvl; i < level; i++)
+			update[i].span[i]++;
+		size++;
+		return x;
+	}
+
+	private void delete(Node node) {
+		Node[] update = new Node[MAX_LEVEL];
+
+		// Find position
+		Node x = head;
+		for (int i = level - 1; i >= 0; i--) {
+			while (x.next[i] != null && x.next[i] != node && x.next[i].isBefore(node.score, node.id))
+				x = x.next[i];
+			update[i] = x;
+		}
+
+		// Unlink
+		for (int i = 0; i < level; i++) {
+			if (update[i].next[i] == node) {
+				update[i].span[i] += node.span[i] - 1;
+				update[i].next[i] = node.next[i];
+			} else
+				update[i].span[i]--;
+		}
+		while (level > 1 && head.next[level - 1] == null)
+			level--;
+		size--;
+	}
+
+	private static int randomLevel() {
+		int lvl = 1;
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		while (lvl < MAX_LEVEL && rnd.nextInt(4) == 0)
+			lvl++;
+		return lvl;
+	}
+
+	private static int chunkOf(String saveID) {
+		return Math.floorMod(saveID.hashCode(), CHUNKS);
+	}
+
+	private void markDirty(String saveID) {
+		dirtyChunks[chunkOf(saveID)] = true;
+		dirty = true;
+	}
+
+	/**
+	 * Marks all chunks as changed so the next save rewrites the full index
+	 */
+	public synchronized void markAllDirty() {
+		Arrays.fill(dirtyChunks, true);
+		dirty = true;
+	}
+
+	/**
+	 * Loads the index from a data container
+	 * 
+	 * @param data Container to load from
+	 * @throws IOException If loading fails
+	 */
+	public synchronized void load(CommonDataContainer data) throws IOException {
+		for (int i = 0; i < CHUNKS; i++) {
+			JsonElement ent = data.getEntry("c-" + i);
+			if (ent == null)
+				continue;
+
+			// Read entries, stored as flat array of save ID, score and update time
+			JsonArray chunk = ent.getAsJsonArray();
+			for (int i2 = 0; i2 + 2 < chunk.size(); i2 += 3) {
+				String id = chunk.get(i2).getAsString();
+				Node old = nodes.get(id);
+				if (old != null)
+					delete(old);
+				nodes.put(id, insert(id, chunk.get(i2 + 1).getAsInt(), chunk.get(i2 + 2).getAsInt()));
+			}
+		}
+	}
+
+	/**
+	 * Writes the changed parts of the index to a data container
+	 * 
+	 * @param data Container to write to
+	 * @return True if anything was written, false otherwise
+	 * @throws IOException If saving fails
+	 */
+	public boolean save(CommonDataContainer data) throws IOException {
+		JsonArray[] chunks = new JsonArray[CHUNKS];
+		synchronized (this) {
+			if (!dirty)
+				return false;
+
+			// Build changed chunks
+			for (int i = 0; i < CHUNKS; i++) {
+				if (dirtyChunks[i])
+					chunks[i] = new JsonArray();
+				dirtyChunks[i] = false;
+			}
+			dirty = false;
+			for (Node node : nodes.values()) {
+				JsonArray chunk = chunks[chunkOf(node.id)];
+				if (chunk != null) {
+					chunk.add(node.id);
+					chunk.add(node.score);
+					chunk.add(node.updated);
+				}
+			}
+		}
+
+		// Write
+		for (int i = 0; i < CHUNKS; i++) {
+			if (chunks[i] == null)
+				continue;
+			try {
+				if (chunks[i].size() == 0)
+					data.deleteEntry("c-" + i);
+				else
+					data.setEntry("c-" + i, chunks[i]);
+			} catch (IOException e) {
+				// Retry the remaining chunks on the next save
+				synchronized (this) {
+					for (int i2 = i; i2 < CHUNKS; i2++) {
+						if (chunks[i2] != null)
+							dirtyChunks[i2] = true;
+					}
+					dirty = true;
+				}
+				throw e;
+			}
+		}
+		return true;
+	}
+
+}
@@ -1,9 +1,15 @@
 package org.asf.edge.common.services.minigamedata.impl;
 
 import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.asf.connective.tasks.AsyncTaskManager;
 import org.asf.edge.common.entities.minigamedata.MinigameData;
 import org.asf.edge.common.entities.minigamedata.MinigameDataRequest;
 import org.asf.edge.common.entities.minigamedata.MinigameSaveRequest;
@@ -16,10 +22,18 @@ import org.asf.edge.common.services.minigamedata.MinigameDataManager;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 
 public class MinigameDataManagerImpl extends MinigameDataManager {
 
+	private static final int INDEX_VERSION = 1;
+
 	private CommonDataContainer globalData;
+	private CommonDataContainer indexData;
+	private volatile boolean indexBuilt;
+	private boolean warnedIndexMissing;
+	private Logger logger = LogManager.getLogger("MinigameDataManager");
+	private ConcurrentHashMap<String, MinigameScoreIndex> indexes = new ConcurrentHashMap<String, MinigameScoreIndex>();
 
 	public static class MinigameDataContainer {
 		public String userID;
@@ -35,13 +49,157 @@ public class MinigameDataManagerImpl extends MinigameDataManager {
 	public void initService() {
 		// Retrieve container
 		globalData = CommonDataManager.getInstance().getContainer("MINIGAMEDATA");
+
+		// Check score index
+		try {
+			indexData = globalData.getChildContainer("index");
+			indexBuilt = isIndexBuilt();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		// Start index watchdog, picks up rebuilds and changes made by other servers
+		AsyncTaskManager.runAsync(() -> {
+			while (true) {
+				try {
+					Thread.sleep(30000);
+				} catch (InterruptedException e) {
+					break;
+				}
+				try {
+					indexBuilt = isIndexBuilt();
+					for (String id : indexes.keySet()) {
+						// Drop outdated indexes, they are reloaded when next used
+						MinigameScoreIndex index = indexes.get(id);
+						if (index != null && index.isOutdated())
+							indexes.remove(id, index);
+					}
+				} catch (IOException e) {
+					logger.error("Failed to check minigame score indexes", e);
+				}
+			}
+		});
+	}
+
+	private boolean isIndexBuilt() throws IOException {
+		return indexData.entryExists("version") && indexData.getEntry("version").getAsInt() == INDEX_VERSION;
+	}
+
+	private static String getIndexID(int gameId, int gameLevel, String key) {
+		return gameId + "-" + gameLevel + "-" + URLEncoder.encode(key, StandardCharsets.UTF_8);
+	}
+
+	private MinigameScoreIndex getIndex(int gameId, int gameLevel, String key) throws IOException {
+		String id = getIndexID(gameId, gameLevel, key);
+		MinigameScoreIndex index = indexes.get(id);
+		if (index == null) {
+			synchronized (indexes) {
+				index = indexes.get(id);
+				if (index == null) {
+					// Load
+					index = new MinigameScoreIndex(indexData.getChildContainer("i-" + id));
+					index.load();
+					indexes.put(id, index);
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Rebuilds the minigame score index from the minigame data of all saves
+	 * 
+	 * @throws IOException If rebuilding the index fails
+	 */
+	public void rebuildIndex() throws IOException {
+		// Clear index
+		logger.info("Clearing minigame score index...");
+		indexBuilt = false;
+		indexData.deleteContainer();
+		indexes.clear();
+
+		// Index all saves
+		logger.info("Indexing minigame data...");
+		ObjectMapper mapper = new ObjectMapper();
+		HashMap<String, MinigameScoreIndex> newIndexes = new HashMap<String, MinigameScoreIndex>();
+		globalData.runForChildContainers(container -> {
+			try {
+				if (container.startsWith("save-")) {
+					CommonDataContainer data = globalData.getChildContainer(container);
+					String saveID = container.substring(5);
+
+					// Add all minigame entries
+					for (String key : data.getEntryKeys()) {
+						int[] ids = parseEntryKey(key);
+						if (ids == null)
+							continue;
+						MinigameDataContainer c = mapper.readValue(data.getEntry(key).toString(),
+								MinigameDataContainer.class);
+						for (String dataKey : c.data.keySet()) {
+							String id = getIndexID(ids[0], ids[1], dataKey);
+							MinigameScoreIndex index = newIndexes.get(id);
+							if (index == null) {
+								index = new MinigameScoreIndex(indexData.getChildContainer("i-" + id));
+								newIndexes.put(id, index);
+							}
+							index.update(saveID, c.data.get(dataKey), c.timePlayed, c.timesWon, c.timesLost, false);
+						}
+					}
+				}
+				return true;
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+
+		// Save
+		logger.info("Saving " + newIndexes.size() + " minigame score indexes...");
+		for (MinigameScoreIndex index : newIndexes.values())
+			index.saveAll();
+		indexData.setEntry("version", new JsonPrimitive(INDEX_VERSION));
+		indexes.putAll(newIndexes);
+		indexBuilt = true;
+	}
+
+	private static int[] parseEntryKey(String key) {
+		// Parse minigame-<game>-<level>
+		if (!key.startsWith("minigame-"))
+			return null;
+		String[] parts = key.substring("minigame-".length()).split("-");
+		if (parts.length != 2)
+			return null;
+		try {
+			return new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) };
+		} catch (NumberFormatException e) {
+			return null;
+		}
 	}
 
 	@Override
 	public void deleteDataFor(String saveID) {
 		try {
+			// Remove from score indexes
+			CommonDataContainer dataG = globalData.getChildContainer("save-" + saveID);
+			ObjectMapper mapper = new ObjectMapper();
+			for (String key : dataG.getEntryKeys()) {
+				int[] ids = parseEntryKey(key);
+				if (ids == null)
+					continue;
+				MinigameDataContainer c = mapper.readValue(dataG.getEntry(key).toString(),
+						MinigameDataContainer.class);
+				for (String dataKey : c.data.keySet()) {
+					// Remove from loaded indexes, or only from storage to not load the whole index
+					String id = getIndexID(ids[0], ids[1], dataKey);
+					MinigameScoreIndex index = indexes.get(id);
+					if (index != null)
+						index.remove(saveID);
+					else
+						MinigameScoreIndex.removeStored(indexData.getChildContainer("i-" + id), saveID);
+				}
+			}
+
 			// Delete from all minigame saves
-			globalData.getChildContainer("save-" + saveID).deleteContainer();
+			dataG.deleteContainer();
 
 			// Delete data from user
 			AccountSaveContainer sv = AccountManager.getInstance().getSaveByID(saveID);
@@ -92,6 +250,12 @@ public class MinigameDataManagerImpl extends MinigameDataManager {
 			CommonDataContainer dataG = globalData.getChildContainer("save-" + save.getSaveID());
 			dataG.setEntry("minigame-" + gameId + "-" + saveRequest.gameLevel,
 					JsonParser.parseString(mapper.writeValueAsString(old)));
+
+			// Update score indexes
+			for (String key : old.data.keySet()) {
+				getIndex(gameId, saveRequest.gameLevel, key).update(save.getSaveID(), old.data.get(key),
+						old.timePlayed, old.timesWon, old.timesLost, true);
+			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -150,6 +314,29 @@ public class MinigameDataManagerImpl extends MinigameDataManager {
 //				return l.toArray(t -> new MinigameData[t]);
 			}
 
+			// Use the score index if present
+			if (indexBuilt && dataRequest.key != null) {
+				MinigameScoreIndex index = getIndex(gameId, dataRequest.gameLevel, dataRequest.key);
+				if (dataRequest.friendsOnly) {
+					// TODO
+					MinigameData res = index.get(requestingID);
+					if (res == null || dataRequest.maxEntries <= 0
+							|| (dataRequest.minimalPlayedAtTime != -1
+									&& res.timePlayed < dataRequest.minimalPlayedAtTime)
+							|| (dataRequest.maximumPlayedAtTime != -1
+									&& res.timePlayed > dataRequest.maximumPlayedAtTime))
+						return new MinigameData[0];
+					return new MinigameData[] { res };
+				}
+				return index.getTopScores(dataRequest.maxEntries, dataRequest.minimalPlayedAtTime,
+						dataRequest.maximumPlayedAtTime);
+			}
+			if (!warnedIndexMissing) {
+				warnedIndexMissing = true;
+				logger.warn(
+						"Minigame score index has not been built, high score lists are loaded from the data of all saves, please run the minigame index rebuild tool");
+			}
+
 			// List all
 			globalData.runForChildContainers(container -> {
 				try {
@@ -205,18 +392,8 @@ public class MinigameDataManagerImpl extends MinigameDataManager {
 			});
 
 			// Sort and apply limit
-			ArrayList<MinigameData> l = new ArrayList<MinigameData>();
-			for (MinigameData data : lst.stream().sorted((t1, t2) -> -Integer.compare(t1.value, t2.value))
-					.toArray(t -> new MinigameData[t])) {
-				if (l.size() >= dataRequest.maxEntries)
-					break;
-				l.add(data);
-				lst.remove(data);
-			}
-			lst.clear();
-
-			// Return
-			return l.toArray(t -> new MinigameData[t]);
+			return lst.stream().sorted((t1, t2) -> -Integer.compare(t1.value, t2.value))
+					.limit(Math.max(dataRequest.maxEntries, 0)).toArray(t -> new MinigameData[t]);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -0,0 +1,266 @@
+package org.asf.edge.common.services.minigamedata.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.asf.edge.common.entities.minigamedata.MinigameData;
+import org.asf.edge.common.services.commondata.CommonDataContainer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * 
+ * Minigame score index, keeps the scores of one minigame level and data key
+ * sorted by value and by play time so high score lists can be retrieved
+ * without loading the data of all saves, a marker written with each change
+ * lets other servers detect that their copy is outdated
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+class MinigameScoreIndex {
+
+	private static final Comparator<Entry> BY_VALUE = (t1, t2) -> {
+		if (t1.value != t2.value)
+			return -Integer.compare(t1.value, t2.value);
+		return t1.saveID.compareTo(t2.saveID);
+	};
+	private static final Comparator<Entry> BY_TIME = (t1, t2) -> {
+		if (t1.timePlayed != t2.timePlayed)
+			return Long.compare(t1.timePlayed, t2.timePlayed);
+		return t1.saveID.compareTo(t2.saveID);
+	};
+
+	private CommonDataContainer data;
+	private HashMap<String, Entry> entries = new HashMap<String, Entry>();
+	private TreeSet<Entry> byValue = new TreeSet<Entry>(BY_VALUE);
+	private TreeSet<Entry> byTime = new TreeSet<Entry>(BY_TIME);
+	private long lastUpdate;
+	private boolean outdated;
+
+	private static class Entry {
+		public String saveID;
+		public int value;
+		public long timePlayed;
+		public int timesWon;
+		public int timesLost;
+
+		public MinigameData toData() {
+			MinigameData res = new MinigameData();
+			res.userID = saveID;
+			res.value = value;
+			res.timePlayed = timePlayed;
+			res.timesWon = timesWon;
+			res.timesLost = timesLost;
+			return res;
+		}
+	}
+
+	/**
+	 * Creates the index
+	 * 
+	 * @param data Container the index is stored in
+	 */
+	public MinigameScoreIndex(CommonDataContainer data) {
+		this.data = data;
+	}
+
+	/**
+	 * Loads the index from its container
+	 * 
+	 * @throws IOException If loading fails
+	 */
+	public synchronized void load() throws IOException {
+		lastUpdate = readMarker(data);
+		data.runForEntries((key, value) -> {
+			if (key.startsWith("s-")) {
+				// Entries are stored as array of value, time played, times won and times lost
+				JsonArray ent = value.getAsJsonArray();
+				add(key.substring(2), ent.get(0).getAsInt(), ent.get(1).getAsLong(), ent.get(2).getAsInt(),
+						ent.get(3).getAsInt());
+			}
+			return true;
+		});
+	}
+
+	/**
+	 * Updates the score of a save
+	 * 
+	 * @param saveID     Save ID
+	 * @param value      Score value
+	 * @param timePlayed Last play time
+	 * @param timesWon   Amount of times won
+	 * @param timesLost  Amount of times lost
+	 * @param save       True to write the entry to the index container, false to
+	 *                   only update the index in memory
+	 * @throws IOException If saving fails
+	 */
+	public synchronized void update(String saveID, int value, long timePlayed, int timesWon, int timesLost,
+			boolean save) throws IOException {
+		add(saveID, value, timePlayed, timesWon, timesLost);
+		if (save) {
+			JsonArray ent = new JsonArray();
+			ent.add(value);
+			ent.add(timePlayed);
+			ent.add(timesWon);
+			ent.add(timesLost);
+			data.setEntry("s-" + saveID, ent);
+			markUpdated();
+		}
+	}
+
+	/**
+	 * Removes saves from the index
+	 * 
+	 * @param saveID Save ID
+	 * @throws IOException If saving fails
+	 */
+	public synchronized void remove(String saveID) throws IOException {
+		Entry old = entries.remove(saveID);
+		if (old != null) {
+			byValue.remove(old);
+			byTime.remove(old);
+		}
+		data.deleteEntry("s-" + saveID);
+		markUpdated();
+	}
+
+	/**
+	 * Removes saves from a stored index without loading it
+	 * 
+	 * @param data   Container the index is stored in
+	 * @param saveID Save ID
+	 * @throws IOException If saving fails
+	 */
+	public static void removeStored(CommonDataContainer data, String saveID) throws IOException {
+		if (data.entryExists("s-" + saveID)) {
+			data.deleteEntry("s-" + saveID);
+			data.setEntry("lastupdate", new JsonPrimitive(ThreadLocalRandom.current().nextLong()));
+		}
+	}
+
+	/**
+	 * Checks if the stored index was changed by another server since it was
+	 * loaded
+	 * 
+	 * @return True if the index needs to be reloaded, false otherwise
+	 * @throws IOException If reading the index fails
+	 */
+	public synchronized boolean isOutdated() throws IOException {
+		return outdated || readMarker(data) != lastUpdate;
+	}
+
+	private void markUpdated() throws IOException {
+		// Changes made elsewhere since the last check make this copy outdated
+		if (readMarker(data) != lastUpdate)
+			outdated = true;
+		lastUpdate = ThreadLocalRandom.current().nextLong();
+		data.setEntry("lastupdate", new JsonPrimitive(lastUpdate));
+	}
+
+	private static long readMarker(CommonDataContainer data) throws IOException {
+		JsonElement ele = data.getEntry("lastupdate");
+		if (ele == null)
+			return 0;
+		return ele.getAsLong();
+	}
+
+	/**
+	 * Writes all entries to the index container
+	 * 
+	 * @throws IOException If saving fails
+	 */
+	public synchronized void saveAll() throws IOException {
+		for (Entry ent : entries.values()) {
+			JsonArray arr = new JsonArray();
+			arr.add(ent.value);
+			arr.add(ent.timePlayed);
+			arr.add(ent.timesWon);
+			arr.add(ent.timesLost);
+			data.setEntry("s-" + ent.saveID, arr);
+		}
+		markUpdated();
+	}
+
+	private void add(String saveID, int value, long timePlayed, int timesWon, int timesLost) {
+		Entry old = entries.get(saveID);
+		if (old != null) {
+			byValue.remove(old);
+			byTime.remove(old);
+		}
+		Entry ent = new Entry();
+		ent.saveID = saveID;
+		ent.value = value;
+		ent.timePlayed = timePlayed;
+		ent.timesWon = timesWon;
+		ent.timesLost = timesLost;
+		entries.put(saveID, ent);
+		byValue.add(ent);
+		byTime.add(ent);
+	}
+
+	/**
+	 * Retrieves the score of a save
+	 * 
+	 * @param saveID Save ID
+	 * @return MinigameData instance or null
+	 */
+	public synchronized MinigameData get(String saveID) {
+		Entry ent = entries.get(saveID);
+		if (ent == null)
+			return null;
+		return ent.toData();
+	}
+
+	/**
+	 * Retrieves the highest scores
+	 * 
+	 * @param maxEntries          Maximum amount of entries
+	 * @param minimalPlayedAtTime Minimal play time (-1 for no limit)
+	 * @param maximumPlayedAtTime Maximum play time (-1 for no limit)
+	 * @return Array of MinigameData instances, sorted by value
+	 */
+	public synchronized MinigameData[] getTopScores(int maxEntries, long minimalPlayedAtTime,
+			long maximumPlayedAtTime) {
+		ArrayList<MinigameData> res = new ArrayList<MinigameData>();
+		if (maxEntries <= 0)
+			return new MinigameData[0];
+		if (minimalPlayedAtTime == -1) {
+			// Walk scores from the top
+			for (Entry ent : byValue) {
+				if (res.size() >= maxEntries)
+					break;
+				if (maximumPlayedAtTime != -1 && ent.timePlayed > maximumPlayedAtTime)
+					continue;
+				res.add(ent.toData());
+			}
+			return res.toArray(t -> new MinigameData[t]);
+		}
+
+		// Walk the entries played in the time window, keeping the highest scores
+		Entry from = new Entry();
+		from.saveID = "";
+		from.timePlayed = minimalPlayedAtTime;
+		PriorityQueue<Entry> top = new PriorityQueue<Entry>(BY_VALUE.reversed());
+		for (Entry ent : byTime.tailSet(from, true)) {
+			if (maximumPlayedAtTime != -1 && ent.timePlayed > maximumPlayedAtTime)
+				break;
+			top.add(ent);
+			if (top.size() > maxEntries)
+				top.poll();
+		}
+		while (!top.isEmpty())
+			res.add(top.poll().toData());
+		Collections.reverse(res);
+		return res.toArray(t -> new MinigameData[t]);
+	}
+
+}
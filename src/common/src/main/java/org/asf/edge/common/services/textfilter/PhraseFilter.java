@@ -49,11 +49,12 @@ public class PhraseFilter {
 	public void addMode(FilterMode mode) {
 		if (hasMode(mode))
 			return;
-		FilterMode[] modesU = new FilterMode[modes.length];
+		FilterMode[] modesU = new FilterMode[modes.length + 1];
 		for (int i = 0; i < modes.length; i++)
 			modesU[i] = modes[i];
 		modesU[modes.length] = mode;
 		modes = modesU;
+		set.markModified();
 	}
 
 	/**
@@ -72,11 +73,12 @@ public class PhraseFilter {
 	 * @param variant Variant to add
 	 */
 	public void addVariant(String variant) {
-		String[] variantsU = new String[variants.length];
+		String[] variantsU = new String[variants.length + 1];
 		for (int i = 0; i < variants.length; i++)
 			variantsU[i] = variants[i];
 		variantsU[variants.length] = variant;
 		variants = variantsU;
+		set.markModified();
 	}
 
 	/**
@@ -131,12 +133,11 @@ public class PhraseFilter {
 	 * @return Array of phrase strings
 	 */
 	public String[] getAllPhrases() {
-		String[] v = getVariants();
-		this.variants = new String[v.length + 1];
-		for (int i = 0; i < v.length; i++)
-			this.variants[i] = v[i];
-		this.variants[v.length] = getPhrase();
-		return v;
+		String[] phrases = new String[variants.length + 1];
+		for (int i = 0; i < variants.length; i++)
+			phrases[i] = variants[i];
+		phrases[variants.length] = getPhrase();
+		return phrases;
 	}
 
 }
@@ -16,6 +16,7 @@ public class PhraseFilterSet {
 	private String filterReason;
 
 	private ArrayList<PhraseFilter> phrases = new ArrayList<PhraseFilter>();
+	private volatile int version;
 
 	public PhraseFilterSet(String name, String description, String reason) {
 		this.setName = name;
@@ -49,6 +50,7 @@ public class PhraseFilterSet {
 			String... variants) {
 		PhraseFilter filter = new PhraseFilter(this, modes, phrase, variants, reason, severity);
 		phrases.add(filter);
+		markModified();
 		return filter;
 	}
 
@@ -61,6 +63,20 @@ public class PhraseFilterSet {
 		return phrases.toArray(t -> new PhraseFilter[t]);
 	}
 
+	/**
+	 * Retrieves the modification version of this set, increased each time a
+	 * phrase filter is added to the set or a filter in it is modified
+	 * 
+	 * @return Set version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	void markModified() {
+		version++;
+	}
+
 	/**
 	 * Retrieves the set name
 	 * 
@@ -0,0 +1,477 @@
+package org.asf.edge.common.services.textfilter.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.asf.edge.common.services.textfilter.FilterMode;
+import org.asf.edge.common.services.textfilter.FilterSeverity;
+import org.asf.edge.common.services.textfilter.PhraseFilter;
+import org.asf.edge.common.services.textfilter.PhraseFilterSet;
+import org.asf.edge.common.services.textfilter.result.FilterResult;
+import org.asf.edge.common.services.textfilter.result.WordMatch;
+
+/**
+ * 
+ * Compiled text filter, matches all phrases of a set of filters against the
+ * words of a message in a single pass instead of checking each phrase, mode
+ * and variant separately
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+class FilterMatcher {
+
+	private static final int EMPTY_PART = -1;
+	private static final int[] NONE = new int[0];
+
+	private static final int CHECK_WORD = 0;
+	private static final int CHECK_SEQUENCE = 1;
+	private static final int CHECK_WORDS_CONTAINING = 2;
+
+	private Map<String, PhraseFilterSet> source;
+	private PhraseFilterSet[] sets;
+	private int[] setVersions;
+
+	// Patterns matched against lowercase words and normalized words
+	private PatternAutomaton wordPatterns = new PatternAutomaton();
+	private PatternAutomaton normalizedPatterns = new PatternAutomaton();
+
+	// Keys matched against whole words
+	private HashMap<String, Integer> foldedWords = new HashMap<String, Integer>();
+	private HashMap<String, Integer> lowercaseWords = new HashMap<String, Integer>();
+
+	// Filtering rules, in the order they are applied
+	private ArrayList<Rule> rules = new ArrayList<Rule>();
+	private HashMap<Integer, BitSet> rulesByWordPattern = new HashMap<Integer, BitSet>();
+	private HashMap<Integer, BitSet> rulesByFoldedWord = new HashMap<Integer, BitSet>();
+	private BitSet alwaysCheckedRules = new BitSet();
+
+	// Checks for isFiltered and shouldFilterMute
+	private HashMap<Integer, ArrayList<Check>> checksByFoldedWord = new HashMap<Integer, ArrayList<Check>>();
+	private HashMap<Integer, ArrayList<Check>> checksByNormalizedPattern = new HashMap<Integer, ArrayList<Check>>();
+	private HashMap<Integer, ArrayList<Check>> checksByLowercaseWord = new HashMap<Integer, ArrayList<Check>>();
+	private HashMap<Integer, ArrayList<Check>> checksByWordPattern = new HashMap<Integer, ArrayList<Check>>();
+	private ArrayList<Check> alwaysCheckedChecks = new ArrayList<Check>();
+
+	private static class Rule {
+		public PhraseFilter filter;
+		public String phrase;
+		public boolean contains;
+		public int[] parts;
+		public int[] hashLengths;
+	}
+
+	private static class Check {
+		public FilterSeverity severity;
+		public int type;
+		public int[] parts;
+	}
+
+	private static interface PartMatcher {
+		public boolean matches(int part, int word);
+	}
+
+	/**
+	 * Compiles the filter sets
+	 * 
+	 * @param filters Filter sets by name
+	 */
+	public FilterMatcher(Map<String, PhraseFilterSet> filters) {
+		source = filters;
+		sets = filters.values().toArray(t -> new PhraseFilterSet[t]);
+		setVersions = new int[sets.length];
+		for (int i = 0; i < sets.length; i++) {
+			// Record the version before reading so changes made while compiling cause a
+			// recompile
+			setVersions[i] = sets[i].getVersion();
+			PhraseFilter[] phraseFilters = sets[i].getFilteredPhrases();
+			for (PhraseFilter filter : phraseFilters) {
+				// Collect phrases, variants first as done by the original filter
+				ArrayList<String> phrases = new ArrayList<String>();
+				for (String variant : filter.getVariants())
+					if (!phrases.contains(variant))
+						phrases.add(variant);
+				if (!phrases.contains(filter.getPhrase()))
+					phrases.add(filter.getPhrase());
+
+				// Compile
+				for (FilterMode mode : filter.getModes()) {
+					for (String phrase : phrases) {
+						addRules(filter, mode, phrase);
+						addChecks(filter, mode, phrase);
+					}
+				}
+			}
+		}
+		wordPatterns.compile();
+		normalizedPatterns.compile();
+	}
+
+	/**
+	 * Checks if the matcher was compiled from the current filters
+	 * 
+	 * @param filters Filter sets by name
+	 * @return True if up-to-date, false otherwise
+	 */
+	public boolean isUpToDate(Map<String, PhraseFilterSet> filters) {
+		if (filters != source || filters.size() != sets.length)
+			return false;
+		for (int i = 0; i < sets.length; i++) {
+			if (sets[i].getVersion() != setVersions[i])
+				return false;
+		}
+		return true;
+	}
+
+	private void addRules(PhraseFilter filter, FilterMode mode, String phrase) {
+		boolean contains = mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED;
+		if (!phrase.contains(" ")) {
+			addRule(filter, phrase, contains, new String[] { phrase });
+			return;
+		}
+
+		// Phrase, and the phrase without spaces for combined modes
+		addRule(filter, phrase, contains, phrase.split(" "));
+		if (mode == FilterMode.WORD_COMBINED || mode == FilterMode.PHRASE_COMBINED)
+			addRule(filter, phrase.replace(" ", ""), mode == FilterMode.WORD_COMBINED,
+					new String[] { phrase.replace(" ", "") });
+	}
+
+	private void addRule(PhraseFilter filter, String phrase, boolean contains, String[] parts) {
+		Rule rule = new Rule();
+		rule.filter = filter;
+		rule.phrase = phrase;
+		rule.contains = contains;
+		rule.parts = new int[parts.length];
+		rule.hashLengths = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			if (contains)
+				rule.parts[i] = parts[i].isEmpty() ? EMPTY_PART : wordPatterns.addPattern(parts[i].toLowerCase());
+			else
+				rule.parts[i] = foldedWordID(fold(parts[i]));
+			rule.hashLengths[i] = !parts[i].isEmpty() && parts[i].chars().allMatch(t -> t == '#') ? parts[i].length()
+					: -1;
+		}
+		int index = rules.size();
+		rules.add(rule);
+
+		// Index by first part, parts made of only '#' can also match filtered words
+		if (rule.parts[0] == EMPTY_PART || rule.hashLengths[0] != -1)
+			alwaysCheckedRules.set(index);
+		else
+			(contains ? rulesByWordPattern : rulesByFoldedWord).computeIfAbsent(rule.parts[0], t -> new BitSet())
+					.set(index);
+	}
+
+	private void addChecks(PhraseFilter filter, FilterMode mode, String phrase) {
+		boolean phraseMode = mode == FilterMode.WHOLE_PHRASE || mode == FilterMode.PHRASE_COMBINED;
+		if (!phrase.contains(" ")) {
+			if (phraseMode) {
+				// Normalized word equals phrase
+				addCheck(checksByFoldedWord, foldedWordID(fold(phrase)), filter, CHECK_WORD, null);
+			} else if (isNormalized(phrase)) {
+				// Normalized word contains phrase
+				addCheck(checksByNormalizedPattern, normalizedPatterns.addPattern(phrase), filter, CHECK_WORD, null);
+			}
+			return;
+		}
+
+		// Phrase is present as a whole
+		if (phraseMode) {
+			String[] parts = phrase.toLowerCase().split(" ", -1);
+			int[] ids = new int[parts.length];
+			for (int i = 0; i < parts.length; i++)
+				ids[i] = lowercaseWordID(parts[i]);
+			addCheck(checksByLowercaseWord, ids[0], filter, CHECK_SEQUENCE, ids);
+		}
+
+		// Phrase without spaces is a word, or the words contain the phrase words
+		if (mode == FilterMode.PHRASE_COMBINED) {
+			addCheck(checksByLowercaseWord, lowercaseWordID(phrase.replace(" ", "").toLowerCase()), filter,
+					CHECK_WORD, null);
+		} else if (!phraseMode) {
+			String[] parts = phrase.split(" ");
+			int[] ids = new int[parts.length];
+			for (int i = 0; i < parts.length; i++)
+				ids[i] = parts[i].isEmpty() ? EMPTY_PART : wordPatterns.addPattern(parts[i].toLowerCase());
+			if (ids[0] == EMPTY_PART)
+				alwaysCheckedChecks.add(createCheck(filter, CHECK_WORDS_CONTAINING, ids));
+			else
+				addCheck(checksByWordPattern, ids[0], filter, CHECK_WORDS_CONTAINING, ids);
+		}
+
+		// Normalized word contains the phrase without spaces
+		if (mode == FilterMode.WORD_COMBINED) {
+			String combined = phrase.replace(" ", "").toLowerCase();
+			if (isNormalized(combined))
+				addCheck(checksByNormalizedPattern, normalizedPatterns.addPattern(combined), filter, CHECK_WORD,
+						null);
+		}
+	}
+
+	private void addCheck(HashMap<Integer, ArrayList<Check>> checks, int id, PhraseFilter filter, int type,
+			int[] parts) {
+		checks.computeIfAbsent(id, t -> new ArrayList<Check>()).add(createCheck(filter, type, parts));
+	}
+
+	private Check createCheck(PhraseFilter filter, int type, int[] parts) {
+		Check check = new Check();
+		check.severity = filter.getSeverity();
+		check.type = type;
+		check.parts = parts;
+		return check;
+	}
+
+	private int foldedWordID(String word) {
+		return foldedWords.computeIfAbsent(word, t -> foldedWords.size());
+	}
+
+	private int lowercaseWordID(String word) {
+		return lowercaseWords.computeIfAbsent(word, t -> lowercaseWords.size());
+	}
+
+	private static boolean isNormalized(String phrase) {
+		if (phrase.isEmpty())
+			return false;
+		for (int i = 0; i < phrase.length(); i++) {
+			char ch = phrase.charAt(i);
+			if ((ch < 'a' || ch > 'z') && (ch < '0' || ch > '9'))
+				return false;
+		}
+		return true;
+	}
+
+	private static String normalize(String word) {
+		// Same as replaceAll("[^A-Za-z0-9]", "").toLowerCase()
+		StringBuilder res = new StringBuilder(word.length());
+		for (int i = 0; i < word.length(); i++) {
+			char ch = word.charAt(i);
+			if ((ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z') || (ch >= '0' && ch <= '9'))
+				res.append(ch);
+		}
+		return res.toString().toLowerCase();
+	}
+
+	private static String fold(String word) {
+		// Strings with the same folded form are equal ignoring case
+		char[] chars = word.toCharArray();
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		return new String(chars);
+	}
+
+	private static int[] findPatterns(PatternAutomaton automaton, String text) {
+		int[][] found = new int[][] { NONE };
+		int[] count = new int[1];
+		automaton.find(text, id -> {
+			if (count[0] == found[0].length)
+				found[0] = Arrays.copyOf(found[0], Math.max(4, count[0] * 2));
+			found[0][count[0]++] = id;
+		});
+		if (count[0] == 0)
+			return NONE;
+		int[] res = Arrays.copyOf(found[0], count[0]);
+		Arrays.sort(res);
+		return res;
+	}
+
+	private static int[] findMatch(int[] parts, int words, int start, PartMatcher matcher) {
+		// Find the words matching the parts, a mismatch restarts the search at the next
+		// word
+		int i = 1;
+		boolean foundStart = false;
+		int startIndex = 0;
+		int ind = start;
+		for (; ind < words; ind++) {
+			if (!foundStart) {
+				if (matcher.matches(0, ind)) {
+					foundStart = true;
+					startIndex = ind;
+				}
+			} else {
+				if (i == parts.length)
+					break;
+				if (!matcher.matches(i++, ind)) {
+					foundStart = false;
+					i = 1;
+				}
+			}
+		}
+		if (foundStart && i == parts.length)
+			return new int[] { startIndex, ind - 1 };
+		return null;
+	}
+
+	/**
+	 * Filters text
+	 * 
+	 * @param text       Text to filter
+	 * @param strictMode True for strict-mode filtering, false otherwise
+	 * @return FilterResult instance
+	 */
+	public FilterResult filter(String text, boolean strictMode) {
+		String[] words = text.split(" ");
+
+		// Find patterns in all words
+		int[][] wordHits = new int[words.length][];
+		int[] foldedIDs = new int[words.length];
+		BitSet candidates = (BitSet) alwaysCheckedRules.clone();
+		for (int i = 0; i < words.length; i++) {
+			wordHits[i] = findPatterns(wordPatterns, words[i].toLowerCase());
+			for (int id : wordHits[i]) {
+				BitSet r = rulesByWordPattern.get(id);
+				if (r != null)
+					candidates.or(r);
+			}
+			foldedIDs[i] = foldedWords.getOrDefault(fold(words[i]), -1);
+			BitSet r = rulesByFoldedWord.get(foldedIDs[i]);
+			if (r != null)
+				candidates.or(r);
+		}
+
+		// Apply rules in order, words filtered by earlier rules only match '#' parts
+		ArrayList<WordMatch> matches = new ArrayList<WordMatch>();
+		HashSet<String> matchedPhrases = new HashSet<String>();
+		boolean[] filtered = new boolean[words.length];
+		for (int r = candidates.nextSetBit(0); r != -1; r = candidates.nextSetBit(r + 1)) {
+			Rule rule = rules.get(r);
+			if (!strictMode && rule.filter.getSeverity() == FilterSeverity.USER_STRICT_MODE)
+				continue;
+			PartMatcher matcher = (part, word) -> {
+				int id = rule.parts[part];
+				if (rule.contains && id == EMPTY_PART)
+					return true;
+				if (filtered[word]) {
+					int len = rule.hashLengths[part];
+					return len != -1 && (rule.contains ? len <= words[word].length() : len == words[word].length());
+				}
+				if (rule.contains)
+					return Arrays.binarySearch(wordHits[word], id) >= 0;
+				return foldedIDs[word] == id;
+			};
+
+			// Filter matching words
+			boolean matched = false;
+			if (rule.parts.length == 1) {
+				for (int i = 0; i < words.length; i++) {
+					if (matcher.matches(0, i)) {
+						filtered[i] = !words[i].isEmpty();
+						matched = true;
+					}
+				}
+			} else {
+				int start = 0;
+				while (start < words.length) {
+					int[] match = findMatch(rule.parts, words.length, start, matcher);
+					if (match == null)
+						break;
+					for (int i = match[0]; i <= match[1]; i++)
+						filtered[i] = filtered[i] || !words[i].isEmpty();
+					matched = true;
+					start = match[1] + 1;
+				}
+			}
+
+			// Add match
+			if (matched && matchedPhrases.add(rule.phrase.toLowerCase()))
+				matches.add(new WordMatch(rule.filter, rule.phrase));
+		}
+		if (matches.isEmpty())
+			return new FilterResult(new WordMatch[0], text);
+
+		// Replace filtered words
+		char[] result = text.toCharArray();
+		int pos = 0;
+		for (int i = 0; i < words.length; i++) {
+			if (filtered[i])
+				Arrays.fill(result, pos, pos + words[i].length(), '#');
+			pos += words[i].length() + 1;
+		}
+		return new FilterResult(matches.toArray(t -> new WordMatch[t]), new String(result));
+	}
+
+	/**
+	 * Checks if text matches any filter
+	 * 
+	 * @param text     Text to check
+	 * @param severity Function selecting the filter severities to check
+	 * @return True if matched, false otherwise
+	 */
+	public boolean isFiltered(String text, Predicate<FilterSeverity> severity) {
+		String[] words = text.split(" ");
+		if (words.length == 0)
+			return false;
+
+		// Check normalized words
+		for (String word : words) {
+			String normalized = normalize(word);
+			if (anyWordCheck(checksByFoldedWord.get(foldedWords.getOrDefault(normalized, -1)), severity))
+				return true;
+			for (int id : findPatterns(normalizedPatterns, normalized))
+				if (anyWordCheck(checksByNormalizedPattern.get(id), severity))
+					return true;
+		}
+
+		// Check lowercase words
+		String[] tokens = text.toLowerCase().split(" ", -1);
+		int[] tokenIDs = new int[tokens.length];
+		for (int i = 0; i < tokens.length; i++)
+			tokenIDs[i] = lowercaseWords.getOrDefault(tokens[i], -1);
+		for (int i = 0; i < tokens.length; i++) {
+			ArrayList<Check> checks = checksByLowercaseWord.get(tokenIDs[i]);
+			if (checks == null)
+				continue;
+			for (Check check : checks) {
+				if (!severity.test(check.severity))
+					continue;
+				if (check.type == CHECK_WORD)
+					return true;
+
+				// Check the following words
+				if (i + check.parts.length <= tokens.length) {
+					boolean match = true;
+					for (int i2 = 1; i2 < check.parts.length && match; i2++)
+						match = tokenIDs[i + i2] == check.parts[i2];
+					if (match)
+						return true;
+				}
+			}
+		}
+
+		// Check words containing phrase words
+		int[][] wordHits = new int[words.length][];
+		ArrayList<Check> candidates = new ArrayList<Check>(alwaysCheckedChecks);
+		for (int i = 0; i < words.length; i++) {
+			wordHits[i] = findPatterns(wordPatterns, words[i].toLowerCase());
+			for (int id : wordHits[i]) {
+				ArrayList<Check> checks = checksByWordPattern.get(id);
+				if (checks != null)
+					candidates.addAll(checks);
+			}
+		}
+		for (Check check : candidates) {
+			if (!severity.test(check.severity))
+				continue;
+			if (findMatch(check.parts, words.length, 0, (part, word) -> check.parts[part] == EMPTY_PART
+					|| Arrays.binarySearch(wordHits[word], check.parts[part]) >= 0) != null)
+				return true;
+		}
+
+		return false;
+	}
+
+	private static boolean anyWordCheck(ArrayList<Check> checks, Predicate<FilterSeverity> severity) {
+		if (checks == null)
+			return false;
+		for (Check check : checks)
+			if (check.type == CHECK_WORD && severity.test(check.severity))
+				return true;
+		return false;
+	}
+
+}
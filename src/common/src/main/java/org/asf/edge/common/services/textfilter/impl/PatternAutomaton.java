@@ -0,0 +1,144 @@
+package org.asf.edge.common.services.textfilter.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.function.IntConsumer;
+
+/**
+ * 
+ * Aho-Corasick pattern automaton, finds all patterns contained in a string in
+ * a single pass
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+class PatternAutomaton {
+
+	private static final int[] EMPTY = new int[0];
+
+	private HashMap<String, Integer> patterns = new HashMap<String, Integer>();
+
+	private char[][] keys;
+	private int[][] children;
+	private int[] fail;
+	private int[][] outputs;
+
+	/**
+	 * Adds patterns, must be called before compiling
+	 * 
+	 * @param pattern Pattern string (may not be empty)
+	 * @return Pattern ID
+	 */
+	public int addPattern(String pattern) {
+		if (pattern.isEmpty())
+			throw new IllegalArgumentException("Empty pattern");
+		return patterns.computeIfAbsent(pattern, t -> patterns.size());
+	}
+
+	/**
+	 * Retrieves the amount of patterns
+	 * 
+	 * @return Pattern count
+	 */
+	public int getPatternCount() {
+		return patterns.size();
+	}
+
+	/**
+	 * Compiles the automaton
+	 */
+	public void compile() {
+		// Build trie
+		ArrayList<HashMap<Character, Integer>> trie = new ArrayList<HashMap<Character, Integer>>();
+		ArrayList<LinkedHashSet<Integer>> out = new ArrayList<LinkedHashSet<Integer>>();
+		trie.add(new HashMap<Character, Integer>());
+		out.add(new LinkedHashSet<Integer>());
+		for (String pattern : patterns.keySet()) {
+			int node = 0;
+			for (char ch : pattern.toCharArray()) {
+				Integer next = trie.get(node).get(ch);
+				if (next == null) {
+					next = trie.size();
+					trie.get(node).put(ch, next);
+					trie.add(new HashMap<Character, Integer>());
+					out.add(new LinkedHashSet<Integer>());
+				}
+				node = next;
+			}
+			out.get(node).add(patterns.get(pattern));
+		}
+
+		// Create sorted transition tables
+		int count = trie.size();
+		keys = new char[count][];
+		children = new int[count][];
+		fail = new int[count];
+		for (int i = 0; i < count; i++) {
+			HashMap<Character, Integer> edges = trie.get(i);
+			keys[i] = new char[edges.size()];
+			int i2 = 0;
+			for (char ch : edges.keySet())
+				keys[i][i2++] = ch;
+			Arrays.sort(keys[i]);
+			children[i] = new int[keys[i].length];
+			for (i2 = 0; i2 < keys[i].length; i2++)
+				children[i][i2] = edges.get(keys[i][i2]);
+		}
+
+		// Compute failure links breadth-first, merging the outputs of suffixes
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		for (int child : children[0]) {
+			fail[child] = 0;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			for (int i = 0; i < keys[node].length; i++) {
+				int child = children[node][i];
+				int f = fail[node];
+				while (f != 0 && step(f, keys[node][i]) == -1)
+					f = fail[f];
+				int target = step(f, keys[node][i]);
+				fail[child] = target == -1 || target == child ? 0 : target;
+				out.get(child).addAll(out.get(fail[child]));
+				queue.add(child);
+			}
+		}
+		outputs = new int[count][];
+		for (int i = 0; i < count; i++)
+			outputs[i] = out.get(i).isEmpty() ? EMPTY : out.get(i).stream().mapToInt(t -> t).toArray();
+	}
+
+	private int step(int node, char ch) {
+		int ind = Arrays.binarySearch(keys[node], ch);
+		if (ind < 0)
+			return -1;
+		return children[node][ind];
+	}
+
+	/**
+	 * Finds all patterns contained in a string
+	 * 
+	 * @param text    Text to search
+	 * @param matches Called with the ID of each found pattern (can be called more
+	 *                than once per pattern)
+	 */
+	public void find(String text, IntConsumer matches) {
+		int node = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			int next = step(node, ch);
+			while (next == -1 && node != 0) {
+				node = fail[node];
+				next = step(node, ch);
+			}
+			node = next == -1 ? 0 : next;
+			for (int id : outputs[node])
+				matches.accept(id);
+		}
+	}
+
+}
@@ -7,7 +7,6 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.asf.connective.tasks.AsyncTaskManager;
@@ -16,11 +15,9 @@ import org.asf.edge.common.services.commondata.CommonDataContainer;
 import org.asf.edge.common.services.commondata.CommonDataManager;
 import org.asf.edge.common.services.textfilter.FilterMode;
 import org.asf.edge.common.services.textfilter.FilterSeverity;
-import org.asf.edge.common.services.textfilter.PhraseFilter;
 import org.asf.edge.common.services.textfilter.PhraseFilterSet;
 import org.asf.edge.common.services.textfilter.TextFilterService;
 import org.asf.edge.common.services.textfilter.result.FilterResult;
-import org.asf.edge.common.services.textfilter.result.WordMatch;
 import org.asf.edge.modules.eventbus.EventBus;
 
 import com.google.gson.JsonPrimitive;
@@ -28,6 +25,7 @@ import com.google.gson.JsonPrimitive;
 public class TextFilterServiceImpl extends TextFilterService {
 
 	private HashMap<String, PhraseFilterSet> filters = new HashMap<String, PhraseFilterSet>();
+	private volatile FilterMatcher matcher;
 	private long lastReloadTime;
 
 	@Override
@@ -100,14 +98,18 @@ public class TextFilterServiceImpl extends TextFilterService {
 			throw new RuntimeException(e);
 		}
 
-		// Apply
-		this.filters = filters;
+		// Compile and apply
+		FilterMatcher matcher = new FilterMatcher(filters);
+		synchronized (this) {
+			this.filters = filters;
+			this.matcher = matcher;
+		}
 
 		// Call load event
 		EventBus.getInstance().dispatchEvent(new TextFilterLoadEvent(this));
 	}
 
-	private void loadFilters(File filter, HashMap<String, PhraseFilterSet> filters) {
+	static void loadFilters(File filter, HashMap<String, PhraseFilterSet> filters) {
 		// Go through files
 		for (File d : filter.listFiles(t -> t.isDirectory()))
 			loadFilters(d, filters);
@@ -348,397 +350,37 @@ public class TextFilterServiceImpl extends TextFilterService {
 		if (filters.containsKey(set.getSetName().toLowerCase()))
 			throw new IllegalArgumentException("Filter with name '" + set.getSetName() + "' already exists");
 		filters.put(set.getSetName().toLowerCase(), set);
+		matcher = new FilterMatcher(filters);
 	}
 
-	private boolean match(FilterMode mode, String text, String filterWord, String filterVariant) {
-		// Run for specific modes
-		if (filterVariant.contains(" ")) {
-			String textFull = " " + text + " ";
-			if (mode == FilterMode.WHOLE_PHRASE || mode == FilterMode.PHRASE_COMBINED) {
-				// Check phrase
-				if (textFull.toLowerCase().contains(" " + filterVariant.toLowerCase() + " "))
-					return true;
-			}
-			if (mode == FilterMode.PHRASE_COMBINED) {
-				// Check phrase
-				if (textFull.toLowerCase().contains(" " + filterVariant.replace(" ", "").toLowerCase() + " "))
-					return true;
-			} else if (mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED) {
-				// Check phrase
-				boolean match = false;
-				boolean foundStart = false;
-				String[] variantWords = filterVariant.split(" ");
-				int i = 1;
-				if (variantWords.length != 0) {
-					String firstVariant = variantWords[0];
-					for (String word : text.split(" ")) {
-						if (!foundStart) {
-							if (word.toLowerCase().contains(firstVariant.toLowerCase())) {
-								foundStart = true;
-								match = true;
-							}
-						} else {
-							if (i == variantWords.length)
-								break;
-							if (!word.toLowerCase().contains(variantWords[i++].toLowerCase())) {
-								match = false;
-								foundStart = false;
-								i = 1;
-							}
-						}
-					}
-					if (i == variantWords.length)
-						if (match)
-							return true;
-				}
-			}
-			if (mode == FilterMode.WORD_COMBINED) {
-				// Check phrase
-				if (match(FilterMode.WORD_CONTAINS, text, filterWord, filterVariant.replace(" ", "").toLowerCase()))
-					return true;
-			}
-		}
-		if (filterWord != null) {
-			if (!filterVariant.contains(" ")) {
-				if (mode == FilterMode.WHOLE_PHRASE || mode == FilterMode.PHRASE_COMBINED) {
-					// Check phrase
-					if (filterWord.equalsIgnoreCase(filterVariant))
-						return true;
-				} else if (mode == FilterMode.PHRASE_COMBINED) {
-					// Check phrase
-					if (filterWord.equalsIgnoreCase(filterVariant.replace(" ", "").toLowerCase()))
-						return true;
-				} else if (mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED) {
-					// Check phrase
-					if (filterWord.contains(filterVariant))
-						return true;
-				} else if (mode == FilterMode.WORD_COMBINED) {
-					// Check phrase
-					if (filterWord.toLowerCase().contains(filterVariant.replace(" ", "").toLowerCase()))
-						return true;
+	private FilterMatcher getMatcher() {
+		// Recompile if filters were added since the last compile
+		FilterMatcher matcher = this.matcher;
+		if (matcher == null || !matcher.isUpToDate(filters)) {
+			synchronized (this) {
+				matcher = this.matcher;
+				if (matcher == null || !matcher.isUpToDate(filters)) {
+					matcher = new FilterMatcher(filters);
+					this.matcher = matcher;
 				}
 			}
 		}
-
-		// Unfiltered
-		return false;
+		return matcher;
 	}
 
 	@Override
 	public boolean isFiltered(String text, boolean strictMode) {
-		// Check filter
-		if (filters.values().stream().anyMatch(t -> Stream.of(t.getFilteredPhrases()).anyMatch(filter -> {
-			// Check filter
-			if (strictMode || (filter.getSeverity() != FilterSeverity.USER_STRICT_MODE)) {
-				for (FilterMode mode : filter.getModes()) {
-					if (mode == FilterMode.WHOLE_PHRASE || mode == FilterMode.PHRASE_COMBINED
-							|| mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED)
-						continue;
-
-					// Check phrase
-					if (match(mode, text, null, filter.getPhrase()))
-						return true;
-					for (String variant : filter.getVariants())
-						if (match(mode, null, text, variant))
-							return true;
-				}
-			}
-
-			// Unfiltered
-			return false;
-		}))) {
-			// Filtered
-			return true;
-		}
-
-		// Check word-by-word
-		for (String word : text.split(" ")) {
-			// Check filters
-			String filterWord = word.replaceAll("[^A-Za-z0-9]", "").toLowerCase();
-			if (filters.values().stream().anyMatch(t -> Stream.of(t.getFilteredPhrases()).anyMatch(filter -> {
-				// Check filter
-				if (strictMode || (filter.getSeverity() != FilterSeverity.USER_STRICT_MODE)) {
-					for (FilterMode mode : filter.getModes()) {
-						if (mode != FilterMode.WHOLE_PHRASE && mode != FilterMode.PHRASE_COMBINED
-								&& mode != FilterMode.WORD_CONTAINS && mode != FilterMode.WORD_COMBINED)
-							continue;
-
-						// Check phrase
-						if (match(mode, text, filterWord, filter.getPhrase()))
-							return true;
-						for (String variant : filter.getVariants())
-							if (match(mode, text, filterWord, variant))
-								return true;
-					}
-				}
-
-				// Unfiltered
-				return false;
-			}))) {
-				// Filtered
-				return true;
-			}
-		}
-
-		return false;
+		return getMatcher().isFiltered(text, t -> strictMode || t != FilterSeverity.USER_STRICT_MODE);
 	}
 
 	@Override
 	public boolean shouldFilterMute(String text) {
-		// Check filter
-		if (filters.values().stream().anyMatch(t -> Stream.of(t.getFilteredPhrases()).anyMatch(filter -> {
-			// Check filter
-			if (filter.getSeverity() == FilterSeverity.INSTAMUTE) {
-				for (FilterMode mode : filter.getModes()) {
-					if (mode == FilterMode.WHOLE_PHRASE || mode == FilterMode.PHRASE_COMBINED
-							|| mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED)
-						continue;
-
-					// Check phrase
-					if (match(mode, text, null, filter.getPhrase()))
-						return true;
-					for (String variant : filter.getVariants())
-						if (match(mode, null, text, variant))
-							return true;
-				}
-			}
-
-			// Unfiltered
-			return false;
-		}))) {
-			// Filtered
-			return true;
-		}
-
-		// Check word-by-word
-		for (String word : text.split(" ")) {
-			// Check filters
-			String filterWord = word.replaceAll("[^A-Za-z0-9]", "").toLowerCase();
-			if (filters.values().stream().anyMatch(t -> Stream.of(t.getFilteredPhrases()).anyMatch(filter -> {
-				// Check filter
-				if (filter.getSeverity() == FilterSeverity.INSTAMUTE) {
-					for (FilterMode mode : filter.getModes()) {
-						if (mode != FilterMode.WHOLE_PHRASE && mode != FilterMode.PHRASE_COMBINED
-								&& mode != FilterMode.WORD_CONTAINS && mode != FilterMode.WORD_COMBINED)
-							continue;
-
-						// Check phrase
-						if (match(mode, text, filterWord, filter.getPhrase()))
-							return true;
-						for (String variant : filter.getVariants())
-							if (match(mode, text, filterWord, variant))
-								return true;
-					}
-				}
-
-				// Unfiltered
-				return false;
-			}))) {
-				// Filtered
-				return true;
-			}
-		}
-
-		return false;
+		return getMatcher().isFiltered(text, t -> t == FilterSeverity.INSTAMUTE);
 	}
 
 	@Override
 	public FilterResult filter(String text, boolean strictMode) {
-		ArrayList<WordMatch> matches = new ArrayList<WordMatch>();
-		ArrayList<String> matchedPhrases = new ArrayList<String>();
-
-		// Handle word contains filters
-		for (PhraseFilterSet set : filters.values()) {
-			for (PhraseFilter filter : set.getFilteredPhrases()) {
-				// Check mode
-				if (!strictMode && filter.getSeverity() == FilterSeverity.USER_STRICT_MODE)
-					continue;
-
-				// Preload phrases
-				String[] phrases = filter.getAllPhrases();
-
-				// Go through modes
-				for (FilterMode mode : filter.getModes()) {
-					for (String phrase : phrases) {
-						// Check phrase
-						if (!phrase.contains(" ")) {
-							// Simple indexof and substring if present
-							while (true) {
-								boolean match = false;
-
-								// Go through words
-								int i = 0;
-								for (String word : text.split(" ")) {
-									// Check filter
-									if (((mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED)
-											&& word.toLowerCase().contains(phrase.toLowerCase()))
-											|| ((mode == FilterMode.WHOLE_PHRASE || mode == FilterMode.PHRASE_COMBINED)
-													&& word.equalsIgnoreCase(phrase))) {
-										// Filter
-										String textStart = text.substring(0, i);
-										String textEnd = text.substring(i + word.length());
-										for (int i2 = 0; i2 < word.length(); i2++) {
-											textStart += "#";
-										}
-										text = textStart + textEnd;
-
-										// Add match
-										if (!matchedPhrases.contains(phrase.toLowerCase())) {
-											matchedPhrases.add(phrase.toLowerCase());
-											matches.add(new WordMatch(filter, phrase));
-										}
-										match = true;
-									}
-
-									// Increase
-									i += word.length() + 1;
-								}
-
-								// Check
-								if (!match)
-									break;
-							}
-						} else {
-							// This is a whole lot more complex-
-							String[] variantWords = phrase.split(" ");
-							String[] words = text.split(" ");
-							while (true) {
-								// Prepare
-								int i = 1;
-								boolean match = false;
-								boolean foundStart = false;
-								int startIndex = 0;
-								int endIndex = 0;
-
-								// Go through words
-								if (variantWords.length != 0) {
-									String firstVariant = variantWords[0];
-									int ind = 0;
-									for (String word : words) {
-										if (!foundStart) {
-											if (((mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED)
-													&& word.toLowerCase().contains(firstVariant.toLowerCase()))
-													|| ((mode == FilterMode.WHOLE_PHRASE
-															|| mode == FilterMode.PHRASE_COMBINED)
-															&& word.equalsIgnoreCase(firstVariant))) {
-												foundStart = true;
-												startIndex = ind;
-												match = true;
-											}
-										} else {
-											if (i == variantWords.length)
-												break;
-											if (((mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED)
-													&& !word.toLowerCase().contains(variantWords[i++].toLowerCase()))
-													|| ((mode == FilterMode.WHOLE_PHRASE
-															|| mode == FilterMode.PHRASE_COMBINED)
-															&& !word.equalsIgnoreCase(variantWords[i++]))) {
-												match = false;
-												foundStart = false;
-												i = 1;
-											}
-										}
-										ind++;
-									}
-									if (i == variantWords.length) {
-										endIndex = ind - 1;
-
-										// Check result
-										if (match) {
-											// Filter
-											int ind2 = 0;
-											int ind3 = 0;
-											String textStart = "";
-											String textEnd = "";
-											boolean startFound = false;
-											for (String word : words) {
-												if (ind2 == startIndex) {
-													textStart = text.substring(0, ind3);
-													startFound = true;
-													for (int i2 = 0; i2 < word.length(); i2++) {
-														textStart += "#";
-													}
-												} else if (ind2 == endIndex) {
-													textEnd = text.substring(ind3 + word.length());
-													startFound = false;
-													textStart += " ";
-													for (int i2 = 0; i2 < word.length(); i2++) {
-														textStart += "#";
-													}
-												} else if (startFound) {
-													textStart += " ";
-													for (int i2 = 0; i2 < word.length(); i2++) {
-														textStart += "#";
-													}
-												}
-												ind3 += word.length() + 1;
-												ind2++;
-											}
-											text = textStart + textEnd;
-											words = text.split(" ");
-
-											// Add match
-											if (!matchedPhrases.contains(phrase.toLowerCase())) {
-												matchedPhrases.add(phrase.toLowerCase());
-												matches.add(new WordMatch(filter, phrase));
-											}
-										}
-									}
-									if (i != variantWords.length)
-										match = false;
-									if (!match)
-										break;
-								}
-							}
-						}
-
-						// Check combined mode
-						if (mode == FilterMode.WORD_COMBINED || mode == FilterMode.PHRASE_COMBINED) {
-							// Check phrase
-							phrase = phrase.replace(" ", "");
-
-							// Simple indexof and substring if present
-							while (true) {
-								boolean match = false;
-
-								// Go through words
-								int i = 0;
-								for (String word : text.split(" ")) {
-									// Check filter
-									if ((mode == FilterMode.WORD_COMBINED
-											&& word.toLowerCase().contains(phrase.toLowerCase()))
-											|| (mode == FilterMode.PHRASE_COMBINED && word.equalsIgnoreCase(phrase))) {
-										// Filter
-										String textStart = text.substring(0, i);
-										String textEnd = text.substring(i + word.length());
-										for (int i2 = 0; i2 < word.length(); i2++) {
-											textStart += "#";
-										}
-										text = textStart + textEnd;
-
-										// Add match
-										if (!matchedPhrases.contains(phrase.toLowerCase())) {
-											matchedPhrases.add(phrase.toLowerCase());
-											matches.add(new WordMatch(filter, phrase));
-										}
-										match = true;
-									}
-
-									// Increase
-									i += word.length() + 1;
-								}
-
-								// Check
-								if (!match)
-									break;
-							}
-						}
-					}
-				}
-			}
-		}
-
-		return new FilterResult(matches.toArray(t -> new WordMatch[t]), text);
+		return getMatcher().filter(text, strictMode);
 	}
 
 	@Override
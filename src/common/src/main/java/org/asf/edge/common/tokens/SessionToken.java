@@ -1,7 +1,9 @@
 package org.asf.edge.common.tokens;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
@@ -9,6 +11,7 @@ import java.security.Signature;
 import java.security.SignatureException;
 import java.util.Base64;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 import org.asf.edge.common.services.accounts.AccountDataContainer;
@@ -31,6 +34,45 @@ import com.google.gson.JsonPrimitive;
 public class SessionToken {
 	private AccountManager accMgr = AccountManager.getInstance();
 
+	private static final long SESSION_LIFETIME = 15 * 60 * 1000;
+	private static final long SESSION_REFRESH_TIME = 60 * 1000;
+	private static final int VERIFIED_TOKEN_CLEANUP_SIZE = 10000;
+
+	// Keyed by the SHA-256 digest of the token so raw tokens are not kept in memory
+	private static ConcurrentHashMap<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<String, VerifiedToken>();
+	private static volatile long lastVerifiedTokenCleanup;
+
+	private static class VerifiedToken {
+		public long verifiedAt;
+
+		public String accountID;
+		public String saveID;
+		public long lastLoginTime;
+		public String[] capabilities;
+
+		public volatile long stateCheckedAt;
+		public volatile long sessionTime;
+	}
+
+	private static String tokenKey(String token) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Removes all verified tokens of an account from memory, the next use of these
+	 * tokens will check the login state of the account again (called on login)
+	 * 
+	 * @param accountID Account ID
+	 */
+	public static void invalidateAccount(String accountID) {
+		verifiedTokens.values().removeIf(t -> t.accountID.equals(accountID));
+	}
+
 	/**
 	 * Account ID for the token
 	 */
@@ -74,73 +116,75 @@ public class SessionToken {
 	 */
 	public TokenParseResult parseToken(String token) {
 		try {
-			// Parse header
-			JsonObject jwtHead = JsonParser
-					.parseString(new String(Base64.getUrlDecoder().decode(token.split("\\.")[0]), "UTF-8"))
-					.getAsJsonObject();
-			if (!jwtHead.get("typ").getAsString().equalsIgnoreCase("jwt"))
-				return TokenParseResult.INVALID_DATA;
-			if (!jwtHead.get("alg").getAsString().equalsIgnoreCase("rs256"))
-				return TokenParseResult.INVALID_DATA;
-
-			// Verify
-			TokenParseResult res = accMgr.verifyToken(token);
-			if (res != TokenParseResult.SUCCESS)
-				return res;
-
-			// Parse payload
-			JsonObject jwtPl = JsonParser
-					.parseString(new String(Base64.getUrlDecoder().decode(token.split("\\.")[1]), "UTF-8"))
-					.getAsJsonObject();
-			if (!jwtPl.has("sub") || !jwtPl.has("uuid") || !jwtPl.has("iat") || !jwtPl.has("jti") || !jwtPl.has("iss")
-					|| !jwtPl.has("cl") || !jwtPl.has("llt") || !jwtPl.get("iss").getAsString().equals("EDGE")
-					|| !jwtPl.get("sub").getAsString().equals("EDGE"))
-				return TokenParseResult.INVALID_DATA;
+			// Find verified token, signatures are only checked once per session lifetime
+			long time = System.currentTimeMillis();
+			String key = tokenKey(token);
+			VerifiedToken verified = verifiedTokens.get(key);
+			if (verified == null || time - verified.verifiedAt >= SESSION_LIFETIME) {
+				// Verify
+				verified = new VerifiedToken();
+				TokenParseResult res = verifyToken(token, verified);
+				if (res != TokenParseResult.SUCCESS) {
+					verifiedTokens.remove(key);
+					return res;
+				}
+				verified.verifiedAt = time;
 
-			// Read payload
-			String accID = jwtPl.get("uuid").getAsString();
-			long lastLoginTime = jwtPl.get("llt").getAsLong();
-			String saveID = null;
-			if (jwtPl.has("save"))
-				saveID = jwtPl.get("save").getAsString();
-			JsonArray capLs = jwtPl.get("cl").getAsJsonArray();
+				// Store
+				if (verifiedTokens.size() >= VERIFIED_TOKEN_CLEANUP_SIZE
+						&& time - lastVerifiedTokenCleanup >= SESSION_REFRESH_TIME) {
+					lastVerifiedTokenCleanup = time;
+					verifiedTokens.values().removeIf(t -> time - t.verifiedAt >= SESSION_LIFETIME);
+				}
+				verifiedTokens.put(key, verified);
+			}
 
 			// Verify account
-			AccountObject acc = accMgr.getAccount(accID);
-			if (acc == null)
+			AccountObject acc = accMgr.getAccount(verified.accountID);
+			if (acc == null) {
+				verifiedTokens.remove(key);
 				return TokenParseResult.INVALID_DATA;
+			}
 
-			// Check time
-			if (acc.getLastLoginTime() != lastLoginTime && saveID != null)
-				return TokenParseResult.LOGGED_IN_ELSEWHERE;
+			// Check login and session state, this is kept in memory for one refresh window
+			long sessionTime = verified.sessionTime;
+			if (time - verified.stateCheckedAt >= SESSION_REFRESH_TIME
+					|| sessionTime + SESSION_LIFETIME <= time) {
+				// Check time
+				if (acc.getLastLoginTime() != verified.lastLoginTime && verified.saveID != null)
+					return TokenParseResult.LOGGED_IN_ELSEWHERE;
+
+				// Load session time
+				AccountDataContainer accData = acc.getAccountData().getChildContainer("accountdata");
+				JsonElement tknTime = accData.getEntry("sessiontime");
+				if (tknTime == null)
+					return TokenParseResult.TOKEN_EXPIRED;
+				sessionTime = tknTime.getAsLong();
+				verified.sessionTime = sessionTime;
+				verified.stateCheckedAt = time;
+			}
 
 			// Verify expiry
-			AccountDataContainer accData = acc.getAccountData().getChildContainer("accountdata");
-			JsonElement tknTime = accData.getEntry("sessiontime");
-			if (tknTime == null)
-				return TokenParseResult.TOKEN_EXPIRED;
-			if (tknTime.getAsLong() + (15 * 60 * 1000) <= System.currentTimeMillis()) {
+			if (sessionTime + SESSION_LIFETIME <= time) {
 				// Token has expired as its too long ago that it was refreshed
 				return TokenParseResult.TOKEN_EXPIRED;
 			}
 
 			// Parse into token object
 			account = acc;
-			accountID = accID;
-			this.saveID = saveID;
-			this.lastLoginTime = lastLoginTime;
-			this.capabilities = new String[capLs.size()];
-			int i = 0;
-			for (JsonElement cap : capLs)
-				this.capabilities[i++] = cap.getAsString();
+			accountID = verified.accountID;
+			this.saveID = verified.saveID;
+			this.lastLoginTime = verified.lastLoginTime;
+			this.capabilities = verified.capabilities.clone();
 
 			// Ping
 			acc.ping(false);
 
 			// If needed update session time
-			if ((System.currentTimeMillis() - tknTime.getAsLong()) > 60000) {
+			if ((time - sessionTime) > SESSION_REFRESH_TIME) {
 				// One minute since the last refresh, make sure this token doesnt expire
 				updateSessionTime();
+				verified.sessionTime = time;
 			}
 
 			// Success!
@@ -150,6 +194,42 @@ public class SessionToken {
 		}
 	}
 
+	private TokenParseResult verifyToken(String token, VerifiedToken verified) throws IOException {
+		// Parse header
+		String[] parts = token.split("\\.");
+		JsonObject jwtHead = JsonParser.parseString(new String(Base64.getUrlDecoder().decode(parts[0]), "UTF-8"))
+				.getAsJsonObject();
+		if (!jwtHead.get("typ").getAsString().equalsIgnoreCase("jwt"))
+			return TokenParseResult.INVALID_DATA;
+		if (!jwtHead.get("alg").getAsString().equalsIgnoreCase("rs256"))
+			return TokenParseResult.INVALID_DATA;
+
+		// Verify
+		TokenParseResult res = accMgr.verifyToken(token);
+		if (res != TokenParseResult.SUCCESS)
+			return res;
+
+		// Parse payload
+		JsonObject jwtPl = JsonParser.parseString(new String(Base64.getUrlDecoder().decode(parts[1]), "UTF-8"))
+				.getAsJsonObject();
+		if (!jwtPl.has("sub") || !jwtPl.has("uuid") || !jwtPl.has("iat") || !jwtPl.has("jti") || !jwtPl.has("iss")
+				|| !jwtPl.has("cl") || !jwtPl.has("llt") || !jwtPl.get("iss").getAsString().equals("EDGE")
+				|| !jwtPl.get("sub").getAsString().equals("EDGE"))
+			return TokenParseResult.INVALID_DATA;
+
+		// Read payload
+		verified.accountID = jwtPl.get("uuid").getAsString();
+		verified.lastLoginTime = jwtPl.get("llt").getAsLong();
+		if (jwtPl.has("save"))
+			verified.saveID = jwtPl.get("save").getAsString();
+		JsonArray capLs = jwtPl.get("cl").getAsJsonArray();
+		verified.capabilities = new String[capLs.size()];
+		int i = 0;
+		for (JsonElement cap : capLs)
+			verified.capabilities[i++] = cap.getAsString();
+		return TokenParseResult.SUCCESS;
+	}
+
 	/**
 	 * Converts the token to a string
 	 * 
@@ -0,0 +1,60 @@
+package org.asf.edge.common.util;
+
+/**
+ * 
+ * Message types of the MMO uplink between MMO servers and the common API. All
+ * payloads are written with the DataWriter, empty strings are used where a
+ * value is not present.
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class MmoUplinkProtocol {
+
+	/**
+	 * Room population update (MMO server to common API)<br/>
+	 * <br/>
+	 * Payload: string zone, string room group, string room name, int room ID, int
+	 * user count, int user limit. A user count of -1 means the room was removed.
+	 */
+	public static final byte ROOM_POPULATION = 2;
+
+	/**
+	 * Player came online (MMO server to common API)<br/>
+	 * <br/>
+	 * Payload: string account ID, string save ID, string username
+	 */
+	public static final byte PLAYER_ONLINE = 3;
+
+	/**
+	 * Player went offline (MMO server to common API)<br/>
+	 * <br/>
+	 * Payload: string account ID, string save ID, string username
+	 */
+	public static final byte PLAYER_OFFLINE = 4;
+
+	/**
+	 * Player changed room (MMO server to common API)<br/>
+	 * <br/>
+	 * Payload: string save ID, string zone, string room group, string room name
+	 */
+	public static final byte PLAYER_ROOM = 5;
+
+	/**
+	 * Room chat message (MMO server to common API, relayed to the other MMO
+	 * servers hosting the same room)<br/>
+	 * <br/>
+	 * Payload: string zone, string room group, string room name, string sender
+	 * save ID, string sender username, string message
+	 */
+	public static final byte CHAT_MESSAGE = 6;
+
+	/**
+	 * Removes all rooms and players of the sending server from the directory,
+	 * sent before a full state resync (MMO server to common API)<br/>
+	 * <br/>
+	 * Payload: none
+	 */
+	public static final byte RESET_STATE = 8;
+
+}
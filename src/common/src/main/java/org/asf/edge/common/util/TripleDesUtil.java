@@ -1,14 +1,21 @@
 package org.asf.edge.common.util;
 
 import java.io.IOException;
-import java.security.InvalidKeyException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.Security;
-import javax.crypto.BadPaddingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
@@ -18,13 +25,65 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
  * Simple utility to encrypt/decrypt with triple DES, SoD uses triple des for
  * some things
  * 
+ * <p>
+ * Initialized ciphers are cached per thread and key so repeated calls with the
+ * same key skip the provider lookup and key schedule.
+ * </p>
+ * 
  * @author Sky Swimmer
- *
+ * 
  */
 public class TripleDesUtil {
 
+	private static final int MAX_CACHED_CIPHERS = 32;
+	private static final int MAX_CACHED_KEYS = 256;
+
+	private static BouncyCastleProvider provider = new BouncyCastleProvider();
+
+	private static ConcurrentHashMap<String, byte[]> md5Keys = new ConcurrentHashMap<String, byte[]>();
+	private static ThreadLocal<CipherCache> ciphers = ThreadLocal.withInitial(() -> new CipherCache());
+
 	static {
-		Security.addProvider(new BouncyCastleProvider());
+		Security.addProvider(provider);
+	}
+
+	private static class CipherCache extends LinkedHashMap<String, Cipher> {
+		private static final long serialVersionUID = 1L;
+
+		public CipherCache() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Cipher> eldest) {
+			return size() > MAX_CACHED_CIPHERS;
+		}
+	}
+
+	/**
+	 * Derives a triple DES key from a secret by hashing it with MD5, the way SoD
+	 * derives its keys, results are cached
+	 * 
+	 * @param secret   Secret to use
+	 * @param encoding Encoding to use (eg. "UTF-16LE" or "ASCII")
+	 * @return Key bytes
+	 * @throws UnsupportedEncodingException If the encoding is not supported
+	 */
+	public static byte[] deriveKey(String secret, String encoding) throws UnsupportedEncodingException {
+		String id = encoding + ":" + secret;
+		byte[] key = md5Keys.get(id);
+		if (key == null) {
+			try {
+				MessageDigest digest = MessageDigest.getInstance("MD5");
+				key = digest.digest(secret.getBytes(encoding));
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			}
+			if (md5Keys.size() >= MAX_CACHED_KEYS)
+				md5Keys.clear();
+			md5Keys.put(id, key);
+		}
+		return key.clone();
 	}
 
 	/**
@@ -37,11 +96,8 @@ public class TripleDesUtil {
 	 */
 	public static byte[] encrypt(byte[] data, byte[] key) throws IOException {
 		try {
-			Cipher cipher = Cipher.getInstance("DESede/ECB/PKCS7Padding", "BC");
-			cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "DESede"));
-			return cipher.doFinal(data);
-		} catch (NoSuchAlgorithmException | NoSuchProviderException | NoSuchPaddingException | InvalidKeyException
-				| IllegalBlockSizeException | BadPaddingException e) {
+			return runCipher("DESede/ECB/PKCS7Padding", Cipher.ENCRYPT_MODE, data, key);
+		} catch (GeneralSecurityException e) {
 			throw new IOException("Encryption failure", e);
 		}
 	}
@@ -56,21 +112,75 @@ public class TripleDesUtil {
 	 */
 	public static byte[] decrypt(byte[] data, byte[] key) throws IOException {
 		try {
-			Cipher cipher = Cipher.getInstance("DESede/ECB/PKCS7Padding", "BC");
-			cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "DESede"));
-			return cipher.doFinal(data);
-		} catch (NoSuchAlgorithmException | NoSuchProviderException | NoSuchPaddingException | InvalidKeyException
-				| IllegalBlockSizeException | BadPaddingException e) {
+			return runCipher("DESede/ECB/PKCS7Padding", Cipher.DECRYPT_MODE, data, key);
+		} catch (GeneralSecurityException e) {
 			// Try without padding
 			try {
-				Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding", "BC");
-				cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "DESede"));
-				return cipher.doFinal(data);
-			} catch (NoSuchAlgorithmException | NoSuchProviderException | NoSuchPaddingException | InvalidKeyException
-					| IllegalBlockSizeException | BadPaddingException e3) {
+				return runCipher("DESede/ECB/NoPadding", Cipher.DECRYPT_MODE, data, key);
+			} catch (GeneralSecurityException e3) {
 				throw new IOException("Decryption failure", e3);
 			}
 		}
 	}
 
+	/**
+	 * Creates a stream that encrypts everything written to it with triple DES,
+	 * closing it writes the final block and closes the underlying stream
+	 * 
+	 * @param output Output stream to write encrypted data to
+	 * @param key    Key to use
+	 * @return OutputStream instance
+	 * @throws IOException If creating the cipher fails
+	 */
+	public static OutputStream encryptStream(OutputStream output, byte[] key) throws IOException {
+		try {
+			return new CipherOutputStream(output, createCipher("DESede/ECB/PKCS7Padding", Cipher.ENCRYPT_MODE, key));
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Encryption failure", e);
+		}
+	}
+
+	/**
+	 * Creates a stream that decrypts triple DES data read from another stream
+	 * 
+	 * <p>
+	 * Unlike {@link #decrypt(byte[], byte[])} this does not fall back to unpadded
+	 * decryption.
+	 * </p>
+	 * 
+	 * @param input Input stream to read encrypted data from
+	 * @param key   Key to use
+	 * @return InputStream instance
+	 * @throws IOException If creating the cipher fails
+	 */
+	public static InputStream decryptStream(InputStream input, byte[] key) throws IOException {
+		try {
+			return new CipherInputStream(input, createCipher("DESede/ECB/PKCS7Padding", Cipher.DECRYPT_MODE, key));
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Decryption failure", e);
+		}
+	}
+
+	private static byte[] runCipher(String transformation, int mode, byte[] data, byte[] key)
+			throws GeneralSecurityException {
+		// Find cached cipher
+		String id = mode + ":" + transformation + ":" + new String(key, StandardCharsets.ISO_8859_1);
+		CipherCache cache = ciphers.get();
+		Cipher cipher = cache.remove(id);
+		if (cipher == null)
+			cipher = createCipher(transformation, mode, key);
+
+		// Run, ECB ciphers reset to their initialized state after doFinal so they
+		// can be reused as-is, failed ciphers are dropped
+		byte[] res = cipher.doFinal(data);
+		cache.put(id, cipher);
+		return res;
+	}
+
+	private static Cipher createCipher(String transformation, int mode, byte[] key) throws GeneralSecurityException {
+		Cipher cipher = Cipher.getInstance(transformation, provider);
+		cipher.init(mode, new SecretKeySpec(key, "DESede"));
+		return cipher;
+	}
+
 }
@@ -0,0 +1,138 @@
+package org.asf.edge.common.http.apihandlerutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+
+import org.asf.edge.common.http.apihandlerutils.EdgeWebServiceRoutes.FunctionRoute;
+import org.asf.edge.common.http.apihandlerutils.EdgeWebServiceRoutes.ParamKind;
+import org.asf.edge.common.http.apihandlerutils.functions.Function;
+import org.asf.edge.common.http.apihandlerutils.functions.FunctionInfo;
+import org.asf.edge.common.http.apihandlerutils.functions.FunctionResult;
+import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunction;
+import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunctionInfo;
+import org.asf.edge.common.http.apihandlerutils.functions.SodEncryptedParam;
+import org.asf.edge.common.http.apihandlerutils.functions.SodRequest;
+import org.asf.edge.common.http.apihandlerutils.functions.SodRequestParam;
+import org.asf.edge.common.http.apihandlerutils.functions.SodTokenSecured;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ * Tests the compiled route tables against the function lookup they replaced
+ * 
+ * @author Sky Swimmer
+ *
+ */
+@SuppressWarnings("deprecation")
+public class EdgeWebServiceRoutesTest {
+
+	public static class SampleService {
+
+		@Function
+		public FunctionResult hello(FunctionInfo func) {
+			return new FunctionResult(200, "hello");
+		}
+
+		@Function(value = "Named/Path", allowedMethods = { "POST" })
+		public FunctionResult named(FunctionInfo func) {
+			return new FunctionResult(200, "named");
+		}
+
+		@Function(value = "files", allowSubPaths = true)
+		public FunctionResult files(FunctionInfo func) {
+			return new FunctionResult(200, "files");
+		}
+
+		@Function(value = "files/special", allowSubPaths = true)
+		public FunctionResult special(FunctionInfo func) {
+			return new FunctionResult(200, "special");
+		}
+
+		@SodRequest
+		@SodTokenSecured
+		public FunctionResult getThing(FunctionInfo func, @SodRequestParam("name") String name,
+				@SodRequestParam("count") @SodEncryptedParam int amount) {
+			return new FunctionResult(200, name + amount);
+		}
+
+		@Function
+		public FunctionResult wrongParameters(String value) {
+			return null;
+		}
+
+		@Function
+		public static FunctionResult staticFunction(FunctionInfo func) {
+			return null;
+		}
+
+		@LegacyFunction("OldThing")
+		public void oldThing(LegacyFunctionInfo func) {
+		}
+
+	}
+
+	private static final String[] PATHS = new String[] { "hello", "HELLO", "hello/sub", "named/path", "Named/Path",
+			"named", "files", "files/a/b", "FILES/a", "filesx", "getthing", "getThing", "wrongparameters",
+			"staticfunction", "oldthing", "missing", "" };
+
+	@Test
+	public void lookupMatchesLegacy() {
+		LegacyWebServiceRoutes legacy = new LegacyWebServiceRoutes(SampleService.class);
+		EdgeWebServiceRoutes routes = EdgeWebServiceRoutes.getRoutes(SampleService.class);
+		for (String path : PATHS) {
+			FunctionRoute route = routes.findFunction(path.toLowerCase());
+			assertEquals(legacy.findFunction(path), route == null ? null : route.method, path);
+			EdgeWebServiceRoutes.LegacyRoute legacyRoute = routes.findLegacyFunction(path.toLowerCase());
+			assertEquals(legacy.findLegacyFunction(path), legacyRoute == null ? null : legacyRoute.method, path);
+		}
+	}
+
+	@Test
+	public void longestSubPathWins() {
+		// The previous lookup picked whichever matched first in map order
+		assertEquals("special",
+				LegacyWebServiceRoutes.findCompiledFunction(SampleService.class, "files/special").getName());
+		assertEquals("special",
+				LegacyWebServiceRoutes.findCompiledFunction(SampleService.class, "files/Special/a").getName());
+		assertEquals("files",
+				LegacyWebServiceRoutes.findCompiledFunction(SampleService.class, "files/specialx").getName());
+	}
+
+	@Test
+	public void routesAreSharedAndBound() throws Exception {
+		EdgeWebServiceRoutes routes = EdgeWebServiceRoutes.getRoutes(SampleService.class);
+		assertTrue(routes == EdgeWebServiceRoutes.getRoutes(SampleService.class));
+
+		// Methods
+		assertTrue(routes.findFunction("named/path").isMethodAllowed("post"));
+		assertFalse(routes.findFunction("named/path").isMethodAllowed("GET"));
+		assertTrue(routes.findFunction("hello").isMethodAllowed("get"));
+
+		// Parameters
+		FunctionRoute route = routes.findFunction("getthing");
+		assertNotNull(route);
+		assertTrue(route.sodRequest);
+		assertTrue(route.tokenSecured);
+		assertEquals(3, route.params.length);
+		assertEquals(ParamKind.FUNCTION_INFO, route.params[0].kind);
+		assertEquals(ParamKind.REQUEST_PARAM, route.params[1].kind);
+		assertEquals("name", route.params[1].requestParam);
+		assertNull(route.params[1].decoder);
+		assertEquals(ParamKind.REQUEST_PARAM, route.params[2].kind);
+		assertEquals("count", route.params[2].requestParam);
+		assertTrue(route.params[2].encrypted);
+		assertEquals(12, route.params[2].decoder.decode("12"));
+
+		// Invoke
+		FunctionResult res = route.invoke(new SampleService(), new Object[] { null, "thing", 12 });
+		assertEquals("thing12", res.getStatusMessage());
+		Method mth = routes.findFunction("files/a").method;
+		assertEquals("files", mth.getName());
+	}
+
+}
@@ -0,0 +1,205 @@
+package org.asf.edge.common.services.textfilter.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.asf.edge.common.services.textfilter.FilterMode;
+import org.asf.edge.common.services.textfilter.FilterSeverity;
+import org.asf.edge.common.services.textfilter.PhraseFilter;
+import org.asf.edge.common.services.textfilter.PhraseFilterSet;
+import org.asf.edge.common.services.textfilter.result.FilterResult;
+import org.asf.edge.common.services.textfilter.result.WordMatch;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * Differential test of the compiled filter matcher against the text filter
+ * implementation it replaced
+ *
+ * @author Sky Swimmer
+ *
+ */
+public class FilterMatcherDifferentialTest {
+
+	private static final int TEXTS = 10000;
+
+	private static final FilterMode[] MODES = FilterMode.values();
+	private static final FilterSeverity[] SEVERITIES = new FilterSeverity[] { FilterSeverity.ALWAYS_FILTERED,
+			FilterSeverity.USER_STRICT_MODE, FilterSeverity.INSTAMUTE };
+	private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789éÉßÄäΣσς";
+	private static final String PUNCTUATION = "!?.,'-_#*";
+
+	@Test
+	public void defaultFiltersMatchLegacy() throws IOException {
+		compare(LegacyTextFilter.loadDefaultFilters(), new Random(1));
+	}
+
+	@Test
+	public void syntheticFiltersMatchLegacy() throws IOException {
+		Random rnd = new Random(2);
+		HashMap<String, PhraseFilterSet> filters = LegacyTextFilter.loadDefaultFilters();
+		for (int i = 0; i < 2; i++) {
+			PhraseFilterSet set = randomSet("synthetic" + i, rnd);
+			filters.put(set.getSetName(), set);
+		}
+		compare(filters, rnd);
+	}
+
+	@Test
+	public void modifiedFiltersAreRecompiled() {
+		TextFilterServiceImpl service = new TextFilterServiceImpl();
+		PhraseFilterSet set = new PhraseFilterSet("modified", "Modified set", "Test");
+		PhraseFilter filter = set.addPhraseFilter(FilterSeverity.ALWAYS_FILTERED,
+				new FilterMode[] { FilterMode.WHOLE_PHRASE }, "Test", "apple");
+		service.addFilterSet(set);
+		assertTrue(service.isFiltered("an apple", false));
+		assertFalse(service.isFiltered("a pineapple", false));
+
+		// Modes
+		filter.addMode(FilterMode.WORD_CONTAINS);
+		assertTrue(service.isFiltered("a pineapple", false));
+
+		// Variants
+		assertFalse(service.isFiltered("a pear", false));
+		filter.addVariant("pear");
+		assertTrue(service.isFiltered("a pear", false));
+		assertEquals("a ####", service.filter("a pear", false).getFilterResult());
+
+		// Phrases
+		assertFalse(service.shouldFilterMute("a plum"));
+		set.addPhraseFilter(FilterSeverity.INSTAMUTE, new FilterMode[] { FilterMode.WHOLE_PHRASE }, "Test", "plum");
+		assertTrue(service.shouldFilterMute("a plum"));
+	}
+
+	private static void compare(Map<String, PhraseFilterSet> filters, Random rnd) {
+		LegacyTextFilter legacy = new LegacyTextFilter(filters);
+		FilterMatcher matcher = new FilterMatcher(filters);
+
+		// Build a vocabulary from the filtered phrases so texts actually hit filters
+		ArrayList<String> vocabulary = new ArrayList<String>();
+		for (PhraseFilterSet set : filters.values()) {
+			for (PhraseFilter filter : set.getFilteredPhrases()) {
+				for (String phrase : filter.getAllPhrases()) {
+					vocabulary.add(phrase);
+					for (String word : phrase.split(" "))
+						vocabulary.add(word);
+				}
+			}
+		}
+
+		// Compare
+		for (int i = 0; i < TEXTS; i++) {
+			String text = randomText(vocabulary, rnd);
+			for (boolean strict : new boolean[] { false, true }) {
+				FilterResult expected = legacy.filter(text, strict);
+				FilterResult actual = matcher.filter(text, strict);
+				assertEquals(expected.getFilterResult(), actual.getFilterResult(), "Filtered text of '" + text + "'");
+				assertEquals(describe(expected.getMatches()), describe(actual.getMatches()),
+						"Matches of '" + text + "'");
+				assertEquals(legacy.isFiltered(text, strict),
+						matcher.isFiltered(text, t -> strict || t != FilterSeverity.USER_STRICT_MODE),
+						"isFiltered of '" + text + "'");
+			}
+			assertEquals(legacy.shouldFilterMute(text), matcher.isFiltered(text, t -> t == FilterSeverity.INSTAMUTE),
+					"shouldFilterMute of '" + text + "'");
+		}
+	}
+
+	private static PhraseFilterSet randomSet(String name, Random rnd) {
+		PhraseFilterSet set = new PhraseFilterSet(name, "Synthetic filter set", "Test");
+		int count = 10 + rnd.nextInt(15);
+		for (int i = 0; i < count; i++) {
+			// Modes
+			LinkedHashSet<FilterMode> modes = new LinkedHashSet<FilterMode>();
+			int modeCount = 1 + rnd.nextInt(3);
+			for (int i2 = 0; i2 < modeCount; i2++)
+				modes.add(MODES[rnd.nextInt(MODES.length)]);
+
+			// Variants
+			String[] variants = new String[rnd.nextInt(3)];
+			for (int i2 = 0; i2 < variants.length; i2++)
+				variants[i2] = randomPhrase(rnd);
+
+			set.addPhraseFilter(SEVERITIES[rnd.nextInt(SEVERITIES.length)], modes.toArray(t -> new FilterMode[t]),
+					"Test", randomPhrase(rnd), variants);
+		}
+		return set;
+	}
+
+	private static String randomPhrase(Random rnd) {
+		int words = rnd.nextInt(4) == 0 ? 2 + rnd.nextInt(2) : 1;
+		StringBuilder phrase = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			if (i != 0)
+				phrase.append(' ');
+			int length = 2 + rnd.nextInt(5);
+			for (int i2 = 0; i2 < length; i2++)
+				phrase.append(LETTERS.charAt(rnd.nextInt(LETTERS.length())));
+		}
+		return phrase.toString();
+	}
+
+	private static String randomText(ArrayList<String> vocabulary, Random rnd) {
+		StringBuilder text = new StringBuilder();
+		if (rnd.nextInt(10) == 0)
+			text.append(' ');
+		int words = 1 + rnd.nextInt(10);
+		for (int i = 0; i < words; i++) {
+			if (i != 0)
+				text.append(rnd.nextInt(10) == 0 ? "  " : " ");
+
+			// Word
+			String word;
+			int type = rnd.nextInt(10);
+			if (type < 5 && !vocabulary.isEmpty())
+				word = vocabulary.get(rnd.nextInt(vocabulary.size()));
+			else if (type < 7 && !vocabulary.isEmpty())
+				word = randomPhrase(rnd) + vocabulary.get(rnd.nextInt(vocabulary.size()));
+			else if (type < 8)
+				word = "###";
+			else
+				word = randomPhrase(rnd);
+
+			// Case
+			if (!word.isEmpty()) {
+				switch (rnd.nextInt(4)) {
+				case 0:
+					word = word.toUpperCase();
+					break;
+				case 1:
+					word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+					break;
+				}
+			}
+
+			// Punctuation
+			if (rnd.nextInt(5) == 0)
+				word = word + PUNCTUATION.charAt(rnd.nextInt(PUNCTUATION.length()));
+			if (rnd.nextInt(10) == 0)
+				word = PUNCTUATION.charAt(rnd.nextInt(PUNCTUATION.length())) + word;
+			text.append(word);
+		}
+		if (rnd.nextInt(10) == 0)
+			text.append(' ');
+		return text.toString();
+	}
+
+	private static String describe(WordMatch[] matches) {
+		StringBuilder str = new StringBuilder();
+		for (WordMatch match : matches) {
+			str.append(match.getPhraseFilter().getSet().getSetName()).append('/')
+					.append(match.getPhraseFilter().getPhrase()).append('=').append(match.getMatchedPhrase())
+					.append('\n');
+		}
+		return str.toString();
+	}
+
+}
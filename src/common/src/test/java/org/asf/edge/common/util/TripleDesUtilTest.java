@@ -0,0 +1,107 @@
+package org.asf.edge.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ * Tests the cached triple DES ciphers against the implementation that created
+ * a cipher for every call
+ * 
+ * @author Sky Swimmer
+ *
+ */
+public class TripleDesUtilTest {
+
+	@Test
+	public void cachedCiphersMatchLegacy() throws IOException {
+		Random rnd = new Random(1);
+
+		// More keys than the cache holds so ciphers get evicted and recreated
+		byte[][] keys = new byte[48][];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = LegacyTripleDesUtil.deriveKey("secret" + i, i % 2 == 0 ? "UTF-16LE" : "ASCII");
+		for (int i = 0; i < 2000; i++) {
+			byte[] key = keys[rnd.nextInt(keys.length)];
+			byte[] data = new byte[rnd.nextInt(100)];
+			rnd.nextBytes(data);
+
+			byte[] encrypted = LegacyTripleDesUtil.encrypt(data, key);
+			assertArrayEquals(encrypted, TripleDesUtil.encrypt(data, key), "Iteration " + i);
+			assertArrayEquals(data, TripleDesUtil.decrypt(encrypted, key), "Iteration " + i);
+		}
+	}
+
+	@Test
+	public void unpaddedDataDecryptsLikeLegacy() throws IOException {
+		Random rnd = new Random(2);
+		byte[] key = LegacyTripleDesUtil.deriveKey("unpadded", "ASCII");
+		for (int i = 0; i < 200; i++) {
+			// Random blocks rarely end in valid padding, both fall back to no padding
+			byte[] data = new byte[8 * (1 + rnd.nextInt(8))];
+			rnd.nextBytes(data);
+			assertArrayEquals(LegacyTripleDesUtil.decrypt(data, key), TripleDesUtil.decrypt(data, key),
+					"Iteration " + i);
+
+			// Cached padded cipher must still work after the failure
+			byte[] plain = new byte[rnd.nextInt(40)];
+			rnd.nextBytes(plain);
+			assertArrayEquals(plain, TripleDesUtil.decrypt(TripleDesUtil.encrypt(plain, key), key), "Iteration " + i);
+		}
+		assertThrows(IOException.class, () -> TripleDesUtil.decrypt(new byte[7], key));
+	}
+
+	@Test
+	public void derivedKeysMatchLegacy() throws IOException {
+		for (String encoding : new String[] { "UTF-16LE", "ASCII", "UTF-8" }) {
+			for (int i = 0; i < 300; i++) {
+				String secret = "56BB211B-CF06-48E1-9C1D-E40B5173D759-" + i;
+				byte[] key = TripleDesUtil.deriveKey(secret, encoding);
+				assertArrayEquals(LegacyTripleDesUtil.deriveKey(secret, encoding), key);
+
+				// Callers may modify the returned key
+				key[0]++;
+				assertArrayEquals(LegacyTripleDesUtil.deriveKey(secret, encoding),
+						TripleDesUtil.deriveKey(secret, encoding));
+			}
+		}
+	}
+
+	@Test
+	public void streamsMatchLegacy() throws IOException {
+		Random rnd = new Random(3);
+		byte[] key = LegacyTripleDesUtil.deriveKey("stream", "UTF-16LE");
+		for (int i = 0; i < 100; i++) {
+			byte[] data = new byte[rnd.nextInt(5000)];
+			rnd.nextBytes(data);
+			byte[] encrypted = LegacyTripleDesUtil.encrypt(data, key);
+
+			// Encrypt in uneven chunks
+			ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+			try (OutputStream strm = TripleDesUtil.encryptStream(bOut, key)) {
+				int offset = 0;
+				while (offset < data.length) {
+					int length = Math.min(data.length - offset, 1 + rnd.nextInt(300));
+					strm.write(data, offset, length);
+					offset += length;
+				}
+			}
+			assertArrayEquals(encrypted, bOut.toByteArray(), "Iteration " + i);
+
+			// Decrypt
+			try (InputStream strm = TripleDesUtil.decryptStream(new ByteArrayInputStream(encrypted), key)) {
+				assertArrayEquals(data, strm.readAllBytes(), "Iteration " + i);
+			}
+		}
+	}
+
+}
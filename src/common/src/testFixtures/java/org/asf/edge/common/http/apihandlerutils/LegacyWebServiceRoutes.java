@@ -0,0 +1,160 @@
+package org.asf.edge.common.http.apihandlerutils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+
+import org.asf.edge.common.experiments.ExperimentManager;
+import org.asf.edge.common.http.apihandlerutils.functions.ExperimentalFeature;
+import org.asf.edge.common.http.apihandlerutils.functions.Function;
+import org.asf.edge.common.http.apihandlerutils.functions.FunctionInfo;
+import org.asf.edge.common.http.apihandlerutils.functions.FunctionResult;
+import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunction;
+import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunctionInfo;
+import org.asf.edge.common.http.apihandlerutils.functions.SodRequest;
+
+/**
+ * 
+ * Function lookup of web services as it was implemented before the routes were
+ * compiled, each instance scans the service type the way every service
+ * instance did. Kept as reference for the route tests and benchmarks.
+ * 
+ * @author Sky Swimmer
+ *
+ */
+@SuppressWarnings("deprecation")
+public class LegacyWebServiceRoutes {
+
+	private HashMap<String, Method> functions = new HashMap<String, Method>();
+	private HashMap<String, Method> legacyFunctions = new HashMap<String, Method>();
+
+	public LegacyWebServiceRoutes(Class<?> type) {
+		// Find all functions
+		for (Method meth : type.getMethods()) {
+			if (!Modifier.isAbstract(meth.getModifiers()) && !Modifier.isStatic(meth.getModifiers())) {
+				// Check parameters
+				if (meth.getParameterCount() == 1
+						&& LegacyFunctionInfo.class.isAssignableFrom(meth.getParameterTypes()[0])) {
+					// Check annotation
+					if (meth.isAnnotationPresent(LegacyFunction.class)) {
+						LegacyFunction funcAnno = meth.getAnnotation(LegacyFunction.class);
+						String name = meth.getName();
+						if (!funcAnno.value().equals("<auto>"))
+							name = funcAnno.value();
+
+						// Make accessible
+						meth.setAccessible(true);
+
+						// Register
+						legacyFunctions.put(name.toLowerCase(), meth);
+					}
+				} else if ((meth.isAnnotationPresent(Function.class) || meth.isAnnotationPresent(SodRequest.class))
+						&& FunctionResult.class.isAssignableFrom(meth.getReturnType())) {
+					// Check
+					if (!meth.isAnnotationPresent(SodRequest.class) && (meth.getParameterTypes().length != 1
+							|| !meth.getParameterTypes()[0].isAssignableFrom(FunctionInfo.class)))
+						continue;
+
+					// Check experimental
+					if (meth.isAnnotationPresent(ExperimentalFeature.class)) {
+						// Check
+						ExperimentalFeature anno = meth.getAnnotation(ExperimentalFeature.class);
+						String key = anno.value();
+						if (anno.isReverse()) {
+							// Check
+							if (ExperimentManager.getInstance().isExperimentEnabled(key))
+								continue;
+						} else {
+							// Check
+							if (!ExperimentManager.getInstance().isExperimentEnabled(key))
+								continue;
+						}
+					}
+
+					// Load name
+					String name = meth.getName();
+					if (meth.isAnnotationPresent(Function.class)) {
+						Function funcAnno = meth.getAnnotation(Function.class);
+						if (!funcAnno.value().equals("<auto>"))
+							name = funcAnno.value();
+					}
+
+					// Make accessible
+					meth.setAccessible(true);
+
+					// Register
+					functions.put(name.toLowerCase(), meth);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the names of all functions (lower-case)
+	 * 
+	 * @return Array of function names
+	 */
+	public String[] getFunctionNames() {
+		return functions.keySet().toArray(t -> new String[t]);
+	}
+
+	/**
+	 * Finds the function that would have handled a request path, sub path
+	 * functions are checked first in map order
+	 * 
+	 * @param path Request path
+	 * @return Method instance or null
+	 */
+	public Method findFunction(String path) {
+		for (String func : functions.keySet()) {
+			// Get function
+			Method mth = functions.get(func.toLowerCase());
+
+			// Check method
+			if (mth.isAnnotationPresent(Function.class)) {
+				Function anno = mth.getAnnotation(Function.class);
+				String name = mth.getName();
+				if (!anno.value().equals("<auto>"))
+					name = anno.value();
+
+				// Check
+				if (anno.allowSubPaths()) {
+					// Check sub path
+					if (path.toLowerCase().equals(name.toLowerCase())
+							|| path.toLowerCase().startsWith(name.toLowerCase() + "/")) {
+						// Found it
+						return mth;
+					}
+				}
+			}
+		}
+		return functions.get(path.toLowerCase());
+	}
+
+	/**
+	 * Finds the legacy function that would have handled a request path
+	 * 
+	 * @param path Request path
+	 * @return Method instance or null
+	 */
+	public Method findLegacyFunction(String path) {
+		return legacyFunctions.get(path.toLowerCase());
+	}
+
+	/**
+	 * Finds functions in the compiled route table of a service type, the way
+	 * service instances look them up
+	 * 
+	 * @param type Web service type
+	 * @param path Request path
+	 * @return Method instance or null
+	 */
+	public static Method findCompiledFunction(Class<?> type, String path) {
+		EdgeWebServiceRoutes.FunctionRoute route = EdgeWebServiceRoutes.getRoutes(type)
+				.findFunction(path.toLowerCase());
+		if (route == null)
+			return null;
+		return route.method;
+	}
+
+}
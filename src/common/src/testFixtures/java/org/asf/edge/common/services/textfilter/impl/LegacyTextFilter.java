@@ -0,0 +1,450 @@
+package org.asf.edge.common.services.textfilter.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.asf.edge.common.services.textfilter.FilterMode;
+import org.asf.edge.common.services.textfilter.FilterSeverity;
+import org.asf.edge.common.services.textfilter.PhraseFilter;
+import org.asf.edge.common.services.textfilter.PhraseFilterSet;
+import org.asf.edge.common.services.textfilter.result.FilterResult;
+import org.asf.edge.common.services.textfilter.result.WordMatch;
+
+/**
+ * 
+ * Text filter as it was implemented before the filter sets were compiled into
+ * a matcher, kept as reference for the matcher tests and benchmarks
+ * 
+ * @author Sky Swimmer
+ *
+ */
+public class LegacyTextFilter {
+
+	private Map<String, PhraseFilterSet> filters;
+
+	public LegacyTextFilter(Map<String, PhraseFilterSet> filters) {
+		this.filters = filters;
+	}
+
+	/**
+	 * Loads the default filter sets shipped with the server
+	 * 
+	 * @return Filter sets by name
+	 * @throws IOException If loading fails
+	 */
+	public static HashMap<String, PhraseFilterSet> loadDefaultFilters() throws IOException {
+		Path dir = Files.createTempDirectory("edge-textfilter");
+		try {
+			for (String name : new String[] { "alwaysfilter.etfd", "instamute.etfd", "userfilter.etfd" }) {
+				try (InputStream strm = LegacyTextFilter.class.getClassLoader()
+						.getResourceAsStream("defaultfilters/" + name)) {
+					Files.copy(strm, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			HashMap<String, PhraseFilterSet> filters = new HashMap<String, PhraseFilterSet>();
+			TextFilterServiceImpl.loadFilters(dir.toFile(), filters);
+			return filters;
+		} finally {
+			for (File f : dir.toFile().listFiles())
+				f.delete();
+			dir.toFile().delete();
+		}
+	}
+
+	private boolean match(FilterMode mode, String text, String filterWord, String filterVariant) {
+		// Run for specific modes
+		if (filterVariant.contains(" ")) {
+			String textFull = " " + text + " ";
+			if (mode == FilterMode.WHOLE_PHRASE || mode == FilterMode.PHRASE_COMBINED) {
+				// Check phrase
+				if (textFull.toLowerCase().contains(" " + filterVariant.toLowerCase() + " "))
+					return true;
+			}
+			if (mode == FilterMode.PHRASE_COMBINED) {
+				// Check phrase
+				if (textFull.toLowerCase().contains(" " + filterVariant.replace(" ", "").toLowerCase() + " "))
+					return true;
+			} else if (mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED) {
+				// Check phrase
+				boolean match = false;
+				boolean foundStart = false;
+				String[] variantWords = filterVariant.split(" ");
+				int i = 1;
+				if (variantWords.length != 0) {
+					String firstVariant = variantWords[0];
+					for (String word : text.split(" ")) {
+						if (!foundStart) {
+							if (word.toLowerCase().contains(firstVariant.toLowerCase())) {
+								foundStart = true;
+								match = true;
+							}
+						} else {
+							if (i == variantWords.length)
+								break;
+							if (!word.toLowerCase().contains(variantWords[i++].toLowerCase())) {
+								match = false;
+								foundStart = false;
+								i = 1;
+							}
+						}
+					}
+					if (i == variantWords.length)
+						if (match)
+							return true;
+				}
+			}
+			if (mode == FilterMode.WORD_COMBINED) {
+				// Check phrase
+				if (match(FilterMode.WORD_CONTAINS, text, filterWord, filterVariant.replace(" ", "").toLowerCase()))
+					return true;
+			}
+		}
+		if (filterWord != null) {
+			if (!filterVariant.contains(" ")) {
+				if (mode == FilterMode.WHOLE_PHRASE || mode == FilterMode.PHRASE_COMBINED) {
+					// Check phrase
+					if (filterWord.equalsIgnoreCase(filterVariant))
+						return true;
+				} else if (mode == FilterMode.PHRASE_COMBINED) {
+					// Check phrase
+					if (filterWord.equalsIgnoreCase(filterVariant.replace(" ", "").toLowerCase()))
+						return true;
+				} else if (mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED) {
+					// Check phrase
+					if (filterWord.contains(filterVariant))
+						return true;
+				} else if (mode == FilterMode.WORD_COMBINED) {
+					// Check phrase
+					if (filterWord.toLowerCase().contains(filterVariant.replace(" ", "").toLowerCase()))
+						return true;
+				}
+			}
+		}
+
+		// Unfiltered
+		return false;
+	}
+
+	public boolean isFiltered(String text, boolean strictMode) {
+		// Check filter
+		if (filters.values().stream().anyMatch(t -> Stream.of(t.getFilteredPhrases()).anyMatch(filter -> {
+			// Check filter
+			if (strictMode || (filter.getSeverity() != FilterSeverity.USER_STRICT_MODE)) {
+				for (FilterMode mode : filter.getModes()) {
+					if (mode == FilterMode.WHOLE_PHRASE || mode == FilterMode.PHRASE_COMBINED
+							|| mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED)
+						continue;
+
+					// Check phrase
+					if (match(mode, text, null, filter.getPhrase()))
+						return true;
+					for (String variant : filter.getVariants())
+						if (match(mode, null, text, variant))
+							return true;
+				}
+			}
+
+			// Unfiltered
+			return false;
+		}))) {
+			// Filtered
+			return true;
+		}
+
+		// Check word-by-word
+		for (String word : text.split(" ")) {
+			// Check filters
+			String filterWord = word.replaceAll("[^A-Za-z0-9]", "").toLowerCase();
+			if (filters.values().stream().anyMatch(t -> Stream.of(t.getFilteredPhrases()).anyMatch(filter -> {
+				// Check filter
+				if (strictMode || (filter.getSeverity() != FilterSeverity.USER_STRICT_MODE)) {
+					for (FilterMode mode : filter.getModes()) {
+						if (mode != FilterMode.WHOLE_PHRASE && mode != FilterMode.PHRASE_COMBINED
+								&& mode != FilterMode.WORD_CONTAINS && mode != FilterMode.WORD_COMBINED)
+							continue;
+
+						// Check phrase
+						if (match(mode, text, filterWord, filter.getPhrase()))
+							return true;
+						for (String variant : filter.getVariants())
+							if (match(mode, text, filterWord, variant))
+								return true;
+					}
+				}
+
+				// Unfiltered
+				return false;
+			}))) {
+				// Filtered
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	public boolean shouldFilterMute(String text) {
+		// Check filter
+		if (filters.values().stream().anyMatch(t -> Stream.of(t.getFilteredPhrases()).anyMatch(filter -> {
+			// Check filter
+			if (filter.getSeverity() == FilterSeverity.INSTAMUTE) {
+				for (FilterMode mode : filter.getModes()) {
+					if (mode == FilterMode.WHOLE_PHRASE || mode == FilterMode.PHRASE_COMBINED
+							|| mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED)
+						continue;
+
+					// Check phrase
+					if (match(mode, text, null, filter.getPhrase()))
+						return true;
+					for (String variant : filter.getVariants())
+						if (match(mode, null, text, variant))
+							return true;
+				}
+			}
+
+			// Unfiltered
+			return false;
+		}))) {
+			// Filtered
+			return true;
+		}
+
+		// Check word-by-word
+		for (String word : text.split(" ")) {
+			// Check filters
+			String filterWord = word.replaceAll("[^A-Za-z0-9]", "").toLowerCase();
+			if (filters.values().stream().anyMatch(t -> Stream.of(t.getFilteredPhrases()).anyMatch(filter -> {
+				// Check filter
+				if (filter.getSeverity() == FilterSeverity.INSTAMUTE) {
+					for (FilterMode mode : filter.getModes()) {
+						if (mode != FilterMode.WHOLE_PHRASE && mode != FilterMode.PHRASE_COMBINED
+								&& mode != FilterMode.WORD_CONTAINS && mode != FilterMode.WORD_COMBINED)
+							continue;
+
+						// Check phrase
+						if (match(mode, text, filterWord, filter.getPhrase()))
+							return true;
+						for (String variant : filter.getVariants())
+							if (match(mode, text, filterWord, variant))
+								return true;
+					}
+				}
+
+				// Unfiltered
+				return false;
+			}))) {
+				// Filtered
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	public FilterResult filter(String text, boolean strictMode) {
+		ArrayList<WordMatch> matches = new ArrayList<WordMatch>();
+		ArrayList<String> matchedPhrases = new ArrayList<String>();
+
+		// Handle word contains filters
+		for (PhraseFilterSet set : filters.values()) {
+			for (PhraseFilter filter : set.getFilteredPhrases()) {
+				// Check mode
+				if (!strictMode && filter.getSeverity() == FilterSeverity.USER_STRICT_MODE)
+					continue;
+
+				// Preload phrases
+				String[] phrases = filter.getAllPhrases();
+
+				// Go through modes
+				for (FilterMode mode : filter.getModes()) {
+					for (String phrase : phrases) {
+						// Check phrase
+						if (!phrase.contains(" ")) {
+							// Simple indexof and substring if present
+							while (true) {
+								boolean match = false;
+
+								// Go through words
+								int i = 0;
+								for (String word : text.split(" ")) {
+									// Check filter
+									if (((mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED)
+											&& word.toLowerCase().contains(phrase.toLowerCase()))
+											|| ((mode == FilterMode.WHOLE_PHRASE || mode == FilterMode.PHRASE_COMBINED)
+													&& word.equalsIgnoreCase(phrase))) {
+										// Filter
+										String textStart = text.substring(0, i);
+										String textEnd = text.substring(i + word.length());
+										for (int i2 = 0; i2 < word.length(); i2++) {
+											textStart += "#";
+										}
+										text = textStart + textEnd;
+
+										// Add match
+										if (!matchedPhrases.contains(phrase.toLowerCase())) {
+											matchedPhrases.add(phrase.toLowerCase());
+											matches.add(new WordMatch(filter, phrase));
+										}
+										match = true;
+									}
+
+									// Increase
+									i += word.length() + 1;
+								}
+
+								// Check
+								if (!match)
+									break;
+							}
+						} else {
+							// This is a whole lot more complex-
+							String[] variantWords = phrase.split(" ");
+							String[] words = text.split(" ");
+							while (true) {
+								// Prepare
+								int i = 1;
+								boolean match = false;
+								boolean foundStart = false;
+								int startIndex = 0;
+								int endIndex = 0;
+
+								// Go through words
+								if (variantWords.length != 0) {
+									String firstVariant = variantWords[0];
+									int ind = 0;
+									for (String word : words) {
+										if (!foundStart) {
+											if (((mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED)
+													&& word.toLowerCase().contains(firstVariant.toLowerCase()))
+													|| ((mode == FilterMode.WHOLE_PHRASE
+															|| mode == FilterMode.PHRASE_COMBINED)
+															&& word.equalsIgnoreCase(firstVariant))) {
+												foundStart = true;
+												startIndex = ind;
+												match = true;
+											}
+										} else {
+											if (i == variantWords.length)
+												break;
+											if (((mode == FilterMode.WORD_CONTAINS || mode == FilterMode.WORD_COMBINED)
+													&& !word.toLowerCase().contains(variantWords[i++].toLowerCase()))
+													|| ((mode == FilterMode.WHOLE_PHRASE
+															|| mode == FilterMode.PHRASE_COMBINED)
+															&& !word.equalsIgnoreCase(variantWords[i++]))) {
+												match = false;
+												foundStart = false;
+												i = 1;
+											}
+										}
+										ind++;
+									}
+									if (i == variantWords.length) {
+										endIndex = ind - 1;
+
+										// Check result
+										if (match) {
+											// Filter
+											int ind2 = 0;
+											int ind3 = 0;
+											String textStart = "";
+											String textEnd = "";
+											boolean startFound = false;
+											for (String word : words) {
+												if (ind2 == startIndex) {
+													textStart = text.substring(0, ind3);
+													startFound = true;
+													for (int i2 = 0; i2 < word.length(); i2++) {
+														textStart += "#";
+													}
+												} else if (ind2 == endIndex) {
+													textEnd = text.substring(ind3 + word.length());
+													startFound = false;
+													textStart += " ";
+													for (int i2 = 0; i2 < word.length(); i2++) {
+														textStart += "#";
+													}
+												} else if (startFound) {
+													textStart += " ";
+													for (int i2 = 0; i2 < word.length(); i2++) {
+														textStart += "#";
+													}
+												}
+												ind3 += word.length() + 1;
+												ind2++;
+											}
+											text = textStart + textEnd;
+											words = text.split(" ");
+
+											// Add match
+											if (!matchedPhrases.contains(phrase.toLowerCase())) {
+												matchedPhrases.add(phrase.toLowerCase());
+												matches.add(new WordMatch(filter, phrase));
+											}
+										}
+									}
+									if (i != variantWords.length)
+										match = false;
+									if (!match)
+										break;
+								}
+							}
+						}
+
+						// Check combined mode
+						if (mode == FilterMode.WORD_COMBINED || mode == FilterMode.PHRASE_COMBINED) {
+							// Check phrase
+							phrase = phrase.replace(" ", "");
+
+							// Simple indexof and substring if present
+							while (true) {
+								boolean match = false;
+
+								// Go through words
+								int i = 0;
+								for (String word : text.split(" ")) {
+									// Check filter
+									if ((mode == FilterMode.WORD_COMBINED
+											&& word.toLowerCase().contains(phrase.toLowerCase()))
+											|| (mode == FilterMode.PHRASE_COMBINED && word.equalsIgnoreCase(phrase))) {
+										// Filter
+										String textStart = text.substring(0, i);
+										String textEnd = text.substring(i + word.length());
+										for (int i2 = 0; i2 < word.length(); i2++) {
+											textStart += "#";
+										}
+										text = textStart + textEnd;
+
+										// Add match
+										if (!matchedPhrases.contains(phrase.toLowerCase())) {
+											matchedPhrases.add(phrase.toLowerCase());
+											matches.add(new WordMatch(filter, phrase));
+										}
+										match = true;
+									}
+
+									// Increase
+									i += word.length() + 1;
+								}
+
+								// Check
+								if (!match)
+									break;
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return new FilterResult(matches.toArray(t -> new WordMatch[t]), text);
+	}
+
+}
@@ -0,0 +1,96 @@
+package org.asf.edge.common.util;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Security;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * 
+ * Triple DES utility as it was implemented before ciphers and keys were
+ * cached, kept as reference for the cipher cache tests and benchmarks
+ * 
+ * @author Sky Swimmer
+ *
+ */
+public class LegacyTripleDesUtil {
+
+	static {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	/**
+	 * Derives a key by hashing the secret with MD5
+	 * 
+	 * @param secret   Secret to use
+	 * @param encoding Encoding to use
+	 * @return Key bytes
+	 */
+	public static byte[] deriveKey(String secret, String encoding) {
+		byte[] key;
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			key = digest.digest(secret.getBytes(encoding));
+		} catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+		return key;
+	}
+
+	/**
+	 * Encrypts data with triple DES
+	 * 
+	 * @param data Data to encrypt
+	 * @param key  Key to use
+	 * @return Encrypted data
+	 * @throws IOException If encrypting fails
+	 */
+	public static byte[] encrypt(byte[] data, byte[] key) throws IOException {
+		try {
+			Cipher cipher = Cipher.getInstance("DESede/ECB/PKCS7Padding", "BC");
+			cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "DESede"));
+			return cipher.doFinal(data);
+		} catch (NoSuchAlgorithmException | NoSuchProviderException | NoSuchPaddingException | InvalidKeyException
+				| IllegalBlockSizeException | BadPaddingException e) {
+			throw new IOException("Encryption failure", e);
+		}
+	}
+
+	/**
+	 * Decrypts data with triple DES
+	 * 
+	 * @param data Data to decrypt
+	 * @param key  Key to use
+	 * @return Encrypted data
+	 * @throws IOException If decrypting fails
+	 */
+	public static byte[] decrypt(byte[] data, byte[] key) throws IOException {
+		try {
+			Cipher cipher = Cipher.getInstance("DESede/ECB/PKCS7Padding", "BC");
+			cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "DESede"));
+			return cipher.doFinal(data);
+		} catch (NoSuchAlgorithmException | NoSuchProviderException | NoSuchPaddingException | InvalidKeyException
+				| IllegalBlockSizeException | BadPaddingException e) {
+			// Try without padding
+			try {
+				Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding", "BC");
+				cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "DESede"));
+				return cipher.doFinal(data);
+			} catch (NoSuchAlgorithmException | NoSuchProviderException | NoSuchPaddingException | InvalidKeyException
+					| IllegalBlockSizeException | BadPaddingException e3) {
+				throw new IOException("Decryption failure", e3);
+			}
+		}
+	}
+
+}
@@ -16,6 +16,7 @@ import org.asf.edge.commonapi.http.handlers.api.accounts.*;
 import org.asf.edge.commonapi.http.handlers.api.avatars.*;
 import org.asf.edge.commonapi.http.handlers.api.messaging.*;
 import org.asf.edge.commonapi.http.handlers.internal.*;
+import org.asf.edge.commonapi.util.MmoClusterDirectory;
 import org.asf.edge.commonapi.util.MmoServerEntry;
 import org.asf.edge.modules.eventbus.EventBus;
 import org.asf.edge.commonapi.events.server.*;
@@ -55,6 +56,7 @@ public class EdgeCommonApiServer implements IBaseServer {
 	private ConnectiveHttpServer internalServer;
 
 	private ArrayList<MmoServerEntry> mmoServers = new ArrayList<MmoServerEntry>();
+	private MmoClusterDirectory mmoDirectory = new MmoClusterDirectory();
 
 	@Override
 	public String getVersion() {
@@ -373,6 +375,15 @@ public class EdgeCommonApiServer implements IBaseServer {
 		internalServer.waitForExit();
 	}
 
+	/**
+	 * Retrieves the directory of rooms and players hosted by the MMO servers
+	 * 
+	 * @return MmoClusterDirectory instance
+	 */
+	public MmoClusterDirectory getMmoDirectory() {
+		return mmoDirectory;
+	}
+
 	/**
 	 * Retrieves MMO server entries for server discovery
 	 * 
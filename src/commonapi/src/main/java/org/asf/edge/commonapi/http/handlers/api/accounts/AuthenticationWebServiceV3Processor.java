@@ -13,6 +13,7 @@ import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunction;
 import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunctionInfo;
 import org.asf.edge.common.services.accounts.AccountManager;
 import org.asf.edge.common.services.accounts.AccountObject;
+import org.asf.edge.common.services.accounts.PasswordHashingBusyException;
 import org.asf.edge.common.tokens.SessionToken;
 import org.asf.edge.commonapi.EdgeCommonApiServer;
 import org.asf.edge.commonapi.xmls.ProductRuleData;
@@ -127,7 +128,15 @@ public class AuthenticationWebServiceV3Processor extends EdgeWebService<EdgeComm
 		}
 
 		// Check password
-		if (!manager.verifyPassword(id, password)) {
+		boolean valid;
+		try {
+			valid = manager.verifyPassword(id, password);
+		} catch (PasswordHashingBusyException e) {
+			// Server busy
+			setResponseStatus(503, "Service unavailable");
+			return;
+		}
+		if (!valid) {
 			// Return failure
 			setResponseContent(req.generateXmlValue("boolean", false));
 			return;
@@ -315,7 +324,19 @@ public class AuthenticationWebServiceV3Processor extends EdgeWebService<EdgeComm
 		}
 
 		// Password check
-		if (!manager.verifyPassword(id, login.password)) {
+		boolean valid;
+		try {
+			valid = manager.verifyPassword(id, login.password);
+		} catch (PasswordHashingBusyException e) {
+			// Log
+			getServerInstance().getLogger().warn("Account login from IP " + func.getClient().getRemoteAddress()
+					+ " rejected for " + id + ": password hashing queue is full");
+
+			// Server busy
+			setResponseStatus(503, "Service unavailable");
+			return;
+		}
+		if (!valid) {
 			// Log
 			getServerInstance().getLogger().warn("Account login from IP " + func.getClient().getRemoteAddress()
 					+ " rejected for " + id + ": invalid password");
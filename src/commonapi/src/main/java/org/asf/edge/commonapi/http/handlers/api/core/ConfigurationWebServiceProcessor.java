@@ -5,6 +5,7 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import org.asf.connective.RemoteClient;
 import org.asf.connective.impl.http_1_1.RemoteClientHttp_1_1;
@@ -13,6 +14,7 @@ import org.asf.edge.common.http.apihandlerutils.EdgeWebService;
 import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunction;
 import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunctionInfo;
 import org.asf.edge.commonapi.EdgeCommonApiServer;
+import org.asf.edge.commonapi.util.MmoClusterDirectory;
 import org.asf.edge.commonapi.util.MmoServerEntry;
 import org.asf.edge.commonapi.xmls.servers.MMOServerInfoBlock;
 import org.asf.edge.commonapi.xmls.servers.MMOServerInfoList;
@@ -48,8 +50,25 @@ public class ConfigurationWebServiceProcessor extends EdgeWebService<EdgeCommonA
 		if (req == null)
 			return;
 
-		// Create list
+		// Find the least busy primary server of each zone, that server is marked as
+		// default so new players are spread over the servers
 		MmoServerEntry[] servers = getServerInstance().getMmoServers();
+		MmoClusterDirectory directory = getServerInstance().getMmoDirectory();
+		HashMap<String, MmoServerEntry> defaultServers = new HashMap<String, MmoServerEntry>();
+		HashMap<MmoServerEntry, Integer> loads = new HashMap<MmoServerEntry, Integer>();
+		for (MmoServerEntry server : servers) {
+			if (server.isBackupServer)
+				continue;
+			int load = directory.getPlayerCount(server);
+			loads.put(server, load);
+			for (String zone : server.zones) {
+				MmoServerEntry current = defaultServers.get(zone);
+				if (current == null || load < loads.get(current))
+					defaultServers.put(zone, server);
+			}
+		}
+
+		// Create list
 		MMOServerInfoList lst = new MMOServerInfoList();
 		ArrayList<MMOServerInfoBlock> serverLs = new ArrayList<MMOServerInfoBlock>();
 		for (MmoServerEntry server : servers) {
@@ -80,7 +99,7 @@ public class ConfigurationWebServiceProcessor extends EdgeWebService<EdgeCommonA
 				MMOServerInfoBlock srv = new MMOServerInfoBlock();
 				srv.serverAddress = new MMOServerInfoBlock.StringWrapper(addr);
 				srv.port = new MMOServerInfoBlock.IntWrapper(server.port);
-				srv.isDefault = new MMOServerInfoBlock.BooleanWrapper(!server.isBackupServer);
+				srv.isDefault = new MMOServerInfoBlock.BooleanWrapper(defaultServers.get(zone) == server);
 				srv.rootZoneName = new MMOServerInfoBlock.StringWrapper(server.rootZone);
 				srv.zoneName = new MMOServerInfoBlock.StringWrapper(zone);
 				serverLs.add(srv);
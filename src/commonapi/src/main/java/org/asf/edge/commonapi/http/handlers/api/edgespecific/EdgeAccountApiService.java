@@ -19,6 +19,7 @@ import org.asf.edge.common.services.accounts.AccountDataContainer;
 import org.asf.edge.common.services.accounts.AccountManager;
 import org.asf.edge.common.services.accounts.AccountObject;
 import org.asf.edge.common.services.accounts.AccountSaveContainer;
+import org.asf.edge.common.services.accounts.PasswordHashingBusyException;
 import org.asf.edge.common.services.achievements.AchievementManager;
 import org.asf.edge.common.services.textfilter.TextFilterService;
 import org.asf.edge.common.tokens.SessionToken;
@@ -286,7 +287,18 @@ public class EdgeAccountApiService extends EdgeWebService<EdgeCommonApiServer> {
 		}
 
 		// Password check
-		if (!manager.verifyPassword(id, password)) {
+		boolean valid;
+		try {
+			valid = manager.verifyPassword(id, password);
+		} catch (PasswordHashingBusyException e) {
+			// Log
+			getServerInstance().getLogger().warn("API login from IP " + func.getClient().getRemoteAddress()
+					+ " rejected for " + id + ": password hashing queue is full");
+
+			// Server busy
+			return response(503, "Service unavailable", "text/json", "{\"error\":\"server_busy\"}");
+		}
+		if (!valid) {
 			// Log
 			getServerInstance().getLogger().warn("API login from IP " + func.getClient().getRemoteAddress()
 					+ " rejected for " + id + ": invalid password");
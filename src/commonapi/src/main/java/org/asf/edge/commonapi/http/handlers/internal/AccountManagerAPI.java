@@ -18,6 +18,7 @@ import org.asf.edge.common.http.apihandlerutils.functions.LegacyFunctionInfo;
 import org.asf.edge.common.services.accounts.AccountManager;
 import org.asf.edge.common.services.accounts.AccountObject;
 import org.asf.edge.common.services.accounts.AccountSaveContainer;
+import org.asf.edge.common.services.accounts.PasswordHashingBusyException;
 import org.asf.edge.common.services.commondata.CommonDataManager;
 import org.asf.edge.common.util.SimpleBinaryMessageClient;
 import org.asf.edge.commonapi.EdgeCommonApiServer;
@@ -259,8 +260,13 @@ public class AccountManagerAPI extends EdgeWebService<EdgeCommonApiServer> {
 
 		// Send response
 		JsonObject resp = new JsonObject();
-		resp.addProperty("result",
-				manager.verifyPassword(payload.get("id").getAsString(), payload.get("password").getAsString()));
+		try {
+			resp.addProperty("result",
+					manager.verifyPassword(payload.get("id").getAsString(), payload.get("password").getAsString()));
+		} catch (PasswordHashingBusyException e) {
+			resp.addProperty("result", false);
+			resp.addProperty("busy", true);
+		}
 		setResponseContent("text/json", resp.toString());
 	}
 
@@ -1,5 +1,6 @@
 package org.asf.edge.commonapi.http.handlers.internal;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.UUID;
 
@@ -7,8 +8,10 @@ import org.asf.connective.RemoteClient;
 import org.asf.connective.processors.HttpPushProcessor;
 import org.asf.connective.tasks.AsyncTaskManager;
 import org.asf.edge.common.io.DataReader;
+import org.asf.edge.common.util.MmoUplinkProtocol;
 import org.asf.edge.common.util.SimpleBinaryMessageClient;
 import org.asf.edge.commonapi.EdgeCommonApiServer;
+import org.asf.edge.commonapi.util.MmoClusterDirectory;
 import org.asf.edge.commonapi.util.MmoServerEntry;
 
 public class MmoServerUplinkHandler extends HttpPushProcessor {
@@ -71,19 +74,29 @@ public class MmoServerUplinkHandler extends HttpPushProcessor {
 						entry.zones[i] = reader.readString();
 
 					// Add
+					MmoClusterDirectory directory = server.getMmoDirectory();
+					SimpleBinaryMessageClient client = new SimpleBinaryMessageClient((packet, cl) -> {
+						try {
+							handleMessage(entry, packet);
+						} catch (IOException e) {
+							server.getLogger().error("Invalid uplink message from MMO server " + entry.address + ":"
+									+ entry.port + ", type " + packet.type, e);
+							return false;
+						}
+						return true;
+					}, hCl.getInputStream(), hCl.getOutputStream());
+					directory.addServer(entry, client);
 					server.addMmoServer(entry);
 
 					// Handle messages
 					try {
-						SimpleBinaryMessageClient client = new SimpleBinaryMessageClient((packet, cl) -> {
-							return true;
-						}, hCl.getInputStream(), hCl.getOutputStream());
 						client.start();
 					} catch (Exception e) {
 					}
 
 					// Remove
 					server.removeMmoServer(entry);
+					directory.removeServer(entry);
 				} catch (IOException e) {
 				}
 
@@ -96,6 +109,84 @@ public class MmoServerUplinkHandler extends HttpPushProcessor {
 		setResponseStatus(101, "Switching Protocols");
 	}
 
+	private void handleMessage(MmoServerEntry source, SimpleBinaryMessageClient.Packet packet) throws IOException {
+		MmoClusterDirectory directory = server.getMmoDirectory();
+		DataReader reader = new DataReader(new ByteArrayInputStream(packet.data));
+		switch (packet.type) {
+
+		// Room population
+		case MmoUplinkProtocol.ROOM_POPULATION: {
+			String zone = reader.readString();
+			String group = reader.readString();
+			String name = reader.readString();
+			int roomID = reader.readInt();
+			int userCount = reader.readInt();
+			int userLimit = reader.readInt();
+			directory.updateRoom(source, zone, group, name, roomID, userCount, userLimit);
+			break;
+		}
+
+		// Presence
+		case MmoUplinkProtocol.PLAYER_ONLINE: {
+			String accountID = reader.readString();
+			String saveID = reader.readString();
+			String username = reader.readString();
+			directory.playerOnline(source, accountID, saveID, username);
+			break;
+		}
+		case MmoUplinkProtocol.PLAYER_OFFLINE: {
+			reader.readString();
+			String saveID = reader.readString();
+			directory.playerOffline(source, saveID);
+			break;
+		}
+		case MmoUplinkProtocol.PLAYER_ROOM: {
+			String saveID = reader.readString();
+			String zone = reader.readString();
+			String group = reader.readString();
+			String room = reader.readString();
+			directory.playerRoomChanged(source, saveID, zone, group, room);
+			break;
+		}
+
+		// Chat
+		case MmoUplinkProtocol.CHAT_MESSAGE: {
+			String zone = reader.readString();
+			String group = reader.readString();
+			String roomName = reader.readString();
+
+			// Relay to other servers hosting the room
+			for (MmoServerEntry target : directory.getServers()) {
+				if (target == source)
+					continue;
+				boolean hostsRoom = false;
+				for (MmoClusterDirectory.RoomInstance room : directory.getRoomInstances(target)) {
+					if (room.zone.equals(zone) && room.group.equals(group) && room.name.equals(roomName)) {
+						hostsRoom = true;
+						break;
+					}
+				}
+				if (hostsRoom)
+					relay(target, packet);
+			}
+			break;
+		}
+
+		// Resync
+		case MmoUplinkProtocol.RESET_STATE: {
+			directory.resetServer(source);
+			break;
+		}
+
+		}
+	}
+
+	private void relay(MmoServerEntry target, SimpleBinaryMessageClient.Packet packet) {
+		if (!server.getMmoDirectory().queueRelay(target, packet))
+			server.getLogger().warn("Relay queue of MMO server " + target.address + ":" + target.port
+					+ " is full or closed, dropped message of type " + packet.type);
+	}
+
 	@Override
 	public boolean supportsNonPush() {
 		return true;
@@ -0,0 +1,348 @@
+package org.asf.edge.commonapi.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.asf.connective.tasks.AsyncTaskManager;
+import org.asf.edge.common.util.SimpleBinaryMessageClient;
+
+/**
+ * 
+ * Live directory of the MMO servers connected through the uplink, keeps track
+ * of which server hosts which room instance and player. Messages relayed to a
+ * server are queued and written by a writer of that server so one slow server
+ * does not hold up the others.
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class MmoClusterDirectory {
+
+	private static final int RELAY_QUEUE_SIZE = 1024;
+
+	private ConcurrentHashMap<MmoServerEntry, ServerState> servers = new ConcurrentHashMap<MmoServerEntry, ServerState>();
+	private ConcurrentHashMap<String, PlayerLocation> players = new ConcurrentHashMap<String, PlayerLocation>();
+
+	private static class ServerState {
+		public SimpleBinaryMessageClient uplink;
+		public ArrayBlockingQueue<SimpleBinaryMessageClient.Packet> relayQueue = new ArrayBlockingQueue<SimpleBinaryMessageClient.Packet>(
+				RELAY_QUEUE_SIZE);
+		public volatile boolean closed;
+		public ConcurrentHashMap<String, RoomInstance> rooms = new ConcurrentHashMap<String, RoomInstance>();
+		public ConcurrentHashMap<String, PlayerLocation> players = new ConcurrentHashMap<String, PlayerLocation>();
+	}
+
+	/**
+	 * Room instance hosted by a MMO server
+	 */
+	public static class RoomInstance {
+		public MmoServerEntry server;
+
+		public String zone;
+		public String group;
+		public String name;
+		public int roomID;
+
+		public int userCount;
+		public int userLimit;
+	}
+
+	/**
+	 * Location of a player in the cluster
+	 */
+	public static class PlayerLocation {
+		public MmoServerEntry server;
+
+		public String accountID;
+		public String saveID;
+		public String username;
+
+		public String zone = "";
+		public String group = "";
+		public String room = "";
+	}
+
+	/**
+	 * Adds MMO servers to the directory
+	 * 
+	 * @param server Server entry
+	 * @param uplink Uplink connection of the server
+	 */
+	public void addServer(MmoServerEntry server, SimpleBinaryMessageClient uplink) {
+		ServerState state = new ServerState();
+		state.uplink = uplink;
+		servers.put(server, state);
+
+		// Start relay writer
+		AsyncTaskManager.runAsync(() -> writeRelayedMessages(state));
+	}
+
+	private void writeRelayedMessages(ServerState state) {
+		while (!state.closed) {
+			SimpleBinaryMessageClient.Packet packet;
+			try {
+				packet = state.relayQueue.poll(100, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (packet == null)
+				continue;
+			try {
+				state.uplink.send(packet.type, packet.data);
+			} catch (IOException e) {
+				// Connection lost, drop what is left
+				state.relayQueue.clear();
+			}
+		}
+		state.relayQueue.clear();
+	}
+
+	/**
+	 * Removes MMO servers and everything they host from the directory
+	 * 
+	 * @param server Server entry
+	 * @return Array of PlayerLocation instances of the players that were hosted by
+	 *         the server
+	 */
+	public PlayerLocation[] removeServer(MmoServerEntry server) {
+		ServerState state = servers.remove(server);
+		if (state == null)
+			return new PlayerLocation[0];
+		state.closed = true;
+		return clearState(state);
+	}
+
+	/**
+	 * Removes all rooms and players of a MMO server from the directory
+	 * 
+	 * @param server Server entry
+	 * @return Array of PlayerLocation instances of the players that were hosted by
+	 *         the server
+	 */
+	public PlayerLocation[] resetServer(MmoServerEntry server) {
+		ServerState state = servers.get(server);
+		if (state == null)
+			return new PlayerLocation[0];
+		return clearState(state);
+	}
+
+	private PlayerLocation[] clearState(ServerState state) {
+		PlayerLocation[] removed = state.players.values().toArray(t -> new PlayerLocation[t]);
+		for (PlayerLocation player : removed) {
+			state.players.remove(player.saveID, player);
+			players.remove(player.saveID, player);
+		}
+		state.rooms.clear();
+		return removed;
+	}
+
+	/**
+	 * Retrieves all MMO servers in the directory
+	 * 
+	 * @return Array of MmoServerEntry instances
+	 */
+	public MmoServerEntry[] getServers() {
+		return servers.keySet().toArray(t -> new MmoServerEntry[t]);
+	}
+
+	/**
+	 * Retrieves the uplink connection of MMO servers
+	 * 
+	 * @param server Server entry
+	 * @return SimpleBinaryMessageClient instance or null
+	 */
+	public SimpleBinaryMessageClient getUplink(MmoServerEntry server) {
+		ServerState state = servers.get(server);
+		if (state == null)
+			return null;
+		return state.uplink;
+	}
+
+	/**
+	 * Queues messages for relay to MMO servers, the message is written by the relay
+	 * writer of the server
+	 * 
+	 * @param server Server entry
+	 * @param packet Message to relay
+	 * @return True if queued, false if the server is not in the directory or its
+	 *         relay queue is full
+	 */
+	public boolean queueRelay(MmoServerEntry server, SimpleBinaryMessageClient.Packet packet) {
+		ServerState state = servers.get(server);
+		if (state == null || state.closed)
+			return false;
+		return state.relayQueue.offer(packet);
+	}
+
+	/**
+	 * Retrieves the amount of players on MMO servers
+	 * 
+	 * @param server Server entry
+	 * @return Player count
+	 */
+	public int getPlayerCount(MmoServerEntry server) {
+		ServerState state = servers.get(server);
+		if (state == null)
+			return 0;
+		return state.players.size();
+	}
+
+	/**
+	 * Updates room instances, a user count of -1 removes the room
+	 * 
+	 * @param server    Server hosting the room
+	 * @param zone      Zone name
+	 * @param group     Room group name
+	 * @param name      Room name
+	 * @param roomID    Room ID
+	 * @param userCount User count
+	 * @param userLimit User limit
+	 */
+	public void updateRoom(MmoServerEntry server, String zone, String group, String name, int roomID, int userCount,
+			int userLimit) {
+		ServerState state = servers.get(server);
+		if (state == null)
+			return;
+		String key = zone + "/" + group + "/" + name;
+		if (userCount == -1) {
+			state.rooms.remove(key);
+			return;
+		}
+
+		// Create or update
+		RoomInstance room = new RoomInstance();
+		room.server = server;
+		room.zone = zone;
+		room.group = group;
+		room.name = name;
+		room.roomID = roomID;
+		room.userCount = userCount;
+		room.userLimit = userLimit;
+		state.rooms.put(key, room);
+	}
+
+	/**
+	 * Retrieves all room instances of a room group across the cluster
+	 * 
+	 * @param zone  Zone name
+	 * @param group Room group name
+	 * @return Array of RoomInstance instances
+	 */
+	public RoomInstance[] getRoomInstances(String zone, String group) {
+		ArrayList<RoomInstance> rooms = new ArrayList<RoomInstance>();
+		for (ServerState state : servers.values()) {
+			for (RoomInstance room : state.rooms.values()) {
+				if (room.zone.equals(zone) && room.group.equals(group))
+					rooms.add(room);
+			}
+		}
+		return rooms.toArray(t -> new RoomInstance[t]);
+	}
+
+	/**
+	 * Retrieves all room instances hosted by MMO servers
+	 * 
+	 * @param server Server entry
+	 * @return Array of RoomInstance instances
+	 */
+	public RoomInstance[] getRoomInstances(MmoServerEntry server) {
+		ServerState state = servers.get(server);
+		if (state == null)
+			return new RoomInstance[0];
+		return state.rooms.values().toArray(t -> new RoomInstance[t]);
+	}
+
+	/**
+	 * Marks players as online
+	 * 
+	 * @param server    Server hosting the player
+	 * @param accountID Account ID
+	 * @param saveID    Save ID
+	 * @param username  Username
+	 * @return PlayerLocation instance or null if the server is not in the directory
+	 */
+	public PlayerLocation playerOnline(MmoServerEntry server, String accountID, String saveID, String username) {
+		ServerState state = servers.get(server);
+		if (state == null)
+			return null;
+		PlayerLocation player = new PlayerLocation();
+		player.server = server;
+		player.accountID = accountID;
+		player.saveID = saveID;
+		player.username = username;
+
+		// Replace, the player may still be listed on another server if it switched
+		// servers before the old one noticed
+		PlayerLocation old = players.put(saveID, player);
+		if (old != null && old.server != server) {
+			ServerState oldState = servers.get(old.server);
+			if (oldState != null)
+				oldState.players.remove(saveID, old);
+		}
+		state.players.put(saveID, player);
+		return player;
+	}
+
+	/**
+	 * Marks players as offline
+	 * 
+	 * @param server Server that hosted the player
+	 * @param saveID Save ID
+	 * @return PlayerLocation instance or null if the player was not hosted by the
+	 *         server
+	 */
+	public PlayerLocation playerOffline(MmoServerEntry server, String saveID) {
+		ServerState state = servers.get(server);
+		if (state == null)
+			return null;
+		PlayerLocation player = state.players.remove(saveID);
+		if (player == null)
+			return null;
+		players.remove(saveID, player);
+		return player;
+	}
+
+	/**
+	 * Updates the room of players
+	 * 
+	 * @param server Server hosting the player
+	 * @param saveID Save ID
+	 * @param zone   Zone name
+	 * @param group  Room group name
+	 * @param room   Room name
+	 */
+	public void playerRoomChanged(MmoServerEntry server, String saveID, String zone, String group, String room) {
+		ServerState state = servers.get(server);
+		if (state == null)
+			return;
+		PlayerLocation player = state.players.get(saveID);
+		if (player == null)
+			return;
+		player.zone = zone;
+		player.group = group;
+		player.room = room;
+	}
+
+	/**
+	 * Retrieves the location of players
+	 * 
+	 * @param saveID Save ID
+	 * @return PlayerLocation instance or null if offline
+	 */
+	public PlayerLocation getPlayer(String saveID) {
+		return players.get(saveID);
+	}
+
+	/**
+	 * Retrieves all online players
+	 * 
+	 * @return Array of PlayerLocation instances
+	 */
+	public PlayerLocation[] getPlayers() {
+		return players.values().toArray(t -> new PlayerLocation[t]);
+	}
+
+}
@@ -1,16 +1,16 @@
 package org.asf.edge.contentserver.http;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.util.stream.Stream;
 
@@ -148,12 +148,7 @@ public class ContentServerRequestHandler extends HttpPushProcessor {
 							}
 
 							// Compute key
-							try {
-								MessageDigest digest = MessageDigest.getInstance("MD5");
-								key = digest.digest(secret.getBytes("ASCII"));
-							} catch (NoSuchAlgorithmException e) {
-								throw new RuntimeException(e);
-							}
+							key = TripleDesUtil.deriveKey(secret, "ASCII");
 
 							// Decrypt
 							byte[] b = Base64.getDecoder().decode(data);
@@ -203,15 +198,15 @@ public class ContentServerRequestHandler extends HttpPushProcessor {
 
 					// Re-encrypt if needed
 					if (encrypted) {
-						byte[] docData = fileStream.readAllBytes();
+						// Re-encrypt straight into base64
+						ByteArrayOutputStream encData = new ByteArrayOutputStream();
+						OutputStream encStrm = TripleDesUtil.encryptStream(Base64.getEncoder().wrap(encData), key);
+						fileStream.transferTo(encStrm);
 						fileStream.close();
-
-						// Re-encrypt
-						docData = TripleDesUtil.encrypt(docData, key);
+						encStrm.close();
 
 						// Set result
-						fileStream = new ByteArrayInputStream(
-								Base64.getEncoder().encodeToString(docData).getBytes("UTF-8"));
+						fileStream = new ByteArrayInputStream(encData.toByteArray());
 					}
 
 					// Set output
@@ -2,11 +2,11 @@ package org.asf.edge.contentserver.http.postprocessors;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 
 import org.asf.connective.RemoteClient;
@@ -48,25 +48,16 @@ public class ApplicationManifestPreProcessor implements IPreProcessor {
 			}
 
 			// Compute key
-			byte[] key;
-			try {
-				MessageDigest digest = MessageDigest.getInstance("MD5");
-				key = digest.digest(secret.getBytes("ASCII"));
-			} catch (NoSuchAlgorithmException e) {
-				throw new RuntimeException(e);
-			}
+			byte[] key = TripleDesUtil.deriveKey(secret, "ASCII");
 
-			// Read manifest
-			byte[] manifest = source.readAllBytes();
+			// Encrypt with triple DES and convert to base64 while reading the manifest
+			ByteArrayOutputStream base64Manifest = new ByteArrayOutputStream();
+			OutputStream encStrm = TripleDesUtil.encryptStream(Base64.getEncoder().wrap(base64Manifest), key);
+			source.transferTo(encStrm);
 			source.close();
+			encStrm.close();
 
-			// Encrypt with triple DES
-			manifest = TripleDesUtil.encrypt(manifest, key);
-
-			// Convert to base64
-			String base64Manifest = Base64.getEncoder().encodeToString(manifest);
-
-			return new ByteArrayInputStream(base64Manifest.getBytes("ASCII"));
+			return new ByteArrayInputStream(base64Manifest.toByteArray());
 		} else
 			return source;
 	}
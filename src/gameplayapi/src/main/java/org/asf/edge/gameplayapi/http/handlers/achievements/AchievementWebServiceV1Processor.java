@@ -224,6 +224,7 @@ public class AchievementWebServiceV1Processor extends EdgeWebService<EdgeGamepla
 
 		// Find all dragons
 		AccountDataContainer data = save.getSaveData().getChildContainer("dragons");
+		data.prefetch();
 		JsonArray dragonIds = new JsonArray();
 		if (data.entryExists("dragonlist"))
 			dragonIds = data.getEntry("dragonlist").getAsJsonArray();
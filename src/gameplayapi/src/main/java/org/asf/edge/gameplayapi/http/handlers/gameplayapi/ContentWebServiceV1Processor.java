@@ -997,6 +997,7 @@ public class ContentWebServiceV1Processor extends EdgeWebService<EdgeGameplayApi
 
 			// Pull dragons
 			data = data.getChildContainer("dragons");
+			data.prefetch();
 			JsonArray dragonIds = new JsonArray();
 			if (data.entryExists("dragonlist"))
 				dragonIds = data.getEntry("dragonlist").getAsJsonArray();
@@ -1145,6 +1146,7 @@ public class ContentWebServiceV1Processor extends EdgeWebService<EdgeGameplayApi
 
 			// Pull dragons
 			data = data.getChildContainer("dragons");
+			data.prefetch();
 			JsonArray dragonIds = new JsonArray();
 			if (data.entryExists("dragonlist"))
 				dragonIds = data.getEntry("dragonlist").getAsJsonArray();
@@ -1034,6 +1034,7 @@ public class ContentWebServiceV2Processor extends EdgeWebService<EdgeGameplayApi
 
 			// Pull dragons
 			data = data.getChildContainer("dragons");
+			data.prefetch();
 			JsonArray dragonIds = new JsonArray();
 			if (data.entryExists("dragonlist"))
 				dragonIds = data.getEntry("dragonlist").getAsJsonArray();
@@ -39,6 +39,7 @@ import org.asf.edge.gameplayapi.xmls.items.GetStoreRequestData;
 import org.asf.edge.gameplayapi.xmls.items.GetStoreResponseData;
 import org.asf.edge.gameplayapi.xmls.items.ItemStoreResponseObject;
 import org.asf.edge.gameplayapi.xmls.items.ItemStoreResponseObject.SaleBlock;
+import org.asf.edge.modules.eventbus.EventBus;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
@@ -50,6 +51,7 @@ public class ItemStoreWebServiceProcessor extends EdgeWebService<EdgeGameplayApi
 
 	private static ItemManager itemManager;
 	private static boolean popularItemManagementInited = false;
+	private static StoreResponseCache storeCache = new StoreResponseCache();
 
 	public ItemStoreWebServiceProcessor(EdgeGameplayApiServer server) {
 		super(server);
@@ -122,9 +124,22 @@ public class ItemStoreWebServiceProcessor extends EdgeWebService<EdgeGameplayApi
 		popularItemManagementInited = true;
 		initPopularItemManager();
 
+		// Invalidate cached stores when items are reloaded
+		EventBus.getInstance().addAllEventsFromReceiver(storeCache);
+
 		// Refresh popular items in the background
 		CommonDataContainer cont = CommonDataManager.getInstance().getContainer("POPULARITEMS");
+		long initialUpdate = -1;
+		try {
+			// Seed the last update before any store is cached
+			if (cont.entryExists("lastupdate"))
+				initialUpdate = cont.getEntry("lastupdate").getAsLong();
+		} catch (IOException e) {
+			LogManager.getLogger("ItemManager").error("Failed to read the last popular item refresh time.", e);
+		}
+		long seed = initialUpdate;
 		AsyncTaskManager.runAsync(() -> {
+			long lastUpdate = seed;
 			while (true) {
 				try {
 					// Check if a refresh should be done, refreshes are weekly
@@ -150,6 +165,13 @@ public class ItemStoreWebServiceProcessor extends EdgeWebService<EdgeGameplayApi
 							}
 						}
 					}
+
+					// Invalidate cached stores if the popular items changed, this includes
+					// refreshes done by other servers
+					long update = cont.getEntry("lastupdate").getAsLong();
+					if (requiresRefresh || update != lastUpdate)
+						storeCache.invalidate();
+					lastUpdate = update;
 				} catch (IOException e) {
 					// Error
 					LogManager.getLogger("ItemManager")
@@ -183,115 +205,122 @@ public class ItemStoreWebServiceProcessor extends EdgeWebService<EdgeGameplayApi
 
 		// Find stores
 		GetStoreRequestData stores = req.parseXmlValue(req.payload.get("getStoreRequest"), GetStoreRequestData.class);
-		GetStoreResponseData resp = new GetStoreResponseData();
-		resp.stores = new ItemStoreResponseObject[stores.storeIDs.length];
-		for (int i = 0; i < resp.stores.length; i++) {
-			// Find store
-			ItemStoreInfo store = itemManager.getStore(stores.storeIDs[i]);
-			if (store != null) {
-				// Create object
-				ItemStoreResponseObject storeData = new ItemStoreResponseObject();
-				storeData.storeID = store.getID();
-				storeData.storeName = store.getName();
-				storeData.storeDescription = store.getDescription();
-				storeData.items = Stream.of(store.getItems()).map(t -> t.getRawObject())
-						.toArray(t -> new ItemDefData[t]);
-
-				// Load popular items
-				ArrayList<ItemStoreResponseObject.PopularItemBlock> items = new ArrayList<ItemStoreResponseObject.PopularItemBlock>();
-
-				// Go through all items in store
-				CommonDataContainer cont = CommonDataManager.getInstance().getContainer("POPULARITEMS");
-				if (cont.entryExists("last-" + storeData.storeID)) {
-					JsonObject popularItems = cont.getEntry("last-" + storeData.storeID).getAsJsonObject();
-					HashMap<Integer, Integer> itms = new HashMap<Integer, Integer>();
-					for (String key : popularItems.keySet()) {
-						itms.put(Integer.parseInt(key), popularItems.get(key).getAsInt());
-					}
-					int i2 = 0;
-					ItemInfo[] storeItems = ItemManager.getInstance().getStore(storeData.storeID).getItems();
-					int limit = (storeItems.length / 15);
-					if (limit <= 0)
-						limit = 1;
-					for (Integer id : itms.keySet().stream()
-							.sorted((t1, t2) -> -Integer.compare(itms.get(t1), itms.get(t2)))
-							.toArray(t -> new Integer[t])) {
-						if (i2 >= limit)
-							break;
-
-						// Add item info
-						ItemStoreResponseObject.PopularItemBlock itm = new ItemStoreResponseObject.PopularItemBlock();
-						itm.itemID = id;
-						itm.rank = itms.get(id);
-						items.add(itm);
-
-						// Increase index
-						i2++;
-					}
+		ItemSaleInfo[] currentSales = storeCache.getCurrentSales(itemManager);
+		String response = storeCache.getResponse(stores.storeIDs, currentSales, () -> {
+			GetStoreResponseData resp = new GetStoreResponseData();
+			resp.stores = new ItemStoreResponseObject[stores.storeIDs.length];
+			for (int i = 0; i < resp.stores.length; i++) {
+				// Find store
+				ItemStoreInfo store = itemManager.getStore(stores.storeIDs[i]);
+				if (store != null) {
+					// Add to response
+					resp.stores[i] = storeCache.getStore(store.getID(), currentSales,
+							() -> buildStore(store, currentSales));
+				} else {
+					resp.stores[i] = new ItemStoreResponseObject();
 				}
+			}
 
-				// Add to object
-				storeData.popularItems = items.toArray(t -> new ItemStoreResponseObject.PopularItemBlock[t]);
+			// Serialize
+			return new XmlMapper().writer().withFeatures(ToXmlGenerator.Feature.WRITE_XML_DECLARATION)
+					.withFeatures(ToXmlGenerator.Feature.WRITE_NULLS_AS_XSI_NIL).withDefaultPrettyPrinter()
+					.withRootName("GetStoreResponse").writeValueAsString(resp);
+		});
 
-				// Find categories
-				ArrayList<Integer> categoryIds = new ArrayList<Integer>();
-				for (ItemInfo itm : store.getItems()) {
-					ItemCategoryInfo[] cats = itm.getCategories();
-					for (ItemCategoryInfo cat : cats) {
-						if (!categoryIds.contains(cat.getCategoryID()))
-							categoryIds.add(cat.getCategoryID());
-					}
-				}
+		// Set response
+		setResponseContent("text/xml", response);
+	}
 
-				// Load sales
-				ArrayList<SaleBlock> sales = new ArrayList<SaleBlock>();
-				ObjectMapper mapper = new ObjectMapper();
-				for (ItemSaleInfo sale : itemManager.getSales()) {
-					if (sale.isActive() || sale.isUpcoming()) {
-						// Check sale
-						boolean valid = false;
-						if (IntStream.of(sale.getItemIDs())
-								.anyMatch(t -> Stream.of(store.getItems()).anyMatch(t2 -> t2.getID() == t)))
-							valid = true;
-						else if (IntStream.of(sale.getCategories())
-								.anyMatch(t -> categoryIds.stream().anyMatch(t2 -> t2 == t)))
-							valid = true;
-						if (!valid)
-							continue;
-
-						// Create sale block
-						SimpleDateFormat fmt2 = new SimpleDateFormat("yyyy'-'MM'-'dd'T'HH':'mm':'ssXXX");
-						fmt2.setTimeZone(TimeZone.getTimeZone("UTC"));
-						SaleBlock block = new SaleBlock();
-						block.modifier = sale.getSaleModifier();
-						block.saleID = idHash(mapper.writeValueAsString(sale));
-						block.memberOnly = sale.isMemberOnly();
-						block.categoryIDs = sale.getCategories();
-						block.itemIDs = sale.getItemIDs();
-						block.startDate = fmt2.format(new Date(sale.getStartTime()));
-						block.endDate = fmt2.format(new Date(sale.getEndTime()));
-						if (sales.stream().anyMatch(t -> t.saleID == block.saleID))
-							LogManager.getLogger("ItemManager")
-									.error("Duplicate sale ID due to failure in hashing code for sale '"
-											+ sale.getName()
-											+ "', this must immediately be reported as the store will break down!");
-						sales.add(block);
-					}
-				}
-				storeData.itemSales = sales.toArray(t -> new SaleBlock[t]);
+	private ItemStoreResponseObject buildStore(ItemStoreInfo store, ItemSaleInfo[] currentSales) throws IOException {
+		// Create object
+		ItemStoreResponseObject storeData = new ItemStoreResponseObject();
+		storeData.storeID = store.getID();
+		storeData.storeName = store.getName();
+		storeData.storeDescription = store.getDescription();
+		storeData.items = Stream.of(store.getItems()).map(t -> t.getRawObject())
+				.toArray(t -> new ItemDefData[t]);
+
+		// Load popular items
+		ArrayList<ItemStoreResponseObject.PopularItemBlock> items = new ArrayList<ItemStoreResponseObject.PopularItemBlock>();
 
-				// Add to response
-				resp.stores[i] = storeData;
-			} else {
-				resp.stores[i] = new ItemStoreResponseObject();
+		// Go through all items in store
+		CommonDataContainer cont = CommonDataManager.getInstance().getContainer("POPULARITEMS");
+		if (cont.entryExists("last-" + storeData.storeID)) {
+			JsonObject popularItems = cont.getEntry("last-" + storeData.storeID).getAsJsonObject();
+			HashMap<Integer, Integer> itms = new HashMap<Integer, Integer>();
+			for (String key : popularItems.keySet()) {
+				itms.put(Integer.parseInt(key), popularItems.get(key).getAsInt());
+			}
+			int i2 = 0;
+			ItemInfo[] storeItems = ItemManager.getInstance().getStore(storeData.storeID).getItems();
+			int limit = (storeItems.length / 15);
+			if (limit <= 0)
+				limit = 1;
+			for (Integer id : itms.keySet().stream()
+					.sorted((t1, t2) -> -Integer.compare(itms.get(t1), itms.get(t2)))
+					.toArray(t -> new Integer[t])) {
+				if (i2 >= limit)
+					break;
+
+				// Add item info
+				ItemStoreResponseObject.PopularItemBlock itm = new ItemStoreResponseObject.PopularItemBlock();
+				itm.itemID = id;
+				itm.rank = itms.get(id);
+				items.add(itm);
+
+				// Increase index
+				i2++;
 			}
 		}
 
-		// Set response
-		setResponseContent("text/xml",
-				new XmlMapper().writer().withFeatures(ToXmlGenerator.Feature.WRITE_XML_DECLARATION)
-						.withFeatures(ToXmlGenerator.Feature.WRITE_NULLS_AS_XSI_NIL).withDefaultPrettyPrinter()
-						.withRootName("GetStoreResponse").writeValueAsString(resp));
+		// Add to object
+		storeData.popularItems = items.toArray(t -> new ItemStoreResponseObject.PopularItemBlock[t]);
+
+		// Find categories
+		ArrayList<Integer> categoryIds = new ArrayList<Integer>();
+		for (ItemInfo itm : store.getItems()) {
+			ItemCategoryInfo[] cats = itm.getCategories();
+			for (ItemCategoryInfo cat : cats) {
+				if (!categoryIds.contains(cat.getCategoryID()))
+					categoryIds.add(cat.getCategoryID());
+			}
+		}
+
+		// Load sales
+		ArrayList<SaleBlock> sales = new ArrayList<SaleBlock>();
+		ObjectMapper mapper = new ObjectMapper();
+		for (ItemSaleInfo sale : currentSales) {
+			// Check sale
+			boolean valid = false;
+			if (IntStream.of(sale.getItemIDs())
+					.anyMatch(t -> Stream.of(store.getItems()).anyMatch(t2 -> t2.getID() == t)))
+				valid = true;
+			else if (IntStream.of(sale.getCategories())
+					.anyMatch(t -> categoryIds.stream().anyMatch(t2 -> t2 == t)))
+				valid = true;
+			if (!valid)
+				continue;
+
+			// Create sale block
+			SimpleDateFormat fmt2 = new SimpleDateFormat("yyyy'-'MM'-'dd'T'HH':'mm':'ssXXX");
+			fmt2.setTimeZone(TimeZone.getTimeZone("UTC"));
+			SaleBlock block = new SaleBlock();
+			block.modifier = sale.getSaleModifier();
+			block.saleID = idHash(mapper.writeValueAsString(sale));
+			block.memberOnly = sale.isMemberOnly();
+			block.categoryIDs = sale.getCategories();
+			block.itemIDs = sale.getItemIDs();
+			block.startDate = fmt2.format(new Date(sale.getStartTime()));
+			block.endDate = fmt2.format(new Date(sale.getEndTime()));
+			if (sales.stream().anyMatch(t -> t.saleID == block.saleID))
+				LogManager.getLogger("ItemManager")
+						.error("Duplicate sale ID due to failure in hashing code for sale '"
+								+ sale.getName()
+								+ "', this must immediately be reported as the store will break down!");
+			sales.add(block);
+		}
+		storeData.itemSales = sales.toArray(t -> new SaleBlock[t]);
+		return storeData;
 	}
 
 	private int idHash(String s) {
@@ -0,0 +1,142 @@
+package org.asf.edge.gameplayapi.http.handlers.itemstore;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.asf.edge.common.entities.items.ItemSaleInfo;
+import org.asf.edge.common.events.items.ItemDefinitionUpdateEvent;
+import org.asf.edge.common.events.items.ItemManagerLoadEvent;
+import org.asf.edge.common.services.items.ItemManager;
+import org.asf.edge.gameplayapi.xmls.items.ItemStoreResponseObject;
+import org.asf.edge.modules.eventbus.EventListener;
+import org.asf.edge.modules.eventbus.IEventReceiver;
+
+/**
+ * 
+ * Store response cache, keeps the built store objects and serialized store
+ * responses until the item definitions, the popular items or the set of
+ * running sales change
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class StoreResponseCache implements IEventReceiver {
+
+	private static final int MAX_RESPONSES = 256;
+
+	private AtomicLong version = new AtomicLong();
+	private ConcurrentHashMap<Integer, CachedEntry<ItemStoreResponseObject>> stores = new ConcurrentHashMap<Integer, CachedEntry<ItemStoreResponseObject>>();
+	private ConcurrentHashMap<String, CachedEntry<String>> responses = new ConcurrentHashMap<String, CachedEntry<String>>();
+
+	private static class CachedEntry<T> {
+		public long version;
+		public ItemSaleInfo[] sales;
+		public T value;
+	}
+
+	/**
+	 * Store and response builder
+	 */
+	public static interface Builder<T> {
+		public T build() throws IOException;
+	}
+
+	/**
+	 * Invalidates all cached stores and responses
+	 */
+	public void invalidate() {
+		version.incrementAndGet();
+		stores.clear();
+		responses.clear();
+	}
+
+	/**
+	 * Retrieves the sales that are currently shown in stores (active and upcoming
+	 * sales), used as sale state for the cache
+	 * 
+	 * @param itemManager Item manager instance
+	 * @return Array of ItemSaleInfo instances
+	 */
+	public ItemSaleInfo[] getCurrentSales(ItemManager itemManager) {
+		return Stream.of(itemManager.getSales()).filter(t -> t.isActive() || t.isUpcoming())
+				.toArray(t -> new ItemSaleInfo[t]);
+	}
+
+	/**
+	 * Retrieves store objects, building them if not present or outdated
+	 * 
+	 * @param storeID Store ID
+	 * @param sales   Current sales
+	 * @param builder Store builder
+	 * @return ItemStoreResponseObject instance
+	 * @throws IOException If building the store fails
+	 */
+	public ItemStoreResponseObject getStore(int storeID, ItemSaleInfo[] sales,
+			Builder<ItemStoreResponseObject> builder) throws IOException {
+		return get(stores, storeID, sales, builder);
+	}
+
+	/**
+	 * Retrieves serialized store responses, building them if not present or
+	 * outdated
+	 * 
+	 * @param storeIDs Requested store IDs
+	 * @param sales    Current sales
+	 * @param builder  Response builder
+	 * @return Response XML string
+	 * @throws IOException If building the response fails
+	 */
+	public String getResponse(int[] storeIDs, ItemSaleInfo[] sales, Builder<String> builder) throws IOException {
+		StringBuilder key = new StringBuilder();
+		for (int id : storeIDs) {
+			if (key.length() != 0)
+				key.append(",");
+			key.append(id);
+		}
+
+		// Prevent unbounded growth from unusual store combinations
+		if (responses.size() >= MAX_RESPONSES && !responses.containsKey(key.toString()))
+			responses.clear();
+		return get(responses, key.toString(), sales, builder);
+	}
+
+	private <K, T> T get(ConcurrentHashMap<K, CachedEntry<T>> cache, K key, ItemSaleInfo[] sales, Builder<T> builder)
+			throws IOException {
+		// Check cache
+		long currentVersion = version.get();
+		CachedEntry<T> entry = cache.get(key);
+		if (entry != null && entry.version == currentVersion && sameSales(entry.sales, sales))
+			return entry.value;
+
+		// Build, if invalidated while building the entry is outdated on the next request
+		entry = new CachedEntry<T>();
+		entry.version = currentVersion;
+		entry.sales = sales;
+		entry.value = builder.build();
+		cache.put(key, entry);
+		return entry.value;
+	}
+
+	private static boolean sameSales(ItemSaleInfo[] cached, ItemSaleInfo[] current) {
+		if (cached.length != current.length)
+			return false;
+		for (int i = 0; i < cached.length; i++) {
+			if (cached[i] != current[i])
+				return false;
+		}
+		return true;
+	}
+
+	@EventListener
+	public void itemManagerLoaded(ItemManagerLoadEvent ev) {
+		invalidate();
+	}
+
+	@EventListener
+	public void itemDefinitionUpdated(ItemDefinitionUpdateEvent ev) {
+		invalidate();
+	}
+
+}
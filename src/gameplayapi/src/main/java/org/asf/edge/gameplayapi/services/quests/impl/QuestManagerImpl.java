@@ -11,6 +11,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -75,56 +76,23 @@ public class QuestManagerImpl extends QuestManager {
 	private Logger logger;
 	private HashMap<Integer, MissionData> quests = new HashMap<Integer, MissionData>();
 	private HashMap<Integer, MissionData> allQuests = new HashMap<Integer, MissionData>();
+	private QuestPrerequisiteIndex prerequisiteIndex = new QuestPrerequisiteIndex(quests, allQuests);
 
 	private long lastReloadTime;
 	private long lastQuestUpdateTime;
 	private String questDataVersion;
 	private String lastQuestUpdateVersion;
 
+	private Object[] questListLocks = Stream.generate(() -> new Object()).limit(64).toArray();
+	private HashMap<String, LinkedHashSet<Integer>> pendingRecomputes = new HashMap<String, LinkedHashSet<Integer>>();
+
 	@EventListener
 	public void rankXpChanged(RankChangedEvent event) throws IOException {
-		// Check if any prerequisite is present for this item
-		boolean updated = false;
-		for (MissionData def : this.getAllQuestDefs()) {
-			// Check prerequisites
-			if (def.missionRules != null) {
-				if (def.missionRules.prerequisites != null) {
-					for (PrerequisiteInfoBlock req : def.missionRules.prerequisites) {
-						if (!req.clientRule) {
-							// Check type
-							switch (req.type) {
-
-							// Rank rule
-							case MissionRulesBlock.PrerequisiteInfoBlock.PrerequisiteRuleTypes.RANK: {
-								// Check rank
-								String[] idsStrs = req.value.split(",");
-								int typeID = 0;
-								if (idsStrs.length >= 1)
-									typeID = Integer.parseInt(idsStrs[0]);
-
-								// Check achievement rank
-								if (typeID == event.getEntityRank().getTypeID().getPointTypeID())
-									updated = true;
-								break;
-							}
-
-							}
-						}
-						if (updated)
-							break;
-					}
-				}
-			}
-			if (updated)
-				break;
-		}
-
-		// Check
-		if (updated) {
+		// Find quests with prerequisites for this rank type
+		int[] affected = prerequisiteIndex.getQuestsForRank(event.getEntityRank().getTypeID().getPointTypeID());
+		if (affected.length != 0) {
 			// Recompute quests
-			AsyncTaskManager.runAsync(() -> {
-				recomputeQuests(event.getSave());
-			});
+			queueRecompute(event.getSave(), affected);
 		}
 	}
 
@@ -147,45 +115,57 @@ public class QuestManagerImpl extends QuestManager {
 		if (saveData.getSave() == null)
 			return;
 
-		// Check if any prerequisite is present for this item
-		boolean hasPrerequisite = false;
-		for (MissionData def : this.getAllQuestDefs()) {
-			// Check prerequisites
-			if (def.missionRules != null) {
-				if (def.missionRules.prerequisites != null) {
-					for (PrerequisiteInfoBlock req : def.missionRules.prerequisites) {
-						if (!req.clientRule) {
-							// Check type
-							switch (req.type) {
+		// Find quests with prerequisites for this item
+		int[] affected = prerequisiteIndex.getQuestsForItem(item.getItemDefID());
+		if (affected.length != 0) {
+			// Recompute quests
+			queueRecompute(saveData.getSave(), affected);
+		}
+	}
 
-							// Item rule
-							case MissionRulesBlock.PrerequisiteInfoBlock.PrerequisiteRuleTypes.ITEM: {
-								// Check item
-								int itmId = Integer.parseInt(req.value);
-								if (item.getItemDefID() == itmId) {
-									hasPrerequisite = true;
-								}
-								break;
-							}
+	private Object getQuestListLock(AccountSaveContainer save) {
+		// Active and upcoming quest lists of a save are read and written back, so
+		// updates of the same save may not overlap
+		return questListLocks[Math.floorMod(save.getSaveID().hashCode(), questListLocks.length)];
+	}
 
-							}
-						}
-						if (hasPrerequisite)
-							break;
-					}
-				}
+	private void queueRecompute(AccountSaveContainer save, int[] questIDs) {
+		// Add to the pending quests of the save, a task that is already running for
+		// the save picks these up
+		String saveID = save.getSaveID();
+		synchronized (pendingRecomputes) {
+			LinkedHashSet<Integer> pending = pendingRecomputes.get(saveID);
+			boolean running = pending != null;
+			if (!running) {
+				pending = new LinkedHashSet<Integer>();
+				pendingRecomputes.put(saveID, pending);
 			}
-			if (hasPrerequisite)
-				break;
+			for (int id : questIDs)
+				pending.add(id);
+			if (running)
+				return;
 		}
 
-		// Check
-		if (hasPrerequisite) {
-			// Recompute quests
-			AsyncTaskManager.runAsync(() -> {
-				recomputeQuests(saveData.getSave());
-			});
-		}
+		// Recompute until nothing is pending
+		AsyncTaskManager.runAsync(() -> {
+			while (true) {
+				int[] ids;
+				synchronized (pendingRecomputes) {
+					LinkedHashSet<Integer> pending = pendingRecomputes.get(saveID);
+					if (pending.isEmpty()) {
+						pendingRecomputes.remove(saveID);
+						return;
+					}
+					ids = pending.stream().mapToInt(t -> t).toArray();
+					pending.clear();
+				}
+				try {
+					recomputeQuests(save, ids);
+				} catch (Exception e) {
+					logger.error("Failed to recompute quests of save " + saveID, e);
+				}
+			}
+		});
 	}
 
 	@Override
@@ -436,8 +416,13 @@ public class QuestManagerImpl extends QuestManager {
 				}
 			}
 
+			// Index prerequisites
+			logger.info("Indexing quest prerequisites...");
+			QuestPrerequisiteIndex prerequisiteIndex = new QuestPrerequisiteIndex(quests, allQuests);
+
 			// Apply
 			this.quests = quests;
+			this.prerequisiteIndex = prerequisiteIndex;
 
 			// Dispatch event
 			logger.info("Dispatching load event...");
@@ -628,6 +613,7 @@ public class QuestManagerImpl extends QuestManager {
 		try {
 			// Load completed quests
 			AccountDataContainer data = save.getSaveData().getChildContainer("quests");
+			data.prefetch();
 			if (!data.entryExists("completedquests"))
 				return new UserQuestInfo[0];
 
@@ -651,6 +637,7 @@ public class QuestManagerImpl extends QuestManager {
 		try {
 			// Load active quests
 			AccountDataContainer data = save.getSaveData().getChildContainer("quests");
+			data.prefetch();
 			if (!data.entryExists("activequests") || !data.entryExists("lastupdate")
 					|| data.getEntry("lastupdate").getAsLong() != lastQuestUpdateTime
 					|| !data.entryExists("lastupdate_serverdata")
@@ -681,6 +668,7 @@ public class QuestManagerImpl extends QuestManager {
 		try {
 			// Load active quests
 			AccountDataContainer data = save.getSaveData().getChildContainer("quests");
+			data.prefetch();
 			if (!data.entryExists("activequests") || !data.entryExists("lastupdate")
 					|| data.getEntry("lastupdate").getAsLong() != lastQuestUpdateTime
 					|| !data.entryExists("lastupdate_serverdata")
@@ -707,119 +695,209 @@ public class QuestManagerImpl extends QuestManager {
 	}
 
 	private void recomputeActiveQuests(AccountSaveContainer save) {
-		try {
-			// Load data container and prepare lists
-			AccountDataContainer data = save.getSaveData().getChildContainer("quests");
-			JsonArray active = new JsonArray();
-			JsonArray activeOld = data.entryExists("activequests") ? data.getEntry("activequests").getAsJsonArray()
-					: new JsonArray();
-			ArrayList<Integer> activeQuests = new ArrayList<Integer>();
-			ArrayList<Integer> prevActiveQuests = new ArrayList<Integer>();
-			for (JsonElement ele : activeOld)
-				prevActiveQuests.add(ele.getAsInt());
-
-			// Find active quests
-			for (MissionData mission : this.quests.values()) {
-				UserQuestInfo q = getUserQuest(save, mission.id);
-				if (((mission.repeatable != null && mission.repeatable.equalsIgnoreCase("true")) || !q.isCompleted())) {
-					if (q.isActive()) {
-						active.add(q.getQuestID());
-						activeQuests.add(q.getQuestID());
-						if (!prevActiveQuests.contains(q.getQuestID())) {
-							// Dispatch event
-							EventBus.getInstance().dispatchEvent(new QuestUnlockEvent(q, save, this));
+		synchronized (getQuestListLock(save)) {
+			try {
+				// Load data container and prepare lists
+				AccountDataContainer data = save.getSaveData().getChildContainer("quests");
+				data.prefetch();
+				JsonArray active = new JsonArray();
+				JsonArray activeOld = data.entryExists("activequests") ? data.getEntry("activequests").getAsJsonArray()
+						: new JsonArray();
+				ArrayList<Integer> activeQuests = new ArrayList<Integer>();
+				ArrayList<Integer> prevActiveQuests = new ArrayList<Integer>();
+				for (JsonElement ele : activeOld)
+					prevActiveQuests.add(ele.getAsInt());
+
+				// Find active quests
+				for (MissionData mission : this.quests.values()) {
+					UserQuestInfo q = getUserQuest(save, mission.id);
+					if (((mission.repeatable != null && mission.repeatable.equalsIgnoreCase("true")) || !q.isCompleted())) {
+						if (q.isActive()) {
+							active.add(q.getQuestID());
+							activeQuests.add(q.getQuestID());
+							if (!prevActiveQuests.contains(q.getQuestID())) {
+								// Dispatch event
+								EventBus.getInstance().dispatchEvent(new QuestUnlockEvent(q, save, this));
+							}
 						}
 					}
 				}
-			}
 
-			// Save
-			data.setEntry("activequests", active);
-			data.setEntry("lastupdate", new JsonPrimitive(lastQuestUpdateTime));
-			data.setEntry("lastupdate_serverdata", new JsonPrimitive(lastQuestUpdateVersion));
-			data.setEntry("lastupdate_serverver", new JsonPrimitive(questDataVersion));
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+				// Save
+				data.setEntry("activequests", active);
+				data.setEntry("lastupdate", new JsonPrimitive(lastQuestUpdateTime));
+				data.setEntry("lastupdate_serverdata", new JsonPrimitive(lastQuestUpdateVersion));
+				data.setEntry("lastupdate_serverver", new JsonPrimitive(questDataVersion));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
 		}
 	}
 
 	private void recomputeUpcomingQuests(AccountSaveContainer save) {
-		try {
-			// Load data container and prepare lists
-			AccountDataContainer data = save.getSaveData().getChildContainer("quests");
-			JsonArray upcoming = new JsonArray();
-
-			// Find upcoming quests
-			for (MissionData mission : this.quests.values()) {
-				UserQuestInfo q = getUserQuest(save, mission.id);
-				if (!q.isCompleted() && !q.isActive()) {
-					upcoming.add(q.getQuestID());
+		synchronized (getQuestListLock(save)) {
+			try {
+				// Load data container and prepare lists
+				AccountDataContainer data = save.getSaveData().getChildContainer("quests");
+				data.prefetch();
+				JsonArray upcoming = new JsonArray();
+
+				// Find upcoming quests
+				for (MissionData mission : this.quests.values()) {
+					UserQuestInfo q = getUserQuest(save, mission.id);
+					if (!q.isCompleted() && !q.isActive()) {
+						upcoming.add(q.getQuestID());
+					}
 				}
-			}
 
-			// Save
-			data.setEntry("upcomingquests", upcoming);
-			data.setEntry("lastupdate", new JsonPrimitive(lastQuestUpdateTime));
-			data.setEntry("lastupdate_serverdata", new JsonPrimitive(lastQuestUpdateVersion));
-			data.setEntry("lastupdate_serverver", new JsonPrimitive(questDataVersion));
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+				// Save
+				data.setEntry("upcomingquests", upcoming);
+				data.setEntry("lastupdate", new JsonPrimitive(lastQuestUpdateTime));
+				data.setEntry("lastupdate_serverdata", new JsonPrimitive(lastQuestUpdateVersion));
+				data.setEntry("lastupdate_serverver", new JsonPrimitive(questDataVersion));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
 		}
 	}
 
 	@Override
 	public void recomputeQuests(AccountSaveContainer save) {
-		try {
-			// You may wonder:
-			// Why arent i calling the above computation methods here?
-			//
-			// Well, optimization, the above ones are designed to work without one another,
-			// the one here uses data gathered from computing active quests to speed up
-			// computing upcoming quests instead of having to go through the database for
-			// each quest again after that
-
-			// Load data container and prepare lists
-			AccountDataContainer data = save.getSaveData().getChildContainer("quests");
-			JsonArray active = new JsonArray();
-			JsonArray upcoming = new JsonArray();
-			JsonArray activeOld = data.entryExists("activequests") ? data.getEntry("activequests").getAsJsonArray()
-					: new JsonArray();
-			ArrayList<Integer> activeQuests = new ArrayList<Integer>();
-			ArrayList<Integer> prevActiveQuests = new ArrayList<Integer>();
-			for (JsonElement ele : activeOld)
-				prevActiveQuests.add(ele.getAsInt());
-
-			// Find active quests
-			for (MissionData mission : this.quests.values()) {
-				UserQuestInfo q = getUserQuest(save, mission.id);
-				if ((mission.repeatable != null && mission.repeatable.equalsIgnoreCase("true")) || !q.isCompleted()) {
-					if (q.isActive()) {
-						active.add(q.getQuestID());
-						activeQuests.add(q.getQuestID());
-						if (!prevActiveQuests.contains(q.getQuestID())) {
-							// Dispatch event
-							EventBus.getInstance().dispatchEvent(new QuestUnlockEvent(q, save, this));
+		synchronized (getQuestListLock(save)) {
+			try {
+				// You may wonder:
+				// Why arent i calling the above computation methods here?
+				//
+				// Well, optimization, the above ones are designed to work without one another,
+				// the one here uses data gathered from computing active quests to speed up
+				// computing upcoming quests instead of having to go through the database for
+				// each quest again after that
+
+				// Load data container and prepare lists
+				AccountDataContainer data = save.getSaveData().getChildContainer("quests");
+				data.prefetch();
+				JsonArray active = new JsonArray();
+				JsonArray upcoming = new JsonArray();
+				JsonArray activeOld = data.entryExists("activequests") ? data.getEntry("activequests").getAsJsonArray()
+						: new JsonArray();
+				ArrayList<Integer> activeQuests = new ArrayList<Integer>();
+				ArrayList<Integer> prevActiveQuests = new ArrayList<Integer>();
+				for (JsonElement ele : activeOld)
+					prevActiveQuests.add(ele.getAsInt());
+
+				// Find active quests
+				for (MissionData mission : this.quests.values()) {
+					UserQuestInfo q = getUserQuest(save, mission.id);
+					if ((mission.repeatable != null && mission.repeatable.equalsIgnoreCase("true")) || !q.isCompleted()) {
+						if (q.isActive()) {
+							active.add(q.getQuestID());
+							activeQuests.add(q.getQuestID());
+							if (!prevActiveQuests.contains(q.getQuestID())) {
+								// Dispatch event
+								EventBus.getInstance().dispatchEvent(new QuestUnlockEvent(q, save, this));
+							}
 						}
 					}
 				}
-			}
 
-			// Find upcoming quests
-			for (MissionData mission : this.quests.values()) {
-				UserQuestInfo q = getUserQuest(save, mission.id);
-				if (!activeQuests.contains(q.getQuestID()) && !q.isCompleted()) {
-					upcoming.add(q.getQuestID());
+				// Find upcoming quests
+				for (MissionData mission : this.quests.values()) {
+					UserQuestInfo q = getUserQuest(save, mission.id);
+					if (!activeQuests.contains(q.getQuestID()) && !q.isCompleted()) {
+						upcoming.add(q.getQuestID());
+					}
 				}
+
+				// Save
+				data.setEntry("activequests", active);
+				data.setEntry("upcomingquests", upcoming);
+				data.setEntry("lastupdate", new JsonPrimitive(lastQuestUpdateTime));
+				data.setEntry("lastupdate_serverdata", new JsonPrimitive(lastQuestUpdateVersion));
+				data.setEntry("lastupdate_serverver", new JsonPrimitive(questDataVersion));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
 			}
+		}
+	}
 
-			// Save
-			data.setEntry("activequests", active);
-			data.setEntry("upcomingquests", upcoming);
-			data.setEntry("lastupdate", new JsonPrimitive(lastQuestUpdateTime));
-			data.setEntry("lastupdate_serverdata", new JsonPrimitive(lastQuestUpdateVersion));
-			data.setEntry("lastupdate_serverver", new JsonPrimitive(questDataVersion));
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+	private void recomputeQuests(AccountSaveContainer save, int[] questIDs) {
+		synchronized (getQuestListLock(save)) {
+			try {
+				// Load data container
+				AccountDataContainer data = save.getSaveData().getChildContainer("quests");
+				data.prefetch();
+				if (!data.entryExists("activequests") || !data.entryExists("upcomingquests")
+						|| !data.entryExists("lastupdate") || data.getEntry("lastupdate").getAsLong() != lastQuestUpdateTime
+						|| !data.entryExists("lastupdate_serverdata")
+						|| !data.getEntry("lastupdate_serverdata").getAsString().equals(lastQuestUpdateVersion)
+						|| !data.entryExists("lastupdate_serverver")
+						|| !data.getEntry("lastupdate_serverver").getAsString().equals(questDataVersion)) {
+					// Outdated, recompute all quests
+					recomputeQuests(save);
+					return;
+				}
+
+				// Load current lists
+				LinkedHashSet<Integer> active = new LinkedHashSet<Integer>();
+				LinkedHashSet<Integer> upcoming = new LinkedHashSet<Integer>();
+				for (JsonElement ele : data.getEntry("activequests").getAsJsonArray())
+					active.add(ele.getAsInt());
+				for (JsonElement ele : data.getEntry("upcomingquests").getAsJsonArray())
+					upcoming.add(ele.getAsInt());
+
+				// Recheck the affected quests and the quests with date ranges, as those can
+				// change without any event
+				LinkedHashSet<Integer> toCheck = new LinkedHashSet<Integer>();
+				for (int id : questIDs)
+					toCheck.add(id);
+				for (int id : prerequisiteIndex.getDateRangeQuests())
+					toCheck.add(id);
+				boolean changed = false;
+				for (int id : toCheck) {
+					MissionData mission = this.quests.get(id);
+					if (mission == null)
+						continue;
+					UserQuestInfo q = getUserQuest(save, mission.id);
+
+					// Check state
+					boolean completed = q.isCompleted();
+					boolean isActive = ((mission.repeatable != null && mission.repeatable.equalsIgnoreCase("true"))
+							|| !completed) && q.isActive();
+					boolean isUpcoming = !isActive && !completed;
+
+					// Update active quests
+					if (isActive) {
+						if (active.add(id)) {
+							changed = true;
+
+							// Dispatch event
+							EventBus.getInstance().dispatchEvent(new QuestUnlockEvent(q, save, this));
+						}
+					} else if (active.remove(id))
+						changed = true;
+
+					// Update upcoming quests
+					if (isUpcoming) {
+						if (upcoming.add(id))
+							changed = true;
+					} else if (upcoming.remove(id))
+						changed = true;
+				}
+
+				// Save
+				if (changed) {
+					JsonArray activeLst = new JsonArray();
+					for (int id : active)
+						activeLst.add(id);
+					JsonArray upcomingLst = new JsonArray();
+					for (int id : upcoming)
+						upcomingLst.add(id);
+					data.setEntry("activequests", activeLst);
+					data.setEntry("upcomingquests", upcomingLst);
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
 		}
 	}
 
@@ -1023,7 +1101,7 @@ public class QuestManagerImpl extends QuestManager {
 
 			// Recompute active quests
 			AsyncTaskManager.runAsync(() -> {
-				recomputeQuests(save);
+				recomputeQuests(save, prerequisiteIndex.getAffectedQuests(def.id));
 			});
 		}
 
@@ -1260,7 +1338,7 @@ public class QuestManagerImpl extends QuestManager {
 
 					// Recompute active quests
 					AsyncTaskManager.runAsync(() -> {
-						recomputeQuests(save);
+						recomputeQuests(save, prerequisiteIndex.getAffectedQuests(def.id));
 					});
 				}
 			} else {
@@ -1391,7 +1469,7 @@ public class QuestManagerImpl extends QuestManager {
 
 			// Recompute active quests
 			AsyncTaskManager.runAsync(() -> {
-				recomputeQuests(save);
+				recomputeQuests(save, prerequisiteIndex.getAffectedQuests(def.id));
 			});
 		}
 
@@ -1455,7 +1533,7 @@ public class QuestManagerImpl extends QuestManager {
 
 			// Recompute active quests
 			AsyncTaskManager.runAsync(() -> {
-				recomputeQuests(save);
+				recomputeQuests(save, prerequisiteIndex.getAffectedQuests(def.id));
 			});
 		}
 
@@ -1675,7 +1753,7 @@ public class QuestManagerImpl extends QuestManager {
 
 			// Recompute
 			AsyncTaskManager.runAsync(() -> {
-				recomputeQuests(save);
+				recomputeQuests(save, prerequisiteIndex.getAffectedQuests(def.id));
 			});
 		}
 
@@ -0,0 +1,177 @@
+package org.asf.edge.gameplayapi.services.quests.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.asf.edge.gameplayapi.xmls.quests.MissionData;
+import org.asf.edge.gameplayapi.xmls.quests.MissionData.MissionRulesBlock;
+import org.asf.edge.gameplayapi.xmls.quests.MissionData.MissionRulesBlock.PrerequisiteInfoBlock;
+
+/**
+ * 
+ * Quest prerequisite index, maps items, rank types and missions to the
+ * top-level quests whose active state depends on them
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+class QuestPrerequisiteIndex {
+
+	private static final int[] EMPTY = new int[0];
+
+	private HashMap<Integer, int[]> itemQuests = new HashMap<Integer, int[]>();
+	private HashMap<Integer, int[]> rankQuests = new HashMap<Integer, int[]>();
+	private HashMap<Integer, int[]> affectedQuests = new HashMap<Integer, int[]>();
+	private int[] dateRangeQuests;
+
+	/**
+	 * Builds the index
+	 * 
+	 * @param quests    Top-level quests
+	 * @param allQuests All quests, including child missions
+	 */
+	public QuestPrerequisiteIndex(Map<Integer, MissionData> quests, Map<Integer, MissionData> allQuests) {
+		HashMap<Integer, LinkedHashSet<Integer>> items = new HashMap<Integer, LinkedHashSet<Integer>>();
+		HashMap<Integer, LinkedHashSet<Integer>> ranks = new HashMap<Integer, LinkedHashSet<Integer>>();
+		HashMap<Integer, LinkedHashSet<Integer>> missions = new HashMap<Integer, LinkedHashSet<Integer>>();
+		LinkedHashSet<Integer> dateRanges = new LinkedHashSet<Integer>();
+
+		// Go through all quests
+		for (MissionData def : allQuests.values()) {
+			int root = findRoot(def, quests, allQuests);
+			if (root == -1 || def.missionRules == null || def.missionRules.prerequisites == null)
+				continue;
+
+			// Index server-side prerequisites
+			for (PrerequisiteInfoBlock req : def.missionRules.prerequisites) {
+				if (req.clientRule || req.value == null)
+					continue;
+				try {
+					switch (req.type) {
+
+					// Item rule
+					case MissionRulesBlock.PrerequisiteInfoBlock.PrerequisiteRuleTypes.ITEM: {
+						items.computeIfAbsent(Integer.parseInt(req.value), t -> new LinkedHashSet<Integer>()).add(root);
+						break;
+					}
+
+					// Rank rule
+					case MissionRulesBlock.PrerequisiteInfoBlock.PrerequisiteRuleTypes.RANK: {
+						int typeID = Integer.parseInt(req.value.split(",")[0]);
+						ranks.computeIfAbsent(typeID, t -> new LinkedHashSet<Integer>()).add(root);
+						break;
+					}
+
+					// Mission rule
+					case MissionRulesBlock.PrerequisiteInfoBlock.PrerequisiteRuleTypes.MISSION: {
+						missions.computeIfAbsent(Integer.parseInt(req.value), t -> new LinkedHashSet<Integer>())
+								.add(root);
+						break;
+					}
+
+					// Date range rule
+					case MissionRulesBlock.PrerequisiteInfoBlock.PrerequisiteRuleTypes.DATERANGE: {
+						dateRanges.add(root);
+						break;
+					}
+
+					}
+				} catch (NumberFormatException e) {
+					// Invalid rule, the quest manager fails on these when checking the quest
+				}
+			}
+		}
+
+		// Compute affected quests for quest state changes, a change in a quest or one of
+		// its child missions affects its top-level quest and the quests that require
+		// any of them to be completed
+		for (MissionData def : allQuests.values()) {
+			int root = findRoot(def, quests, allQuests);
+			LinkedHashSet<Integer> affected = new LinkedHashSet<Integer>();
+			if (root != -1)
+				affected.add(root);
+			addDependents(def, missions, affected);
+			affectedQuests.put(def.id, toArray(affected));
+		}
+
+		// Apply
+		for (int id : items.keySet())
+			itemQuests.put(id, toArray(items.get(id)));
+		for (int id : ranks.keySet())
+			rankQuests.put(id, toArray(ranks.get(id)));
+		dateRangeQuests = toArray(dateRanges);
+	}
+
+	private static void addDependents(MissionData def, HashMap<Integer, LinkedHashSet<Integer>> missions,
+			LinkedHashSet<Integer> affected) {
+		if (missions.containsKey(def.id))
+			affected.addAll(missions.get(def.id));
+		if (def.childMissions != null) {
+			for (MissionData ch : def.childMissions)
+				addDependents(ch, missions, affected);
+		}
+	}
+
+	private static int findRoot(MissionData def, Map<Integer, MissionData> quests,
+			Map<Integer, MissionData> allQuests) {
+		// Walk up to the top-level quest
+		MissionData current = def;
+		ArrayList<Integer> visited = new ArrayList<Integer>();
+		while (current.parentQuestID > 0 && !visited.contains(current.id)) {
+			visited.add(current.id);
+			MissionData parent = allQuests.get(current.parentQuestID);
+			if (parent == null)
+				return -1;
+			current = parent;
+		}
+		return quests.containsKey(current.id) ? current.id : -1;
+	}
+
+	private static int[] toArray(LinkedHashSet<Integer> ids) {
+		return ids.stream().mapToInt(t -> t).toArray();
+	}
+
+	/**
+	 * Retrieves the top-level quests that have prerequisites for a item
+	 * 
+	 * @param itemID Item definition ID
+	 * @return Array of quest IDs
+	 */
+	public int[] getQuestsForItem(int itemID) {
+		return itemQuests.getOrDefault(itemID, EMPTY);
+	}
+
+	/**
+	 * Retrieves the top-level quests that have prerequisites for a rank type
+	 * 
+	 * @param pointTypeID Rank point type ID
+	 * @return Array of quest IDs
+	 */
+	public int[] getQuestsForRank(int pointTypeID) {
+		return rankQuests.getOrDefault(pointTypeID, EMPTY);
+	}
+
+	/**
+	 * Retrieves the top-level quests affected by state changes of a quest (such as
+	 * accepting or completing it)
+	 * 
+	 * @param questID Quest ID
+	 * @return Array of quest IDs
+	 */
+	public int[] getAffectedQuests(int questID) {
+		return affectedQuests.getOrDefault(questID, EMPTY);
+	}
+
+	/**
+	 * Retrieves the top-level quests that have date range prerequisites, these are
+	 * rechecked on each recomputation as they change without any event
+	 * 
+	 * @return Array of quest IDs
+	 */
+	public int[] getDateRangeQuests() {
+		return dateRangeQuests;
+	}
+
+}
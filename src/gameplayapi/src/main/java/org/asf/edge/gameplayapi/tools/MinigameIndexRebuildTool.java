@@ -0,0 +1,50 @@
+package org.asf.edge.gameplayapi.tools;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.asf.edge.common.EdgeServerEnvironment;
+import org.asf.edge.common.services.ServiceImplementationPriorityLevels;
+import org.asf.edge.common.services.ServiceManager;
+import org.asf.edge.common.services.commondata.CommonDataManager;
+import org.asf.edge.common.services.minigamedata.MinigameDataManager;
+import org.asf.edge.common.services.minigamedata.impl.MinigameDataManagerImpl;
+
+public class MinigameIndexRebuildTool {
+
+	public static void main(String[] args) {
+		// Setup
+		EdgeServerEnvironment.initAll();
+
+		// Logger
+		Logger logger = LogManager.getLogger("INDEXER");
+		logger.info("Preparing to start...");
+
+		// Prepare services
+		logger.info("Loading managers...");
+		logger.debug("Loading common data manager implementations...");
+		CommonDataManager.initCommonDataManagerServices(ServiceImplementationPriorityLevels.DEFAULT,
+				ServiceImplementationPriorityLevels.NORMAL, -5);
+		logger.debug("Selecting common data manager implementation...");
+		ServiceManager.selectServiceImplementation(CommonDataManager.class);
+		logger.debug("Loading common data manager...");
+		CommonDataManager.getInstance().loadManager();
+		logger.debug("Setting up minigame data manager...");
+		MinigameDataManagerImpl manager = new MinigameDataManagerImpl();
+		ServiceManager.registerServiceImplementation(MinigameDataManager.class, manager,
+				ServiceImplementationPriorityLevels.DEFAULT);
+		ServiceManager.selectServiceImplementation(MinigameDataManager.class);
+
+		// Rebuild
+		logger.info("Rebuilding minigame score index, make sure no gameplay servers are running...");
+		try {
+			manager.rebuildIndex();
+		} catch (IOException e) {
+			logger.fatal("Failed to rebuild the minigame score index", e);
+			System.exit(1);
+		}
+		logger.info("Minigame score index rebuilt.");
+	}
+
+}
@@ -19,6 +19,7 @@ import org.asf.edge.common.services.ServiceImplementationPriorityLevels;
 import org.asf.edge.common.services.ServiceManager;
 import org.asf.edge.common.services.accounts.AccountManager;
 import org.asf.edge.common.services.accounts.AccountObject;
+import org.asf.edge.common.services.accounts.PasswordHashingBusyException;
 import org.asf.edge.common.services.commondata.CommonDataContainer;
 import org.asf.edge.common.services.commondata.CommonDataManager;
 import org.asf.edge.common.services.items.ItemManager;
@@ -179,8 +180,13 @@ public class ServerCommandTerminal {
 		// Login
 		System.out.println("Attempting to log into user: " + username + "...");
 		String id = AccountManager.getInstance().getAccountID(username);
-		if (id == null || !AccountManager.getInstance().verifyPassword(id, new String(passwd))) {
-			System.err.println("Failed to log into your Edge account!");
+		try {
+			if (id == null || !AccountManager.getInstance().verifyPassword(id, new String(passwd))) {
+				System.err.println("Failed to log into your Edge account!");
+				return;
+			}
+		} catch (PasswordHashingBusyException e) {
+			System.err.println("The server is too busy to log you in, please try again later.");
 			return;
 		}
 
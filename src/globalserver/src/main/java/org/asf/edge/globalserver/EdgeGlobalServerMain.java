@@ -173,6 +173,7 @@ public class EdgeGlobalServerMain {
 					+ "        \"disabled\": false,\n" // defines if the server is disabled
 					+ "        \"listenAddress\": \"0.0.0.0\",\n" // listen address
 					+ "        \"listenPort\": 5323,\n" // port to listen on
+					+ "        \"serverType\": \"bitswarm\",\n" // network implementation, bitswarm or nio
 					+ "\n" //
 					+ "        \"discoveryAddress\": \"localhost\",\n" // discovery Address
 					+ "        \"discoveryPort\": 5323,\n" // discovery port
@@ -184,7 +185,8 @@ public class EdgeGlobalServerMain {
 					+ "        \"roomUserLimit\": 30,\n" //
 					+ "        \"roomUserLimits\": {\n" //
 					+ "            \"HubSchoolDO\": 40" //
-					+ "        }\n" //
+					+ "        },\n" //
+					+ "        \"positionalVarsBroadcastInterval\": 100\n" // positional update tick in ms, 0 to disable
 					+ "    },\n" //
 					+ "\n" //
 					+ "    \"modules\": {\n" //
@@ -314,7 +316,15 @@ public class EdgeGlobalServerMain {
 				logger.debug("Loading listening settings...");
 				mmoSrvConfig.listenAddress = mmoSrvJson.get("listenAddress").getAsString();
 				mmoSrvConfig.listenPort = mmoSrvJson.get("listenPort").getAsInt();
+				if (mmoSrvJson.has("serverType"))
+					mmoSrvConfig.serverType = mmoSrvJson.get("serverType").getAsString();
+				if (mmoSrvJson.has("networkThreads"))
+					mmoSrvConfig.networkThreads = mmoSrvJson.get("networkThreads").getAsInt();
+				if (mmoSrvJson.has("packetWorkerThreads"))
+					mmoSrvConfig.packetWorkerThreads = mmoSrvJson.get("packetWorkerThreads").getAsInt();
 			}
+			if (mmoSrvJson.has("compressionThreshold"))
+				mmoSrvConfig.compressionThreshold = mmoSrvJson.get("compressionThreshold").getAsInt();
 			logger.debug("Loading discovery settings...");
 			mmoSrvConfig.discoveryAddress = mmoSrvJson.get("discoveryAddress").getAsString();
 			mmoSrvConfig.discoveryPort = mmoSrvJson.get("discoveryPort").getAsInt();
@@ -323,6 +333,8 @@ public class EdgeGlobalServerMain {
 				mmoSrvConfig.isBackupServer = mmoSrvJson.get("isBackupServer").getAsBoolean();
 			if (mmoSrvJson.has("discoveryRootZone"))
 				mmoSrvConfig.discoveryRootZone = mmoSrvJson.get("discoveryRootZone").getAsString();
+			if (mmoSrvJson.has("shareChatAcrossServers"))
+				mmoSrvConfig.shareChatAcrossServers = mmoSrvJson.get("shareChatAcrossServers").getAsBoolean();
 			logger.debug("Loading MMO settings...");
 			if (mmoSrvJson.has("roomUserLimit"))
 				mmoSrvConfig.roomUserLimit = mmoSrvJson.get("roomUserLimit").getAsShort();
@@ -331,6 +343,13 @@ public class EdgeGlobalServerMain {
 				for (String key : limits.keySet())
 					mmoSrvConfig.roomUserLimits.put(key, limits.get(key).getAsShort());
 			}
+			if (mmoSrvJson.has("positionalVarsBroadcastInterval"))
+				mmoSrvConfig.positionalVarsBroadcastInterval = mmoSrvJson.get("positionalVarsBroadcastInterval")
+						.getAsInt();
+			if (mmoSrvJson.has("chatRoomQueueSize"))
+				mmoSrvConfig.chatRoomQueueSize = mmoSrvJson.get("chatRoomQueueSize").getAsInt();
+			if (mmoSrvJson.has("chatWorkerThreads"))
+				mmoSrvConfig.chatWorkerThreads = mmoSrvJson.get("chatWorkerThreads").getAsInt();
 
 		}
 
@@ -28,6 +28,7 @@ import org.asf.edge.mmoserver.networking.channels.extensions.messages.uservars.C
 import org.asf.edge.mmoserver.networking.channels.extensions.messages.uservars.ClientboundSetPositionalVarsMessage;
 import org.asf.edge.mmoserver.networking.channels.extensions.messages.uservars.ClientboundSetUserVarsMessage;
 import org.asf.edge.mmoserver.networking.impl.BitswarmSmartfoxServer;
+import org.asf.edge.mmoserver.networking.impl.NioSmartfoxServer;
 import org.asf.edge.mmoserver.services.ZoneManager;
 import org.asf.edge.mmoserver.services.impl.ZoneManagerImpl;
 import org.asf.edge.modules.eventbus.EventBus;
@@ -54,12 +55,15 @@ import org.asf.edge.common.util.HttpUpgradeUtil;
 import org.asf.edge.common.util.LogWindow;
 import org.asf.edge.common.util.SimpleBinaryMessageClient;
 import org.asf.edge.mmoserver.config.MMOServerConfig;
+import org.asf.edge.mmoserver.entities.chat.ChatBroadcaster;
 import org.asf.edge.mmoserver.entities.player.PlayerInfo;
+import org.asf.edge.mmoserver.entities.positional.PositionalVarsBroadcaster;
 import org.asf.edge.mmoserver.entities.positional.PositionalVariableContainer;
 import org.asf.edge.mmoserver.entities.smartfox.RoomInfo;
 import org.asf.edge.mmoserver.entities.smartfox.RoomVariable;
 import org.asf.edge.mmoserver.entities.smartfox.SfsUser;
 import org.asf.edge.mmoserver.entities.smartfox.UserVariable;
+import org.asf.edge.mmoserver.uplink.MmoUplink;
 
 /**
  * 
@@ -75,8 +79,11 @@ public class EdgeMMOServer implements IBaseServer {
 	private MMOServerConfig config;
 
 	private SmartfoxServer server;
+	private PositionalVarsBroadcaster positionalVarsBroadcaster;
+	private ChatBroadcaster chatBroadcaster;
 
 	private Socket uplinkSocket;
+	private MmoUplink uplink = new MmoUplink(this);
 	private ArrayList<String> mmoZones = new ArrayList<String>();
 
 	private EventContainer events = new EventContainer();
@@ -161,6 +168,34 @@ public class EdgeMMOServer implements IBaseServer {
 		return config;
 	}
 
+	/**
+	 * Retrieves the MMO uplink, used to publish rooms and players to the common API
+	 * and to communicate with other MMO servers
+	 * 
+	 * @return MmoUplink instance
+	 */
+	public MmoUplink getUplink() {
+		return uplink;
+	}
+
+	/**
+	 * Retrieves the positional variable broadcaster
+	 * 
+	 * @return PositionalVarsBroadcaster instance
+	 */
+	public PositionalVarsBroadcaster getPositionalVarsBroadcaster() {
+		return positionalVarsBroadcaster;
+	}
+
+	/**
+	 * Retrieves the chat broadcaster
+	 * 
+	 * @return ChatBroadcaster instance
+	 */
+	public ChatBroadcaster getChatBroadcaster() {
+		return chatBroadcaster;
+	}
+
 	/**
 	 * Called to set up the server
 	 * 
@@ -169,13 +204,25 @@ public class EdgeMMOServer implements IBaseServer {
 	public void setupServer() throws IOException {
 		// Set up the server
 		if (config.server == null) {
-			config.server = new BitswarmSmartfoxServer(config.listenAddress, config.listenPort);
-			logger.info("Edge bitswarm MMO server created with listen address " + config.listenAddress + " and port "
-					+ config.listenPort);
+			if (config.serverType.equalsIgnoreCase("nio")) {
+				config.server = new NioSmartfoxServer(config.listenAddress, config.listenPort, config.networkThreads,
+						config.packetWorkerThreads);
+				logger.info("Edge NIO MMO server created with listen address " + config.listenAddress + " and port "
+						+ config.listenPort);
+			} else {
+				if (!config.serverType.equalsIgnoreCase("bitswarm"))
+					logger.warn("Unknown MMO server type '" + config.serverType + "', using the bitswarm server");
+				config.server = new BitswarmSmartfoxServer(config.listenAddress, config.listenPort);
+				logger.info("Edge bitswarm MMO server created with listen address " + config.listenAddress
+						+ " and port " + config.listenPort);
+			}
 		}
 
 		// Assign server
 		server = config.server;
+		server.setCompressionThreshold(config.compressionThreshold);
+		positionalVarsBroadcaster = new PositionalVarsBroadcaster(server, config.positionalVarsBroadcastInterval);
+		chatBroadcaster = new ChatBroadcaster(server, config.chatRoomQueueSize, config.chatWorkerThreads);
 
 		// Call event
 		logger.debug("Dispatching event...");
@@ -359,7 +406,10 @@ public class EdgeMMOServer implements IBaseServer {
 		// Start server
 		logger.info("Starting the MMO server...");
 		server.start();
+		positionalVarsBroadcaster.start();
+		chatBroadcaster.start();
 		EventBus.getInstance().addAllEventsFromReceiver(events);
+		EventBus.getInstance().addAllEventsFromReceiver(uplink);
 
 		// Call event
 		EventBus.getInstance().dispatchEvent(new MMOServerStartupEvent(config, this));
@@ -410,15 +460,18 @@ public class EdgeMMOServer implements IBaseServer {
 
 				// Log
 				logger.info("Successfully started MMO uplink.");
+				uplinkSocket = sock;
 
 				// Handle messages
+				SimpleBinaryMessageClient client = null;
 				try {
-					SimpleBinaryMessageClient client = new SimpleBinaryMessageClient((packet, cl) -> {
-						return true;
-					}, sock.getInputStream(), sock.getOutputStream());
+					client = new SimpleBinaryMessageClient(uplink::handleMessage, sock.getInputStream(),
+							sock.getOutputStream());
+					uplink.onConnected(client);
 					client.start();
 				} catch (Exception e) {
 				}
+				uplink.onDisconnected(client);
 
 				// Disconnected
 				logger.info("Disconnected from Edge common API!");
@@ -454,7 +507,10 @@ public class EdgeMMOServer implements IBaseServer {
 			server.stop();
 		} catch (IOException e) {
 		}
+		positionalVarsBroadcaster.stop();
+		chatBroadcaster.stop();
 		EventBus.getInstance().removeAllEventsFromReceiver(events);
+		EventBus.getInstance().removeAllEventsFromReceiver(uplink);
 		logger.info("MMO server stopped successfully!");
 	}
 
@@ -478,7 +534,10 @@ public class EdgeMMOServer implements IBaseServer {
 			server.stopForced();
 		} catch (IOException e) {
 		}
+		positionalVarsBroadcaster.stop();
+		chatBroadcaster.stop();
 		EventBus.getInstance().removeAllEventsFromReceiver(events);
+		EventBus.getInstance().removeAllEventsFromReceiver(uplink);
 		logger.info("MMO server stopped successfully!");
 	}
 
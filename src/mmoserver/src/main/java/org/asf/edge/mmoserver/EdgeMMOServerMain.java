@@ -72,6 +72,7 @@ public class EdgeMMOServerMain {
 					+ "\n" //
 					+ "    \"listenAddress\": \"0.0.0.0\",\n" // listen address
 					+ "    \"listenPort\": 5323,\n" // port to listen on
+					+ "    \"serverType\": \"bitswarm\",\n" // network implementation, bitswarm or nio
 					+ "\n" //
 					+ "    \"discoveryAddress\": \"localhost\",\n" // discovery Address
 					+ "    \"discoveryPort\": 5323,\n" // discovery port
@@ -84,6 +85,7 @@ public class EdgeMMOServerMain {
 					+ "    \"roomUserLimits\": {\n" //
 					+ "        \"HubSchoolDO\": 40" //
 					+ "    },\n" //
+					+ "    \"positionalVarsBroadcastInterval\": 100,\n" // positional update tick in ms, 0 to disable
 					+ "\n" //
 					+ "\n" //
 					+ "    \"modules\": {\n" //
@@ -100,6 +102,14 @@ public class EdgeMMOServerMain {
 		logger.debug("Loading listening settings...");
 		config.listenAddress = configData.get("listenAddress").getAsString();
 		config.listenPort = configData.get("listenPort").getAsInt();
+		if (configData.has("serverType"))
+			config.serverType = configData.get("serverType").getAsString();
+		if (configData.has("networkThreads"))
+			config.networkThreads = configData.get("networkThreads").getAsInt();
+		if (configData.has("packetWorkerThreads"))
+			config.packetWorkerThreads = configData.get("packetWorkerThreads").getAsInt();
+		if (configData.has("compressionThreshold"))
+			config.compressionThreshold = configData.get("compressionThreshold").getAsInt();
 
 		// Load discovery settings
 		logger.debug("Loading discovery settings...");
@@ -110,6 +120,8 @@ public class EdgeMMOServerMain {
 			config.isBackupServer = configData.get("isBackupServer").getAsBoolean();
 		if (configData.has("discoveryRootZone"))
 			config.discoveryRootZone = configData.get("discoveryRootZone").getAsString();
+		if (configData.has("shareChatAcrossServers"))
+			config.shareChatAcrossServers = configData.get("shareChatAcrossServers").getAsBoolean();
 
 		// MMO settings
 		logger.debug("Loading MMO settings...");
@@ -120,6 +132,12 @@ public class EdgeMMOServerMain {
 			for (String key : limits.keySet())
 				config.roomUserLimits.put(key, limits.get(key).getAsShort());
 		}
+		if (configData.has("positionalVarsBroadcastInterval"))
+			config.positionalVarsBroadcastInterval = configData.get("positionalVarsBroadcastInterval").getAsInt();
+		if (configData.has("chatRoomQueueSize"))
+			config.chatRoomQueueSize = configData.get("chatRoomQueueSize").getAsInt();
+		if (configData.has("chatWorkerThreads"))
+			config.chatWorkerThreads = configData.get("chatWorkerThreads").getAsInt();
 
 		// Load module settings
 		if (configData.has("modules")) {
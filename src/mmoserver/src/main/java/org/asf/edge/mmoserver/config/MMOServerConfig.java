@@ -23,6 +23,30 @@ public class MMOServerConfig {
 	 */
 	public int listenPort = 5323;
 
+	/**
+	 * Network implementation used when no server instance is pre-assigned,
+	 * 'bitswarm' for the blocking thread-per-client server or 'nio' for the
+	 * non-blocking selector-based server
+	 */
+	public String serverType = "bitswarm";
+
+	/**
+	 * Amount of network selector threads of the NIO server, 0 to use the processor
+	 * count
+	 */
+	public int networkThreads = 0;
+
+	/**
+	 * Amount of packet handling threads of the NIO server, 0 to use the default
+	 */
+	public int packetWorkerThreads = 0;
+
+	/**
+	 * Packets of this size or larger are compressed, sent to clients during the
+	 * handshake
+	 */
+	public int compressionThreshold = 2048;
+
 	/**
 	 * Discovery address (should be the public IP address)
 	 */
@@ -49,6 +73,13 @@ public class MMOServerConfig {
 	 */
 	public String commonApiUplinkURL = "http://127.0.0.1:5324/";
 
+	/**
+	 * True to relay room chat through the uplink to other MMO servers hosting the
+	 * same room group, for deployments where busy rooms are spread over multiple
+	 * servers
+	 */
+	public boolean shareChatAcrossServers = false;
+
 	/**
 	 * Pre-assigned server instance, if assigned, EDGE will use this instead
 	 */
@@ -64,4 +95,21 @@ public class MMOServerConfig {
 	 */
 	public LinkedHashMap<String, Short> roomUserLimits = new LinkedHashMap<String, Short>();
 
+	/**
+	 * Defines the interval in milliseconds at which positional variable updates
+	 * are batched and broadcast to each room, 0 to send updates immediately
+	 */
+	public int positionalVarsBroadcastInterval = 100;
+
+	/**
+	 * Defines the maximum amount of chat messages waiting for delivery in each
+	 * room, messages sent to a room with a full queue are dropped
+	 */
+	public int chatRoomQueueSize = 64;
+
+	/**
+	 * Amount of chat delivery threads, 0 to use the default
+	 */
+	public int chatWorkerThreads = 0;
+
 }
@@ -0,0 +1,254 @@
+package org.asf.edge.mmoserver.entities.chat;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.asf.edge.common.services.textfilter.TextFilterService;
+import org.asf.edge.mmoserver.entities.player.PlayerInfo;
+import org.asf.edge.mmoserver.entities.smartfox.RoomInfo;
+import org.asf.edge.mmoserver.networking.SmartfoxServer;
+import org.asf.edge.mmoserver.networking.channels.extensions.messages.chat.ClientboundPostChatMessagePacket;
+import org.asf.edge.mmoserver.networking.packets.EncodedPacket;
+
+/**
+ * 
+ * Chat broadcaster, delivers chat messages to the players of each room on a
+ * worker pool. Each room has a bounded queue, messages for a room with a full
+ * queue are rejected instead of blocking the sender. The filtered variants of
+ * each message are computed and encoded only once.
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class ChatBroadcaster {
+
+	private static final int DRAIN_BATCH_SIZE = 16;
+
+	private Logger logger = LogManager.getLogger("ChatBroadcaster");
+	private SmartfoxServer server;
+	private int queueSize;
+	private int workerThreads;
+	private volatile boolean running;
+	private ExecutorService workers;
+
+	private ConcurrentHashMap<RoomInfo, RoomQueue> queues = new ConcurrentHashMap<RoomInfo, RoomQueue>();
+
+	private static class RoomQueue {
+		public ArrayBlockingQueue<ChatMessage> messages;
+		public boolean scheduled;
+		public boolean closed;
+	}
+
+	/**
+	 * 
+	 * Chat message queued for delivery
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	public static class ChatMessage {
+		private String senderID;
+		private String displayName;
+		private String message;
+		private String clanID;
+
+		private EncodedPacket packet;
+		private EncodedPacket packetStrict;
+
+		/**
+		 * Creates a chat message
+		 * 
+		 * @param senderID    Save ID of the sender
+		 * @param displayName Display name of the sender
+		 * @param message     Message text (filtered with the settings of the sender)
+		 * @param clanID      Clan ID (null if not clan chat)
+		 */
+		public ChatMessage(String senderID, String displayName, String message, String clanID) {
+			this.senderID = senderID;
+			this.displayName = displayName;
+			this.message = message;
+			this.clanID = clanID;
+		}
+
+		/**
+		 * Retrieves the save ID of the sender
+		 * 
+		 * @return Sender save ID
+		 */
+		public String getSenderID() {
+			return senderID;
+		}
+
+		/**
+		 * Retrieves the message text
+		 * 
+		 * @return Message text
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		private synchronized EncodedPacket getPacket(SmartfoxServer server, boolean strict) throws IOException {
+			if (strict) {
+				if (packetStrict == null)
+					packetStrict = encode(server, true);
+				return packetStrict;
+			} else {
+				if (packet == null)
+					packet = encode(server, false);
+				return packet;
+			}
+		}
+
+		private EncodedPacket encode(SmartfoxServer server, boolean strict) throws IOException {
+			ClientboundPostChatMessagePacket pkt = new ClientboundPostChatMessagePacket();
+			pkt.message = TextFilterService.getInstance().filterString(message, strict);
+			pkt.isClanChat = clanID != null;
+			pkt.clanID = clanID;
+			pkt.userID = senderID;
+			pkt.displayName = displayName;
+			return server.encodeExtensionMessage(pkt);
+		}
+	}
+
+	/**
+	 * Creates the broadcaster
+	 * 
+	 * @param server        Server to encode packets with
+	 * @param queueSize     Maximum amount of pending messages per room
+	 * @param workerThreads Amount of delivery threads, 0 to use the default
+	 */
+	public ChatBroadcaster(SmartfoxServer server, int queueSize, int workerThreads) {
+		this.server = server;
+		this.queueSize = queueSize;
+		this.workerThreads = workerThreads;
+		if (this.workerThreads <= 0)
+			this.workerThreads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+	}
+
+	/**
+	 * Starts the delivery threads
+	 */
+	public void start() {
+		if (running)
+			return;
+		AtomicInteger threadCount = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(workerThreads, r -> {
+			Thread th = new Thread(r, "Chat broadcaster " + threadCount.incrementAndGet());
+			th.setDaemon(true);
+			return th;
+		});
+		running = true;
+	}
+
+	/**
+	 * Stops the delivery threads, pending messages are dropped
+	 */
+	public void stop() {
+		running = false;
+		if (workers != null)
+			workers.shutdownNow();
+		workers = null;
+		queues.clear();
+	}
+
+	/**
+	 * Queues chat messages for delivery to the players in a room
+	 * 
+	 * @param room    Room to send the message to
+	 * @param message Chat message
+	 * @return True if queued, false if the queue of the room is full
+	 */
+	public boolean queueMessage(RoomInfo room, ChatMessage message) {
+		if (!running) {
+			// Send immediately
+			deliver(room, message);
+			return true;
+		}
+
+		// Add to queue
+		while (true) {
+			RoomQueue queue = queues.computeIfAbsent(room, t -> {
+				RoomQueue q = new RoomQueue();
+				q.messages = new ArrayBlockingQueue<ChatMessage>(queueSize);
+				return q;
+			});
+			synchronized (queue) {
+				// Retry if a worker just removed the queue
+				if (queue.closed)
+					continue;
+				if (!queue.messages.offer(message))
+					return false;
+
+				// Schedule
+				if (!queue.scheduled) {
+					queue.scheduled = true;
+					schedule(room, queue);
+				}
+				return true;
+			}
+		}
+	}
+
+	private void schedule(RoomInfo room, RoomQueue queue) {
+		ExecutorService pool = workers;
+		if (pool == null)
+			return;
+		try {
+			pool.execute(() -> drain(room, queue));
+		} catch (Exception e) {
+			// Stopped
+		}
+	}
+
+	private void drain(RoomInfo room, RoomQueue queue) {
+		// Deliver a limited amount of messages so busy rooms do not hold up the others
+		for (int i = 0; i < DRAIN_BATCH_SIZE; i++) {
+			ChatMessage message = queue.messages.poll();
+			if (message == null)
+				break;
+			deliver(room, message);
+		}
+
+		// Reschedule or remove the queue
+		synchronized (queue) {
+			if (!queue.messages.isEmpty()) {
+				schedule(room, queue);
+				return;
+			}
+			queue.scheduled = false;
+			queue.closed = true;
+			queues.remove(room, queue);
+		}
+	}
+
+	private void deliver(RoomInfo room, ChatMessage message) {
+		for (PlayerInfo plr : room.getPlayers()) {
+			// Skip self
+			if (plr.getSave().getSaveID().equals(message.senderID))
+				continue;
+
+			// Find the variant for the filter settings of the player
+			EncodedPacket packet;
+			try {
+				packet = message.getPacket(server, plr.getAccount().isStrictChatFilterEnabled());
+			} catch (IOException e) {
+				logger.error("Failed to encode chat message for room " + room.getName(), e);
+				return;
+			}
+
+			// Send
+			try {
+				plr.getClient().sendPacket(packet);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+}
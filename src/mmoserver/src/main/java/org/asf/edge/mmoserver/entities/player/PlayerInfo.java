@@ -526,8 +526,8 @@ public class PlayerInfo {
 
 	private void onJoinZone(GameZone zone) {
 		// Join zone
-		zone = zone;
-		// TODO
+		if (zone != null)
+			zone.addPlayer(this);
 
 		// Dispatch join zone event
 		EventBus.getInstance().dispatchEvent(new PlayerJoinZoneEvent(this, this.zone));
@@ -535,8 +535,8 @@ public class PlayerInfo {
 
 	private void onLeaveZone(GameZone zone) {
 		// Leave zone
-		zone = zone;
-		// TODO
+		if (zone != null)
+			zone.removePlayer(this);
 
 		// Dispatch leave zone event
 		EventBus.getInstance().dispatchEvent(new PlayerLeaveZoneEvent(this, this.zone));
@@ -0,0 +1,87 @@
+package org.asf.edge.mmoserver.entities.positional;
+
+import com.google.gson.JsonObject;
+
+/**
+ * 
+ * Area-of-interest settings of a room, positional updates are culled based on
+ * the distance between the avatars on the horizontal plane (only applies when
+ * positional updates are batched)
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class AreaOfInterestSettings {
+
+	/**
+	 * True to cull positional updates, false to send all updates to everyone in
+	 * the room
+	 */
+	public boolean enabled = true;
+
+	/**
+	 * Distance within which positional updates are sent every tick
+	 */
+	public double nearRadius = 40;
+
+	/**
+	 * Distance beyond which positional updates are not sent at all
+	 */
+	public double maxRadius = 150;
+
+	/**
+	 * Interval in milliseconds at which updates of avatars between the near and
+	 * max radius are sent
+	 */
+	public int farUpdateInterval = 500;
+
+	/**
+	 * Size of the grid cells avatars are sorted into, distances are computed
+	 * between cell centers
+	 */
+	public double cellSize = 10;
+
+	/**
+	 * Positional variable holding the X coordinate
+	 */
+	public String positionXKey = "P1";
+
+	/**
+	 * Positional variable holding the Z coordinate
+	 */
+	public String positionZKey = "P3";
+
+	/**
+	 * Loads area-of-interest settings from a zone configuration block, missing
+	 * values use the defaults
+	 * 
+	 * @param config Configuration block
+	 * @return AreaOfInterestSettings instance
+	 */
+	public static AreaOfInterestSettings fromJson(JsonObject config) {
+		// Load
+		AreaOfInterestSettings settings = new AreaOfInterestSettings();
+		if (config.has("enabled"))
+			settings.enabled = config.get("enabled").getAsBoolean();
+		if (config.has("nearRadius"))
+			settings.nearRadius = config.get("nearRadius").getAsDouble();
+		if (config.has("maxRadius"))
+			settings.maxRadius = config.get("maxRadius").getAsDouble();
+		if (config.has("farUpdateInterval"))
+			settings.farUpdateInterval = config.get("farUpdateInterval").getAsInt();
+		if (config.has("cellSize"))
+			settings.cellSize = config.get("cellSize").getAsDouble();
+		if (config.has("positionXKey"))
+			settings.positionXKey = config.get("positionXKey").getAsString();
+		if (config.has("positionZKey"))
+			settings.positionZKey = config.get("positionZKey").getAsString();
+
+		// Check
+		if (settings.cellSize <= 0)
+			throw new IllegalArgumentException("Area-of-interest cell size must be greater than 0");
+		if (settings.maxRadius < settings.nearRadius)
+			throw new IllegalArgumentException("Area-of-interest max radius must not be smaller than the near radius");
+		return settings;
+	}
+
+}
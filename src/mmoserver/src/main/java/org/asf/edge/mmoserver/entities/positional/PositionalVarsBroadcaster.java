@@ -0,0 +1,461 @@
+package org.asf.edge.mmoserver.entities.positional;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.asf.edge.mmoserver.entities.player.PlayerInfo;
+import org.asf.edge.mmoserver.entities.smartfox.RoomInfo;
+import org.asf.edge.mmoserver.entities.smartfox.SfsUser;
+import org.asf.edge.mmoserver.networking.SmartfoxServer;
+import org.asf.edge.mmoserver.networking.channels.extensions.messages.uservars.ClientboundSetPositionalVarsMessage;
+import org.asf.edge.mmoserver.networking.channels.extensions.messages.uservars.ClientboundSetPositionalVarsMessage.UserVarUpdate;
+import org.asf.edge.mmoserver.networking.packets.EncodedPacket;
+import org.asf.edge.mmoserver.networking.sfs.SfsObjectCodec.EncodedObject;
+
+/**
+ * 
+ * Positional variable broadcaster, collects the positional variable updates of
+ * each room and sends them as a single batched message per room each tick,
+ * rooms with area-of-interest settings only send updates of nearby avatars
+ * each tick and updates of distant avatars at a lower rate, avatars that come
+ * into range of each other are sent each other's current variables
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class PositionalVarsBroadcaster {
+
+	private Logger logger = LogManager.getLogger("PositionalVarsBroadcaster");
+	private SmartfoxServer server;
+	private int interval;
+	private volatile boolean running;
+
+	private ConcurrentHashMap<RoomInfo, RoomBatch> batches = new ConcurrentHashMap<RoomInfo, RoomBatch>();
+
+	private static class RoomBatch {
+		public LinkedHashMap<String, UserVarUpdate> updates = new LinkedHashMap<String, UserVarUpdate>();
+		public boolean closed;
+
+		// Only accessed by the tick thread
+		public LinkedHashMap<String, UserVarUpdate> distantUpdates = new LinkedHashMap<String, UserVarUpdate>();
+		public long lastDistantFlush;
+		public HashMap<String, Long> cells = new HashMap<String, Long>();
+	}
+
+	private static final long UNKNOWN_CELL = Long.MIN_VALUE;
+
+	/**
+	 * Creates the broadcaster
+	 * 
+	 * @param server   Server to encode packets with
+	 * @param interval Tick interval in milliseconds, 0 or less to send updates
+	 *                 immediately
+	 */
+	public PositionalVarsBroadcaster(SmartfoxServer server, int interval) {
+		this.server = server;
+		this.interval = interval;
+	}
+
+	/**
+	 * Retrieves the tick interval
+	 * 
+	 * @return Tick interval in milliseconds
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Starts the broadcast thread
+	 */
+	public void start() {
+		if (running)
+			return;
+		running = true;
+		if (interval <= 0)
+			return;
+
+		// Start tick thread
+		Thread th = new Thread(() -> {
+			while (running) {
+				long start = System.currentTimeMillis();
+				flush();
+				long wait = interval - (System.currentTimeMillis() - start);
+				if (wait > 0) {
+					try {
+						Thread.sleep(wait);
+					} catch (InterruptedException e) {
+						break;
+					}
+				}
+			}
+		}, "Positional variable broadcaster");
+		th.setDaemon(true);
+		th.start();
+	}
+
+	/**
+	 * Stops the broadcast thread, pending updates are dropped
+	 */
+	public void stop() {
+		running = false;
+		batches.clear();
+	}
+
+	/**
+	 * Queues positional variable updates, updates of the same user are merged
+	 * until the next tick
+	 * 
+	 * @param room     Room to broadcast to
+	 * @param roomID   Room ID to include in the update
+	 * @param user     SFS user that sent the update
+	 * @param senderID Save ID of the player that sent the update
+	 * @param vars     Updated variables
+	 */
+	public void queueUpdate(RoomInfo room, int roomID, SfsUser user, String senderID, Map<String, Object> vars) {
+		long time = System.currentTimeMillis();
+		if (!running || interval <= 0) {
+			// Send immediately
+			LinkedHashMap<String, UserVarUpdate> updates = new LinkedHashMap<String, UserVarUpdate>();
+			mergeUpdate(updates, roomID, user, senderID, vars, time);
+			try {
+				broadcast(room, updates);
+			} catch (IOException e) {
+				logger.error("Failed to broadcast positional variables in room " + room.getName(), e);
+			}
+			return;
+		}
+
+		// Add to batch
+		while (true) {
+			RoomBatch batch = batches.computeIfAbsent(room, t -> new RoomBatch());
+			synchronized (batch) {
+				// Retry if the tick thread just removed the batch
+				if (batch.closed)
+					continue;
+				mergeUpdate(batch.updates, roomID, user, senderID, vars, time);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Sends all pending updates, should only be called from the tick thread
+	 */
+	public void flush() {
+		long time = System.currentTimeMillis();
+		for (RoomInfo room : batches.keySet()) {
+			RoomBatch batch = batches.get(room);
+			if (batch == null)
+				continue;
+
+			// Take pending updates
+			LinkedHashMap<String, UserVarUpdate> updates;
+			synchronized (batch) {
+				if (batch.updates.isEmpty() && batch.distantUpdates.isEmpty()) {
+					// Keep tracking avatar positions while the room is in use, nothing moved so
+					// the tracked cells are still current
+					if (!batch.cells.isEmpty()
+							&& (room.getPlayers().length != 0 || room.getSpectatorPlayers().length != 0))
+						continue;
+
+					// Nothing was sent during the last tick, remove batch
+					batch.closed = true;
+					batches.remove(room, batch);
+					continue;
+				}
+				updates = batch.updates;
+				batch.updates = new LinkedHashMap<String, UserVarUpdate>();
+			}
+
+			// Send
+			try {
+				AreaOfInterestSettings settings = room.getInterestSettings();
+				if (settings != null && settings.enabled)
+					broadcastCulled(room, batch, updates, settings, time);
+				else {
+					batch.distantUpdates.clear();
+					batch.cells.clear();
+					if (!updates.isEmpty())
+						broadcast(room, updates);
+				}
+			} catch (Exception e) {
+				logger.error("Failed to broadcast positional variables in room " + room.getName(), e);
+			}
+		}
+	}
+
+	private static void mergeUpdate(LinkedHashMap<String, UserVarUpdate> updates, int roomID, SfsUser user,
+			String senderID, Map<String, Object> vars, long time) {
+		UserVarUpdate u = updates.get(senderID);
+		if (u == null) {
+			u = new UserVarUpdate();
+			u.userID = user.getUserNumericID();
+			u.roomID = roomID;
+			u.vars.put("UID", user.getUserID());
+			updates.put(senderID, u);
+		}
+		u.vars.put("ST", time);
+		u.vars.put("NT", time);
+		u.vars.putAll(vars);
+	}
+
+	private void broadcast(RoomInfo room, LinkedHashMap<String, UserVarUpdate> updates) throws IOException {
+		// Encode each update once
+		LinkedHashMap<String, EncodedObject> entries = encodeEntries(updates);
+
+		// Players who did not send an update all receive the same packet
+		EncodedPacket shared = null;
+		for (PlayerInfo[] lst : new PlayerInfo[][] { room.getPlayers(), room.getSpectatorPlayers() }) {
+			for (PlayerInfo plr : lst) {
+				EncodedPacket packet;
+				String id = plr.getSave().getSaveID();
+				if (entries.containsKey(id)) {
+					// Exclude the player's own update
+					if (entries.size() == 1)
+						continue;
+					ArrayList<EncodedObject> lstEntries = new ArrayList<EncodedObject>();
+					entries.forEach((sender, entry) -> {
+						if (!sender.equals(id))
+							lstEntries.add(entry);
+					});
+					packet = assemble(lstEntries);
+				} else {
+					if (shared == null)
+						shared = assemble(new ArrayList<EncodedObject>(entries.values()));
+					packet = shared;
+				}
+				try {
+					plr.getClient().sendPacket(packet);
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	private void broadcastCulled(RoomInfo room, RoomBatch batch, LinkedHashMap<String, UserVarUpdate> updates,
+			AreaOfInterestSettings settings, long time) throws IOException {
+		// Collect updates for distant players, these are sent at a lower rate
+		for (String id : updates.keySet()) {
+			UserVarUpdate update = updates.get(id);
+			UserVarUpdate distant = batch.distantUpdates.get(id);
+			if (distant == null) {
+				distant = new UserVarUpdate();
+				distant.userID = update.userID;
+				distant.roomID = update.roomID;
+				batch.distantUpdates.put(id, distant);
+			}
+			distant.vars.putAll(update.vars);
+		}
+		LinkedHashMap<String, UserVarUpdate> distantUpdates = null;
+		if (time - batch.lastDistantFlush >= settings.farUpdateInterval) {
+			distantUpdates = batch.distantUpdates;
+			batch.distantUpdates = new LinkedHashMap<String, UserVarUpdate>();
+			batch.lastDistantFlush = time;
+		}
+		if (updates.isEmpty() && distantUpdates == null)
+			return;
+
+		// Sort avatars into grid cells
+		PlayerInfo[] players = room.getPlayers();
+		PlayerInfo[] spectators = room.getSpectatorPlayers();
+		HashMap<String, Long> cells = new HashMap<String, Long>();
+		HashMap<String, Integer> roomIDs = new HashMap<String, Integer>();
+		for (PlayerInfo plr : players) {
+			cells.put(plr.getSave().getSaveID(), findCell(room, plr.getSave().getSaveID(), settings));
+			roomIDs.put(plr.getSave().getSaveID(), room.getRoomID());
+		}
+		for (PlayerInfo plr : spectators) {
+			cells.put(plr.getSave().getSaveID(), findCell(room, plr.getSave().getSaveID(), settings));
+			roomIDs.putIfAbsent(plr.getSave().getSaveID(), 0);
+		}
+
+		// Find avatars that came into range of each other, updates beyond the max
+		// radius are not sent so these need the current variables of the other avatar
+		HashMap<String, LinkedHashSet<String>> entered = new HashMap<String, LinkedHashSet<String>>();
+		for (String id : cells.keySet()) {
+			Long oldCell = batch.cells.get(id);
+			long cell = cells.get(id);
+			if (oldCell == null || oldCell == cell)
+				continue;
+			for (String other : cells.keySet()) {
+				Long otherOldCell = batch.cells.get(other);
+				if (other.equals(id) || otherOldCell == null)
+					continue;
+				if (!isNearby(oldCell, otherOldCell, settings.maxRadius, settings)
+						&& isNearby(cell, cells.get(other), settings.maxRadius, settings)) {
+					entered.computeIfAbsent(other, t -> new LinkedHashSet<String>()).add(id);
+					entered.computeIfAbsent(id, t -> new LinkedHashSet<String>()).add(other);
+				}
+			}
+		}
+		batch.cells = cells;
+
+		// Encode each update once
+		LinkedHashMap<String, EncodedObject> entries = encodeEntries(updates);
+		LinkedHashMap<String, EncodedObject> distantEntries = distantUpdates != null ? encodeEntries(distantUpdates) : null;
+		HashMap<String, EncodedObject> stateEntries = new HashMap<String, EncodedObject>();
+
+		// Send, players in the same cell receive the same packet unless they sent an
+		// update themselves or avatars came into their range
+		HashMap<Long, EncodedPacket> cellPackets = new HashMap<Long, EncodedPacket>();
+		for (PlayerInfo[] lst : new PlayerInfo[][] { players, spectators }) {
+			for (PlayerInfo plr : lst) {
+				String id = plr.getSave().getSaveID();
+				long cell = cells.get(id);
+				LinkedHashSet<String> enteredIDs = entered.get(id);
+				EncodedPacket packet;
+				if (enteredIDs != null || entries.containsKey(id)
+						|| (distantEntries != null && distantEntries.containsKey(id))) {
+					// Exclude the player's own update and replace updates of avatars that came
+					// into range with their current variables
+					ArrayList<EncodedObject> packetEntries = collectCulled(entries, distantEntries, cells, cell, id,
+							enteredIDs, settings);
+					if (enteredIDs != null) {
+						for (String sender : enteredIDs) {
+							if (!stateEntries.containsKey(sender))
+								stateEntries.put(sender, encodeState(room, sender, roomIDs.get(sender), time));
+							if (stateEntries.get(sender) != null)
+								packetEntries.add(stateEntries.get(sender));
+						}
+					}
+					packet = packetEntries.isEmpty() ? null : assemble(packetEntries);
+				} else {
+					if (!cellPackets.containsKey(cell)) {
+						ArrayList<EncodedObject> packetEntries = collectCulled(entries, distantEntries, cells, cell, null, null,
+								settings);
+						cellPackets.put(cell, packetEntries.isEmpty() ? null : assemble(packetEntries));
+					}
+					packet = cellPackets.get(cell);
+				}
+				if (packet == null)
+					continue;
+				try {
+					plr.getClient().sendPacket(packet);
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	private static ArrayList<EncodedObject> collectCulled(LinkedHashMap<String, EncodedObject> entries,
+			LinkedHashMap<String, EncodedObject> distantEntries, HashMap<String, Long> cells, long cell, String excludedID,
+			LinkedHashSet<String> replacedIDs, AreaOfInterestSettings settings) {
+		ArrayList<EncodedObject> lst = new ArrayList<EncodedObject>();
+
+		// Nearby avatars, sent every tick
+		for (String id : entries.keySet()) {
+			if (!id.equals(excludedID) && (replacedIDs == null || !replacedIDs.contains(id))
+					&& isNearby(cell, cells.getOrDefault(id, UNKNOWN_CELL), settings.nearRadius, settings))
+				lst.add(entries.get(id));
+		}
+
+		// Distant avatars, sent when the distant updates are flushed
+		if (distantEntries != null) {
+			for (String id : distantEntries.keySet()) {
+				long senderCell = cells.getOrDefault(id, UNKNOWN_CELL);
+				if (!id.equals(excludedID) && (replacedIDs == null || !replacedIDs.contains(id))
+						&& !isNearby(cell, senderCell, settings.nearRadius, settings)
+						&& isNearby(cell, senderCell, settings.maxRadius, settings))
+					lst.add(distantEntries.get(id));
+			}
+		}
+
+		return lst;
+	}
+
+	private static EncodedObject encodeState(RoomInfo room, String saveID, int roomID, long time) throws IOException {
+		// Find variables
+		SfsUser user = room.getSfsUser(saveID);
+		if (user == null)
+			return null;
+		PositionalVariableContainer vars = user.getObject(PositionalVariableContainer.class);
+		if (vars == null)
+			return null;
+
+		// Build update with all current variables
+		UserVarUpdate u = new UserVarUpdate();
+		u.userID = user.getUserNumericID();
+		u.roomID = roomID;
+		u.vars.put("UID", user.getUserID());
+		u.vars.put("ST", time);
+		u.vars.put("NT", time);
+		synchronized (vars) {
+			u.vars.putAll(vars.positionalVariables);
+		}
+		return encodeEntry(u);
+	}
+
+	private static boolean isNearby(long cell1, long cell2, double radius, AreaOfInterestSettings settings) {
+		// Avatars without a known position are always in range
+		if (cell1 == UNKNOWN_CELL || cell2 == UNKNOWN_CELL)
+			return true;
+
+		// Compare cell centers
+		double dx = ((int) (cell1 >> 32) - (int) (cell2 >> 32)) * settings.cellSize;
+		double dz = ((int) cell1 - (int) cell2) * settings.cellSize;
+		return dx * dx + dz * dz <= radius * radius;
+	}
+
+	private static long findCell(RoomInfo room, String saveID, AreaOfInterestSettings settings) {
+		// Find position
+		SfsUser user = room.getSfsUser(saveID);
+		if (user == null)
+			return UNKNOWN_CELL;
+		PositionalVariableContainer vars = user.getObject(PositionalVariableContainer.class);
+		if (vars == null)
+			return UNKNOWN_CELL;
+		double x;
+		double z;
+		synchronized (vars) {
+			x = readCoordinate(vars.positionalVariables.get(settings.positionXKey));
+			z = readCoordinate(vars.positionalVariables.get(settings.positionZKey));
+		}
+		if (Double.isNaN(x) || Double.isNaN(z))
+			return UNKNOWN_CELL;
+
+		// Compute cell
+		long cellX = (long) Math.floor(x / settings.cellSize);
+		long cellZ = (long) Math.floor(z / settings.cellSize);
+		return (cellX << 32) | (cellZ & 0xffffffffL);
+	}
+
+	private static double readCoordinate(Object value) {
+		if (value instanceof Number)
+			return ((Number) value).doubleValue();
+		else if (value instanceof String) {
+			try {
+				return Double.parseDouble((String) value);
+			} catch (NumberFormatException e) {
+			}
+		}
+		return Double.NaN;
+	}
+
+	private static LinkedHashMap<String, EncodedObject> encodeEntries(LinkedHashMap<String, UserVarUpdate> updates)
+			throws IOException {
+		LinkedHashMap<String, EncodedObject> entries = new LinkedHashMap<String, EncodedObject>();
+		for (String id : updates.keySet())
+			entries.put(id, encodeEntry(updates.get(id)));
+		return entries;
+	}
+
+	private static EncodedObject encodeEntry(UserVarUpdate update) throws IOException {
+		return ClientboundSetPositionalVarsMessage.encodeUpdate(update);
+	}
+
+	private EncodedPacket assemble(ArrayList<EncodedObject> entries) throws IOException {
+		// Build the message from the encoded entries, these are written as they are
+		ClientboundSetPositionalVarsMessage msg = new ClientboundSetPositionalVarsMessage();
+		msg.encodedUpdates = entries;
+		return server.encodeExtensionMessage(msg);
+	}
+
+}
@@ -1,6 +1,7 @@
 package org.asf.edge.mmoserver.entities.smartfox;
 
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -23,6 +24,7 @@ public class GameZone {
 	private boolean zoneActive = true;
 	private HashMap<String, RoomGroup> roomGroups = new HashMap<String, RoomGroup>();
 	private Logger logger = LogManager.getLogger("ZoneManager");
+	private ConcurrentHashMap<String, PlayerInfo> players = new ConcurrentHashMap<String, PlayerInfo>();
 	HashMap<Integer, RoomInfo> rooms = new HashMap<Integer, RoomInfo>();
 	static int currentRoomIdGlobal;
 
@@ -80,6 +82,63 @@ public class GameZone {
 		zoneActive = false;
 	}
 
+	/**
+	 * Retrieves all players connected to the zone
+	 * 
+	 * @return Array of PlayerInfo instances
+	 */
+	public PlayerInfo[] getPlayers() {
+		return players.values().toArray(t -> new PlayerInfo[t]);
+	}
+
+	/**
+	 * Retrieves the amount of players connected to the zone
+	 * 
+	 * @return Player count
+	 */
+	public int getPlayerCount() {
+		return players.size();
+	}
+
+	/**
+	 * Retrieves players connected to the zone by save ID
+	 * 
+	 * @param saveID Player save ID
+	 * @return PlayerInfo instance or null
+	 */
+	public PlayerInfo getPlayer(String saveID) {
+		return players.get(saveID);
+	}
+
+	/**
+	 * Checks if specific players are connected to the zone
+	 * 
+	 * @param player Player to check
+	 * @return True if connected, false otherwise
+	 */
+	public boolean hasPlayer(PlayerInfo player) {
+		return players.get(player.getSave().getSaveID()) == player;
+	}
+
+	/**
+	 * Adds players to the zone, called by the player when it joins the zone
+	 * 
+	 * @param player Player that joined the zone
+	 */
+	public void addPlayer(PlayerInfo player) {
+		players.put(player.getSave().getSaveID(), player);
+	}
+
+	/**
+	 * Removes players from the zone, called by the player when it leaves the zone
+	 * 
+	 * @param player Player that left the zone
+	 */
+	public void removePlayer(PlayerInfo player) {
+		// Only remove this instance, the save may have reconnected already
+		players.remove(player.getSave().getSaveID(), player);
+	}
+
 	/**
 	 * Retrieves all room names
 	 * 
@@ -2,10 +2,12 @@ package org.asf.edge.mmoserver.entities.smartfox;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.asf.edge.mmoserver.entities.player.PlayerInfo;
+import org.asf.edge.mmoserver.entities.positional.AreaOfInterestSettings;
 import org.asf.edge.mmoserver.events.players.PlayerRoomGroupDesubscribeEvent;
 import org.asf.edge.mmoserver.events.players.PlayerRoomGroupSubscribeEvent;
 import org.asf.edge.mmoserver.events.zones.RoomCreatedEvent;
@@ -25,9 +27,11 @@ public class RoomGroup {
 	private String name;
 	private GameZone zone;
 	private HashMap<String, RoomInfo> rooms = new HashMap<String, RoomInfo>();
+	private AreaOfInterestSettings interestSettings;
 
 	private Logger logger = LogManager.getLogger("ZoneManager");
 	private ArrayList<PlayerInfo> subscribedPlayers = new ArrayList<PlayerInfo>();
+	private ConcurrentHashMap<String, PlayerInfo> subscribedPlayerIndex = new ConcurrentHashMap<String, PlayerInfo>();
 
 	public RoomGroup(String name, GameZone zone) {
 		this.name = name;
@@ -66,6 +70,25 @@ public class RoomGroup {
 		return zone;
 	}
 
+	/**
+	 * Retrieves the default area-of-interest settings of rooms in this group
+	 * 
+	 * @return AreaOfInterestSettings instance or null if not configured
+	 */
+	public AreaOfInterestSettings getInterestSettings() {
+		return interestSettings;
+	}
+
+	/**
+	 * Assigns the default area-of-interest settings of rooms in this group,
+	 * including rooms that are created later on
+	 * 
+	 * @param settings Area-of-interest settings, null to not cull updates
+	 */
+	public void setInterestSettings(AreaOfInterestSettings settings) {
+		interestSettings = settings;
+	}
+
 	/**
 	 * Retrieves all room names
 	 * 
@@ -305,9 +328,7 @@ public class RoomGroup {
 	 * @return True if subscribed, false otherwise
 	 */
 	public boolean isPlayerSubscribed(String playerID) {
-		synchronized (subscribedPlayers) {
-			return subscribedPlayers.stream().anyMatch(t -> t.getSave().getSaveID().equals(playerID));
-		}
+		return subscribedPlayerIndex.containsKey(playerID);
 	}
 
 	/**
@@ -318,13 +339,14 @@ public class RoomGroup {
 	public void subscribePlayer(PlayerInfo player) {
 		synchronized (subscribedPlayers) {
 			// Check subscribed
-			if (subscribedPlayers.stream().anyMatch(t -> t.getSave().getSaveID().equals(player.getSave().getSaveID())))
+			if (subscribedPlayerIndex.containsKey(player.getSave().getSaveID()))
 				return;
 
 			// Subscribe
 			logger.info("Player " + player.getSave().getUsername() + " (" + player.getSave().getSaveID()
 					+ ") subscribed to room group " + getName());
 			subscribedPlayers.add(player);
+			subscribedPlayerIndex.put(player.getSave().getSaveID(), player);
 
 			// Dispatch event
 			EventBus.getInstance().dispatchEvent(new PlayerRoomGroupSubscribeEvent(player, this));
@@ -339,13 +361,14 @@ public class RoomGroup {
 	public void desubscribePlayer(PlayerInfo player) {
 		synchronized (subscribedPlayers) {
 			// Check subscribed
-			if (!subscribedPlayers.stream().anyMatch(t -> t.getSave().getSaveID().equals(player.getSave().getSaveID())))
+			PlayerInfo subscribed = subscribedPlayerIndex.remove(player.getSave().getSaveID());
+			if (subscribed == null)
 				return;
 
 			// De-subscribe
 			logger.info("Player " + player.getSave().getUsername() + " (" + player.getSave().getSaveID()
 					+ ") desubscribed from room group " + getName());
-			subscribedPlayers.remove(player);
+			subscribedPlayers.remove(subscribed);
 
 			// Dispatch event
 			EventBus.getInstance().dispatchEvent(new PlayerRoomGroupDesubscribeEvent(player, this));
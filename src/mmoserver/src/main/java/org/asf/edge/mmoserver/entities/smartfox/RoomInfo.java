@@ -1,12 +1,17 @@
 package org.asf.edge.mmoserver.entities.smartfox;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.asf.edge.common.permissions.PermissionContext;
 import org.asf.edge.mmoserver.entities.player.PlayerInfo;
+import org.asf.edge.mmoserver.entities.positional.AreaOfInterestSettings;
 import org.asf.edge.mmoserver.events.players.PlayerRoomJoinEvent;
 import org.asf.edge.mmoserver.events.players.PlayerRoomJoinSpectatorEvent;
 import org.asf.edge.mmoserver.events.players.PlayerRoomLeaveEvent;
@@ -16,6 +21,11 @@ import org.asf.edge.mmoserver.events.sync.SfsUserDeletedEvent;
 import org.asf.edge.mmoserver.events.variables.RoomVariableAddedEvent;
 import org.asf.edge.mmoserver.events.variables.RoomVariableRemovedEvent;
 import org.asf.edge.mmoserver.io.SequenceWriter;
+import org.asf.edge.mmoserver.networking.SmartfoxServer;
+import org.asf.edge.mmoserver.networking.packets.EncodedPacket;
+import org.asf.edge.mmoserver.networking.packets.ISmartfoxExtensionMessage;
+import org.asf.edge.mmoserver.networking.packets.ISmartfoxPacket;
+import org.asf.edge.mmoserver.networking.packets.PacketChannel;
 import org.asf.edge.mmoserver.services.ZoneManager;
 import org.asf.edge.modules.eventbus.EventBus;
 
@@ -40,14 +50,18 @@ public class RoomInfo {
 	private boolean isPasswordProtected;
 
 	private ArrayList<PlayerInfo> players = new ArrayList<PlayerInfo>();
+	private ConcurrentHashMap<String, PlayerInfo> playerIndex = new ConcurrentHashMap<String, PlayerInfo>();
 	private HashMap<String, SfsUser> playerSfsObjs = new HashMap<String, SfsUser>();
 	private short maxUsers;
 
 	private HashMap<String, RoomVariable> variables = new HashMap<String, RoomVariable>();
 
 	private ArrayList<PlayerInfo> spectators = new ArrayList<PlayerInfo>();
+	private ConcurrentHashMap<String, PlayerInfo> spectatorIndex = new ConcurrentHashMap<String, PlayerInfo>();
 	private short maxSpectators;
 
+	private AreaOfInterestSettings interestSettings;
+
 	private HashMap<String, Object> memory = new HashMap<String, Object>();
 
 	void update(int roomID, RoomGroup group) {
@@ -312,6 +326,81 @@ public class RoomInfo {
 
 	// TODO: editing the room and sending said edits to client
 
+	/**
+	 * Sends a packet to all players and spectators in the room, the packet is
+	 * encoded only once
+	 * 
+	 * @param channel Packet channel type
+	 * @param packet  Packet to send
+	 */
+	public void broadcastPacket(Class<? extends PacketChannel> channel, ISmartfoxPacket packet) {
+		broadcastPacket(channel, packet, t -> true);
+	}
+
+	/**
+	 * Sends a packet to the players and spectators in the room that match a
+	 * filter, the packet is encoded only once
+	 * 
+	 * @param channel Packet channel type
+	 * @param packet  Packet to send
+	 * @param filter  Player filter
+	 */
+	public void broadcastPacket(Class<? extends PacketChannel> channel, ISmartfoxPacket packet,
+			Predicate<PlayerInfo> filter) {
+		broadcast(filter, server -> server.encodePacket(channel, packet));
+	}
+
+	/**
+	 * Sends an extension message to all players and spectators in the room, the
+	 * message is encoded only once
+	 * 
+	 * @param message Message to send
+	 */
+	public void broadcastExtensionMessage(ISmartfoxExtensionMessage message) {
+		broadcastExtensionMessage(message, t -> true);
+	}
+
+	/**
+	 * Sends an extension message to the players and spectators in the room that
+	 * match a filter, the message is encoded only once
+	 * 
+	 * @param message Message to send
+	 * @param filter  Player filter
+	 */
+	public void broadcastExtensionMessage(ISmartfoxExtensionMessage message, Predicate<PlayerInfo> filter) {
+		broadcast(filter, server -> server.encodeExtensionMessage(message));
+	}
+
+	private interface PacketEncoder {
+		public EncodedPacket encode(SmartfoxServer server) throws IOException;
+	}
+
+	private void broadcast(Predicate<PlayerInfo> filter, PacketEncoder encoder) {
+		EncodedPacket encoded = null;
+		for (PlayerInfo[] lst : new PlayerInfo[][] { getPlayers(), getSpectatorPlayers() }) {
+			for (PlayerInfo plr : lst) {
+				if (!filter.test(plr))
+					continue;
+
+				// Encode
+				if (encoded == null) {
+					try {
+						encoded = encoder.encode(plr.getClient().getServer());
+					} catch (IOException e) {
+						logger.error("Failed to encode broadcast packet for room " + roomName, e);
+						return;
+					}
+				}
+
+				// Send
+				try {
+					plr.getClient().sendPacket(encoded);
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
 	/**
 	 * Retrieves all joined players
 	 * 
@@ -340,9 +429,7 @@ public class RoomInfo {
 	 * @return True if joined, false otherwise
 	 */
 	public boolean hasPlayer(String playerID) {
-		synchronized (players) {
-			return players.stream().anyMatch(t -> t.getSave().getSaveID().equals(playerID));
-		}
+		return playerIndex.containsKey(playerID);
 	}
 
 	/**
@@ -373,9 +460,35 @@ public class RoomInfo {
 	 * @return True if joined, false otherwise
 	 */
 	public boolean hasSpectatorPlayer(String playerID) {
-		synchronized (spectators) {
-			return spectators.stream().anyMatch(t -> t.getSave().getSaveID().equals(playerID));
-		}
+		return spectatorIndex.containsKey(playerID);
+	}
+
+	/**
+	 * Retrieves all players and spectators in the room
+	 * 
+	 * @return Array of PlayerInfo instances
+	 */
+	public PlayerInfo[] getMembers() {
+		LinkedHashSet<PlayerInfo> members = new LinkedHashSet<PlayerInfo>();
+		members.addAll(playerIndex.values());
+		members.addAll(spectatorIndex.values());
+		return members.toArray(t -> new PlayerInfo[t]);
+	}
+
+	/**
+	 * Retrieves all players that receive zone-level updates about this room, such
+	 * as user count changes, which are the players connected to the zone of the
+	 * room and the players and spectators in the room itself
+	 * 
+	 * @return Array of PlayerInfo instances
+	 */
+	public PlayerInfo[] getSubscribedPlayers() {
+		LinkedHashSet<PlayerInfo> subscribers = new LinkedHashSet<PlayerInfo>();
+		for (PlayerInfo plr : group.getZone().getPlayers())
+			subscribers.add(plr);
+		subscribers.addAll(playerIndex.values());
+		subscribers.addAll(spectatorIndex.values());
+		return subscribers.toArray(t -> new PlayerInfo[t]);
 	}
 
 	/**
@@ -386,7 +499,7 @@ public class RoomInfo {
 	public void addPlayer(PlayerInfo player) {
 		synchronized (players) {
 			// Check joined
-			if (players.stream().anyMatch(t -> t.getSave().getSaveID().equals(player.getSave().getSaveID())))
+			if (playerIndex.containsKey(player.getSave().getSaveID()))
 				return;
 
 			// Subscribe to group
@@ -397,6 +510,7 @@ public class RoomInfo {
 			logger.info("Player " + player.getSave().getUsername() + " (" + player.getSave().getSaveID()
 					+ ") joined room " + getName());
 			players.add(player);
+			playerIndex.put(player.getSave().getSaveID(), player);
 
 			// Check permissions
 			short priv = 1;
@@ -446,13 +560,14 @@ public class RoomInfo {
 	public void removePlayer(PlayerInfo player) {
 		synchronized (players) {
 			// Check joined
-			if (!players.stream().anyMatch(t -> t.getSave().getSaveID().equals(player.getSave().getSaveID())))
+			PlayerInfo joined = playerIndex.remove(player.getSave().getSaveID());
+			if (joined == null)
 				return;
 
 			// Leave
 			logger.info("Player " + player.getSave().getUsername() + " (" + player.getSave().getSaveID()
 					+ ") left room " + getName());
-			players.remove(player);
+			players.remove(joined);
 
 			// Remove object
 			removeSfsUser(player.getSave().getSaveID());
@@ -470,7 +585,7 @@ public class RoomInfo {
 	public void addSpectatorPlayer(PlayerInfo player) {
 		synchronized (spectators) {
 			// Check joined
-			if (spectators.stream().anyMatch(t -> t.getSave().getSaveID().equals(player.getSave().getSaveID())))
+			if (spectatorIndex.containsKey(player.getSave().getSaveID()))
 				return;
 
 			// Subscribe to group
@@ -481,6 +596,7 @@ public class RoomInfo {
 			logger.info("Spectating player " + player.getSave().getUsername() + " (" + player.getSave().getSaveID()
 					+ ") joined room " + getName());
 			spectators.add(player);
+			spectatorIndex.put(player.getSave().getSaveID(), player);
 
 			// Check permissions
 			short priv = 1;
@@ -530,13 +646,14 @@ public class RoomInfo {
 	public void removeSpectatorPlayer(PlayerInfo player) {
 		synchronized (spectators) {
 			// Check joined
-			if (!spectators.stream().anyMatch(t -> t.getSave().getSaveID().equals(player.getSave().getSaveID())))
+			PlayerInfo joined = spectatorIndex.remove(player.getSave().getSaveID());
+			if (joined == null)
 				return;
 
 			// Leave
 			logger.info("Spectating player " + player.getSave().getUsername() + " (" + player.getSave().getSaveID()
 					+ ") left room " + getName());
-			spectators.remove(player);
+			spectators.remove(joined);
 
 			// Remove object
 			removeSfsUser(player.getSave().getSaveID());
@@ -613,6 +730,28 @@ public class RoomInfo {
 		return isPasswordProtected;
 	}
 
+	/**
+	 * Retrieves the area-of-interest settings used to cull positional updates,
+	 * falls back to the settings of the room group
+	 * 
+	 * @return AreaOfInterestSettings instance or null if not configured
+	 */
+	public AreaOfInterestSettings getInterestSettings() {
+		if (interestSettings == null && group != null)
+			return group.getInterestSettings();
+		return interestSettings;
+	}
+
+	/**
+	 * Assigns the area-of-interest settings of the room
+	 * 
+	 * @param settings Area-of-interest settings, null to use the settings of the
+	 *                 room group
+	 */
+	public void setInterestSettings(AreaOfInterestSettings settings) {
+		interestSettings = settings;
+	}
+
 	/**
 	 * Retrieves the room group
 	 * 
@@ -0,0 +1,135 @@
+package org.asf.edge.mmoserver.networking;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 
+ * Session registry, keeps track of the numeric and session IDs in use by the
+ * clients of a server. IDs are reserved atomically during the handshake and
+ * clients are only listed once their handshake has completed.
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class SessionRegistry {
+
+	private ConcurrentHashMap<Integer, SmartfoxClient> numericIDs = new ConcurrentHashMap<Integer, SmartfoxClient>();
+	private ConcurrentHashMap<String, SmartfoxClient> sessionIDs = new ConcurrentHashMap<String, SmartfoxClient>();
+	private ConcurrentHashMap<Integer, SmartfoxClient> clients = new ConcurrentHashMap<Integer, SmartfoxClient>();
+	private Collection<SmartfoxClient> clientsView = Collections.unmodifiableCollection(clients.values());
+
+	/**
+	 * Reserves a unique numeric ID for a client
+	 * 
+	 * @param client Client to reserve the ID for
+	 * @return Numeric session ID (never 0)
+	 */
+	int reserveNumericID(SmartfoxClient client) {
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		while (true) {
+			int id = rnd.nextInt(1, Integer.MAX_VALUE);
+			if (numericIDs.putIfAbsent(id, client) == null)
+				return id;
+		}
+	}
+
+	/**
+	 * Reserves a unique session ID for a client
+	 * 
+	 * @param client Client to reserve the ID for
+	 * @return Session ID string
+	 */
+	String reserveSessionID(SmartfoxClient client) {
+		while (true) {
+			String id = UUID.randomUUID().toString();
+			if (sessionIDs.putIfAbsent(id, client) == null)
+				return id;
+		}
+	}
+
+	/**
+	 * Lists a client as connected, called once its handshake has completed
+	 * 
+	 * @param client Client to add
+	 */
+	void activate(SmartfoxClient client) {
+		int id = client.getSessionNumericID();
+		clients.put(id, client);
+
+		// Undo if the client was released while handshaking
+		if (numericIDs.get(id) != client)
+			clients.remove(id, client);
+	}
+
+	/**
+	 * Releases the IDs of a client and removes it from the connected clients
+	 * 
+	 * @param client Client to remove
+	 */
+	public void release(SmartfoxClient client) {
+		// Only remove entries of this client, IDs of clients that failed the handshake
+		// may not be reserved
+		String sessionID = client.getSessionID();
+		int numericID = client.getSessionNumericID();
+		clients.remove(numericID, client);
+		numericIDs.remove(numericID, client);
+		if (sessionID != null)
+			sessionIDs.remove(sessionID, client);
+	}
+
+	/**
+	 * Removes all clients and releases all IDs
+	 */
+	public void clear() {
+		clients.clear();
+		numericIDs.clear();
+		sessionIDs.clear();
+	}
+
+	/**
+	 * Retrieves connected clients by numeric ID
+	 * 
+	 * @param id Numeric session ID
+	 * @return SmartfoxClient instance or null
+	 */
+	public SmartfoxClient getClient(int id) {
+		return clients.get(id);
+	}
+
+	/**
+	 * Retrieves connected clients by session ID
+	 * 
+	 * @param sessionID Session ID string
+	 * @return SmartfoxClient instance or null
+	 */
+	public SmartfoxClient getClientBySessionID(String sessionID) {
+		SmartfoxClient client = sessionIDs.get(sessionID);
+		if (client == null || clients.get(client.getSessionNumericID()) != client)
+			return null;
+		return client;
+	}
+
+	/**
+	 * Retrieves a live view of all connected clients, iterating it does not copy
+	 * or lock the registry
+	 * 
+	 * @return Collection of SmartfoxClient instances
+	 */
+	public Collection<SmartfoxClient> getClients() {
+		return clientsView;
+	}
+
+	/**
+	 * Retrieves the amount of connected clients
+	 * 
+	 * @return Client count
+	 */
+	public int getClientCount() {
+		return clients.size();
+	}
+
+}
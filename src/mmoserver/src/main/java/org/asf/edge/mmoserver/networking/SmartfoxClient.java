@@ -4,9 +4,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
-import java.util.Random;
 import java.util.UUID;
-import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -16,11 +14,13 @@ import org.asf.edge.common.services.accounts.AccountManager;
 import org.asf.edge.mmoserver.events.clients.ClientConnectedEvent;
 import org.asf.edge.mmoserver.events.clients.ClientDisconnectedEvent;
 import org.asf.edge.mmoserver.networking.sfs.SmartfoxPayload;
+import org.asf.edge.mmoserver.networking.bitswarm.CompressionStats;
 import org.asf.edge.mmoserver.networking.channels.smartfox.ExtensionChannel;
 import org.asf.edge.mmoserver.networking.channels.smartfox.SystemChannel;
 import org.asf.edge.mmoserver.networking.channels.smartfox.extension.packets.serverbound.ServerboundExtensionMessage;
 import org.asf.edge.mmoserver.networking.channels.smartfox.system.packets.clientbound.ClientboundHandshakeStartPacket;
 import org.asf.edge.mmoserver.networking.channels.smartfox.system.packets.serverbound.ServerboundHandshakeStartPacket;
+import org.asf.edge.mmoserver.networking.packets.EncodedPacket;
 import org.asf.edge.mmoserver.networking.packets.ExtensionMessageChannel;
 import org.asf.edge.mmoserver.networking.packets.PacketChannel;
 import org.asf.edge.mmoserver.networking.sfs.SmartfoxPacketData;
@@ -48,14 +48,14 @@ public abstract class SmartfoxClient {
 		public CoreExtensionHandler handler;
 	}
 
-	private static Random rnd = new Random();
-
 	private HashMap<String, Object> memory = new HashMap<String, Object>();
 	private ArrayList<ChannelDat> registry = new ArrayList<ChannelDat>();
 	private ArrayList<ExtensionChannelDat> extensionRegistry = new ArrayList<ExtensionChannelDat>();
 	private Logger logger = LogManager.getLogger("smartfox-client");
 	private String sessionID;
 	private int userID;
+	private boolean handshakeCompleted;
+	private CompressionStats compressionStats = new CompressionStats();
 
 	/**
 	 * Retrieves the session numeric ID
@@ -149,6 +149,26 @@ public abstract class SmartfoxClient {
 		memory.remove(type.getTypeName());
 	}
 
+	/**
+	 * Retrieves the packet compression statistics of this client
+	 * 
+	 * @return CompressionStats instance
+	 */
+	public CompressionStats getCompressionStats() {
+		return compressionStats;
+	}
+
+	/**
+	 * Sends a packet that has already been encoded, used to send the same packet
+	 * to many clients without encoding it for each of them
+	 * 
+	 * @param packet Encoded packet
+	 * @throws IOException If sending fails
+	 */
+	public void sendPacket(EncodedPacket packet) throws IOException {
+		writeEncodedPacket(packet);
+	}
+
 	/**
 	 * Disconnects the client
 	 */
@@ -209,11 +229,66 @@ public abstract class SmartfoxClient {
 	 */
 	protected abstract void writeSingleRawPacket(byte[] packet) throws IOException;
 
+	/**
+	 * Called to write encoded packets, implementations should override this to
+	 * write the shared frame directly
+	 * 
+	 * @param packet Encoded packet
+	 * @throws IOException If writing fails
+	 */
+	protected void writeEncodedPacket(EncodedPacket packet) throws IOException {
+		writeSingleRawPacket(packet.copyPayload());
+	}
+
 	void startClient() {
+		// Read handshake
+		byte[] handshake;
+		try {
+			handshake = readSingleRawPacket();
+		} catch (IOException e) {
+			disconnect();
+			return;
+		}
+		if (!handleHandshake(handshake))
+			return;
+
+		// Start packet handler
+		AsyncTaskManager.runAsync(() -> {
+			while (true) {
+				// Read packet
+				byte[] packet;
+				try {
+					packet = readSingleRawPacket();
+				} catch (IOException e) {
+					disconnect();
+					return;
+				}
+
+				// Handle
+				if (!handlePacket(packet))
+					return;
+			}
+		});
+	}
+
+	/**
+	 * Handles raw packets pushed by non-blocking server implementations, the first
+	 * packet is handled as the handshake
+	 * 
+	 * @param packet Packet bytes
+	 * @return True if the client is still connected, false otherwise
+	 */
+	boolean receivePacket(byte[] packet) {
+		if (!handshakeCompleted)
+			return handleHandshake(packet);
+		return handlePacket(packet);
+	}
+
+	private boolean handleHandshake(byte[] packet) {
 		SmartfoxPayload pl;
 		try {
-			// Read packet
-			pl = SmartfoxPayload.parseSfsObject(readSingleRawPacket());
+			// Parse packet
+			pl = SmartfoxPayload.parseSfsObject(packet);
 
 			// Check debug mode
 			if (EdgeServerEnvironment.isInDebugMode()) {
@@ -222,7 +297,7 @@ public abstract class SmartfoxClient {
 			}
 		} catch (IOException e) {
 			disconnect();
-			return;
+			return false;
 		}
 
 		// Handshake
@@ -244,28 +319,13 @@ public abstract class SmartfoxClient {
 
 			// Prepare response
 			ClientboundHandshakeStartPacket resp = new ClientboundHandshakeStartPacket();
-			resp.compressionThreshold = 2048;
+			resp.compressionThreshold = getServer().getCompressionThreshold();
 			resp.maxMessageSize = Integer.MAX_VALUE;
 
-			// Generate session token
-			String id = UUID.randomUUID().toString();
-			while (true) {
-				String idF = id;
-				if (Stream.of(getServer().getClients()).anyMatch(t -> t.getSessionID().equals(idF)))
-					id = UUID.randomUUID().toString();
-				else
-					break;
-			}
-			sessionID = id;
-			int uId = rnd.nextInt(0, Integer.MAX_VALUE);
-			while (true) {
-				int idF = uId;
-				if (Stream.of(getServer().getClients()).anyMatch(t -> t.getSessionNumericID() == idF) || uId == 0)
-					uId = rnd.nextInt(0, Integer.MAX_VALUE);
-				else
-					break;
-			}
-			userID = uId;
+			// Reserve session IDs
+			SessionRegistry sessions = getServer().getSessionRegistry();
+			sessionID = sessions.reserveSessionID(this);
+			userID = sessions.reserveNumericID(this);
 
 			// Build header
 			JsonObject headers = new JsonObject();
@@ -297,80 +357,73 @@ public abstract class SmartfoxClient {
 		} catch (IOException e) {
 			getLogger().error("Failed to handshake client " + getRemoteAddress(), e);
 			disconnect();
-			return;
+			return false;
 		}
 
 		// Dispatch connected event
+		handshakeCompleted = true;
+		getServer().getSessionRegistry().activate(this);
 		getServer().getEventBus().dispatchEvent(new ClientConnectedEvent(getServer(), this));
+		return true;
+	}
 
-		// Start packet handler
-		AsyncTaskManager.runAsync(() -> {
-			while (true) {
-				// Read packet
-				byte[] packet;
-				try {
-					packet = readSingleRawPacket();
-				} catch (IOException e) {
-					disconnect();
-					return;
-				}
+	private boolean handlePacket(byte[] packet) {
+		// Decode
+		SmartfoxPacketData pkt;
+		try {
+			// Decode packet
+			SmartfoxPayload pl2 = SmartfoxPayload.parseSfsObject(packet);
 
-				// Decode
-				SmartfoxPacketData pkt;
-				try {
-					// Decode packet
-					SmartfoxPayload pl2 = SmartfoxPayload.parseSfsObject(packet);
+			// Check debug mode
+			if (EdgeServerEnvironment.isInDebugMode()) {
+				// Log
+				logger.debug("C->S: " + new ObjectMapper().writeValueAsString(pl2.toSfsObject()));
+			}
 
-					// Check debug mode
-					if (EdgeServerEnvironment.isInDebugMode()) {
-						// Log
-						logger.debug("C->S: " + new ObjectMapper().writeValueAsString(pl2.toSfsObject()));
-					}
+			// Decode
+			pkt = SmartfoxPacketData.fromSfsObject(pl2);
+		} catch (Exception e) {
+			logger.error("Error occured while decoding packet: " + bytesToHex(packet) + " from client "
+					+ getRemoteAddress() + ", terminating connection!", e);
+			disconnect();
+			return false;
+		}
 
-					// Decode
-					pkt = SmartfoxPacketData.fromSfsObject(pl2);
-				} catch (Exception e) {
-					logger.error("Error occured while decoding packet: " + bytesToHex(packet) + " from client "
-							+ getRemoteAddress() + ", terminating connection!", e);
-					disconnect();
-					return;
+		// Handle
+		try {
+			boolean handled = false;
+
+			// Find channel
+			for (ChannelDat ch : registry) {
+				if (ch.channel.channelID() == pkt.channelID) {
+					// Found channel
+					ch.handler.handle(pkt.channelID, pkt.packetId, pkt);
+					handled = true;
+					break;
 				}
+			}
 
-				// Handle
+			if (!handled) {
+				// Unhandled
 				try {
-					boolean handled = false;
-
-					// Find channel
-					for (ChannelDat ch : registry) {
-						if (ch.channel.channelID() == pkt.channelID) {
-							// Found channel
-							ch.handler.handle(pkt.channelID, pkt.packetId, pkt);
-							handled = true;
-							break;
-						}
-					}
-
-					if (!handled) {
-						// Unhandled
-						try {
-							logger.warn("Unhandled packet: " + pkt.channelID + ":" + pkt.packetId + ": ["
-									+ new ObjectMapper().writeValueAsString(pkt.payload.toSfsObject()) + "], client: "
-									+ getRemoteAddress());
-						} catch (JsonProcessingException e1) {
-						}
-					}
-				} catch (Exception e) {
-					try {
-						logger.error("Error occured while handling packet: " + pkt.channelID + ":" + pkt.packetId
-								+ ": [" + new ObjectMapper().writeValueAsString(pkt.payload.toSfsObject())
-								+ "], client " + getRemoteAddress(), e);
-					} catch (JsonProcessingException e1) {
-					}
-					disconnect();
-					return;
+					logger.warn("Unhandled packet: " + pkt.channelID + ":" + pkt.packetId + ": ["
+							+ new ObjectMapper().writeValueAsString(pkt.payload.toSfsObject()) + "], client: "
+							+ getRemoteAddress());
+				} catch (JsonProcessingException e1) {
 				}
 			}
-		});
+		} catch (Exception e) {
+			try {
+				logger.error("Error occured while handling packet: " + pkt.channelID + ":" + pkt.packetId
+						+ ": [" + new ObjectMapper().writeValueAsString(pkt.payload.toSfsObject())
+						+ "], client " + getRemoteAddress(), e);
+			} catch (JsonProcessingException e1) {
+			}
+			disconnect();
+			return false;
+		}
+
+		return true;
 	}
 
 	void initRegistry(PacketChannel[] channels, ExtensionMessageChannel[] extensionChannels) {
@@ -2,11 +2,15 @@ package org.asf.edge.mmoserver.networking;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.stream.Stream;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.asf.edge.mmoserver.entities.player.PlayerInfo;
+import org.asf.edge.mmoserver.entities.smartfox.RoomInfo;
+import org.asf.edge.mmoserver.entities.smartfox.SfsUser;
 import org.asf.edge.mmoserver.events.players.PlayerRoomGroupDesubscribeEvent;
 import org.asf.edge.mmoserver.events.players.PlayerRoomGroupSubscribeEvent;
 import org.asf.edge.mmoserver.events.players.PlayerRoomJoinEvent;
@@ -21,7 +25,11 @@ import org.asf.edge.mmoserver.events.variables.UserVariableRemovedEvent;
 import org.asf.edge.mmoserver.events.variables.UserVariableValueUpdateEvent;
 import org.asf.edge.mmoserver.events.zones.RoomCreatedEvent;
 import org.asf.edge.mmoserver.events.zones.RoomDeletedEvent;
+import org.asf.edge.mmoserver.networking.bitswarm.BitswarmClient;
+import org.asf.edge.mmoserver.networking.bitswarm.CompressionStats;
+import org.asf.edge.mmoserver.networking.channels.smartfox.ExtensionChannel;
 import org.asf.edge.mmoserver.networking.channels.smartfox.SystemChannel;
+import org.asf.edge.mmoserver.networking.channels.smartfox.extension.packets.clientbound.ClientboundExtensionMessage;
 import org.asf.edge.mmoserver.networking.channels.smartfox.system.packets.clientbound.ClientboundGroupSubscribePacket;
 import org.asf.edge.mmoserver.networking.channels.smartfox.system.packets.clientbound.ClientboundGroupUnsubscribePacket;
 import org.asf.edge.mmoserver.networking.channels.smartfox.system.packets.clientbound.ClientboundJoinRoomPacket;
@@ -32,8 +40,12 @@ import org.asf.edge.mmoserver.networking.channels.smartfox.system.packets.client
 import org.asf.edge.mmoserver.networking.channels.smartfox.system.packets.clientbound.ClientboundSetUserVariablePacket;
 import org.asf.edge.mmoserver.networking.channels.smartfox.system.packets.clientbound.sync.ClientboundPlayerJoinRoomPacket;
 import org.asf.edge.mmoserver.networking.channels.smartfox.system.packets.clientbound.sync.ClientboundPlayerLeaveRoomPacket;
+import org.asf.edge.mmoserver.networking.packets.EncodedPacket;
 import org.asf.edge.mmoserver.networking.packets.ExtensionMessageChannel;
+import org.asf.edge.mmoserver.networking.packets.ISmartfoxExtensionMessage;
+import org.asf.edge.mmoserver.networking.packets.ISmartfoxPacket;
 import org.asf.edge.mmoserver.networking.packets.PacketChannel;
+import org.asf.edge.mmoserver.networking.sfs.SmartfoxPayload;
 import org.asf.edge.modules.eventbus.EventBus;
 import org.asf.edge.modules.eventbus.EventListener;
 import org.asf.edge.modules.eventbus.IEventReceiver;
@@ -53,6 +65,10 @@ public abstract class SmartfoxServer {
 	private ArrayList<PacketChannel> registry = new ArrayList<PacketChannel>();
 	private ArrayList<ExtensionMessageChannel> extensionRegistry = new ArrayList<ExtensionMessageChannel>();
 	private ServerEvents events = new ServerEvents();
+	private int compressionThreshold = BitswarmClient.DEFAULT_COMPRESSION_THRESHOLD;
+	private CompressionStats sharedCompressionStats = new CompressionStats();
+	private ConcurrentHashMap<Class<? extends PacketChannel>, Byte> channelIDs = new ConcurrentHashMap<Class<? extends PacketChannel>, Byte>();
+	private SessionRegistry sessions = new SessionRegistry();
 
 	// Important events that need to be attached for the sfs server to work
 	public class ServerEvents implements IEventReceiver {
@@ -64,22 +80,9 @@ public abstract class SmartfoxServer {
 			pkt.roomID = ev.getRoom().getRoomID();
 			pkt.user = ev.getSfsUser();
 
-			// Send
-			for (SmartfoxClient cl : getClients()) {
-				try {
-					// Check if subscribed and not the source player
-					PlayerInfo plr = cl.getObject(PlayerInfo.class);
-					if (plr != null
-							&& ((plr.getZone() != null
-									&& plr.getZone().getName().equals(ev.getRoom().getGroup().getZone().getName()))
-									|| ev.getRoom().hasPlayer(plr) || ev.getRoom().hasSpectatorPlayer(plr))
-							&& !plr.getSave().getSaveID().equals(ev.getSfsUser().getUserID())) {
-						// Send
-						cl.getChannel(SystemChannel.class).sendPacket(pkt);
-					}
-				} catch (IOException e) {
-				}
-			}
+			// Send to room members other than the source player
+			broadcastToPlayers(SystemChannel.class, pkt, ev.getRoom().getMembers(),
+					plr -> !plr.getSave().getSaveID().equals(ev.getSfsUser().getUserID()));
 
 			// Create update
 			ClientboundRoomUserCountChangedPacket cU = new ClientboundRoomUserCountChangedPacket();
@@ -88,20 +91,8 @@ public abstract class SmartfoxServer {
 			if (ev.getRoom().isGame())
 				cU.spectatorCount = ev.getRoom().getSpectatorCount();
 
-			// Send
-			for (SmartfoxClient cl : getClients()) {
-				try {
-					// Check if subscribed
-					PlayerInfo plr = cl.getObject(PlayerInfo.class);
-					if (plr != null && ((plr.getZone() != null
-							&& plr.getZone().getName().equals(ev.getRoom().getGroup().getZone().getName()))
-							|| ev.getRoom().hasPlayer(plr) || ev.getRoom().hasSpectatorPlayer(plr))) {
-						// Send
-						cl.getChannel(SystemChannel.class).sendPacket(cU);
-					}
-				} catch (IOException e) {
-				}
-			}
+			// Send to the zone
+			broadcastToPlayers(SystemChannel.class, cU, ev.getRoom().getSubscribedPlayers(), plr -> true);
 		}
 
 		@EventListener
@@ -111,22 +102,9 @@ public abstract class SmartfoxServer {
 			pkt.roomID = ev.getRoom().getRoomID();
 			pkt.userID = ev.getSfsUser().getUserNumericID();
 
-			// Send
-			for (SmartfoxClient cl : getClients()) {
-				try {
-					// Check if subscribed and not the source player
-					PlayerInfo plr = cl.getObject(PlayerInfo.class);
-					if (plr != null
-							&& ((plr.getZone() != null
-									&& plr.getZone().getName().equals(ev.getRoom().getGroup().getZone().getName()))
-									|| ev.getRoom().hasPlayer(plr) || ev.getRoom().hasSpectatorPlayer(plr))
-							&& !plr.getSave().getSaveID().equals(ev.getSfsUser().getUserID())) {
-						// Send
-						cl.getChannel(SystemChannel.class).sendPacket(pkt);
-					}
-				} catch (IOException e) {
-				}
-			}
+			// Send to room members other than the source player
+			broadcastToPlayers(SystemChannel.class, pkt, ev.getRoom().getMembers(),
+					plr -> !plr.getSave().getSaveID().equals(ev.getSfsUser().getUserID()));
 
 			// Create update
 			ClientboundRoomUserCountChangedPacket cU = new ClientboundRoomUserCountChangedPacket();
@@ -135,20 +113,8 @@ public abstract class SmartfoxServer {
 			if (ev.getRoom().isGame())
 				cU.spectatorCount = ev.getRoom().getSpectatorCount();
 
-			// Send
-			for (SmartfoxClient cl : getClients()) {
-				try {
-					// Check if subscribed
-					PlayerInfo plr = cl.getObject(PlayerInfo.class);
-					if (plr != null && ((plr.getZone() != null
-							&& plr.getZone().getName().equals(ev.getRoom().getGroup().getZone().getName()))
-							|| ev.getRoom().hasPlayer(plr) || ev.getRoom().hasSpectatorPlayer(plr))) {
-						// Send
-						cl.getChannel(SystemChannel.class).sendPacket(cU);
-					}
-				} catch (IOException e) {
-				}
-			}
+			// Send to the zone
+			broadcastToPlayers(SystemChannel.class, cU, ev.getRoom().getSubscribedPlayers(), plr -> true);
 		}
 
 		@EventListener
@@ -159,18 +125,7 @@ public abstract class SmartfoxServer {
 			update.variables.put(ev.getVariable().getName(), ev.getVariable());
 
 			// Send
-			for (SmartfoxClient cl : getClients()) {
-				try {
-					// Check if subscribed
-					PlayerInfo plr = cl.getObject(PlayerInfo.class);
-					if (plr != null
-							&& Stream.of(plr.getJoinedRooms()).anyMatch(t -> t.hasPlayer(ev.getUser().getUserID()))) {
-						// Send
-						cl.getChannel(SystemChannel.class).sendPacket(update);
-					}
-				} catch (IOException e) {
-				}
-			}
+			broadcastToPlayers(SystemChannel.class, update, getRoomMates(ev.getUser()), plr -> true);
 		}
 
 		@EventListener
@@ -181,18 +136,29 @@ public abstract class SmartfoxServer {
 			update.variables.put(ev.getVariable().getName(), ev.getVariable());
 
 			// Send
-			for (SmartfoxClient cl : getClients()) {
-				try {
-					// Check if subscribed
-					PlayerInfo plr = cl.getObject(PlayerInfo.class);
-					if (plr != null
-							&& Stream.of(plr.getJoinedRooms()).anyMatch(t -> t.hasPlayer(ev.getUser().getUserID()))) {
-						// Send
-						cl.getChannel(SystemChannel.class).sendPacket(update);
-					}
-				} catch (IOException e) {
+			broadcastToPlayers(SystemChannel.class, update, getRoomMates(ev.getUser()), plr -> true);
+		}
+
+		private PlayerInfo[] getRoomMates(SfsUser user) {
+			// Find the rooms the user has joined
+			RoomInfo[] rooms;
+			PlayerInfo player = user.getObject(PlayerInfo.class);
+			if (player != null)
+				rooms = player.getJoinedRooms();
+			else if (user.getRoom() != null)
+				rooms = new RoomInfo[] { user.getRoom() };
+			else
+				return new PlayerInfo[0];
+
+			// Collect the players of those rooms
+			LinkedHashSet<PlayerInfo> players = new LinkedHashSet<PlayerInfo>();
+			for (RoomInfo room : rooms) {
+				if (room.hasPlayer(user.getUserID())) {
+					for (PlayerInfo plr : room.getPlayers())
+						players.add(plr);
 				}
 			}
+			return players.toArray(t -> new PlayerInfo[t]);
 		}
 
 		@EventListener
@@ -255,12 +221,7 @@ public abstract class SmartfoxServer {
 			update.room = ev.getRoom();
 
 			// Send
-			for (SmartfoxClient cl : getClients()) {
-				try {
-					cl.getChannel(SystemChannel.class).sendPacket(update);
-				} catch (IOException e) {
-				}
-			}
+			broadcastPacket(SystemChannel.class, update, cl -> true);
 		}
 
 		@EventListener
@@ -270,12 +231,7 @@ public abstract class SmartfoxServer {
 			update.roomID = ev.getRoom().getRoomID();
 
 			// Send
-			for (SmartfoxClient cl : getClients()) {
-				try {
-					cl.getChannel(SystemChannel.class).sendPacket(update);
-				} catch (IOException e) {
-				}
-			}
+			broadcastPacket(SystemChannel.class, update, cl -> true);
 		}
 
 		@EventListener
@@ -290,12 +246,7 @@ public abstract class SmartfoxServer {
 			update.variables.put(ev.getVariable().getName(), ev.getVariable());
 
 			// Send
-			for (SmartfoxClient cl : getClients()) {
-				try {
-					cl.getChannel(SystemChannel.class).sendPacket(update);
-				} catch (IOException e) {
-				}
-			}
+			broadcastPacket(SystemChannel.class, update, cl -> true);
 		}
 
 		@EventListener
@@ -310,12 +261,7 @@ public abstract class SmartfoxServer {
 			update.variables.put(ev.getVariable().getName(), ev.getVariable());
 
 			// Send
-			for (SmartfoxClient cl : getClients()) {
-				try {
-					cl.getChannel(SystemChannel.class).sendPacket(update);
-				} catch (IOException e) {
-				}
-			}
+			broadcastPacket(SystemChannel.class, update, cl -> true);
 		}
 
 		@EventListener
@@ -343,6 +289,156 @@ public abstract class SmartfoxServer {
 		extensionRegistry.add(channel);
 	}
 
+	/**
+	 * Encodes packets once so they can be sent to any amount of clients
+	 * 
+	 * @param channel Packet channel type
+	 * @param packet  Packet to encode
+	 * @return EncodedPacket instance
+	 * @throws IOException If encoding fails
+	 */
+	public EncodedPacket encodePacket(Class<? extends PacketChannel> channel, ISmartfoxPacket packet)
+			throws IOException {
+		return EncodedPacket.encode(getChannelID(channel), packet, compressionThreshold, sharedCompressionStats);
+	}
+
+	/**
+	 * Encodes extension messages once so they can be sent to any amount of clients
+	 * 
+	 * @param message Message to encode
+	 * @return EncodedPacket instance
+	 * @throws IOException If encoding fails
+	 */
+	public EncodedPacket encodeExtensionMessage(ISmartfoxExtensionMessage message) throws IOException {
+		ClientboundExtensionMessage msg = new ClientboundExtensionMessage();
+		msg.command = message.messageID();
+		msg.payload = new SmartfoxPayload();
+		message.build(msg.payload);
+		return encodePacket(ExtensionChannel.class, msg);
+	}
+
+	/**
+	 * Sends an encoded packet to multiple clients
+	 * 
+	 * @param packet     Encoded packet
+	 * @param recipients Clients to send the packet to
+	 */
+	public void broadcastPacket(EncodedPacket packet, SmartfoxClient[] recipients) {
+		for (SmartfoxClient cl : recipients) {
+			try {
+				cl.sendPacket(packet);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Sends a packet to all connected clients that match a filter, the packet is
+	 * only encoded once (and only if at least one client matches)
+	 * 
+	 * @param channel Packet channel type
+	 * @param packet  Packet to send
+	 * @param filter  Client filter
+	 */
+	public void broadcastPacket(Class<? extends PacketChannel> channel, ISmartfoxPacket packet,
+			Predicate<SmartfoxClient> filter) {
+		EncodedPacket encoded = null;
+		for (SmartfoxClient cl : sessions.getClients()) {
+			if (!filter.test(cl))
+				continue;
+
+			// Encode
+			if (encoded == null) {
+				try {
+					encoded = encodePacket(channel, packet);
+				} catch (IOException e) {
+					logger.error("Failed to encode broadcast packet " + packet.getClass().getSimpleName(), e);
+					return;
+				}
+			}
+
+			// Send
+			try {
+				cl.sendPacket(encoded);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private void broadcastToPlayers(Class<? extends PacketChannel> channel, ISmartfoxPacket packet,
+			PlayerInfo[] players, Predicate<PlayerInfo> filter) {
+		EncodedPacket encoded = null;
+		for (PlayerInfo plr : players) {
+			// Skip players of other servers
+			if (plr.getClient().getServer() != this || !filter.test(plr))
+				continue;
+
+			// Encode
+			if (encoded == null) {
+				try {
+					encoded = encodePacket(channel, packet);
+				} catch (IOException e) {
+					logger.error("Failed to encode broadcast packet " + packet.getClass().getSimpleName(), e);
+					return;
+				}
+			}
+
+			// Send
+			try {
+				plr.getClient().sendPacket(encoded);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private byte getChannelID(Class<? extends PacketChannel> channel) {
+		return channelIDs.computeIfAbsent(channel, t -> {
+			// Default channels
+			if (t == SystemChannel.class)
+				return new SystemChannel().channelID();
+			else if (t == ExtensionChannel.class)
+				return new ExtensionChannel().channelID();
+
+			// Find registered channel
+			for (PacketChannel ch : registry) {
+				if (t.isAssignableFrom(ch.getClass()))
+					return ch.channelID();
+			}
+			throw new IllegalArgumentException("Channel not registered: " + t.getTypeName());
+		});
+	}
+
+	/**
+	 * Retrieves the compression threshold sent to clients during the handshake,
+	 * packets of this size or larger are compressed
+	 * 
+	 * @return Compression threshold in bytes
+	 */
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	/**
+	 * Retrieves the compression statistics of packets encoded once to be sent to
+	 * several clients, the time spent compressing shared packets is recorded here
+	 * while the statistics of each client record the packets that were sent to it
+	 * 
+	 * @return CompressionStats instance
+	 */
+	public CompressionStats getSharedCompressionStats() {
+		return sharedCompressionStats;
+	}
+
+	/**
+	 * Assigns the compression threshold, should be called before the server is
+	 * started
+	 * 
+	 * @param compressionThreshold Compression threshold in bytes
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
 	/**
 	 * Retrieves the server-specific event bus
 	 * 
@@ -419,19 +515,42 @@ public abstract class SmartfoxServer {
 		EventBus.getInstance().removeAllEventsFromReceiver(events);
 	}
 
+	/**
+	 * Retrieves the session registry of this server
+	 * 
+	 * @return SessionRegistry instance
+	 */
+	public SessionRegistry getSessionRegistry() {
+		return sessions;
+	}
+
 	/**
 	 * Retrieves all connected clients
 	 * 
 	 * @return Array of SmartfoxClient instances
 	 */
-	public abstract SmartfoxClient[] getClients();
+	public SmartfoxClient[] getClients() {
+		return sessions.getClients().toArray(t -> new SmartfoxClient[t]);
+	}
 
 	/**
 	 * Retrieves clients by numeric ID
 	 * 
 	 * @return SmartfoxClient instance or null
 	 */
-	public abstract SmartfoxClient getClientByNumericID(int id);
+	public SmartfoxClient getClientByNumericID(int id) {
+		return sessions.getClient(id);
+	}
+
+	/**
+	 * Retrieves clients by session ID
+	 * 
+	 * @param sessionID Session ID string
+	 * @return SmartfoxClient instance or null
+	 */
+	public SmartfoxClient getClientBySessionID(String sessionID) {
+		return sessions.getClientBySessionID(sessionID);
+	}
 
 	/**
 	 * Call after accepting a client, this handles all handshaking code (blocking
@@ -446,4 +565,28 @@ public abstract class SmartfoxServer {
 		client.startClient();
 	}
 
+	/**
+	 * Call after accepting a client in non-blocking server implementations, this
+	 * prepares the client without reading from it, received packets must then be
+	 * passed to {@link #onClientPacketReceived(SmartfoxClient, byte[])} in order
+	 * 
+	 * @param client Client that was accepted
+	 */
+	protected void onClientAcceptedNonBlocking(SmartfoxClient client) {
+		client.initRegistry(registry.toArray(t -> new PacketChannel[t]),
+				extensionRegistry.toArray(t -> new ExtensionMessageChannel[t]));
+	}
+
+	/**
+	 * Call when a non-blocking server implementation received a packet, the first
+	 * packet of each client is handled as handshake
+	 * 
+	 * @param client Client that sent the packet
+	 * @param packet Packet bytes
+	 * @return True if the client is still connected, false otherwise
+	 */
+	protected boolean onClientPacketReceived(SmartfoxClient client, byte[] packet) {
+		return client.receivePacket(packet);
+	}
+
 }
@@ -1,13 +1,11 @@
 package org.asf.edge.mmoserver.networking.bitswarm;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
+
+import org.asf.edge.mmoserver.networking.packets.EncodedPacket;
 
 /**
  * 
@@ -18,14 +16,40 @@ import java.util.zip.InflaterInputStream;
  */
 public class BitswarmClient {
 
+	/**
+	 * Default compression threshold, payloads of this size or larger are
+	 * compressed
+	 */
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 2048;
+
 	private InputStream input;
 	private OutputStream output;
+	private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+	private CompressionStats compressionStats;
 
 	public BitswarmClient(InputStream input, OutputStream output) {
 		this.input = input;
 		this.output = output;
 	}
 
+	/**
+	 * Assigns the compression threshold
+	 * 
+	 * @param compressionThreshold Minimal payload size to compress
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	/**
+	 * Assigns the statistics object used to record compression statistics
+	 * 
+	 * @param stats CompressionStats instance
+	 */
+	public void setCompressionStats(CompressionStats stats) {
+		this.compressionStats = stats;
+	}
+
 	/**
 	 * Reads a single packet
 	 * 
@@ -38,8 +62,6 @@ public class BitswarmClient {
 			int b = input.read();
 			if (b == -1)
 				throw new IOException("Disconnected");
-			boolean encrypted = ((b & 64) > 0);
-			boolean compressed = ((b & 32) > 0);
 			boolean largeSize = ((b & 8) > 0);
 
 			// Read length
@@ -48,22 +70,8 @@ public class BitswarmClient {
 			// Read body
 			byte[] payload = input.readNBytes(length);
 
-			// Decrypt
-			if (encrypted) {
-				encrypted = encrypted;
-				throw new IOException("Encryption not supported"); // FIXME
-			}
-
-			// Decompress
-			if (compressed) {
-				ByteArrayInputStream bIn = new ByteArrayInputStream(payload);
-				InflaterInputStream inInf = new InflaterInputStream(bIn);
-				payload = inInf.readAllBytes();
-				inInf.close();
-			}
-
-			// Return
-			return payload;
+			// Decode
+			return decodePayload(b, payload, compressionStats);
 		}
 	}
 
@@ -75,65 +83,141 @@ public class BitswarmClient {
 	 * @throws IOException if writing fails
 	 */
 	public void writePacket(byte[] payload, boolean encrypted) throws IOException {
+		// Encode
+		byte[][] packet = encodePacket(payload, encrypted, compressionThreshold, compressionStats);
+
+		// Write header and payload
 		synchronized (output) {
-			// Write bitswarm packet
-			boolean compressed = payload.length >= 2000000; // If more than 2mb, compress
-
-			// Compress if needed
-			if (compressed) {
-				ByteArrayOutputStream bOut = new ByteArrayOutputStream();
-				DeflaterOutputStream dOut = new DeflaterOutputStream(bOut);
-				dOut.write(payload);
-				dOut.close();
-				payload = bOut.toByteArray();
-			}
+			output.write(packet[0]);
+			output.write(packet[1]);
+			output.flush();
+		}
+	}
+
+	/**
+	 * Writes packets that have already been encoded and framed
+	 * 
+	 * @param packet Packet to write
+	 * @throws IOException if writing fails
+	 */
+	public void writePacket(EncodedPacket packet) throws IOException {
+		synchronized (output) {
+			packet.writeTo(output);
+			output.flush();
+		}
+	}
 
-			// Encrypt if needed
-			if (encrypted) {
-				encrypted = encrypted;
-				throw new IOException("Encryption not supported"); // FIXME
+	/**
+	 * Encodes packets into a bitswarm header (header byte and length) and packet
+	 * body, compressing the body if needed
+	 * 
+	 * @param payload   Packet to encode
+	 * @param encrypted True if encrypted, false otherwise
+	 * @return Array containing the header bytes and body bytes
+	 * @throws IOException if encoding fails
+	 */
+	public static byte[][] encodePacket(byte[] payload, boolean encrypted) throws IOException {
+		return encodePacket(payload, encrypted, DEFAULT_COMPRESSION_THRESHOLD, null);
+	}
+
+	/**
+	 * Encodes packets into a bitswarm header (header byte and length) and packet
+	 * body, compressing the body if needed
+	 * 
+	 * @param payload              Packet to encode
+	 * @param encrypted            True if encrypted, false otherwise
+	 * @param compressionThreshold Minimal payload size to compress
+	 * @param stats                Compression statistics to update, null to not
+	 *                             record statistics
+	 * @return Array containing the header bytes and body bytes
+	 * @throws IOException if encoding fails
+	 */
+	public static byte[][] encodePacket(byte[] payload, boolean encrypted, int compressionThreshold,
+			CompressionStats stats) throws IOException {
+		// Compress if needed
+		boolean compressed = false;
+		if (payload.length >= compressionThreshold) {
+			byte[] compressedPayload = BitswarmCompression.compress(payload, stats);
+			if (compressedPayload != null) {
+				payload = compressedPayload;
+				compressed = true;
 			}
+		}
 
-			// Compute length
-			boolean largeSize = payload.length > Short.MAX_VALUE;
-
-			// Build header
-			int header = 0;
-			if (encrypted)
-				header = header | 64;
-			if (compressed)
-				header = header | 32;
-			if (largeSize)
-				header = header | 8;
-
-			// Write header
-			output.write(header);
-
-			// Write length
-			if (largeSize)
-				writeInt(output, payload.length);
-			else
-				writeShort(output, (short) payload.length);
-
-			// Write payload
-			output.write(payload);
+		// Encrypt if needed
+		if (encrypted) {
+			encrypted = encrypted;
+			throw new IOException("Encryption not supported"); // FIXME
 		}
+
+		// Compute length
+		boolean largeSize = payload.length > Short.MAX_VALUE;
+
+		// Build header
+		int header = 0;
+		if (encrypted)
+			header = header | 64;
+		if (compressed)
+			header = header | 32;
+		if (largeSize)
+			header = header | 8;
+
+		// Write header and length
+		ByteBuffer headerData = ByteBuffer.allocate(largeSize ? 5 : 3);
+		headerData.put((byte) header);
+		if (largeSize)
+			headerData.putInt(payload.length);
+		else
+			headerData.putShort((short) payload.length);
+		return new byte[][] { headerData.array(), payload };
 	}
 
-	private int readInt(InputStream strm) throws IOException {
-		return ByteBuffer.wrap(strm.readNBytes(4)).getInt();
+	/**
+	 * Decodes packet bodies
+	 * 
+	 * @param header  Header byte of the packet
+	 * @param payload Packet body
+	 * @return Packet bytes
+	 * @throws IOException if decoding fails
+	 */
+	public static byte[] decodePayload(int header, byte[] payload) throws IOException {
+		return decodePayload(header, payload, null);
 	}
 
-	private int readShort(InputStream strm) throws IOException {
-		return ByteBuffer.wrap(strm.readNBytes(2)).getShort();
+	/**
+	 * Decodes packet bodies
+	 * 
+	 * @param header  Header byte of the packet
+	 * @param payload Packet body
+	 * @param stats   Compression statistics to update, null to not record
+	 *                statistics
+	 * @return Packet bytes
+	 * @throws IOException if decoding fails
+	 */
+	public static byte[] decodePayload(int header, byte[] payload, CompressionStats stats) throws IOException {
+		boolean encrypted = ((header & 64) > 0);
+		boolean compressed = ((header & 32) > 0);
+
+		// Decrypt
+		if (encrypted) {
+			encrypted = encrypted;
+			throw new IOException("Encryption not supported"); // FIXME
+		}
+
+		// Decompress
+		if (compressed)
+			payload = BitswarmCompression.decompress(payload, stats);
+
+		// Return
+		return payload;
 	}
 
-	private void writeInt(OutputStream strm, int val) throws IOException {
-		strm.write(ByteBuffer.allocate(4).putInt(val).array());
+	private int readInt(InputStream strm) throws IOException {
+		return ByteBuffer.wrap(strm.readNBytes(4)).getInt();
 	}
 
-	private void writeShort(OutputStream strm, short val) throws IOException {
-		strm.write(ByteBuffer.allocate(2).putShort(val).array());
+	private int readShort(InputStream strm) throws IOException {
+		return ByteBuffer.wrap(strm.readNBytes(2)).getShort();
 	}
 
 }
@@ -0,0 +1,186 @@
+package org.asf.edge.mmoserver.networking.bitswarm;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 
+ * Bitswarm packet compression, deflaters and inflaters are pooled and the
+ * compression level is picked from the payload size and available processor
+ * headroom
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class BitswarmCompression {
+
+	private static final int MAX_POOL_SIZE = 64;
+	private static final int MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
+	private static final long LOAD_REFRESH_INTERVAL = 1000;
+
+	private static ConcurrentLinkedQueue<Deflater> deflaters = new ConcurrentLinkedQueue<Deflater>();
+	private static ConcurrentLinkedQueue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+
+	private static OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+	private static volatile double headroom = 1;
+	private static volatile long lastLoadCheck;
+
+	/**
+	 * Selects the compression level for a payload
+	 * 
+	 * @param size Payload size
+	 * @return Deflate compression level
+	 */
+	public static int selectLevel(int size) {
+		// Larger payloads use faster levels
+		int level;
+		if (size < 16 * 1024)
+			level = 6;
+		else if (size < 256 * 1024)
+			level = 4;
+		else
+			level = Deflater.BEST_SPEED;
+
+		// Back off when the processors are busy
+		double headroom = getProcessorHeadroom();
+		if (headroom < 0.25)
+			level = Deflater.BEST_SPEED;
+		else if (headroom < 0.5)
+			level = Math.min(level, 3);
+		return level;
+	}
+
+	/**
+	 * Retrieves the estimated processor headroom based on the system load average
+	 * 
+	 * @return Headroom value between 0 (fully loaded) and 1 (idle)
+	 */
+	public static double getProcessorHeadroom() {
+		long time = System.currentTimeMillis();
+		if (time - lastLoadCheck >= LOAD_REFRESH_INTERVAL) {
+			lastLoadCheck = time;
+
+			// Not all platforms provide a load average, assume idle if unavailable
+			double load = os.getSystemLoadAverage();
+			if (load < 0)
+				headroom = 1;
+			else
+				headroom = Math.max(0, Math.min(1, 1 - (load / os.getAvailableProcessors())));
+		}
+		return headroom;
+	}
+
+	/**
+	 * Compresses packet payloads
+	 * 
+	 * @param payload Payload to compress
+	 * @param stats   Statistics to update, null to not record statistics
+	 * @return Compressed payload or null if compressing would not make the
+	 *         payload smaller
+	 */
+	public static byte[] compress(byte[] payload, CompressionStats stats) {
+		long start = System.nanoTime();
+
+		// Get deflater
+		int level = selectLevel(payload.length);
+		Deflater deflater = deflaters.poll();
+		if (deflater == null)
+			deflater = new Deflater(level);
+		else
+			deflater.setLevel(level);
+
+		// Compress, output is limited to the original size as larger results are
+		// not sent compressed
+		byte[] buffer = new byte[payload.length];
+		int length = 0;
+		boolean smaller = true;
+		try {
+			deflater.setInput(payload);
+			deflater.finish();
+			while (!deflater.finished()) {
+				if (length == buffer.length) {
+					smaller = false;
+					break;
+				}
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+		} finally {
+			// Return deflater
+			deflater.reset();
+			if (deflaters.size() < MAX_POOL_SIZE)
+				deflaters.add(deflater);
+			else
+				deflater.end();
+		}
+
+		// Record
+		long time = System.nanoTime() - start;
+		if (!smaller || length >= payload.length) {
+			if (stats != null)
+				stats.recordSkipped(time);
+			return null;
+		}
+		if (stats != null)
+			stats.recordCompressed(payload.length, length, time);
+		return Arrays.copyOf(buffer, length);
+	}
+
+	/**
+	 * Decompresses packet payloads
+	 * 
+	 * @param payload Compressed payload
+	 * @param stats   Statistics to update, null to not record statistics
+	 * @return Decompressed payload
+	 * @throws IOException If the payload is invalid
+	 */
+	public static byte[] decompress(byte[] payload, CompressionStats stats) throws IOException {
+		long start = System.nanoTime();
+
+		// Get inflater
+		Inflater inflater = inflaters.poll();
+		if (inflater == null)
+			inflater = new Inflater();
+
+		// Decompress
+		byte[] buffer = new byte[Math.max(1024, Math.min(payload.length * 4, MAX_DECOMPRESSED_SIZE))];
+		int length = 0;
+		try {
+			inflater.setInput(payload);
+			while (!inflater.finished()) {
+				// Grow buffer if needed
+				if (length == buffer.length) {
+					if (buffer.length >= MAX_DECOMPRESSED_SIZE)
+						throw new IOException("Decompressed packet exceeds the size limit");
+					buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, MAX_DECOMPRESSED_SIZE));
+				}
+
+				// Inflate
+				int read = inflater.inflate(buffer, length, buffer.length - length);
+				if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					throw new IOException("Truncated compressed packet");
+				length += read;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Invalid compressed packet", e);
+		} finally {
+			// Return inflater
+			inflater.reset();
+			if (inflaters.size() < MAX_POOL_SIZE)
+				inflaters.add(inflater);
+			else
+				inflater.end();
+		}
+
+		// Record
+		if (stats != null)
+			stats.recordDecompressed(System.nanoTime() - start);
+		return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+	}
+
+}
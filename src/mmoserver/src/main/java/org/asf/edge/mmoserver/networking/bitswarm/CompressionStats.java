@@ -0,0 +1,123 @@
+package org.asf.edge.mmoserver.networking.bitswarm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 
+ * Packet compression statistics of a connection or of packets shared between
+ * connections
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class CompressionStats {
+
+	private AtomicLong packetsCompressed = new AtomicLong();
+	private AtomicLong packetsSkipped = new AtomicLong();
+	private AtomicLong bytesIn = new AtomicLong();
+	private AtomicLong bytesOut = new AtomicLong();
+	private AtomicLong compressTime = new AtomicLong();
+
+	private AtomicLong packetsDecompressed = new AtomicLong();
+	private AtomicLong decompressTime = new AtomicLong();
+
+	void recordCompressed(int originalSize, int compressedSize, long time) {
+		packetsCompressed.incrementAndGet();
+		bytesIn.addAndGet(originalSize);
+		bytesOut.addAndGet(compressedSize);
+		compressTime.addAndGet(time);
+	}
+
+	void recordSkipped(long time) {
+		packetsSkipped.incrementAndGet();
+		compressTime.addAndGet(time);
+	}
+
+	/**
+	 * Records a packet that was compressed once and sent to several connections,
+	 * the compression time is not recorded as it was only spent once for all
+	 * recipients
+	 * 
+	 * @param compressed     True if the packet was sent compressed, false if
+	 *                       compressing it was skipped
+	 * @param originalSize   Uncompressed payload size
+	 * @param compressedSize Payload size as sent
+	 */
+	public void recordShared(boolean compressed, int originalSize, int compressedSize) {
+		if (!compressed) {
+			packetsSkipped.incrementAndGet();
+			return;
+		}
+		packetsCompressed.incrementAndGet();
+		bytesIn.addAndGet(originalSize);
+		bytesOut.addAndGet(compressedSize);
+	}
+
+	void recordDecompressed(long time) {
+		packetsDecompressed.incrementAndGet();
+		decompressTime.addAndGet(time);
+	}
+
+	/**
+	 * Retrieves the amount of packets that were sent compressed
+	 * 
+	 * @return Packet count
+	 */
+	public long getPacketsCompressed() {
+		return packetsCompressed.get();
+	}
+
+	/**
+	 * Retrieves the amount of packets that were sent uncompressed because
+	 * compressing did not make them smaller
+	 * 
+	 * @return Packet count
+	 */
+	public long getPacketsSkipped() {
+		return packetsSkipped.get();
+	}
+
+	/**
+	 * Retrieves the amount of bytes saved by compression
+	 * 
+	 * @return Saved byte count
+	 */
+	public long getBytesSaved() {
+		return bytesIn.get() - bytesOut.get();
+	}
+
+	/**
+	 * Retrieves the time spent compressing outgoing packets
+	 * 
+	 * @return Time in nanoseconds
+	 */
+	public long getCompressionTime() {
+		return compressTime.get();
+	}
+
+	/**
+	 * Retrieves the amount of compressed packets received
+	 * 
+	 * @return Packet count
+	 */
+	public long getPacketsDecompressed() {
+		return packetsDecompressed.get();
+	}
+
+	/**
+	 * Retrieves the time spent decompressing incoming packets
+	 * 
+	 * @return Time in nanoseconds
+	 */
+	public long getDecompressionTime() {
+		return decompressTime.get();
+	}
+
+	@Override
+	public String toString() {
+		return packetsCompressed.get() + " packets compressed (" + packetsSkipped.get() + " skipped), "
+				+ getBytesSaved() + " bytes saved, " + (compressTime.get() / 1000000d) + "ms compressing, "
+				+ packetsDecompressed.get() + " packets decompressed in " + (decompressTime.get() / 1000000d) + "ms";
+	}
+
+}
@@ -8,6 +8,8 @@ import org.asf.edge.common.services.accounts.AccountDataContainer;
 import org.asf.edge.common.services.textfilter.FilterSeverity;
 import org.asf.edge.common.services.textfilter.TextFilterService;
 import org.asf.edge.common.services.textfilter.result.FilterResult;
+import org.asf.edge.mmoserver.EdgeMMOServer;
+import org.asf.edge.mmoserver.entities.chat.ChatBroadcaster;
 import org.asf.edge.mmoserver.entities.player.PlayerInfo;
 import org.asf.edge.mmoserver.entities.smartfox.RoomInfo;
 import org.asf.edge.mmoserver.events.chat.PlayerChatMessageSentEvent;
@@ -171,6 +173,29 @@ public class ChatMessageHandler implements IExtensionMessageHandler<ServerboundS
 			// Log to chat log
 			// TODO: write to chat log for moderation
 
+			// Queue for delivery to the rooms
+			EdgeMMOServer server = client.getObject(EdgeMMOServer.class);
+			ChatBroadcaster.ChatMessage chat = new ChatBroadcaster.ChatMessage(player.getSave().getSaveID(),
+					player.getSave().getUsername(), message.message, message.isClanChat ? message.clanID : null);
+			RoomInfo[] rooms = player.getJoinedRooms();
+			boolean queued = rooms.length == 0;
+			for (RoomInfo room : rooms) {
+				if (server.getChatBroadcaster().queueMessage(room, chat))
+					queued = true;
+				else
+					LogManager.getLogger("Chat").warn("Chat queue of room " + room.getName()
+							+ " is full, dropped message of " + player.getSave().getUsername());
+			}
+			if (!queued) {
+				// Send failure, the rooms are too busy
+				ClientboundChatMutePacket msg = new ClientboundChatMutePacket();
+				msg.filterResult = "";
+				msg.muteMessage = "Chat is too busy right now, your message was not sent. Please try again in a moment.";
+				msg.muteTimeMinutes = 0;
+				channel.sendMessage(msg);
+				return true;
+			}
+
 			// Send success
 			ClientboundSendChatMessageSuccessPacket success = new ClientboundSendChatMessageSuccessPacket();
 			success.message = message.message;
@@ -178,38 +203,9 @@ public class ChatMessageHandler implements IExtensionMessageHandler<ServerboundS
 			success.clanID = message.clanID;
 			channel.sendMessage(success);
 
-			// Find rooms
-			for (RoomInfo room : player.getJoinedRooms()) {
-				// Send chat message
-				for (PlayerInfo plr : room.getPlayers()) {
-					// Skip self
-					if (plr.getSave().getSaveID().equals(player.getSave().getSaveID()))
-						continue;
-
-					// Check clan
-					if (message.isClanChat) {
-						// Check clan
-						// TODO: clans
-						message = message;
-
-						// Skip as the user is not in the clan
-						continue;
-					}
-
-					// Filter based on settings
-					String filtered = filter.filterString(message.message,
-							plr.getAccount().isStrictChatFilterEnabled());
-
-					// Send message
-					ClientboundPostChatMessagePacket pkt = new ClientboundPostChatMessagePacket();
-					pkt.message = filtered;
-					pkt.isClanChat = message.isClanChat;
-					pkt.clanID = message.clanID;
-					pkt.userID = player.getSave().getSaveID();
-					pkt.displayName = player.getSave().getUsername();
-					plr.getClient().getExtensionChannel(ChatChannel.class).sendMessage(pkt);
-				}
-			}
+			// Relay to other servers
+			if (!message.isClanChat && server.getConfiguration().shareChatAcrossServers)
+				server.getUplink().relayChatMessage(player, message.message);
 		}
 
 		// Return
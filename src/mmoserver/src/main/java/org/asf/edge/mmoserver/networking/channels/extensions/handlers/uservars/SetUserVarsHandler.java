@@ -7,7 +7,6 @@ import org.asf.edge.mmoserver.entities.smartfox.RoomInfo;
 import org.asf.edge.mmoserver.entities.smartfox.SfsUser;
 import org.asf.edge.mmoserver.entities.smartfox.UserVariable;
 import org.asf.edge.mmoserver.networking.SmartfoxClient;
-import org.asf.edge.mmoserver.networking.channels.extensions.UserVarsChannel;
 import org.asf.edge.mmoserver.networking.channels.extensions.messages.uservars.ClientboundRefreshUserVarsMessage;
 import org.asf.edge.mmoserver.networking.channels.extensions.messages.uservars.ClientboundSetUserVarsMessage;
 import org.asf.edge.mmoserver.networking.channels.extensions.messages.uservars.ClientboundSetUserVarsMessage.UserVarUpdate;
@@ -51,24 +50,13 @@ public class SetUserVarsHandler implements IExtensionMessageHandler<ServerboundS
 						u.vars.put(key, val);
 					});
 					update.varUpdates.add(u);
-					for (PlayerInfo plr : room.getPlayers()) {
-						if (!plr.getSave().getSaveID().equals(player.getSave().getSaveID()))
-							plr.getClient().getExtensionChannel(UserVarsChannel.class).sendMessage(update);
-					}
-					for (PlayerInfo plr : room.getSpectatorPlayers()) {
-						if (!plr.getSave().getSaveID().equals(player.getSave().getSaveID()))
-							plr.getClient().getExtensionChannel(UserVarsChannel.class).sendMessage(update);
-					}
+					room.broadcastExtensionMessage(update,
+							plr -> !plr.getSave().getSaveID().equals(player.getSave().getSaveID()));
 
 					// Broadcast refresh
 					ClientboundRefreshUserVarsMessage ref = new ClientboundRefreshUserVarsMessage();
 					ref.userID = player.getClient().getSessionNumericID();
-					for (PlayerInfo plr : room.getPlayers()) {
-						plr.getClient().getExtensionChannel(UserVarsChannel.class).sendMessage(ref);
-					}
-					for (PlayerInfo plr : room.getSpectatorPlayers()) {
-						plr.getClient().getExtensionChannel(UserVarsChannel.class).sendMessage(ref);
-					}
+					room.broadcastExtensionMessage(ref);
 				}
 			}
 			for (RoomInfo room : player.getSpectatingRooms()) {
@@ -94,24 +82,13 @@ public class SetUserVarsHandler implements IExtensionMessageHandler<ServerboundS
 						u.vars.put(key, val);
 					});
 					update.varUpdates.add(u);
-					for (PlayerInfo plr : room.getPlayers()) {
-						if (!plr.getSave().getSaveID().equals(player.getSave().getSaveID()))
-							plr.getClient().getExtensionChannel(UserVarsChannel.class).sendMessage(update);
-					}
-					for (PlayerInfo plr : room.getSpectatorPlayers()) {
-						if (!plr.getSave().getSaveID().equals(player.getSave().getSaveID()))
-							plr.getClient().getExtensionChannel(UserVarsChannel.class).sendMessage(update);
-					}
+					room.broadcastExtensionMessage(update,
+							plr -> !plr.getSave().getSaveID().equals(player.getSave().getSaveID()));
 
 					// Broadcast refresh
 					ClientboundRefreshUserVarsMessage ref = new ClientboundRefreshUserVarsMessage();
 					ref.userID = player.getClient().getSessionNumericID();
-					for (PlayerInfo plr : room.getPlayers()) {
-						plr.getClient().getExtensionChannel(UserVarsChannel.class).sendMessage(ref);
-					}
-					for (PlayerInfo plr : room.getSpectatorPlayers()) {
-						plr.getClient().getExtensionChannel(UserVarsChannel.class).sendMessage(ref);
-					}
+					room.broadcastExtensionMessage(ref);
 				}
 			}
 
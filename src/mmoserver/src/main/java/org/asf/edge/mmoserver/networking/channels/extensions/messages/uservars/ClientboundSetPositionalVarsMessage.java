@@ -1,16 +1,25 @@
 package org.asf.edge.mmoserver.networking.channels.extensions.messages.uservars;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.asf.edge.mmoserver.networking.packets.ISmartfoxExtensionMessage;
+import org.asf.edge.mmoserver.networking.sfs.SfsObjectCodec;
+import org.asf.edge.mmoserver.networking.sfs.SfsObjectCodec.EncodedObject;
 import org.asf.edge.mmoserver.networking.sfs.SmartfoxPayload;
 
 public class ClientboundSetPositionalVarsMessage implements ISmartfoxExtensionMessage {
 
 	public ArrayList<UserVarUpdate> varUpdates = new ArrayList<UserVarUpdate>();
 
+	/**
+	 * Updates encoded ahead of time (see {@link #encodeUpdate(UserVarUpdate)}),
+	 * sent after the updates in varUpdates
+	 */
+	public ArrayList<EncodedObject> encodedUpdates = new ArrayList<EncodedObject>();
+
 	public static class UserVarUpdate {
 		public int userID;
 		public int roomID;
@@ -45,17 +54,32 @@ public class ClientboundSetPositionalVarsMessage implements ISmartfoxExtensionMe
 		}
 	}
 
+	/**
+	 * Encodes updates once so they can be sent in any amount of messages
+	 * 
+	 * @param update Update to encode
+	 * @return EncodedObject instance
+	 * @throws IOException If encoding fails
+	 */
+	public static EncodedObject encodeUpdate(UserVarUpdate update) throws IOException {
+		return SfsObjectCodec.preEncode(createObject(update).toSfsObject());
+	}
+
+	private static SmartfoxPayload createObject(UserVarUpdate update) {
+		SmartfoxPayload u = new SmartfoxPayload();
+		u.setInt("MID", update.userID);
+		u.setString("RID", Integer.toString(update.roomID));
+		for (String key : update.vars.keySet())
+			u.toSfsObject().put(key, update.vars.get(key));
+		return u;
+	}
+
 	@Override
 	public void build(SmartfoxPayload payload) {
-		ArrayList<SmartfoxPayload> objects = new ArrayList<SmartfoxPayload>();
-		for (UserVarUpdate update : varUpdates) {
-			SmartfoxPayload u = new SmartfoxPayload();
-			u.setInt("MID", update.userID);
-			u.setString("RID", Integer.toString(update.roomID));
-			for (String key : update.vars.keySet())
-				u.toSfsObject().put(key, update.vars.get(key));
-			objects.add(u);
-		}
+		ArrayList<Object> objects = new ArrayList<Object>();
+		for (UserVarUpdate update : varUpdates)
+			objects.add(createObject(update));
+		objects.addAll(encodedUpdates);
 		payload.setObjectArray("arr", objects.toArray(t -> new Object[t]));
 	}
 
@@ -64,18 +64,16 @@ public class MessageHandler implements IPacketHandler<ServerboundMessagePacket>
 			pkt.parameters = packet.parameters;
 
 			// Broadcast to users
-			for (SmartfoxClient cl : channel.getClient().getServer().getClients()) {
+			channel.getClient().getServer().broadcastPacket(SystemChannel.class, pkt, cl -> {
 				// Check player
 				PlayerInfo plr2 = cl.getObject(PlayerInfo.class);
-				if (plr2 != null) {
-					// Check room
-					if (Stream.of(plr2.getJoinedRooms()).anyMatch(t -> t.getRoomID() == packet.roomID)
-							|| Stream.of(plr2.getSpectatingRooms()).anyMatch(t -> t.getRoomID() == packet.roomID)) {
-						// Send
-						cl.getChannel(SystemChannel.class).sendPacket(pkt);
-					}
-				}
-			}
+				if (plr2 == null)
+					return false;
+
+				// Check room
+				return Stream.of(plr2.getJoinedRooms()).anyMatch(t -> t.getRoomID() == packet.roomID)
+						|| Stream.of(plr2.getSpectatingRooms()).anyMatch(t -> t.getRoomID() == packet.roomID);
+			});
 
 			break;
 		}
@@ -160,7 +158,7 @@ public class MessageHandler implements IPacketHandler<ServerboundMessagePacket>
 				}
 				if (targetRoom != null) {
 					// For all clients
-					for (SmartfoxClient cl : channel.getClient().getServer().getClients()) {
+					for (SmartfoxClient cl : channel.getClient().getServer().getSessionRegistry().getClients()) {
 						// Check player
 						PlayerInfo targetPlayer = cl.getObject(PlayerInfo.class);
 						if (targetPlayer != null) {
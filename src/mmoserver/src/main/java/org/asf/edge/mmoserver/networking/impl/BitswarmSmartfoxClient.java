@@ -8,6 +8,7 @@ import org.asf.edge.mmoserver.networking.SmartfoxClient;
 import org.asf.edge.mmoserver.networking.SmartfoxServer;
 import org.asf.edge.mmoserver.networking.bitswarm.BitswarmClient;
 import org.asf.edge.mmoserver.networking.impl.BitswarmSmartfoxServer.BitswarmClientContainer;
+import org.asf.edge.mmoserver.networking.packets.EncodedPacket;
 
 public class BitswarmSmartfoxClient extends SmartfoxClient {
 
@@ -22,6 +23,8 @@ public class BitswarmSmartfoxClient extends SmartfoxClient {
 		this.socket = socket;
 		this.server = server;
 		this.addr = socket.getRemoteSocketAddress();
+		client.setCompressionThreshold(server.getCompressionThreshold());
+		client.setCompressionStats(getCompressionStats());
 	}
 
 	@Override
@@ -58,4 +61,10 @@ public class BitswarmSmartfoxClient extends SmartfoxClient {
 		client.writePacket(packet, false);
 	}
 
+	@Override
+	protected void writeEncodedPacket(EncodedPacket packet) throws IOException {
+		client.writePacket(packet);
+		packet.recordSent(getCompressionStats());
+	}
+
 }
@@ -1,10 +1,11 @@
 package org.asf.edge.mmoserver.networking.impl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashMap;
 
 import org.asf.connective.tasks.AsyncTaskManager;
 import org.asf.edge.mmoserver.networking.SmartfoxClient;
@@ -27,8 +28,6 @@ public class BitswarmSmartfoxServer extends SmartfoxServer {
 //	private DatagramSocket sockUdp;
 	private boolean connected = false;
 
-	private HashMap<Integer, BitswarmClientContainer> clients = new HashMap<Integer, BitswarmClientContainer>();
-
 	public BitswarmSmartfoxServer(String address, int port) {
 		this.address = address;
 		this.port = port;
@@ -114,7 +113,8 @@ public class BitswarmSmartfoxServer extends SmartfoxServer {
 				AsyncTaskManager.runAsync(() -> {
 					try {
 						// Create client objects
-						BitswarmClient bsCl = new BitswarmClient(sock.getInputStream(), sock.getOutputStream());
+						BitswarmClient bsCl = new BitswarmClient(new BufferedInputStream(sock.getInputStream()),
+								new BufferedOutputStream(sock.getOutputStream()));
 						BitswarmSmartfoxClient sfsCl = new BitswarmSmartfoxClient(bsCl, sock, this);
 
 						// Add
@@ -127,16 +127,8 @@ public class BitswarmSmartfoxServer extends SmartfoxServer {
 						sfsCl.container = client;
 
 						// Accepted
-						// Perform handshake
+						// Perform handshake, the client is added to the session registry once completed
 						onClientAccepted(sfsCl);
-
-						// Check success
-						if (sfsCl.isConnected()) {
-							// Add
-							synchronized (clients) {
-								clients.put(client.sfsClient.getSessionNumericID(), client);
-							}
-						}
 					} catch (IOException e) {
 						// Failed
 						try {
@@ -167,11 +159,8 @@ public class BitswarmSmartfoxServer extends SmartfoxServer {
 
 		// Disconnect clients
 		getLogger().debug("Disconnecting clients...");
-		BitswarmClientContainer[] clientLst;
-		synchronized (clients) {
-			clientLst = clients.values().toArray(t -> new BitswarmClientContainer[t]);
-		}
-		for (BitswarmClientContainer client : clientLst) {
+		for (SmartfoxClient cl : getClients()) {
+			BitswarmClientContainer client = ((BitswarmSmartfoxClient) cl).container;
 			try {
 				client.sfsClient.callDisconnectEventsInternal();
 			} catch (Exception e) {
@@ -182,7 +171,7 @@ public class BitswarmSmartfoxServer extends SmartfoxServer {
 			}
 			client.socket = null;
 		}
-		clients.clear();
+		getSessionRegistry().clear();
 
 		// Unset server
 		sockTcp = null;
@@ -206,17 +195,13 @@ public class BitswarmSmartfoxServer extends SmartfoxServer {
 
 		// Disconnect clients
 		getLogger().debug("Disconnecting clients...");
-		BitswarmClientContainer[] clientLst;
-		synchronized (clients) {
-			clientLst = clients.values().toArray(t -> new BitswarmClientContainer[t]);
-		}
-		for (BitswarmClientContainer client : clientLst) {
+		for (SmartfoxClient client : getClients()) {
 			try {
-				client.sfsClient.disconnect();
+				client.disconnect();
 			} catch (Exception e) {
 			}
 		}
-		clients.clear();
+		getSessionRegistry().clear();
 
 		// Unset server
 		sockTcp = null;
@@ -225,19 +210,11 @@ public class BitswarmSmartfoxServer extends SmartfoxServer {
 		getLogger().debug("SFS server closed!");
 	}
 
-	@Override
-	public SmartfoxClient[] getClients() {
-		synchronized (clients) {
-			return clients.values().stream().map(t -> t.sfsClient).toArray(t -> new SmartfoxClient[t]);
-		}
-	}
-
 	void onClientDisconnect(BitswarmSmartfoxClient client) {
 		// Disconnect
-		synchronized (clients) {
-			clients.remove(client.container.sfsClient.getSessionNumericID());
-		}
-		getLogger().debug("Client disconnected: " + client.getRemoteAddress());
+		getSessionRegistry().release(client);
+		getLogger().debug("Client disconnected: " + client.getRemoteAddress() + " (compression: "
+				+ client.getCompressionStats() + ")");
 		try {
 			client.socket.close();
 		} catch (Exception e2) {
@@ -245,14 +222,4 @@ public class BitswarmSmartfoxServer extends SmartfoxServer {
 		client.socket = null;
 	}
 
-	@Override
-	public SmartfoxClient getClientByNumericID(int id) {
-		synchronized (clients) {
-			BitswarmClientContainer c = clients.get(id);
-			if (c == null)
-				return null;
-			return c.sfsClient;
-		}
-	}
-
 }
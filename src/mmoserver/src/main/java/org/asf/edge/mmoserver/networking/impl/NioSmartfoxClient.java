@@ -0,0 +1,304 @@
+package org.asf.edge.mmoserver.networking.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.asf.edge.mmoserver.networking.SmartfoxClient;
+import org.asf.edge.mmoserver.networking.SmartfoxServer;
+import org.asf.edge.mmoserver.networking.bitswarm.BitswarmClient;
+import org.asf.edge.mmoserver.networking.impl.NioSmartfoxServer.IoLoop;
+import org.asf.edge.mmoserver.networking.packets.EncodedPacket;
+
+/**
+ * 
+ * Smartfox client of the NIO server, packets are decoded on the network thread
+ * and handled in order on the packet worker pool, outbound packets are written
+ * directly if possible and queued otherwise
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class NioSmartfoxClient extends SmartfoxClient {
+
+	private static final int MAX_PACKET_SIZE = 64 * 1024 * 1024;
+	private static final int MAX_PENDING_PACKETS = 256;
+	private static final long MAX_OUTBOUND_BYTES = 16 * 1024 * 1024;
+	private static final int MAX_GATHERED_BUFFERS = 64;
+
+	private SocketChannel channel;
+	private String addr;
+	private IoLoop loop;
+	private NioSmartfoxServer server;
+	private AtomicBoolean closed = new AtomicBoolean();
+	volatile SelectionKey key;
+	volatile boolean handshakeCompleted;
+
+	// Inbound frame state, only used by the network thread
+	private int frameHeader = -1;
+	private ByteBuffer frameLength = ByteBuffer.allocate(4);
+	private byte[] framePayload;
+	private int frameOffset;
+
+	// Inbound packets waiting to be handled
+	private ArrayDeque<byte[]> inbound = new ArrayDeque<byte[]>();
+	private boolean processing;
+	private boolean readPaused;
+	private boolean remoteClosed;
+
+	// Outbound data waiting to be written
+	private ArrayDeque<ByteBuffer> outbound = new ArrayDeque<ByteBuffer>();
+	private long outboundBytes;
+	private boolean writeScheduled;
+
+	NioSmartfoxClient(SocketChannel channel, IoLoop loop, NioSmartfoxServer server) throws IOException {
+		this.channel = channel;
+		this.loop = loop;
+		this.server = server;
+		this.addr = channel.getRemoteAddress().toString();
+	}
+
+	@Override
+	public boolean isConnected() {
+		return !closed.get();
+	}
+
+	@Override
+	public void disconnect() {
+		// Make sure events are only called once
+		if (!closed.compareAndSet(false, true))
+			return;
+		disconnectClient();
+		callDisconnectEvents();
+	}
+
+	@Override
+	protected void disconnectClient() {
+		server.onClientDisconnect(this);
+	}
+
+	@Override
+	public String getRemoteAddress() {
+		return addr;
+	}
+
+	@Override
+	public SmartfoxServer getServer() {
+		return server;
+	}
+
+	void callDisconnectEventsInternal() {
+		closed.set(true);
+		this.callDisconnectEvents();
+	}
+
+	void closeChannel() {
+		closed.set(true);
+		try {
+			channel.close();
+		} catch (IOException e) {
+		}
+	}
+
+	@Override
+	protected byte[] readSingleRawPacket() throws IOException {
+		throw new IOException("Packets of NIO clients are pushed by the network thread");
+	}
+
+	@Override
+	protected void writeSingleRawPacket(byte[] packet) throws IOException {
+		if (!isConnected())
+			throw new IOException("Disconnected");
+
+		// Encode
+		byte[][] data = BitswarmClient.encodePacket(packet, false, server.getCompressionThreshold(),
+				getCompressionStats());
+		writeFrame(ByteBuffer.wrap(data[0]), ByteBuffer.wrap(data[1]));
+	}
+
+	@Override
+	protected void writeEncodedPacket(EncodedPacket packet) throws IOException {
+		if (!isConnected())
+			throw new IOException("Disconnected");
+
+		// Write shared frame
+		ByteBuffer[] frame = packet.createFrameBuffers();
+		writeFrame(frame[0], frame[1]);
+		packet.recordSent(getCompressionStats());
+	}
+
+	private void writeFrame(ByteBuffer header, ByteBuffer payload) throws IOException {
+		synchronized (outbound) {
+			// Write directly if nothing is queued
+			if (outbound.isEmpty()) {
+				channel.write(new ByteBuffer[] { header, payload });
+				if (!payload.hasRemaining())
+					return;
+			}
+
+			// Queue remaining data
+			if (header.hasRemaining()) {
+				outbound.add(header);
+				outboundBytes += header.remaining();
+			}
+			outbound.add(payload);
+			outboundBytes += payload.remaining();
+			if (outboundBytes > MAX_OUTBOUND_BYTES) {
+				// Client is not reading
+				closeFromNetwork();
+				throw new IOException("Outbound queue limit exceeded");
+			}
+
+			// Schedule write
+			if (!writeScheduled) {
+				writeScheduled = true;
+				loop.execute(() -> {
+					if (key != null && key.isValid())
+						key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+				});
+			}
+		}
+	}
+
+	void flushOutbound() throws IOException {
+		synchronized (outbound) {
+			while (!outbound.isEmpty()) {
+				// Gather queued buffers
+				ByteBuffer[] buffers = new ByteBuffer[Math.min(outbound.size(), MAX_GATHERED_BUFFERS)];
+				int i = 0;
+				for (ByteBuffer buf : outbound) {
+					if (i == buffers.length)
+						break;
+					buffers[i++] = buf;
+				}
+
+				// Write
+				outboundBytes -= channel.write(buffers);
+				while (!outbound.isEmpty() && !outbound.peek().hasRemaining())
+					outbound.poll();
+				if (!outbound.isEmpty() && buffers[buffers.length - 1].hasRemaining())
+					return; // Socket buffer is full
+			}
+
+			// All written
+			writeScheduled = false;
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+		}
+	}
+
+	void readPackets(ByteBuffer buf) throws IOException {
+		// Read
+		buf.clear();
+		if (channel.read(buf) == -1)
+			throw new IOException("Disconnected");
+		buf.flip();
+
+		// Decode frames
+		while (buf.hasRemaining()) {
+			// Read header
+			if (frameHeader == -1) {
+				frameHeader = buf.get() & 0xFF;
+				frameLength.clear();
+				frameLength.limit((frameHeader & 8) > 0 ? 4 : 2);
+				continue;
+			}
+
+			// Read length
+			if (framePayload == null) {
+				while (frameLength.hasRemaining() && buf.hasRemaining())
+					frameLength.put(buf.get());
+				if (frameLength.hasRemaining())
+					break;
+				frameLength.flip();
+				int length = frameLength.limit() == 4 ? frameLength.getInt() : (frameLength.getShort() & 0xFFFF);
+				if (length < 0 || length > MAX_PACKET_SIZE)
+					throw new IOException("Invalid packet length " + length);
+				framePayload = new byte[length];
+				frameOffset = 0;
+			}
+
+			// Read body
+			int count = Math.min(buf.remaining(), framePayload.length - frameOffset);
+			buf.get(framePayload, frameOffset, count);
+			frameOffset += count;
+			if (frameOffset == framePayload.length) {
+				byte[] packet = BitswarmClient.decodePayload(frameHeader, framePayload, getCompressionStats());
+				frameHeader = -1;
+				framePayload = null;
+				queuePacket(packet);
+			}
+		}
+	}
+
+	private void queuePacket(byte[] packet) {
+		synchronized (inbound) {
+			inbound.add(packet);
+
+			// Stop reading if the handlers cannot keep up
+			if (inbound.size() >= MAX_PENDING_PACKETS && !readPaused) {
+				readPaused = true;
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+			}
+			if (processing)
+				return;
+			processing = true;
+		}
+		server.runPacketTask(this::processPackets);
+	}
+
+	void closeFromNetwork() {
+		// Disconnect on the packet worker so disconnect events do not block the
+		// network thread and run after all received packets
+		synchronized (inbound) {
+			remoteClosed = true;
+			if (processing)
+				return;
+			processing = true;
+		}
+		server.runPacketTask(this::processPackets);
+	}
+
+	private void processPackets() {
+		while (true) {
+			byte[] packet;
+			synchronized (inbound) {
+				packet = inbound.poll();
+				if (packet == null) {
+					processing = false;
+					if (!remoteClosed) {
+						// Resume reading
+						if (readPaused) {
+							readPaused = false;
+							loop.execute(() -> {
+								if (key.isValid())
+									key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+							});
+						}
+						return;
+					}
+				}
+			}
+
+			// Handle disconnect
+			if (packet == null) {
+				disconnect();
+				return;
+			}
+
+			// Handle packet
+			if (!isConnected())
+				continue;
+			if (!server.handlePacket(this, packet)) {
+				synchronized (inbound) {
+					inbound.clear();
+					processing = false;
+				}
+				return;
+			}
+		}
+	}
+
+}
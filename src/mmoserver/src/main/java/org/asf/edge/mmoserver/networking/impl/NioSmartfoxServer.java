@@ -0,0 +1,309 @@
+package org.asf.edge.mmoserver.networking.impl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.asf.edge.mmoserver.networking.SmartfoxClient;
+import org.asf.edge.mmoserver.networking.SmartfoxServer;
+
+/**
+ * 
+ * Non-blocking NIO-based Smartfox Server, connections are served by a small
+ * amount of selector threads and packets are handled on a shared worker pool
+ * (in order for each client)
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class NioSmartfoxServer extends SmartfoxServer {
+
+	static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private String address;
+	private int port;
+	private int networkThreads;
+	private int workerThreads;
+
+	private ServerSocketChannel sockTcp;
+	private IoLoop[] loops;
+	private ExecutorService workers;
+	private AtomicInteger nextLoop = new AtomicInteger();
+	private volatile boolean connected = false;
+
+	/**
+	 * Creates the server
+	 * 
+	 * @param address        Listen address
+	 * @param port           Listen port
+	 * @param networkThreads Amount of selector threads, 0 to use the processor
+	 *                       count
+	 * @param workerThreads  Amount of packet handling threads, 0 to use the
+	 *                       default
+	 */
+	public NioSmartfoxServer(String address, int port, int networkThreads, int workerThreads) {
+		this.address = address;
+		this.port = port;
+		this.networkThreads = networkThreads > 0 ? networkThreads : Runtime.getRuntime().availableProcessors();
+		this.workerThreads = workerThreads > 0 ? workerThreads
+				: Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	public NioSmartfoxServer(String address, int port) {
+		this(address, port, 0, 0);
+	}
+
+	/**
+	 * 
+	 * Selector loop serving a subset of the connections, the read buffer is shared
+	 * by all connections of the loop
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	class IoLoop implements Runnable {
+		private Selector selector;
+		private ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+		private ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+		public IoLoop() throws IOException {
+			selector = Selector.open();
+		}
+
+		/**
+		 * Runs tasks on the selector thread
+		 * 
+		 * @param task Task to run
+		 */
+		public void execute(Runnable task) {
+			tasks.add(task);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			while (connected) {
+				try {
+					selector.select();
+				} catch (IOException e) {
+					getLogger().error("Network selector failure", e);
+					break;
+				}
+
+				// Run tasks
+				while (true) {
+					Runnable task = tasks.poll();
+					if (task == null)
+						break;
+					try {
+						task.run();
+					} catch (CancelledKeyException e) {
+					}
+				}
+
+				// Handle ready connections
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					NioSmartfoxClient client = (NioSmartfoxClient) key.attachment();
+					try {
+						if (key.isValid() && key.isReadable())
+							client.readPackets(readBuffer);
+						if (key.isValid() && key.isWritable())
+							client.flushOutbound();
+					} catch (IOException | CancelledKeyException e) {
+						key.cancel();
+						client.closeFromNetwork();
+					}
+				}
+			}
+
+			// Close
+			try {
+				selector.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return connected;
+	}
+
+	@Override
+	protected void startSrv() throws IOException {
+		if (sockTcp != null)
+			throw new IOException("Server is already started");
+
+		// Create socket
+		getLogger().debug("Starting NIO server on " + address + ", port " + port + " with " + networkThreads
+				+ " network threads and " + workerThreads + " packet workers...");
+		sockTcp = ServerSocketChannel.open();
+		sockTcp.bind(new InetSocketAddress(InetAddress.getByName(address), port), 1024);
+		connected = true;
+
+		// Start packet workers
+		AtomicInteger workerID = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(workerThreads, r -> {
+			Thread th = new Thread(r, "Smartfox packet worker " + workerID.incrementAndGet());
+			th.setDaemon(true);
+			return th;
+		});
+
+		// Start network threads
+		loops = new IoLoop[networkThreads];
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new IoLoop();
+			Thread th = new Thread(loops[i], "Smartfox network thread " + (i + 1));
+			th.setDaemon(true);
+			th.start();
+		}
+
+		// Accept connections
+		Thread acceptor = new Thread(() -> {
+			while (isRunning()) {
+				// Accept client
+				SocketChannel sock;
+				try {
+					sock = sockTcp.accept();
+				} catch (IOException e) {
+					continue;
+				}
+
+				// Set up client
+				try {
+					sock.configureBlocking(false);
+					sock.setOption(StandardSocketOptions.TCP_NODELAY, true);
+					IoLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+					NioSmartfoxClient sfsCl = new NioSmartfoxClient(sock, loop, this);
+					getLogger().debug("Client connected: " + sfsCl.getRemoteAddress());
+
+					// Prepare client, then start reading
+					onClientAcceptedNonBlocking(sfsCl);
+					loop.execute(() -> {
+						try {
+							sfsCl.key = sock.register(loop.selector, SelectionKey.OP_READ, sfsCl);
+						} catch (IOException e) {
+							sfsCl.closeFromNetwork();
+						}
+					});
+				} catch (IOException e) {
+					// Failed
+					try {
+						sock.close();
+					} catch (IOException e2) {
+					}
+				}
+			}
+		}, "Smartfox connection acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		getLogger().debug("Server online, waiting for clients...");
+	}
+
+	@Override
+	protected void stopSrvForced() throws IOException {
+		// Check state
+		if (!connected)
+			return;
+
+		// Disconnect
+		getLogger().debug("Stopping server...");
+		connected = false;
+		try {
+			sockTcp.close();
+		} catch (IOException e) {
+		}
+
+		// Disconnect clients
+		getLogger().debug("Disconnecting clients...");
+		for (SmartfoxClient cl : getClients()) {
+			NioSmartfoxClient client = (NioSmartfoxClient) cl;
+			try {
+				client.callDisconnectEventsInternal();
+			} catch (Exception e) {
+			}
+			client.closeChannel();
+		}
+		getSessionRegistry().clear();
+		shutdownThreads();
+
+		// Unset server
+		sockTcp = null;
+		getLogger().debug("SFS server closed!");
+	}
+
+	@Override
+	protected void stopSrv() throws IOException {
+		// Check state
+		if (!connected)
+			return;
+
+		// Close server
+		getLogger().debug("Stopping server...");
+		connected = false;
+		try {
+			sockTcp.close();
+		} catch (IOException e) {
+		}
+
+		// Disconnect clients
+		getLogger().debug("Disconnecting clients...");
+		for (SmartfoxClient client : getClients()) {
+			try {
+				client.disconnect();
+			} catch (Exception e) {
+			}
+		}
+		getSessionRegistry().clear();
+		shutdownThreads();
+
+		// Unset server
+		sockTcp = null;
+		getLogger().debug("SFS server closed!");
+	}
+
+	private void shutdownThreads() {
+		for (IoLoop loop : loops)
+			loop.selector.wakeup();
+		workers.shutdown();
+	}
+
+	void runPacketTask(Runnable task) {
+		workers.execute(task);
+	}
+
+	boolean handlePacket(NioSmartfoxClient client, byte[] packet) {
+		boolean handshake = !client.handshakeCompleted;
+		if (!onClientPacketReceived(client, packet))
+			return false;
+		if (handshake && client.isConnected()) {
+			// Handshake completed, the client was added to the session registry
+			client.handshakeCompleted = true;
+		}
+		return true;
+	}
+
+	void onClientDisconnect(NioSmartfoxClient client) {
+		// Disconnect
+		getSessionRegistry().release(client);
+		getLogger().debug("Client disconnected: " + client.getRemoteAddress() + " (compression: "
+				+ client.getCompressionStats() + ")");
+		client.closeChannel();
+	}
+
+}
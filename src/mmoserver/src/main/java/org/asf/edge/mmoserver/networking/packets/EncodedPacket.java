@@ -0,0 +1,149 @@
+package org.asf.edge.mmoserver.networking.packets;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.logging.log4j.LogManager;
+import org.asf.edge.common.EdgeServerEnvironment;
+import org.asf.edge.mmoserver.networking.bitswarm.BitswarmClient;
+import org.asf.edge.mmoserver.networking.bitswarm.CompressionStats;
+import org.asf.edge.mmoserver.networking.sfs.SmartfoxPacketData;
+import org.asf.edge.mmoserver.networking.sfs.SmartfoxPayload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 
+ * Immutable packet that has been serialized, compressed and framed once so it
+ * can be sent to any amount of clients without encoding it again
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class EncodedPacket {
+
+	private byte[] payload;
+	private byte[] header;
+	private byte[] body;
+
+	private boolean compressionAttempted;
+	private boolean compressed;
+
+	private EncodedPacket(byte[] payload, int compressionThreshold, CompressionStats stats) throws IOException {
+		this.payload = payload;
+		byte[][] frame = BitswarmClient.encodePacket(payload, false, compressionThreshold, stats);
+		this.header = frame[0];
+		this.body = frame[1];
+		compressionAttempted = payload.length >= compressionThreshold;
+		compressed = (header[0] & 32) != 0;
+	}
+
+	/**
+	 * Encodes packets
+	 * 
+	 * @param channelID            Packet channel ID
+	 * @param packet               Packet to encode
+	 * @param compressionThreshold Minimal payload size to compress
+	 * @param stats                Statistics to record the compression in, null
+	 *                             to not record statistics
+	 * @return EncodedPacket instance
+	 * @throws IOException If encoding fails
+	 */
+	public static EncodedPacket encode(byte channelID, ISmartfoxPacket packet, int compressionThreshold,
+			CompressionStats stats) throws IOException {
+		// Build packet
+		SmartfoxPacketData data = new SmartfoxPacketData();
+		data.channelID = channelID;
+		data.packetId = packet.packetID();
+		data.payload = SmartfoxPayload.create();
+		packet.build(data);
+
+		// Check debug mode
+		SmartfoxPayload obj = data.toSfsObject();
+		if (EdgeServerEnvironment.isInDebugMode()) {
+			// Log
+			LogManager.getLogger("smartfox-client")
+					.debug("S->C (broadcast): " + new ObjectMapper().writeValueAsString(obj.toSfsObject()));
+		}
+
+		// Encode
+		return new EncodedPacket(obj.encodeToSfsObject(), compressionThreshold, stats);
+	}
+
+	/**
+	 * Creates encoded packets from SFS object bytes
+	 * 
+	 * @param payload              SFS object bytes, must not be modified
+	 *                             afterwards
+	 * @param compressionThreshold Minimal payload size to compress
+	 * @param stats                Statistics to record the compression in, null
+	 *                             to not record statistics
+	 * @return EncodedPacket instance
+	 * @throws IOException If encoding fails
+	 */
+	public static EncodedPacket fromPayload(byte[] payload, int compressionThreshold, CompressionStats stats)
+			throws IOException {
+		return new EncodedPacket(payload, compressionThreshold, stats);
+	}
+
+	/**
+	 * Retrieves the size of the uncompressed SFS object
+	 * 
+	 * @return Payload size in bytes
+	 */
+	public int getPayloadSize() {
+		return payload.length;
+	}
+
+	/**
+	 * Retrieves the size of the framed packet as it is sent over the network
+	 * 
+	 * @return Frame size in bytes
+	 */
+	public int getFrameSize() {
+		return header.length + body.length;
+	}
+
+	/**
+	 * Records the compression result of this packet in the statistics of a
+	 * connection it was sent to
+	 * 
+	 * @param stats Connection compression statistics
+	 */
+	public void recordSent(CompressionStats stats) {
+		if (compressionAttempted)
+			stats.recordShared(compressed, payload.length, body.length);
+	}
+
+	/**
+	 * Creates a copy of the uncompressed SFS object bytes
+	 * 
+	 * @return Payload bytes
+	 */
+	public byte[] copyPayload() {
+		return payload.clone();
+	}
+
+	/**
+	 * Creates read-only buffers of the framed packet (header and body)
+	 * 
+	 * @return Array of ByteBuffer instances
+	 */
+	public ByteBuffer[] createFrameBuffers() {
+		return new ByteBuffer[] { ByteBuffer.wrap(header).asReadOnlyBuffer(),
+				ByteBuffer.wrap(body).asReadOnlyBuffer() };
+	}
+
+	/**
+	 * Writes the framed packet to a stream
+	 * 
+	 * @param output Output stream to write to
+	 * @throws IOException If writing fails
+	 */
+	public void writeTo(OutputStream output) throws IOException {
+		output.write(header);
+		output.write(body);
+	}
+
+}
@@ -0,0 +1,865 @@
+package org.asf.edge.mmoserver.networking.sfs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * 
+ * Smartfox object codec that reads and writes objects directly against byte
+ * buffers, arrays are decoded into primitive arrays and object keys are
+ * interned so repeated keys do not allocate new strings
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class SfsObjectCodec {
+
+	static final byte TYPE_NULL = 0;
+	static final byte TYPE_BOOL = 1;
+	static final byte TYPE_BYTE = 2;
+	static final byte TYPE_SHORT = 3;
+	static final byte TYPE_INT = 4;
+	static final byte TYPE_LONG = 5;
+	static final byte TYPE_FLOAT = 6;
+	static final byte TYPE_DOUBLE = 7;
+	static final byte TYPE_STRING = 8;
+	static final byte TYPE_BOOL_ARRAY = 9;
+	static final byte TYPE_BYTE_ARRAY = 10;
+	static final byte TYPE_SHORT_ARRAY = 11;
+	static final byte TYPE_INT_ARRAY = 12;
+	static final byte TYPE_LONG_ARRAY = 13;
+	static final byte TYPE_FLOAT_ARRAY = 14;
+	static final byte TYPE_DOUBLE_ARRAY = 15;
+	static final byte TYPE_STRING_ARRAY = 16;
+	static final byte TYPE_OBJECT_ARRAY = 17;
+	static final byte TYPE_OBJECT = 18;
+	static final byte TYPE_CLASS = 19;
+
+	private static final int MAGIC = 18;
+
+	private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+	private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+	private static ThreadLocal<ByteBuffer> encodeBuffers = ThreadLocal
+			.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+
+	private static final int KEY_CACHE_SIZE = 4096;
+	private static final int MAX_CACHED_KEY_LENGTH = 64;
+	private static final InternedKey[] keyCache = new InternedKey[KEY_CACHE_SIZE];
+
+	private static class InternedKey {
+		public final byte[] data;
+		public final String key;
+
+		public InternedKey(byte[] data, String key) {
+			this.data = data;
+			this.key = key;
+		}
+	}
+
+	/**
+	 * 
+	 * Smartfox object that has been encoded ahead of time, can be placed in maps
+	 * and object arrays that are encoded with this codec, its bytes are written as
+	 * they are
+	 * 
+	 * @author Sky Swimmer
+	 * 
+	 */
+	public static class EncodedObject {
+		private byte[] data;
+
+		private EncodedObject(byte[] data) {
+			this.data = data;
+		}
+
+		/**
+		 * Retrieves the size of the encoded object
+		 * 
+		 * @return Size in bytes
+		 */
+		public int size() {
+			return data.length - 1;
+		}
+
+		/**
+		 * Decodes the object
+		 * 
+		 * @return Data map
+		 * @throws IOException If the data is invalid
+		 */
+		@JsonValue
+		public Map<String, Object> decode() throws IOException {
+			return SfsObjectCodec.decode(data);
+		}
+	}
+
+	/**
+	 * Encodes smartfox objects ahead of time so they can be placed in any amount
+	 * of other objects without encoding them again
+	 * 
+	 * @param obj Smartfox object to encode
+	 * @return EncodedObject instance
+	 * @throws IOException If encoding fails
+	 */
+	public static EncodedObject preEncode(Map<String, Object> obj) throws IOException {
+		return new EncodedObject(encode(obj));
+	}
+
+	/**
+	 * Decodes smartfox objects
+	 * 
+	 * @param data Data to decode
+	 * @return Data map
+	 * @throws IOException If the data is invalid
+	 */
+	public static Map<String, Object> decode(byte[] data) throws IOException {
+		return decode(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * Decodes smartfox objects, the buffer is read from its current position
+	 * 
+	 * @param buffer Buffer to decode
+	 * @return Data map
+	 * @throws IOException If the data is invalid
+	 */
+	public static Map<String, Object> decode(ByteBuffer buffer) throws IOException {
+		try {
+			// Read magic
+			if (buffer.get() != MAGIC)
+				throw new IOException("Invalid packet: magic number invalid");
+
+			// Read
+			return readObject(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Invalid packet: object is truncated", e);
+		}
+	}
+
+	/**
+	 * Decodes smartfox objects (DOES NOT INCLUDE THE MAGIC), the buffer is read
+	 * from its current position
+	 * 
+	 * @param buffer Buffer to decode
+	 * @return Data map
+	 * @throws IOException If the data is invalid
+	 */
+	public static Map<String, Object> decodeObject(ByteBuffer buffer) throws IOException {
+		try {
+			return readObject(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Invalid packet: object is truncated", e);
+		}
+	}
+
+	/**
+	 * Decodes smartfox objects (DOES NOT INCLUDE THE MAGIC) from streams, only the
+	 * bytes of the object are read so the stream is left positioned after it
+	 * 
+	 * @param input Stream to decode from
+	 * @return Data map
+	 * @throws IOException If reading fails or the data is invalid
+	 */
+	public static Map<String, Object> decodeObject(InputStream input) throws IOException {
+		// Copy the object bytes
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bOut);
+		copyValue(TYPE_OBJECT, new DataInputStream(input), out);
+
+		// Decode
+		return decodeObject(ByteBuffer.wrap(bOut.toByteArray()));
+	}
+
+	/**
+	 * Encodes smartfox objects
+	 * 
+	 * @param obj Smartfox object to encode
+	 * @return Object bytes
+	 * @throws IOException If encoding fails
+	 */
+	public static byte[] encode(Map<String, Object> obj) throws IOException {
+		ByteBuffer buffer = encodeBuffers.get();
+		while (true) {
+			buffer.clear();
+			try {
+				// Write
+				buffer.put((byte) MAGIC);
+				encodeObject(obj, buffer);
+
+				// Copy result
+				byte[] res = Arrays.copyOf(buffer.array(), buffer.position());
+				if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE)
+					encodeBuffers.set(ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+				return res;
+			} catch (BufferOverflowException e) {
+				// Grow buffer and retry
+				if (buffer.capacity() >= Integer.MAX_VALUE / 2)
+					throw new IOException("Object too large to encode");
+				buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+				encodeBuffers.set(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Encodes smartfox objects (DOES NOT INCLUDE THE MAGIC), the object is written
+	 * at the current position of the buffer
+	 * 
+	 * @param obj    Smartfox object to encode
+	 * @param buffer Output buffer
+	 * @throws IOException             If encoding fails
+	 * @throws BufferOverflowException If the buffer is too small
+	 */
+	public static void encodeObject(Map<String, Object> obj, ByteBuffer buffer) throws IOException {
+		if (obj.size() > Short.MAX_VALUE)
+			throw new IOException("Too many values in object, max size is " + Short.MAX_VALUE);
+		buffer.putShort((short) obj.size());
+		for (Map.Entry<String, Object> ent : obj.entrySet()) {
+			writeString(ent.getKey(), buffer);
+			writeValue(ent.getValue(), buffer);
+		}
+	}
+
+	private static Map<String, Object> readObject(ByteBuffer buffer) throws IOException {
+		short length = buffer.getShort();
+		if (length < 0)
+			throw new IOException("Invalid length: " + length + ": negative values are invalid for object length");
+		LinkedHashMap<String, Object> obj = new LinkedHashMap<String, Object>(length < 12 ? 16 : length * 4 / 3 + 1);
+		for (int i = 0; i < length; i++) {
+			String key = readKey(buffer);
+			obj.put(key, readValue(buffer.get(), buffer));
+		}
+		return obj;
+	}
+
+	static Object readValue(int type, ByteBuffer buffer) throws IOException {
+		switch (type) {
+
+		// Null
+		case TYPE_NULL:
+			return null;
+
+		// Boolean
+		case TYPE_BOOL:
+			return buffer.get() == 1;
+
+		// Byte
+		case TYPE_BYTE:
+			return buffer.get();
+
+		// Short
+		case TYPE_SHORT:
+			return buffer.getShort();
+
+		// Integer
+		case TYPE_INT:
+			return buffer.getInt();
+
+		// Long
+		case TYPE_LONG:
+			return buffer.getLong();
+
+		// Float
+		case TYPE_FLOAT:
+			return buffer.getFloat();
+
+		// Double
+		case TYPE_DOUBLE:
+			return buffer.getDouble();
+
+		// String
+		case TYPE_STRING:
+			return readString(buffer);
+
+		// Boolean array
+		case TYPE_BOOL_ARRAY: {
+			boolean[] b = new boolean[readLength(buffer)];
+			for (int i = 0; i < b.length; i++)
+				b[i] = buffer.get() == 1;
+			return b;
+		}
+
+		// Byte array
+		case TYPE_BYTE_ARRAY: {
+			int l = buffer.getInt();
+			if (l < 0 || l > buffer.remaining())
+				throw new IOException("Invalid byte array length: " + l);
+			byte[] b = new byte[l];
+			buffer.get(b);
+			return b;
+		}
+
+		// Short array
+		case TYPE_SHORT_ARRAY: {
+			short[] b = new short[readLength(buffer)];
+			buffer.asShortBuffer().get(b);
+			buffer.position(buffer.position() + b.length * 2);
+			return b;
+		}
+
+		// Integer array
+		case TYPE_INT_ARRAY: {
+			int[] b = new int[readLength(buffer)];
+			buffer.asIntBuffer().get(b);
+			buffer.position(buffer.position() + b.length * 4);
+			return b;
+		}
+
+		// Long array
+		case TYPE_LONG_ARRAY: {
+			long[] b = new long[readLength(buffer)];
+			buffer.asLongBuffer().get(b);
+			buffer.position(buffer.position() + b.length * 8);
+			return b;
+		}
+
+		// Float array
+		case TYPE_FLOAT_ARRAY: {
+			float[] b = new float[readLength(buffer)];
+			buffer.asFloatBuffer().get(b);
+			buffer.position(buffer.position() + b.length * 4);
+			return b;
+		}
+
+		// Double array
+		case TYPE_DOUBLE_ARRAY: {
+			double[] b = new double[readLength(buffer)];
+			buffer.asDoubleBuffer().get(b);
+			buffer.position(buffer.position() + b.length * 8);
+			return b;
+		}
+
+		// String array
+		case TYPE_STRING_ARRAY: {
+			String[] b = new String[readLength(buffer)];
+			for (int i = 0; i < b.length; i++)
+				b[i] = readString(buffer);
+			return b;
+		}
+
+		// Object array
+		case TYPE_OBJECT_ARRAY: {
+			Object[] b = new Object[readLength(buffer)];
+			for (int i = 0; i < b.length; i++)
+				b[i] = readValue(buffer.get(), buffer);
+			return b;
+		}
+
+		// Object
+		case TYPE_OBJECT:
+		case TYPE_CLASS:
+			return readObject(buffer);
+
+		// Error
+		default:
+			throw new IOException("Invalid data type " + type);
+
+		}
+	}
+
+	static void skipValue(int type, ByteBuffer buffer) throws IOException {
+		switch (type) {
+
+		// Fixed size values
+		case TYPE_NULL:
+			return;
+		case TYPE_BOOL:
+		case TYPE_BYTE:
+			skip(buffer, 1);
+			return;
+		case TYPE_SHORT:
+			skip(buffer, 2);
+			return;
+		case TYPE_INT:
+		case TYPE_FLOAT:
+			skip(buffer, 4);
+			return;
+		case TYPE_LONG:
+		case TYPE_DOUBLE:
+			skip(buffer, 8);
+			return;
+
+		// Strings
+		case TYPE_STRING:
+			skip(buffer, readLength(buffer));
+			return;
+
+		// Primitive arrays
+		case TYPE_BOOL_ARRAY:
+			skip(buffer, readLength(buffer));
+			return;
+		case TYPE_BYTE_ARRAY: {
+			int l = buffer.getInt();
+			if (l < 0)
+				throw new IOException("Invalid byte array length: " + l);
+			skip(buffer, l);
+			return;
+		}
+		case TYPE_SHORT_ARRAY:
+			skip(buffer, readLength(buffer) * 2);
+			return;
+		case TYPE_INT_ARRAY:
+		case TYPE_FLOAT_ARRAY:
+			skip(buffer, readLength(buffer) * 4);
+			return;
+		case TYPE_LONG_ARRAY:
+		case TYPE_DOUBLE_ARRAY:
+			skip(buffer, readLength(buffer) * 8);
+			return;
+
+		// String array
+		case TYPE_STRING_ARRAY: {
+			int l = readLength(buffer);
+			for (int i = 0; i < l; i++)
+				skip(buffer, readLength(buffer));
+			return;
+		}
+
+		// Object array
+		case TYPE_OBJECT_ARRAY: {
+			int l = readLength(buffer);
+			for (int i = 0; i < l; i++)
+				skipValue(buffer.get(), buffer);
+			return;
+		}
+
+		// Object
+		case TYPE_OBJECT:
+		case TYPE_CLASS: {
+			short l = buffer.getShort();
+			if (l < 0)
+				throw new IOException("Invalid length: " + l + ": negative values are invalid for object length");
+			for (int i = 0; i < l; i++) {
+				skip(buffer, readLength(buffer));
+				skipValue(buffer.get(), buffer);
+			}
+			return;
+		}
+
+		// Error
+		default:
+			throw new IOException("Invalid data type " + type);
+
+		}
+	}
+
+	private static void copyValue(int type, DataInputStream in, DataOutputStream out) throws IOException {
+		switch (type) {
+
+		// Fixed size values
+		case TYPE_NULL:
+			return;
+		case TYPE_BOOL:
+		case TYPE_BYTE:
+			copy(in, out, 1);
+			return;
+		case TYPE_SHORT:
+			copy(in, out, 2);
+			return;
+		case TYPE_INT:
+		case TYPE_FLOAT:
+			copy(in, out, 4);
+			return;
+		case TYPE_LONG:
+		case TYPE_DOUBLE:
+			copy(in, out, 8);
+			return;
+
+		// Strings
+		case TYPE_STRING:
+			copy(in, out, copyLength(in, out));
+			return;
+
+		// Primitive arrays
+		case TYPE_BOOL_ARRAY:
+			copy(in, out, copyLength(in, out));
+			return;
+		case TYPE_BYTE_ARRAY: {
+			int l = in.readInt();
+			if (l < 0)
+				throw new IOException("Invalid byte array length: " + l);
+			out.writeInt(l);
+			copy(in, out, l);
+			return;
+		}
+		case TYPE_SHORT_ARRAY:
+			copy(in, out, copyLength(in, out) * 2);
+			return;
+		case TYPE_INT_ARRAY:
+		case TYPE_FLOAT_ARRAY:
+			copy(in, out, copyLength(in, out) * 4);
+			return;
+		case TYPE_LONG_ARRAY:
+		case TYPE_DOUBLE_ARRAY:
+			copy(in, out, copyLength(in, out) * 8);
+			return;
+
+		// String array
+		case TYPE_STRING_ARRAY: {
+			int l = copyLength(in, out);
+			for (int i = 0; i < l; i++)
+				copy(in, out, copyLength(in, out));
+			return;
+		}
+
+		// Object array
+		case TYPE_OBJECT_ARRAY: {
+			int l = copyLength(in, out);
+			for (int i = 0; i < l; i++) {
+				byte t = in.readByte();
+				out.writeByte(t);
+				copyValue(t, in, out);
+			}
+			return;
+		}
+
+		// Object
+		case TYPE_OBJECT:
+		case TYPE_CLASS: {
+			short l = in.readShort();
+			if (l < 0)
+				throw new IOException("Invalid length: " + l + ": negative values are invalid for object length");
+			out.writeShort(l);
+			for (int i = 0; i < l; i++) {
+				copy(in, out, copyLength(in, out));
+				byte t = in.readByte();
+				out.writeByte(t);
+				copyValue(t, in, out);
+			}
+			return;
+		}
+
+		// Error
+		default:
+			throw new IOException("Invalid data type " + type);
+
+		}
+	}
+
+	private static int copyLength(DataInputStream in, DataOutputStream out) throws IOException {
+		short l = in.readShort();
+		if (l < 0)
+			throw new IOException("Invalid length: " + l + ": negative values are invalid for array and string length");
+		out.writeShort(l);
+		return l;
+	}
+
+	private static void copy(DataInputStream in, DataOutputStream out, int length) throws IOException {
+		byte[] buf = new byte[Math.min(length, 8192)];
+		while (length > 0) {
+			int l = Math.min(length, buf.length);
+			in.readFully(buf, 0, l);
+			out.write(buf, 0, l);
+			length -= l;
+		}
+	}
+
+	private static void skip(ByteBuffer buffer, int length) {
+		if (length > buffer.remaining())
+			throw new BufferUnderflowException();
+		buffer.position(buffer.position() + length);
+	}
+
+	static int readLength(ByteBuffer buffer) throws IOException {
+		short l = buffer.getShort();
+		if (l < 0)
+			throw new IOException("Invalid length: " + l + ": negative values are invalid for array and string length");
+		return l;
+	}
+
+	static String readString(ByteBuffer buffer) throws IOException {
+		return readUtf8(buffer, readLength(buffer));
+	}
+
+	private static String readUtf8(ByteBuffer buffer, int length) {
+		if (length > buffer.remaining())
+			throw new BufferUnderflowException();
+		if (!buffer.hasArray()) {
+			byte[] data = new byte[length];
+			buffer.get(data);
+			return new String(data, StandardCharsets.UTF_8);
+		}
+		String str = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+				StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return str;
+	}
+
+	static String readKey(ByteBuffer buffer) throws IOException {
+		int l = readLength(buffer);
+		if (l > MAX_CACHED_KEY_LENGTH)
+			return readUtf8(buffer, l);
+		if (l > buffer.remaining())
+			throw new BufferUnderflowException();
+
+		// Find key bytes
+		byte[] arr;
+		int off;
+		if (buffer.hasArray()) {
+			arr = buffer.array();
+			off = buffer.arrayOffset() + buffer.position();
+			buffer.position(buffer.position() + l);
+		} else {
+			arr = new byte[l];
+			off = 0;
+			buffer.get(arr);
+		}
+
+		// Hash key bytes
+		int hash = 1;
+		for (int i = 0; i < l; i++)
+			hash = 31 * hash + arr[off + i];
+		int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+
+		// Find interned key, entries are immutable so races only cause a cache miss
+		InternedKey cached = keyCache[slot];
+		if (cached != null && Arrays.equals(cached.data, 0, cached.data.length, arr, off, off + l))
+			return cached.key;
+
+		// Intern
+		byte[] data = Arrays.copyOfRange(arr, off, off + l);
+		String key = new String(data, StandardCharsets.UTF_8);
+		keyCache[slot] = new InternedKey(data, key);
+		return key;
+	}
+
+	static byte typeOf(Object value) throws IOException {
+		if (value == null)
+			return TYPE_NULL;
+		else if (value instanceof String)
+			return TYPE_STRING;
+		else if (value instanceof Integer)
+			return TYPE_INT;
+		else if (value instanceof Boolean)
+			return TYPE_BOOL;
+		else if (value instanceof Byte)
+			return TYPE_BYTE;
+		else if (value instanceof Short)
+			return TYPE_SHORT;
+		else if (value instanceof Long)
+			return TYPE_LONG;
+		else if (value instanceof Float)
+			return TYPE_FLOAT;
+		else if (value instanceof Double)
+			return TYPE_DOUBLE;
+		else if (value instanceof EncodedObject)
+			return TYPE_OBJECT;
+		else if (value instanceof Map) {
+			Map<?, ?> mp = (Map<?, ?>) value;
+			if (!mp.containsKey("$C") || !mp.containsKey("$F"))
+				return TYPE_OBJECT;
+			else
+				return TYPE_CLASS;
+		} else if (value instanceof boolean[])
+			return TYPE_BOOL_ARRAY;
+		else if (value instanceof byte[])
+			return TYPE_BYTE_ARRAY;
+		else if (value instanceof short[])
+			return TYPE_SHORT_ARRAY;
+		else if (value instanceof int[])
+			return TYPE_INT_ARRAY;
+		else if (value instanceof long[])
+			return TYPE_LONG_ARRAY;
+		else if (value instanceof float[])
+			return TYPE_FLOAT_ARRAY;
+		else if (value instanceof double[])
+			return TYPE_DOUBLE_ARRAY;
+		else if (value instanceof String[])
+			return TYPE_STRING_ARRAY;
+		else if (value instanceof Object[])
+			return TYPE_OBJECT_ARRAY;
+		throw new IOException("Unsupported type: " + value.getClass().getTypeName());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void writeValue(Object value, ByteBuffer buffer) throws IOException {
+		// Write type
+		byte type = typeOf(value);
+		buffer.put(type);
+
+		// Write value
+		switch (type) {
+
+		// Boolean
+		case TYPE_BOOL:
+			buffer.put((byte) ((boolean) value ? 1 : 0));
+			break;
+
+		// Byte
+		case TYPE_BYTE:
+			buffer.put((byte) value);
+			break;
+
+		// Short
+		case TYPE_SHORT:
+			buffer.putShort((short) value);
+			break;
+
+		// Integer
+		case TYPE_INT:
+			buffer.putInt((int) value);
+			break;
+
+		// Long
+		case TYPE_LONG:
+			buffer.putLong((long) value);
+			break;
+
+		// Float
+		case TYPE_FLOAT:
+			buffer.putFloat((float) value);
+			break;
+
+		// Double
+		case TYPE_DOUBLE:
+			buffer.putDouble((double) value);
+			break;
+
+		// String
+		case TYPE_STRING:
+			writeString((String) value, buffer);
+			break;
+
+		// Boolean array
+		case TYPE_BOOL_ARRAY: {
+			boolean[] va = (boolean[]) value;
+			writeLength(va.length, buffer);
+			for (boolean v : va)
+				buffer.put((byte) (v ? 1 : 0));
+			break;
+		}
+
+		// Byte array
+		case TYPE_BYTE_ARRAY: {
+			byte[] va = (byte[]) value;
+			buffer.putInt(va.length);
+			buffer.put(va);
+			break;
+		}
+
+		// Short array
+		case TYPE_SHORT_ARRAY: {
+			short[] va = (short[]) value;
+			writeLength(va.length, buffer);
+			buffer.asShortBuffer().put(va);
+			buffer.position(buffer.position() + va.length * 2);
+			break;
+		}
+
+		// Integer array
+		case TYPE_INT_ARRAY: {
+			int[] va = (int[]) value;
+			writeLength(va.length, buffer);
+			buffer.asIntBuffer().put(va);
+			buffer.position(buffer.position() + va.length * 4);
+			break;
+		}
+
+		// Long array
+		case TYPE_LONG_ARRAY: {
+			long[] va = (long[]) value;
+			writeLength(va.length, buffer);
+			buffer.asLongBuffer().put(va);
+			buffer.position(buffer.position() + va.length * 8);
+			break;
+		}
+
+		// Float array
+		case TYPE_FLOAT_ARRAY: {
+			float[] va = (float[]) value;
+			writeLength(va.length, buffer);
+			buffer.asFloatBuffer().put(va);
+			buffer.position(buffer.position() + va.length * 4);
+			break;
+		}
+
+		// Double array
+		case TYPE_DOUBLE_ARRAY: {
+			double[] va = (double[]) value;
+			writeLength(va.length, buffer);
+			buffer.asDoubleBuffer().put(va);
+			buffer.position(buffer.position() + va.length * 8);
+			break;
+		}
+
+		// String array
+		case TYPE_STRING_ARRAY: {
+			String[] va = (String[]) value;
+			writeLength(va.length, buffer);
+			for (String v : va)
+				writeString(v, buffer);
+			break;
+		}
+
+		// Object array
+		case TYPE_OBJECT_ARRAY: {
+			Object[] va = (Object[]) value;
+			writeLength(va.length, buffer);
+			for (Object v : va)
+				writeValue(v, buffer);
+			break;
+		}
+
+		// Object
+		case TYPE_OBJECT:
+		case TYPE_CLASS:
+			if (value instanceof EncodedObject) {
+				// Skip the magic
+				byte[] data = ((EncodedObject) value).data;
+				buffer.put(data, 1, data.length - 1);
+				break;
+			}
+			encodeObject((Map<String, Object>) value, buffer);
+			break;
+
+		}
+	}
+
+	private static void writeLength(int length, ByteBuffer buffer) throws IOException {
+		if (length > Short.MAX_VALUE)
+			throw new IOException("Array too long, max length is " + Short.MAX_VALUE);
+		buffer.putShort((short) length);
+	}
+
+	private static void writeString(String str, ByteBuffer buffer) throws IOException {
+		// Write ASCII strings directly
+		int length = str.length();
+		if (length <= Short.MAX_VALUE && buffer.hasArray() && buffer.remaining() >= length + 2) {
+			int start = buffer.position();
+			byte[] arr = buffer.array();
+			int off = buffer.arrayOffset() + start + 2;
+			int i = 0;
+			for (; i < length; i++) {
+				char ch = str.charAt(i);
+				if (ch >= 0x80)
+					break;
+				arr[off + i] = (byte) ch;
+			}
+			if (i == length) {
+				buffer.putShort((short) length);
+				buffer.position(start + 2 + length);
+				return;
+			}
+		}
+
+		// Encode, the length prefix is the amount of UTF-8 bytes
+		byte[] data = str.getBytes(StandardCharsets.UTF_8);
+		if (data.length > Short.MAX_VALUE)
+			throw new IOException("String '" + str + "' too long, max length is " + Short.MAX_VALUE);
+		buffer.putShort((short) data.length);
+		buffer.put(data);
+	}
+
+}
@@ -0,0 +1,373 @@
+package org.asf.edge.mmoserver.networking.sfs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 
+ * Lazy read-only view of an encoded smartfox object, only the keys and value
+ * offsets are indexed when the view is created, values are decoded from the
+ * underlying buffer when they are requested
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class SfsObjectView {
+
+	private ByteBuffer buffer;
+	private String[] keys;
+	private byte[] types;
+	private int[] offsets;
+
+	private SfsObjectView(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+
+		// Index entries
+		short length = buffer.getShort();
+		if (length < 0)
+			throw new IOException("Invalid length: " + length + ": negative values are invalid for object length");
+		keys = new String[length];
+		types = new byte[length];
+		offsets = new int[length];
+		for (int i = 0; i < length; i++) {
+			keys[i] = SfsObjectCodec.readKey(buffer);
+			types[i] = buffer.get();
+			offsets[i] = buffer.position();
+			SfsObjectCodec.skipValue(types[i], buffer);
+		}
+	}
+
+	/**
+	 * Creates a view of smartfox object bytes
+	 * 
+	 * @param data Object bytes, must not be modified while the view is in use
+	 * @return SfsObjectView instance
+	 * @throws IOException If the data is invalid
+	 */
+	public static SfsObjectView of(byte[] data) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		try {
+			// Read magic
+			if (buffer.get() != 18)
+				throw new IOException("Invalid packet: magic number invalid");
+
+			// Index
+			return new SfsObjectView(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Invalid packet: object is truncated", e);
+		}
+	}
+
+	/**
+	 * Creates a view of a smartfox object (DOES NOT INCLUDE THE MAGIC), the
+	 * buffer is read from its current position and is left positioned after the
+	 * object
+	 * 
+	 * @param buffer Buffer containing the object, must not be modified while the
+	 *               view is in use
+	 * @return SfsObjectView instance
+	 * @throws IOException If the data is invalid
+	 */
+	public static SfsObjectView of(ByteBuffer buffer) throws IOException {
+		try {
+			ByteBuffer buf = buffer.duplicate();
+			SfsObjectView view = new SfsObjectView(buf);
+			buffer.position(buf.position());
+			return view;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Invalid packet: object is truncated", e);
+		}
+	}
+
+	/**
+	 * Retrieves the amount of entries in the object
+	 * 
+	 * @return Entry count
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * Retrieves all keys of the object
+	 * 
+	 * @return Array of key strings
+	 */
+	public String[] getKeys() {
+		return keys.clone();
+	}
+
+	/**
+	 * Checks if keys are present
+	 * 
+	 * @param key Key to check
+	 * @return True if present, false otherwise
+	 */
+	public boolean has(String key) {
+		return indexOf(key) != -1;
+	}
+
+	/**
+	 * Retrieves the wire type of values
+	 * 
+	 * @param key Value key
+	 * @return Smartfox data type ID or -1 if not present
+	 */
+	public int getType(String key) {
+		int i = indexOf(key);
+		if (i == -1)
+			return -1;
+		return types[i];
+	}
+
+	/**
+	 * Retrieves a boolean value
+	 * 
+	 * @param key Value key
+	 * @return Boolean value
+	 */
+	public boolean getBoolean(String key) {
+		return buffer.get(offsetOf(key, SfsObjectCodec.TYPE_BOOL)) == 1;
+	}
+
+	/**
+	 * Retrieves a byte value
+	 * 
+	 * @param key Value key
+	 * @return Byte value
+	 */
+	public byte getByte(String key) {
+		return buffer.get(offsetOf(key, SfsObjectCodec.TYPE_BYTE));
+	}
+
+	/**
+	 * Retrieves a short value
+	 * 
+	 * @param key Value key
+	 * @return Short value
+	 */
+	public short getShort(String key) {
+		return buffer.getShort(offsetOf(key, SfsObjectCodec.TYPE_SHORT));
+	}
+
+	/**
+	 * Retrieves a integer value
+	 * 
+	 * @param key Value key
+	 * @return Integer value
+	 */
+	public int getInt(String key) {
+		return buffer.getInt(offsetOf(key, SfsObjectCodec.TYPE_INT));
+	}
+
+	/**
+	 * Retrieves a long value
+	 * 
+	 * @param key Value key
+	 * @return Long value
+	 */
+	public long getLong(String key) {
+		return buffer.getLong(offsetOf(key, SfsObjectCodec.TYPE_LONG));
+	}
+
+	/**
+	 * Retrieves a float value
+	 * 
+	 * @param key Value key
+	 * @return Float value
+	 */
+	public float getFloat(String key) {
+		return buffer.getFloat(offsetOf(key, SfsObjectCodec.TYPE_FLOAT));
+	}
+
+	/**
+	 * Retrieves a double value
+	 * 
+	 * @param key Value key
+	 * @return Double value
+	 */
+	public double getDouble(String key) {
+		return buffer.getDouble(offsetOf(key, SfsObjectCodec.TYPE_DOUBLE));
+	}
+
+	/**
+	 * Retrieves a string value
+	 * 
+	 * @param key Value key
+	 * @return String value
+	 * @throws IOException If the value is invalid
+	 */
+	public String getString(String key) throws IOException {
+		return SfsObjectCodec.readString(buffer.duplicate().position(offsetOf(key, SfsObjectCodec.TYPE_STRING)));
+	}
+
+	/**
+	 * Retrieves a nested object as view
+	 * 
+	 * @param key Value key
+	 * @return SfsObjectView instance
+	 * @throws IOException If the object is invalid
+	 */
+	public SfsObjectView getObject(String key) throws IOException {
+		int i = indexOf(key);
+		if (i == -1)
+			throw new IllegalArgumentException("Key " + key + " is not present in object");
+		if (types[i] != SfsObjectCodec.TYPE_OBJECT && types[i] != SfsObjectCodec.TYPE_CLASS)
+			throw new IllegalArgumentException("Key " + key + " is not an object");
+		return new SfsObjectView(buffer.duplicate().position(offsets[i]));
+	}
+
+	/**
+	 * Decodes values, objects are decoded as maps and arrays as primitive arrays
+	 * 
+	 * @param key Value key
+	 * @return Value object
+	 * @throws IOException If the value is invalid
+	 */
+	public Object get(String key) throws IOException {
+		int i = indexOf(key);
+		if (i == -1)
+			throw new IllegalArgumentException("Key " + key + " is not present in object");
+		return SfsObjectCodec.readValue(types[i], buffer.duplicate().position(offsets[i]));
+	}
+
+	/**
+	 * Decodes the full object
+	 * 
+	 * @return Data map
+	 * @throws IOException If the object is invalid
+	 */
+	public Map<String, Object> toMap() throws IOException {
+		LinkedHashMap<String, Object> obj = new LinkedHashMap<String, Object>();
+		ByteBuffer buf = buffer.duplicate();
+		for (int i = 0; i < keys.length; i++)
+			obj.put(keys[i], SfsObjectCodec.readValue(types[i], buf.position(offsets[i])));
+		return obj;
+	}
+
+	/**
+	 * Creates a map backed by this view, values are decoded when they are first
+	 * retrieved and nested objects are returned as lazy maps of their own, the
+	 * map is decoded in full once it is iterated or modified
+	 * 
+	 * @return Data map
+	 */
+	public Map<String, Object> asMap() {
+		return new LazyMap(this);
+	}
+
+	private Object decode(int i) throws IOException {
+		if (types[i] == SfsObjectCodec.TYPE_OBJECT)
+			return new SfsObjectView(buffer.duplicate().position(offsets[i])).asMap();
+		return SfsObjectCodec.readValue(types[i], buffer.duplicate().position(offsets[i]));
+	}
+
+	private static class LazyMap extends AbstractMap<String, Object> {
+
+		private SfsObjectView view;
+		private Object[] values;
+		private boolean[] decoded;
+		private LinkedHashMap<String, Object> map;
+
+		public LazyMap(SfsObjectView view) {
+			this.view = view;
+			values = new Object[view.keys.length];
+			decoded = new boolean[view.keys.length];
+		}
+
+		private Object valueAt(int i) {
+			if (!decoded[i]) {
+				try {
+					values[i] = view.decode(i);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				decoded[i] = true;
+			}
+			return values[i];
+		}
+
+		private LinkedHashMap<String, Object> materialize() {
+			if (map == null) {
+				// Decode remaining values, later duplicates overwrite earlier ones like the
+				// regular decoder does
+				LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
+				for (int i = 0; i < view.keys.length; i++)
+					map.put(view.keys[i], valueAt(i));
+				this.map = map;
+				values = null;
+				decoded = null;
+			}
+			return map;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			if (map != null)
+				return map.containsKey(key);
+			return key instanceof String && view.indexOf((String) key) != -1;
+		}
+
+		@Override
+		public Object get(Object key) {
+			if (map != null)
+				return map.get(key);
+			if (!(key instanceof String))
+				return null;
+			int i = view.indexOf((String) key);
+			if (i == -1)
+				return null;
+			return valueAt(i);
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			return materialize().put(key, value);
+		}
+
+		@Override
+		public Object remove(Object key) {
+			return materialize().remove(key);
+		}
+
+		@Override
+		public void clear() {
+			materialize().clear();
+		}
+
+		@Override
+		public int size() {
+			return materialize().size();
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return materialize().entrySet();
+		}
+
+	}
+
+	private int indexOf(String key) {
+		for (int i = keys.length - 1; i >= 0; i--) {
+			if (keys[i].equals(key))
+				return i;
+		}
+		return -1;
+	}
+
+	private int offsetOf(String key, byte type) {
+		int i = indexOf(key);
+		if (i == -1)
+			throw new IllegalArgumentException("Key " + key + " is not present in object");
+		if (types[i] != type)
+			throw new IllegalArgumentException("Key " + key + " is not of type " + type);
+		return offsets[i];
+	}
+
+}
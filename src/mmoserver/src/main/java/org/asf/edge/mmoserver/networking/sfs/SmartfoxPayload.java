@@ -42,7 +42,7 @@ public class SmartfoxPayload {
 	 * @return SmartfoxPayload instance
 	 */
 	public static SmartfoxPayload parseSfsObject(byte[] data) throws IOException {
-		return fromObject(SmartfoxNetworkObjectUtil.parseSfsObject(data));
+		return fromObject(SfsObjectView.of(data).asMap());
 	}
 
 	/**
@@ -7,8 +7,10 @@ import java.util.HashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.asf.edge.common.services.config.ConfigProviderService;
+import org.asf.edge.mmoserver.entities.positional.AreaOfInterestSettings;
 import org.asf.edge.mmoserver.entities.smartfox.GameZone;
 import org.asf.edge.mmoserver.entities.smartfox.RoomGroup;
+import org.asf.edge.mmoserver.entities.smartfox.RoomInfo;
 import org.asf.edge.mmoserver.entities.smartfox.RoomVariable;
 import org.asf.edge.mmoserver.entities.smartfox.VariableType;
 import org.asf.edge.mmoserver.events.zones.ZoneCreatedEvent;
@@ -139,6 +141,11 @@ public class ZoneManagerImpl extends ZoneManager {
 						logger.info("Loading saved room group " + groupName + " of zone " + zoneName + "...");
 						RoomGroup group = zone.addRoomGroup(groupName);
 
+						// Load area-of-interest settings, used by all rooms in the group
+						if (groupData.has("interestManagement"))
+							group.setInterestSettings(AreaOfInterestSettings
+									.fromJson(groupData.get("interestManagement").getAsJsonObject()));
+
 						// Load rooms
 						if (groupData.has("rooms")) {
 							// Load room data
@@ -241,8 +248,13 @@ public class ZoneManagerImpl extends ZoneManager {
 								}
 
 								// Create room
-								group.addGameRoom(roomName, isHidden, isPasswordProtected, maxUsers,
+								RoomInfo room = group.addGameRoom(roomName, isHidden, isPasswordProtected, maxUsers,
 										variables.toArray(t -> new RoomVariable[t]), maxSpectators);
+
+								// Load area-of-interest settings
+								if (roomDetails.has("interestManagement"))
+									room.setInterestSettings(AreaOfInterestSettings
+											.fromJson(roomDetails.get("interestManagement").getAsJsonObject()));
 							}
 						}
 					}
@@ -0,0 +1,162 @@
+package org.asf.edge.mmoserver.tools;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.asf.edge.mmoserver.networking.bitswarm.BitswarmClient;
+import org.asf.edge.mmoserver.networking.channels.smartfox.system.packets.serverbound.ServerboundHandshakeStartPacket;
+import org.asf.edge.mmoserver.networking.sfs.SmartfoxPacketData;
+import org.asf.edge.mmoserver.networking.sfs.SmartfoxPayload;
+
+/**
+ * 
+ * Simple load testing tool for the MMO server, opens a large amount of
+ * connections, performs the Smartfox handshake on each and reports handshake
+ * latency and how many connections stay open
+ * 
+ * <p>
+ * Usage: {@code <host> <port> <clients> [hold-seconds]}
+ * </p>
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class MmoLoadTester {
+
+	private static class TestConnection {
+		public SocketChannel channel;
+		public ByteBuffer pending;
+		public ByteBuffer header = ByteBuffer.allocate(5);
+		public long start;
+		public long latency = -1;
+		public boolean closed;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: mmoloadtester <host> <port> <clients> [hold-seconds]");
+			System.exit(1);
+			return;
+		}
+		String host = args[0];
+		int port = Integer.parseInt(args[1]);
+		int clientCount = Integer.parseInt(args[2]);
+		int holdSeconds = args.length >= 4 ? Integer.parseInt(args[3]) : 10;
+
+		// Build handshake
+		ServerboundHandshakeStartPacket handshake = new ServerboundHandshakeStartPacket();
+		handshake.apiVersion = "1.7.6";
+		handshake.clientType = "Unity / Edge load tester";
+		SmartfoxPacketData pkt = new SmartfoxPacketData();
+		pkt.channelID = 0;
+		pkt.packetId = handshake.packetID();
+		pkt.payload = SmartfoxPayload.create();
+		handshake.build(pkt);
+		byte[][] handshakeData = BitswarmClient.encodePacket(pkt.toSfsObject().encodeToSfsObject(), false);
+		byte[] handshakeBytes = new byte[handshakeData[0].length + handshakeData[1].length];
+		System.arraycopy(handshakeData[0], 0, handshakeBytes, 0, handshakeData[0].length);
+		System.arraycopy(handshakeData[1], 0, handshakeBytes, handshakeData[0].length, handshakeData[1].length);
+
+		// Connect clients
+		System.out.println("Connecting " + clientCount + " clients to " + host + ":" + port + "...");
+		Selector selector = Selector.open();
+		ArrayList<TestConnection> connections = new ArrayList<TestConnection>();
+		int failed = 0;
+		for (int i = 0; i < clientCount; i++) {
+			TestConnection conn = new TestConnection();
+			try {
+				conn.channel = SocketChannel.open(new InetSocketAddress(host, port));
+				conn.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				conn.channel.configureBlocking(false);
+			} catch (IOException e) {
+				failed++;
+				continue;
+			}
+			conn.pending = ByteBuffer.wrap(handshakeBytes);
+			conn.start = System.nanoTime();
+			conn.channel.write(conn.pending);
+			conn.channel.register(selector,
+					conn.pending.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ,
+					conn);
+			connections.add(conn);
+		}
+		System.out.println("Connected " + connections.size() + " clients, " + failed + " failed to connect");
+
+		// Run
+		ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+		long end = System.currentTimeMillis() + (holdSeconds * 1000l);
+		while (System.currentTimeMillis() < end) {
+			selector.select(100);
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				TestConnection conn = (TestConnection) key.attachment();
+				try {
+					// Write remaining handshake data
+					if (key.isValid() && key.isWritable()) {
+						conn.channel.write(conn.pending);
+						if (!conn.pending.hasRemaining())
+							key.interestOps(SelectionKey.OP_READ);
+					}
+
+					// Read
+					if (key.isValid() && key.isReadable()) {
+						readBuffer.clear();
+						if (conn.channel.read(readBuffer) == -1)
+							throw new IOException("Disconnected");
+						readBuffer.flip();
+
+						// Response header received
+						while (conn.latency == -1 && conn.header.hasRemaining() && readBuffer.hasRemaining())
+							conn.header.put(readBuffer.get());
+						if (conn.latency == -1 && !conn.header.hasRemaining())
+							conn.latency = System.nanoTime() - conn.start;
+					}
+				} catch (IOException e) {
+					key.cancel();
+					conn.closed = true;
+					try {
+						conn.channel.close();
+					} catch (IOException e2) {
+					}
+				}
+			}
+		}
+
+		// Collect results
+		long[] latencies = connections.stream().filter(t -> t.latency != -1).mapToLong(t -> t.latency).toArray();
+		long open = connections.stream().filter(t -> !t.closed).count();
+		Arrays.sort(latencies);
+		System.out.println("Handshakes completed: " + latencies.length + "/" + connections.size());
+		System.out.println("Connections still open: " + open + "/" + connections.size());
+		if (latencies.length != 0) {
+			System.out.println("Handshake latency p50: " + percentile(latencies, 50) + "ms, p90: "
+					+ percentile(latencies, 90) + "ms, p99: " + percentile(latencies, 99) + "ms, max: "
+					+ (latencies[latencies.length - 1] / 1000000d) + "ms");
+		}
+
+		// Close
+		for (TestConnection conn : connections) {
+			try {
+				conn.channel.close();
+			} catch (IOException e) {
+			}
+		}
+		selector.close();
+	}
+
+	private static double percentile(long[] sorted, int percentile) {
+		int index = (int) Math.ceil(percentile / 100d * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000000d;
+	}
+
+}
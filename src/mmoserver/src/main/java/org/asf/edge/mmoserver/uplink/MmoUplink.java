@@ -0,0 +1,247 @@
+package org.asf.edge.mmoserver.uplink;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.asf.edge.common.io.DataReader;
+import org.asf.edge.common.io.DataWriter;
+import org.asf.edge.common.util.MmoUplinkProtocol;
+import org.asf.edge.common.util.SimpleBinaryMessageClient;
+import org.asf.edge.mmoserver.EdgeMMOServer;
+import org.asf.edge.mmoserver.entities.chat.ChatBroadcaster;
+import org.asf.edge.mmoserver.entities.player.PlayerInfo;
+import org.asf.edge.mmoserver.entities.smartfox.GameZone;
+import org.asf.edge.mmoserver.entities.smartfox.RoomGroup;
+import org.asf.edge.mmoserver.entities.smartfox.RoomInfo;
+import org.asf.edge.mmoserver.events.players.PlayerDisconnectEvent;
+import org.asf.edge.mmoserver.events.players.PlayerJoinEvent;
+import org.asf.edge.mmoserver.events.players.PlayerRoomJoinEvent;
+import org.asf.edge.mmoserver.events.players.PlayerRoomLeaveEvent;
+import org.asf.edge.mmoserver.events.zones.RoomCreatedEvent;
+import org.asf.edge.mmoserver.events.zones.RoomDeletedEvent;
+import org.asf.edge.mmoserver.services.ZoneManager;
+import org.asf.edge.modules.eventbus.EventListener;
+import org.asf.edge.modules.eventbus.IEventReceiver;
+
+/**
+ * 
+ * MMO uplink, publishes room population and player presence to the common API
+ * and handles chat messages relayed from other MMO servers
+ * 
+ * @author Sky Swimmer
+ * 
+ */
+public class MmoUplink implements IEventReceiver {
+
+	private EdgeMMOServer server;
+	private volatile SimpleBinaryMessageClient client;
+
+	public MmoUplink(EdgeMMOServer server) {
+		this.server = server;
+	}
+
+	/**
+	 * Checks if the uplink is connected
+	 * 
+	 * @return True if connected, false otherwise
+	 */
+	public boolean isConnected() {
+		return client != null;
+	}
+
+	/**
+	 * Called when the uplink connection is established (before the connection is
+	 * started), sends the full state of the server to the common API
+	 * 
+	 * @param client Uplink connection
+	 */
+	public void onConnected(SimpleBinaryMessageClient client) {
+		this.client = client;
+
+		// Resync
+		send(MmoUplinkProtocol.RESET_STATE, w -> {
+		});
+		for (GameZone zone : ZoneManager.getInstance().getZones()) {
+			for (RoomGroup group : zone.getRoomGroups()) {
+				for (RoomInfo room : group.getRooms())
+					sendRoomPopulation(room, false);
+			}
+			for (PlayerInfo player : zone.getPlayers()) {
+				sendPresence(MmoUplinkProtocol.PLAYER_ONLINE, player);
+				sendPlayerRoom(player);
+			}
+		}
+	}
+
+	/**
+	 * Called when the uplink connection is lost
+	 * 
+	 * @param client Uplink connection
+	 */
+	public void onDisconnected(SimpleBinaryMessageClient client) {
+		if (this.client == client)
+			this.client = null;
+	}
+
+	/**
+	 * Handles uplink messages
+	 * 
+	 * @param packet Message packet
+	 * @param client Uplink connection
+	 * @return True if handled successfully, false to disconnect
+	 */
+	public boolean handleMessage(SimpleBinaryMessageClient.Packet packet, SimpleBinaryMessageClient client) {
+		try {
+			DataReader reader = new DataReader(new ByteArrayInputStream(packet.data));
+			switch (packet.type) {
+
+			// Chat
+			case MmoUplinkProtocol.CHAT_MESSAGE: {
+				String zone = reader.readString();
+				String group = reader.readString();
+				String room = reader.readString();
+				String senderID = reader.readString();
+				String senderName = reader.readString();
+				String message = reader.readString();
+				postChatMessage(zone, group, room, senderID, senderName, message);
+				break;
+			}
+
+			}
+		} catch (IOException e) {
+			server.getLogger().error("Invalid uplink message received, type " + packet.type, e);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Relays chat messages to the other MMO servers hosting the room instances of
+	 * the player
+	 * 
+	 * @param player  Player that sent the message
+	 * @param message Chat message (with the default filter applied)
+	 */
+	public void relayChatMessage(PlayerInfo player, String message) {
+		for (RoomInfo room : player.getJoinedRooms()) {
+			RoomGroup group = room.getGroup();
+			send(MmoUplinkProtocol.CHAT_MESSAGE, w -> {
+				w.writeString(group.getZone().getName());
+				w.writeString(group.getName());
+				w.writeString(room.getName());
+				w.writeString(player.getSave().getSaveID());
+				w.writeString(player.getSave().getUsername());
+				w.writeString(message);
+			});
+		}
+	}
+
+	private void postChatMessage(String zoneName, String groupName, String roomName, String senderID,
+			String senderName, String message) {
+		// Ignore relayed chat if this server did not opt in to shared chat
+		if (!server.getConfiguration().shareChatAcrossServers)
+			return;
+
+		// Find room
+		GameZone zone = ZoneManager.getInstance().getZone(zoneName);
+		if (zone == null)
+			return;
+		RoomGroup group = zone.getRoomGroup(groupName);
+		if (group == null)
+			return;
+		RoomInfo room = group.getRoom(roomName);
+		if (room == null)
+			return;
+
+		// Queue for delivery to the players in the room
+		ChatBroadcaster.ChatMessage chat = new ChatBroadcaster.ChatMessage(senderID, senderName, message, null);
+		if (!server.getChatBroadcaster().queueMessage(room, chat))
+			server.getLogger().warn("Chat queue of room " + room.getName() + " is full, dropped relayed message of "
+					+ senderName);
+	}
+
+	private void sendPresence(byte type, PlayerInfo player) {
+		send(type, w -> {
+			w.writeString(player.getAccount().getAccountID());
+			w.writeString(player.getSave().getSaveID());
+			w.writeString(player.getSave().getUsername());
+		});
+	}
+
+	private void sendPlayerRoom(PlayerInfo player) {
+		RoomInfo[] rooms = player.getJoinedRooms();
+		send(MmoUplinkProtocol.PLAYER_ROOM, w -> {
+			w.writeString(player.getSave().getSaveID());
+			if (rooms.length == 0) {
+				w.writeString("");
+				w.writeString("");
+				w.writeString("");
+			} else {
+				w.writeString(rooms[0].getGroup().getZone().getName());
+				w.writeString(rooms[0].getGroup().getName());
+				w.writeString(rooms[0].getName());
+			}
+		});
+	}
+
+	private void sendRoomPopulation(RoomInfo room, boolean removed) {
+		send(MmoUplinkProtocol.ROOM_POPULATION, w -> {
+			w.writeString(room.getGroup().getZone().getName());
+			w.writeString(room.getGroup().getName());
+			w.writeString(room.getName());
+			w.writeInt(room.getRoomID());
+			w.writeInt(removed ? -1 : room.getUserCount());
+			w.writeInt(room.getUserLimit());
+		});
+	}
+
+	private interface MessageWriter {
+		public void write(DataWriter writer) throws IOException;
+	}
+
+	private void send(byte type, MessageWriter payload) {
+		SimpleBinaryMessageClient cl = client;
+		if (cl == null)
+			return;
+		try {
+			ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+			payload.write(new DataWriter(bOut));
+			cl.send(type, bOut.toByteArray());
+		} catch (IOException e) {
+		}
+	}
+
+	@EventListener
+	public void playerJoined(PlayerJoinEvent ev) {
+		sendPresence(MmoUplinkProtocol.PLAYER_ONLINE, ev.getPlayer());
+	}
+
+	@EventListener
+	public void playerDisconnected(PlayerDisconnectEvent ev) {
+		sendPresence(MmoUplinkProtocol.PLAYER_OFFLINE, ev.getPlayer());
+	}
+
+	@EventListener
+	public void joinedRoom(PlayerRoomJoinEvent ev) {
+		sendRoomPopulation(ev.getRoom(), false);
+		sendPlayerRoom(ev.getPlayer());
+	}
+
+	@EventListener
+	public void leftRoom(PlayerRoomLeaveEvent ev) {
+		sendRoomPopulation(ev.getRoom(), false);
+		sendPlayerRoom(ev.getPlayer());
+	}
+
+	@EventListener
+	public void roomCreated(RoomCreatedEvent ev) {
+		sendRoomPopulation(ev.getRoom(), false);
+	}
+
+	@EventListener
+	public void roomDeleted(RoomDeletedEvent ev) {
+		sendRoomPopulation(ev.getRoom(), true);
+	}
+
+}
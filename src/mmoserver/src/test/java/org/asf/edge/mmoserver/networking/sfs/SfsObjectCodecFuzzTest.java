@@ -0,0 +1,272 @@
+package org.asf.edge.mmoserver.networking.sfs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * Round-trip fuzz test of the smartfox object codec, the lazy object view and
+ * the payload parser against the stream-based implementation they replaced
+ *
+ * @author Sky Swimmer
+ *
+ */
+public class SfsObjectCodecFuzzTest {
+
+	private static final int ITERATIONS = 5000;
+
+	@Test
+	public void encodeMatchesLegacy() throws IOException {
+		Random rnd = new Random(1);
+		for (int i = 0; i < ITERATIONS; i++) {
+			Map<String, Object> obj = randomObject(rnd, 0, false);
+			assertArrayEquals(LegacySmartfoxNetworkObjectUtil.encodeSfsObject(obj),
+					SmartfoxNetworkObjectUtil.encodeSfsObject(obj), "Iteration " + i);
+		}
+	}
+
+	@Test
+	public void decodeMatchesLegacy() throws IOException {
+		Random rnd = new Random(2);
+		for (int i = 0; i < ITERATIONS; i++) {
+			byte[] data = LegacySmartfoxNetworkObjectUtil.encodeSfsObject(randomObject(rnd, 0, false));
+			Map<String, Object> expected = LegacySmartfoxNetworkObjectUtil.parseSfsObject(data);
+
+			// Codec
+			assertDeepEquals(expected, SmartfoxNetworkObjectUtil.parseSfsObject(data), "Iteration " + i);
+
+			// View
+			assertDeepEquals(expected, SfsObjectView.of(data).toMap(), "Iteration " + i);
+			assertDeepEquals(expected, SfsObjectView.of(data).asMap(), "Iteration " + i);
+
+			// Payload, read a single key first so the map is partially decoded
+			SmartfoxPayload payload = SmartfoxPayload.parseSfsObject(data);
+			String[] keys = payload.getKeys();
+			if (keys.length != 0) {
+				String key = keys[rnd.nextInt(keys.length)];
+				assertTrue(payload.has(key));
+				assertDeepEquals(expected.get(key), payload.toSfsObject().get(key), "Iteration " + i);
+			}
+			assertDeepEquals(expected, payload.toSfsObject(), "Iteration " + i);
+		}
+	}
+
+	@Test
+	public void streamDecodeStopsAfterObject() throws IOException {
+		Random rnd = new Random(3);
+		for (int i = 0; i < ITERATIONS; i++) {
+			Map<String, Object> obj = randomObject(rnd, 0, false);
+			ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+			LegacySmartfoxNetworkObjectUtil.encodeObject(obj, bOut);
+			bOut.write(42);
+
+			ByteArrayInputStream strm = new ByteArrayInputStream(bOut.toByteArray());
+			assertDeepEquals(obj, SmartfoxNetworkObjectUtil.parseObject(strm), "Iteration " + i);
+			assertEquals(42, strm.read(), "Iteration " + i);
+		}
+	}
+
+	@Test
+	public void unicodeRoundTrip() throws IOException {
+		Random rnd = new Random(4);
+		for (int i = 0; i < ITERATIONS; i++) {
+			Map<String, Object> obj = randomObject(rnd, 0, true);
+			byte[] data = SmartfoxNetworkObjectUtil.encodeSfsObject(obj);
+			assertDeepEquals(obj, SmartfoxNetworkObjectUtil.parseSfsObject(data), "Iteration " + i);
+			assertDeepEquals(obj, SmartfoxPayload.parseSfsObject(data).toSfsObject(), "Iteration " + i);
+		}
+	}
+
+	@Test
+	public void modifiedPayloadEncodesLikeLegacy() throws IOException {
+		Random rnd = new Random(5);
+		for (int i = 0; i < ITERATIONS; i++) {
+			byte[] data = LegacySmartfoxNetworkObjectUtil.encodeSfsObject(randomObject(rnd, 0, false));
+			Map<String, Object> expected = LegacySmartfoxNetworkObjectUtil.parseSfsObject(data);
+			SmartfoxPayload payload = SmartfoxPayload.parseSfsObject(data);
+
+			// Modify both the same way
+			String[] keys = payload.getKeys();
+			if (keys.length != 0 && rnd.nextBoolean()) {
+				String key = keys[rnd.nextInt(keys.length)];
+				payload.remove(key);
+				expected.remove(key);
+			}
+			payload.setInt("added", i);
+			expected.put("added", i);
+
+			assertArrayEquals(LegacySmartfoxNetworkObjectUtil.encodeSfsObject(expected), payload.encodeToSfsObject(),
+					"Iteration " + i);
+		}
+	}
+
+	@Test
+	public void truncatedDataIsRejected() throws IOException {
+		Random rnd = new Random(6);
+		for (int i = 0; i < ITERATIONS / 10; i++) {
+			Map<String, Object> obj = randomObject(rnd, 0, false);
+			if (obj.isEmpty())
+				continue;
+			byte[] data = SmartfoxNetworkObjectUtil.encodeSfsObject(obj);
+			for (int l = 0; l < data.length; l++) {
+				byte[] truncated = Arrays.copyOf(data, l);
+				assertThrows(IOException.class, () -> SmartfoxNetworkObjectUtil.parseSfsObject(truncated),
+						"Iteration " + i + ", length " + l);
+				assertThrows(IOException.class, () -> SmartfoxPayload.parseSfsObject(truncated),
+						"Iteration " + i + ", length " + l);
+			}
+		}
+	}
+
+	private static Map<String, Object> randomObject(Random rnd, int depth, boolean unicode) {
+		LinkedHashMap<String, Object> obj = new LinkedHashMap<String, Object>();
+		int count = rnd.nextInt(depth == 0 ? 12 : 5);
+		for (int i = 0; i < count; i++)
+			obj.put(randomString(rnd, 1 + rnd.nextInt(10), unicode), randomValue(rnd, depth, unicode));
+		if (depth != 0 && rnd.nextInt(10) == 0) {
+			// Class object
+			obj.put("$C", randomString(rnd, 10, unicode));
+			obj.put("$F", new Object[0]);
+		}
+		return obj;
+	}
+
+	private static Object randomValue(Random rnd, int depth, boolean unicode) {
+		int type = rnd.nextInt(depth >= 3 ? 17 : 19);
+		int length = rnd.nextInt(8);
+		switch (type) {
+		case 0:
+			return null;
+		case 1:
+			return rnd.nextBoolean();
+		case 2:
+			return (byte) rnd.nextInt();
+		case 3:
+			return (short) rnd.nextInt();
+		case 4:
+			return rnd.nextInt();
+		case 5:
+			return rnd.nextLong();
+		case 6:
+			return rnd.nextFloat();
+		case 7:
+			return rnd.nextDouble();
+		case 8:
+			return randomString(rnd, rnd.nextInt(30), unicode);
+		case 9: {
+			boolean[] arr = new boolean[length];
+			for (int i = 0; i < length; i++)
+				arr[i] = rnd.nextBoolean();
+			return arr;
+		}
+		case 10: {
+			byte[] arr = new byte[length];
+			rnd.nextBytes(arr);
+			return arr;
+		}
+		case 11: {
+			short[] arr = new short[length];
+			for (int i = 0; i < length; i++)
+				arr[i] = (short) rnd.nextInt();
+			return arr;
+		}
+		case 12:
+			return rnd.ints(length).toArray();
+		case 13:
+			return rnd.longs(length).toArray();
+		case 14: {
+			float[] arr = new float[length];
+			for (int i = 0; i < length; i++)
+				arr[i] = rnd.nextFloat();
+			return arr;
+		}
+		case 15:
+			return rnd.doubles(length).toArray();
+		case 16: {
+			String[] arr = new String[length];
+			for (int i = 0; i < length; i++)
+				arr[i] = randomString(rnd, rnd.nextInt(10), unicode);
+			return arr;
+		}
+		case 17: {
+			Object[] arr = new Object[length];
+			for (int i = 0; i < length; i++)
+				arr[i] = randomValue(rnd, depth + 1, unicode);
+			return arr;
+		}
+		default:
+			return randomObject(rnd, depth + 1, unicode);
+		}
+	}
+
+	private static String randomString(Random rnd, int length, boolean unicode) {
+		StringBuilder str = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			if (unicode && rnd.nextInt(4) == 0)
+				str.append((char) (0x80 + rnd.nextInt(0xD700)));
+			else
+				str.append((char) (0x20 + rnd.nextInt(0x5F)));
+		}
+		return str.toString();
+	}
+
+	private static void assertDeepEquals(Object expected, Object actual, String message) {
+		assertTrue(deepEquals(expected, actual), message + ": expected " + describe(expected) + ", got "
+				+ describe(actual));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static boolean deepEquals(Object expected, Object actual) {
+		if (expected == null || actual == null)
+			return expected == actual;
+		if (expected instanceof Map) {
+			if (!(actual instanceof Map))
+				return false;
+			Map<String, Object> e = (Map<String, Object>) expected;
+			Map<String, Object> a = (Map<String, Object>) actual;
+			if (e.size() != a.size() || !Arrays.equals(e.keySet().toArray(), a.keySet().toArray()))
+				return false;
+			for (String key : e.keySet()) {
+				if (!deepEquals(e.get(key), a.get(key)))
+					return false;
+			}
+			return true;
+		}
+		if (expected.getClass().isArray()) {
+			if (actual.getClass() != expected.getClass() || Array.getLength(expected) != Array.getLength(actual))
+				return false;
+			for (int i = 0; i < Array.getLength(expected); i++) {
+				if (!deepEquals(Array.get(expected, i), Array.get(actual, i)))
+					return false;
+			}
+			return true;
+		}
+		return expected.equals(actual);
+	}
+
+	private static String describe(Object value) {
+		if (value instanceof Object[])
+			return Arrays.deepToString((Object[]) value);
+		if (value != null && value.getClass().isArray()) {
+			Object[] arr = new Object[Array.getLength(value)];
+			for (int i = 0; i < arr.length; i++)
+				arr[i] = Array.get(value, i);
+			return Arrays.toString(arr);
+		}
+		return String.valueOf(value);
+	}
+
+}
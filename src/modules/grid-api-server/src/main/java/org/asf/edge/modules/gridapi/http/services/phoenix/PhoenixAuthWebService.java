@@ -12,6 +12,7 @@ import org.asf.edge.common.http.apihandlerutils.functions.FunctionResult;
 import org.asf.edge.common.services.accounts.AccountDataContainer;
 import org.asf.edge.common.services.accounts.AccountManager;
 import org.asf.edge.common.services.accounts.AccountObject;
+import org.asf.edge.common.services.accounts.PasswordHashingBusyException;
 import org.asf.edge.modules.eventbus.EventBus;
 import org.asf.edge.modules.gridapi.EdgeGridApiServer;
 import org.asf.edge.modules.gridapi.events.auth.AuthenticationDeferredEvent;
@@ -312,7 +313,18 @@ public class PhoenixAuthWebService extends EdgeWebService<EdgeGridApiServer> {
 			}
 
 			// Password check
-			if (!manager.verifyPassword(id, password)) {
+			boolean valid;
+			try {
+				valid = manager.verifyPassword(id, password);
+			} catch (PasswordHashingBusyException e) {
+				// Log
+				getServerInstance().getLogger().warn("Grid login from IP " + func.getClient().getRemoteAddress()
+						+ " rejected for " + id + ": password hashing queue is full");
+
+				// Server busy
+				return response(503, "Service unavailable", "text/json", "{\"error\":\"server_busy\"}");
+			}
+			if (!valid) {
 				// Log
 				getServerInstance().getLogger().warn("Grid login from IP " + func.getClient().getRemoteAddress()
 						+ " rejected for " + id + ": invalid password");